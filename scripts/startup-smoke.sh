@@ -0,0 +1,92 @@
+#!/usr/bin/env bash
+# Starts the application in one launch mode, measures startup and the first
+# accepted batch, then checks every EventController endpoint.
+#
+# Usage: scripts/startup-smoke.sh jvm|aot|cds|aot-cds|native [port]
+#
+# Build first (from the project root):
+#   jvm      mvn package -DskipTests
+#   aot      mvn -Paot package -DskipTests
+#   cds      mvn -Pcds package -DskipTests
+#   aot-cds  mvn -Paot,cds -Dcds.aot=true package -DskipTests
+#   native   mvn -Pnative native:compile -DskipTests   (GraalVM JDK required)
+set -euo pipefail
+
+MODE=${1:?mode: jvm|aot|cds|aot-cds|native}
+PORT=${2:-8080}
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+TARGET="$ROOT/target"
+JAR=factory-monitoring-0.0.1-SNAPSHOT.jar
+BASE="http://localhost:$PORT/api"
+APP_ARGS=(--server.port="$PORT" --spring.jpa.show-sql=false --factory.snapshot.dir="$TARGET/smoke-snapshots")
+LOG="$TARGET/startup-smoke-$MODE.log"
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+
+case "$MODE" in
+  jvm)     CMD=("$JAVA" -jar "$TARGET/$JAR") ;;
+  aot)     CMD=("$JAVA" -Dspring.aot.enabled=true -jar "$TARGET/$JAR") ;;
+  cds)     CMD=("$JAVA" -XX:SharedArchiveFile="$TARGET/extracted/application.jsa" -jar "$TARGET/extracted/$JAR") ;;
+  aot-cds) CMD=("$JAVA" -XX:SharedArchiveFile="$TARGET/extracted/application.jsa" -Dspring.aot.enabled=true
+                -jar "$TARGET/extracted/$JAR") ;;
+  native)  CMD=("$TARGET/factory-monitoring") ;;
+  *) echo "unknown mode: $MODE" >&2; exit 2 ;;
+esac
+
+now_ms() { echo $(( $(date +%s%N) / 1000000 )); }
+
+START=$(now_ms)
+"${CMD[@]}" "${APP_ARGS[@]}" > "$LOG" 2>&1 &
+PID=$!
+trap 'kill $PID 2>/dev/null && wait $PID 2>/dev/null || true' EXIT
+
+until curl -sf "$BASE/health" > /dev/null; do
+  if ! kill -0 $PID 2>/dev/null; then echo "application exited, see $LOG" >&2; exit 1; fi
+  sleep 0.02
+done
+READY=$(now_ms)
+
+EVENT_TIME=$(date -u -d '-10 min' +%Y-%m-%dT%H:%M:%S)
+WINDOW_START=$(date -u -d '-1 hour' +%Y-%m-%dT%H:%M:%S)
+WINDOW_END=$(date -u -d '+1 hour' +%Y-%m-%dT%H:%M:%S)
+event() { # eventId durationMs
+  echo "{\"eventId\":\"$1\",\"eventTime\":\"$EVENT_TIME\",\"machineId\":\"M-001\",\"durationMs\":$2,\"defectCount\":1,\"lineId\":\"L-001\",\"factoryId\":\"F-001\"}"
+}
+
+FIRST_BATCH_S=$(curl -sf -o /dev/null -w '%{time_total}' -H 'Content-Type: application/json' \
+  -d "[$(event E-SMOKE-1 5000)]" "$BASE/events/batch")
+ACCEPTED=$(now_ms)
+
+FAILED=0
+check() { # expected-status description curl-args...
+  local expected=$1 name=$2; shift 2
+  local status
+  status=$(curl -s -o /dev/null -w '%{http_code}' "$@")
+  if [ "$status" = "$expected" ]; then echo "  ok   $status $name"; else echo "  FAIL $status (expected $expected) $name"; FAILED=1; fi
+}
+
+echo "mode=$MODE startup_ms=$((READY - START)) first_batch_ms=$(awk "BEGIN{printf \"%.0f\", $FIRST_BATCH_S*1000}") first_accepted_ms=$((ACCEPTED - START))"
+
+check 200 "GET health" "$BASE/health"
+check 200 "POST batch" -H 'Content-Type: application/json' -d "[$(event E-SMOKE-2 5000)]" "$BASE/events/batch"
+check 400 "POST batch bad rejections mode" -H 'Content-Type: application/json' -d "[$(event E-SMOKE-3 5000)]" \
+  "$BASE/events/batch?rejections=bogus"
+TICKET=$(curl -sf -H 'Content-Type: application/json' -d "[$(event E-SMOKE-4 -1)]" \
+  "$BASE/events/batch?rejections=summary" | sed -n 's/.*"rejectionsTicket":"\([^"]*\)".*/\1/p')
+check 200 "GET rejections by ticket" "$BASE/events/batch/rejections/$TICKET"
+check 404 "GET rejections unknown ticket" "$BASE/events/batch/rejections/unknown"
+check 200 "GET stats" "$BASE/stats?machineId=M-001&start=$WINDOW_START&end=$WINDOW_END"
+check 200 "GET top defect lines" "$BASE/stats/top-defect-lines?factoryId=F-001&from=$WINDOW_START&to=$WINDOW_END"
+check 200 "GET export ndjson" "$BASE/events/export?machineId=M-001&start=$WINDOW_START&end=$WINDOW_END"
+check 200 "GET export csv" "$BASE/events/export?machineId=M-001&start=$WINDOW_START&end=$WINDOW_END&format=csv"
+check 200 "POST batch stream" -H 'Content-Type: application/json' -d "[$(event E-SMOKE-5 5000),$(event E-SMOKE-6 5000)]" \
+  "$BASE/events/batch/stream"
+check 400 "POST batch stream malformed" -H 'Content-Type: application/json' -d '{"eventId":' "$BASE/events/batch/stream"
+check 200 "GET stats windows" "$BASE/stats/windows?machineId=M-001&window=PT1H&window=PT8H&end=$WINDOW_END"
+check 200 "GET global top defect lines" "$BASE/stats/top-defect-lines/global?limit=5"
+check 200 "GET distinct machines" "$BASE/stats/distinct-machines?factoryId=F-001&start=$WINDOW_START&end=$WINDOW_END"
+check 200 "GET factory summary" "$BASE/factories/F-001/summary?from=$WINDOW_START&to=$WINDOW_END"
+check 200 "GET machines" "$BASE/machines?factoryId=F-001"
+check 200 "GET retention status" "$BASE/retention/status"
+check 201 "POST snapshot" -X POST "$BASE/snapshots"
+
+exit $FAILED
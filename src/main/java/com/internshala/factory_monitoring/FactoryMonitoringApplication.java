@@ -1,9 +1,16 @@
 package com.internshala.factory_monitoring;
 
+import com.internshala.factory_monitoring.config.NativeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+// No R2DBC ConnectionFactory bean: it would replace the JDBC DataSource (see ReactiveStatsRepository)
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
+@ImportRuntimeHints(NativeHints.class)
+@EnableScheduling
 public class FactoryMonitoringApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,65 @@
+package com.internshala.factory_monitoring.config;
+
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ConfigurationBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.UUID;
+
+/**
+ * Second-level cache of stored events (factory.ingest.event-cache.enabled, off by default).
+ *
+ * Two heap-only Ehcache regions of at most max-entries each: events by id, and
+ * eventId to id resolutions. The least recently used entries are evicted first,
+ * which keeps the events that re-sends and updates are likely to hit. The cache
+ * manager is private to this application context, so contexts in one JVM (tests)
+ * never share entries.
+ *
+ * Hibernate keeps both regions in step with what this instance writes. Writes of
+ * other instances on the same database are not seen, and ingest would classify
+ * their events against stale entries. The cache is therefore only turned on for
+ * an instance that is the single writer to its database.
+ */
+@Configuration
+public class EventCacheConfig {
+
+    public static final String EVENTS_REGION = "machine-events";
+    public static final String EVENT_IDS_REGION = "machine-events-by-event-id";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager eventCacheManager(@Value("${factory.ingest.event-cache.max-entries:50000}") long maxEntries) {
+        CacheConfiguration<Object, Object> region = CacheConfigurationBuilder
+                .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(Math.max(1, maxEntries)))
+                .build();
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(
+                EhcacheCachingProvider.class.getName());
+        return provider.getCacheManager(URI.create("urn:factory-event-cache:" + UUID.randomUUID()),
+                ConfigurationBuilder.newConfigurationBuilder()
+                        .withCache(EVENTS_REGION, region)
+                        .withCache(EVENT_IDS_REGION, region)
+                        .build());
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer eventCacheProperties(
+            CacheManager eventCacheManager,
+            @Value("${factory.ingest.event-cache.enabled:false}") boolean enabled) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, enabled);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, eventCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package com.internshala.factory_monitoring.config;
+
+import com.internshala.factory_monitoring.dto.BatchIngestResponse;
+import com.internshala.factory_monitoring.dto.DistinctMachinesResponse;
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.dto.EventRequestDeserializer;
+import com.internshala.factory_monitoring.dto.ExportedEvent;
+import com.internshala.factory_monitoring.dto.FactorySummaryResponse;
+import com.internshala.factory_monitoring.dto.FleetResponse;
+import com.internshala.factory_monitoring.dto.GlobalDefectLinesResponse;
+import com.internshala.factory_monitoring.dto.RetentionStatusResponse;
+import com.internshala.factory_monitoring.dto.SnapshotResponse;
+import com.internshala.factory_monitoring.dto.StatsResponse;
+import com.internshala.factory_monitoring.entity.DimensionConverter;
+import com.internshala.factory_monitoring.entity.DimensionResolver;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Reflection a native image cannot discover from the Spring configuration:
+ * rows serialized by hand-made ObjectWriters, events read by hand in the ingest
+ * pipeline, the @JsonDeserialize deserializer and the JPA converters and entity
+ * listener Hibernate instantiates through the bean container.
+ *
+ * The responses of the stats, fleet, retention and snapshot endpoints are listed
+ * too, so that serializing them, nested types included, does not rest on what AOT
+ * infers from generic controller signatures such as {@code ResponseEntity<List<StatsResponse>>}.
+ * scripts/startup-smoke.sh calls every endpoint against the native image.
+ */
+public class NativeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                ExportedEvent.class, BatchIngestResponse.RejectionDetail.class, EventRequest.class,
+                StatsResponse.class, GlobalDefectLinesResponse.class, DistinctMachinesResponse.class,
+                FactorySummaryResponse.class, FleetResponse.class, RetentionStatusResponse.class,
+                SnapshotResponse.class);
+
+        for (Class<?> type : new Class<?>[]{EventRequestDeserializer.class, DimensionConverter.Machine.class,
+                DimensionConverter.Line.class, DimensionConverter.Factory.class, DimensionResolver.class}) {
+            hints.reflection().registerType(type, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        }
+    }
+}
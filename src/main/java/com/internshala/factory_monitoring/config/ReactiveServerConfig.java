@@ -0,0 +1,23 @@
+package com.internshala.factory_monitoring.config;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Netty for the reactive stack (Spring profile "reactive").
+ *
+ * Tomcat is on the classpath for the servlet stack, and Boot prefers it for a
+ * reactive application too. Declaring the factory selects Netty; server.* settings
+ * are still applied to it.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveServerConfig {
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
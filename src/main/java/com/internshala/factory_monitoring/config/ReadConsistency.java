@@ -0,0 +1,35 @@
+package com.internshala.factory_monitoring.config;
+
+/**
+ * Per-thread read consistency requested by the client (header {@code X-Consistency}).
+ *
+ * EVENTUAL reads may be served by the replica within the configured staleness
+ * bound; STRONG reads always go to the primary, so a client sees its own writes.
+ */
+public enum ReadConsistency {
+
+    EVENTUAL,
+    STRONG;
+
+    public static final String HEADER = "X-Consistency";
+
+    private static final ThreadLocal<ReadConsistency> CURRENT = new ThreadLocal<>();
+
+    public static ReadConsistency current() {
+        ReadConsistency consistency = CURRENT.get();
+        return consistency != null ? consistency : EVENTUAL;
+    }
+
+    public static void set(ReadConsistency consistency) {
+        CURRENT.set(consistency);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    // Unknown values fall back to EVENTUAL rather than failing the read
+    public static ReadConsistency fromHeader(String value) {
+        return value != null && value.trim().equalsIgnoreCase("strong") ? STRONG : EVENTUAL;
+    }
+}
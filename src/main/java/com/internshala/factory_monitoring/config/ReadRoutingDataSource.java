@@ -0,0 +1,41 @@
+package com.internshala.factory_monitoring.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Sends read-only transactions to the replica and everything else to the primary.
+ *
+ * A read still goes to the primary when the client asked for STRONG consistency
+ * or the replica is further behind than the staleness bound. Must sit behind a
+ * LazyConnectionDataSourceProxy: the read-only flag is only set once the
+ * transaction has begun, after the JPA transaction manager asked for a connection.
+ */
+public class ReadRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Target { PRIMARY, REPLICA }
+
+    private final ReplicaLag lag;
+    private final long maxStalenessMillis;
+
+    public ReadRoutingDataSource(ReplicaLag lag, Duration maxStaleness) {
+        this.lag = lag;
+        this.maxStalenessMillis = maxStaleness.toMillis();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentTarget();
+    }
+
+    public Target currentTarget() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && ReadConsistency.current() == ReadConsistency.EVENTUAL
+                && lag.stalenessMillis() <= maxStalenessMillis) {
+            return Target.REPLICA;
+        }
+        return Target.PRIMARY;
+    }
+}
@@ -0,0 +1,77 @@
+package com.internshala.factory_monitoring.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Read/write split (factory.replica.enabled=true).
+ *
+ * The primary is the usual spring.datasource; the replica has its own pool so
+ * dashboard queries cannot exhaust the connections ingest commits need. JPA and
+ * everything else use the routing proxy; {@code ReplicaSynchronizer} keeps the
+ * replica up to date.
+ */
+@Configuration
+@ConditionalOnProperty(name = "factory.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(
+            @Value("${factory.replica.url:jdbc:h2:mem:factorydb_replica;DB_CLOSE_DELAY=-1}") String url,
+            @Value("${factory.replica.username:sa}") String username,
+            @Value("${factory.replica.password:}") String password,
+            @Value("${factory.replica.pool-size:10}") int poolSize) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(poolSize);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLag replicaLag() {
+        return new ReplicaLag();
+    }
+
+    @Bean
+    public ReadRoutingDataSource readRoutingDataSource(
+            @Qualifier("primaryDataSource") DataSource primary,
+            @Qualifier("replicaDataSource") DataSource replica,
+            ReplicaLag replicaLag,
+            @Value("${factory.replica.max-staleness:PT2S}") Duration maxStaleness) {
+        ReadRoutingDataSource routing = new ReadRoutingDataSource(replicaLag, maxStaleness);
+        routing.setTargetDataSources(Map.of(
+                ReadRoutingDataSource.Target.PRIMARY, primary,
+                ReadRoutingDataSource.Target.REPLICA, replica));
+        routing.setDefaultTargetDataSource(primary);
+        return routing;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadRoutingDataSource readRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readRoutingDataSource);
+    }
+}
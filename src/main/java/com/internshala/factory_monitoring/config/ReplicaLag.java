@@ -0,0 +1,53 @@
+package com.internshala.factory_monitoring.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks commits that are not yet applied to the replica. Staleness is the age
+ * of the oldest unapplied commit, or zero when the replica is caught up.
+ *
+ * A batch that failed to apply stays pending until a full resync has copied the
+ * primary, so meanwhile staleness keeps growing and reads fall back to the primary
+ * instead of serving a replica with a gap.
+ */
+public class ReplicaLag {
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentSkipListMap<Long, Long> pendingSinceNanos = new ConcurrentSkipListMap<>();
+
+    /**
+     * @return ticket to pass to {@link #applied(long)}
+     */
+    public long committed() {
+        long ticket = sequence.incrementAndGet();
+        pendingSinceNanos.put(ticket, System.nanoTime());
+        return ticket;
+    }
+
+    public void applied(long ticket) {
+        pendingSinceNanos.remove(ticket);
+    }
+
+    /**
+     * Marks every commit up to and including {@code ticket} as applied.
+     */
+    public void appliedUpTo(long ticket) {
+        pendingSinceNanos.headMap(ticket, true).clear();
+    }
+
+    // Ticket of the latest commit
+    public long lastTicket() {
+        return sequence.get();
+    }
+
+    public long stalenessMillis() {
+        Map.Entry<Long, Long> oldest = pendingSinceNanos.firstEntry();
+        return oldest == null ? 0 : (System.nanoTime() - oldest.getValue()) / 1_000_000;
+    }
+
+    public int pendingBatches() {
+        return pendingSinceNanos.size();
+    }
+}
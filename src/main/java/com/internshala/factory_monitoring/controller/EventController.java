@@ -1,38 +1,338 @@
 package com.internshala.factory_monitoring.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.internshala.factory_monitoring.config.ReadConsistency;
 import com.internshala.factory_monitoring.dto.BatchIngestResponse;
+import com.internshala.factory_monitoring.dto.DistinctMachinesResponse;
 import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.dto.ExportCursor;
+import com.internshala.factory_monitoring.dto.ExportFormat;
+import com.internshala.factory_monitoring.dto.ExportedEvent;
+import com.internshala.factory_monitoring.dto.FactorySummaryResponse;
+import com.internshala.factory_monitoring.dto.FleetResponse;
+import com.internshala.factory_monitoring.dto.GlobalDefectLinesResponse;
+import com.internshala.factory_monitoring.dto.RejectionMode;
+import com.internshala.factory_monitoring.dto.RetentionStatusResponse;
+import com.internshala.factory_monitoring.dto.SnapshotResponse;
 import com.internshala.factory_monitoring.dto.StatsResponse;
+import com.internshala.factory_monitoring.dto.StatsWindow;
 import com.internshala.factory_monitoring.dto.TopDefectLineResponse;
+import com.internshala.factory_monitoring.service.DefectLeaderboard;
+import com.internshala.factory_monitoring.service.DistinctMachineSketches;
+import com.internshala.factory_monitoring.service.EventExportService;
 import com.internshala.factory_monitoring.service.EventService;
+import com.internshala.factory_monitoring.service.EventStoreSnapshots;
+import com.internshala.factory_monitoring.service.FactorySummaryService;
+import com.internshala.factory_monitoring.service.IdempotencyStore;
+import com.internshala.factory_monitoring.service.IngestAdmission;
+import com.internshala.factory_monitoring.service.IngestPipeline;
+import com.internshala.factory_monitoring.service.MachineHeartbeats;
+import com.internshala.factory_monitoring.service.QueryPlanner;
+import com.internshala.factory_monitoring.service.RejectionLog;
+import com.internshala.factory_monitoring.service.RetentionService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api")
+@Profile("!reactive")
 public class EventController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv;charset=UTF-8");
+
+    // Bounds of one multi-window stats query (columns and IN-list size)
+    private static final int MAX_STATS_WINDOWS = 24;
+    private static final int MAX_STATS_MACHINES = 100;
+
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
     private final EventService eventService;
+    private final IdempotencyStore idempotencyStore;
+    private final IngestAdmission ingestAdmission;
+    private final IngestPipeline ingestPipeline;
+    private final boolean hashBatchBody;
+    private final EventExportService eventExportService;
+    private final Duration exportTimeout;
+    private final DefectLeaderboard defectLeaderboard;
+    private final DistinctMachineSketches distinctMachineSketches;
+    private final FactorySummaryService factorySummaryService;
+    private final RetentionService retentionService;
+    private final MachineHeartbeats machineHeartbeats;
+    private final EventStoreSnapshots snapshots;
+    private final ObjectWriter rejectionWriter;
+    private final ObjectWriter exportWriter;
 
     @Autowired
-    public EventController(EventService eventService) {
+    public EventController(EventService eventService, EventExportService eventExportService,
+                           IdempotencyStore idempotencyStore, IngestAdmission ingestAdmission,
+                           IngestPipeline ingestPipeline,
+                           DefectLeaderboard defectLeaderboard,
+                           DistinctMachineSketches distinctMachineSketches,
+                           FactorySummaryService factorySummaryService, RetentionService retentionService,
+                           MachineHeartbeats machineHeartbeats, EventStoreSnapshots snapshots,
+                           ObjectMapper objectMapper,
+                           @Value("${factory.ingest.idempotency.hash-body:false}") boolean hashBatchBody,
+                           @Value("${factory.export.timeout:PT30M}") Duration exportTimeout) {
         this.eventService = eventService;
+        this.idempotencyStore = idempotencyStore;
+        this.ingestAdmission = ingestAdmission;
+        this.ingestPipeline = ingestPipeline;
+        this.hashBatchBody = hashBatchBody;
+        this.eventExportService = eventExportService;
+        this.exportTimeout = exportTimeout;
+        this.defectLeaderboard = defectLeaderboard;
+        this.distinctMachineSketches = distinctMachineSketches;
+        this.factorySummaryService = factorySummaryService;
+        this.retentionService = retentionService;
+        this.machineHeartbeats = machineHeartbeats;
+        this.snapshots = snapshots;
+        this.rejectionWriter = objectMapper.writerFor(BatchIngestResponse.RejectionDetail.class);
+        // Rows go straight to the response stream: no close and no flush after each one
+        this.exportWriter = objectMapper.writerFor(ExportedEvent.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
     /**
      * Endpoint 1: Batch ingest events
-     * POST /api/events/batch
+     * POST /api/events/batch?rejections=full|summary
+     *
+     * With an Idempotency-Key header (or factory.ingest.idempotency.hash-body=true)
+     * a retried batch returns the stored response and the Idempotent-Replayed header.
+     * A batch over its factory's ingest rate gets 429 with Retry-After, one with more of
+     * a factory's events than its burst 413.
      */
     @PostMapping("/events/batch")
-    public ResponseEntity<BatchIngestResponse> ingestBatch(@Valid @RequestBody List<EventRequest> events) {
-        BatchIngestResponse response = eventService.ingestBatch(events);
-        return ResponseEntity.ok(response);
+    public ResponseEntity<BatchIngestResponse> ingestBatch(
+            @Valid @RequestBody List<EventRequest> events,
+            @RequestParam(name = "rejections", defaultValue = "full") String rejections,
+            @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        RejectionMode mode;
+        try {
+            mode = RejectionMode.fromParam(rejections);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        boolean hasKey = idempotencyKey != null && !idempotencyKey.isBlank();
+        try {
+            if (!hasKey && !hashBatchBody) {
+                ingestAdmission.admit(events);
+                return ResponseEntity.ok(eventService.ingestBatch(events, mode));
+            }
+
+            // The rejection mode changes the response, so it is part of the key
+            String fingerprint = IdempotencyStore.fingerprint(events);
+            String key = mode + ":" + (hasKey ? "key:" + idempotencyKey.trim() : "body:" + fingerprint);
+            IdempotencyStore.Outcome outcome;
+            try {
+                // Admission inside the supplier: replays cost no tokens, throttled batches are not stored
+                outcome = idempotencyStore.execute(key, fingerprint, () -> {
+                    ingestAdmission.admit(events);
+                    return eventService.ingestBatch(events, mode);
+                });
+            } catch (IdempotencyStore.KeyReusedException e) {
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, e.getMessage());
+            } catch (IdempotencyStore.StillInFlightException e) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+            }
+            return ResponseEntity.ok()
+                    .header(IDEMPOTENT_REPLAYED, String.valueOf(outcome.replayed()))
+                    .body(outcome.response());
+        } catch (IngestAdmission.ThrottledException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .build();
+        } catch (IngestAdmission.TooLargeException e) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage());
+        }
+    }
+
+    /**
+     * Batch ingest with the body parsed, classified and written in overlapping stages
+     * POST /api/events/batch/stream?rejections=full|summary
+     *
+     * Same body and response as /events/batch. Storing starts before the body has been
+     * read, so an invalid event or a throttled or oversized chunk ends the request. If
+     * chunks were committed before it, the response covers them and names where the
+     * batch stopped (200, with Retry-After when throttled); otherwise it is 400, 429 or 413. Idempotency
+     * keys are not accepted, nor is any request while factory.ingest.idempotency.hash-body
+     * is on, as replays need the whole batch before anything is stored.
+     */
+    @PostMapping(path = "/events/batch/stream", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchIngestResponse> ingestBatchStream(
+            InputStream body,
+            @RequestParam(name = "rejections", defaultValue = "full") String rejections,
+            @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey) throws IOException {
+        RejectionMode mode;
+        try {
+            mode = RejectionMode.fromParam(rejections);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (idempotencyKey != null && !idempotencyKey.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    IDEMPOTENCY_KEY + " needs the whole batch before anything is stored; use /events/batch");
+        }
+        if (hashBatchBody) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Batches are deduplicated by content (factory.ingest.idempotency.hash-body), which needs "
+                            + "the whole batch before anything is stored; use /events/batch");
+        }
+
+        try {
+            return ResponseEntity.ok(ingestPipeline.ingest(body, mode));
+        } catch (IngestPipeline.PartlyStoredException e) {
+            ResponseEntity.BodyBuilder partial = ResponseEntity.ok();
+            if (e.getCause() instanceof IngestAdmission.ThrottledException throttled) {
+                partial.header(HttpHeaders.RETRY_AFTER, String.valueOf(throttled.getRetryAfterSeconds()));
+            }
+            return partial.body(e.getResponse());
+        } catch (IngestPipeline.BusyException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .build();
+        } catch (IngestPipeline.InvalidBodyException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IngestAdmission.ThrottledException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .build();
+        } catch (IngestAdmission.TooLargeException e) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage());
+        }
+    }
+
+    /**
+     * Full rejection list of a summarised batch, streamed as NDJSON
+     * GET /api/events/batch/rejections/{ticket}
+     */
+    @GetMapping("/events/batch/rejections/{ticket}")
+    public ResponseEntity<StreamingResponseBody> getRejections(@PathVariable String ticket) {
+        RejectionLog rejections = eventService.findRejections(ticket);
+        if (rejections == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        StreamingResponseBody body = (OutputStream out) -> {
+            BatchIngestResponse.RejectionDetail detail = new BatchIngestResponse.RejectionDetail();
+            for (int i = 0; i < rejections.size(); i++) {
+                detail.setEventId(rejections.eventIdAt(i));
+                detail.setReason(rejections.reasonAt(i).getDescription());
+                out.write(rejectionWriter.writeValueAsBytes(detail));
+                out.write('\n');
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /**
+     * Raw events of one machine in (eventTime, id) order, streamed as NDJSON or CSV.
+     * Every row carries a cursor; pass the last one received as {@code after} to resume.
+     * GET /api/events/export?machineId=M-001&start=...&end=...&format=csv&after=...
+     *
+     * Runs with its own async timeout (factory.export.timeout) rather than the
+     * container's, and gets 429 with Retry-After when every export slot is taken. The
+     * slot is given back however the request ends, and an export that timed out stops
+     * writing before its next row.
+     */
+    @GetMapping("/events/export")
+    public WebAsyncTask<Void> exportEvents(
+            @RequestParam String machineId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) String after,
+            HttpServletResponse response) {
+        ExportFormat exportFormat;
+        ExportCursor cursor;
+        try {
+            exportFormat = ExportFormat.fromParam(format);
+            cursor = after == null || after.isBlank() ? null : ExportCursor.parse(after.trim());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        EventExportService.Slot slot = eventExportService.startExport();
+        try {
+            response.setContentType((exportFormat == ExportFormat.CSV ? CSV : NDJSON).toString());
+            // The body is written on another thread; carry the request's read consistency over
+            ReadConsistency consistency = ReadConsistency.current();
+            WebAsyncTask<Void> task = new WebAsyncTask<>(exportTimeout.toMillis(), () -> {
+                ReadConsistency.set(consistency);
+                try {
+                    writeExport(response.getOutputStream(), exportFormat, machineId, start, end, cursor, slot);
+                    response.flushBuffer();
+                } finally {
+                    ReadConsistency.clear();
+                    slot.release();
+                }
+                return null;
+            });
+            // The response is over: stop writing to it. Completion also covers a task that never ran.
+            task.onTimeout(() -> {
+                slot.cancel();
+                throw new AsyncRequestTimeoutException();
+            });
+            task.onCompletion(() -> {
+                slot.cancel();
+                slot.release();
+            });
+            return task;
+        } catch (RuntimeException e) {
+            slot.release();
+            throw e;
+        }
+    }
+
+    private void writeExport(OutputStream out, ExportFormat format, String machineId, LocalDateTime start,
+                             LocalDateTime end, ExportCursor cursor, EventExportService.Slot slot)
+            throws IOException {
+        if (format == ExportFormat.CSV) {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write(ExportedEvent.CSV_HEADER);
+            writer.write('\n');
+            eventExportService.export(machineId, start, end, cursor, slot.guard(row -> {
+                writer.write(row.toCsvLine());
+                writer.write('\n');
+            }));
+            writer.flush();
+        } else {
+            eventExportService.export(machineId, start, end, cursor, slot.guard(row -> {
+                exportWriter.writeValue(out, row);
+                out.write('\n');
+            }));
+        }
     }
 
     /**
@@ -49,6 +349,36 @@ public class EventController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Stats of one or more machines for several windows, from one scan of the widest range
+     * GET /api/stats/windows?machineId=M-001&window=PT1H&window=PT8H&window=PT24H&end=2026-01-15T12:00:00
+     *
+     * A window is a duration ending at {@code end} (default now) or an explicit start/end interval.
+     */
+    @GetMapping("/stats/windows")
+    public ResponseEntity<List<StatsResponse>> getStatsForWindows(
+            @RequestParam List<String> machineId,
+            @RequestParam List<String> window,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        List<String> machineIds = machineId.stream().distinct().toList();
+        if (machineIds.size() > MAX_STATS_MACHINES || window.size() > MAX_STATS_WINDOWS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_STATS_MACHINES
+                    + " machines and " + MAX_STATS_WINDOWS + " windows per request");
+        }
+
+        LocalDateTime windowEnd = end != null ? end : LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        List<StatsWindow> windows = new ArrayList<>(window.size());
+        try {
+            for (String value : window) {
+                windows.add(StatsWindow.parse(value, windowEnd));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        return ResponseEntity.ok(eventService.getStatsForWindows(machineIds, windows));
+    }
+
     /**
      * Endpoint 3: Get top defect lines
      * GET /api/stats/top-defect-lines?factoryId=F01&from=2026-01-15T00:00:00&to=2026-01-15T06:00:00&limit=10
@@ -64,6 +394,114 @@ public class EventController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Top defect lines of the current shift across all factories, from the in-memory leaderboard
+     * GET /api/stats/top-defect-lines/global?limit=10
+     */
+    @GetMapping("/stats/top-defect-lines/global")
+    public ResponseEntity<GlobalDefectLinesResponse> getGlobalTopDefectLines(
+            @RequestParam(defaultValue = "10") int limit) {
+
+        return ResponseEntity.ok(defectLeaderboard.top(limit));
+    }
+
+    /**
+     * Estimated distinct machines of a factory (or one line) per hour and over the window
+     * GET /api/stats/distinct-machines?factoryId=F01&lineId=L01&start=2026-01-15T00:00:00&end=2026-01-16T00:00:00
+     */
+    @GetMapping("/stats/distinct-machines")
+    public ResponseEntity<DistinctMachinesResponse> getDistinctMachines(
+            @RequestParam String factoryId,
+            @RequestParam(required = false) String lineId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+
+        return ResponseEntity.ok(distinctMachineSketches.distinctMachines(factoryId, lineId, start, end));
+    }
+
+    /**
+     * Utilization, throughput and defect rate of every line and machine of a factory
+     * GET /api/factories/F01/summary?from=2026-01-01T00:00:00&to=2026-02-01T00:00:00
+     */
+    @GetMapping("/factories/{factoryId}/summary")
+    public ResponseEntity<FactorySummaryResponse> getFactorySummary(
+            @PathVariable String factoryId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            return ResponseEntity.ok(factorySummaryService.summarize(factoryId, from, to));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Progress of the retention job and the outcome of its last run
+     * GET /api/retention/status
+     */
+    @GetMapping("/retention/status")
+    public ResponseEntity<RetentionStatusResponse> getRetentionStatus() {
+        return ResponseEntity.ok(retentionService.status());
+    }
+
+    /**
+     * Latest state of every machine, optionally of one factory, with staleness flags
+     * GET /api/machines?factoryId=F01
+     */
+    @GetMapping("/machines")
+    public ResponseEntity<FleetResponse> getMachines(@RequestParam(required = false) String factoryId) {
+        return ResponseEntity.ok(machineHeartbeats.fleet(factoryId));
+    }
+
+    /**
+     * Writes a snapshot of the stored tables to local disk
+     * POST /api/snapshots
+     */
+    @PostMapping("/snapshots")
+    public ResponseEntity<SnapshotResponse> createSnapshot() {
+        SnapshotResponse snapshot = snapshots.write();
+        if (snapshot == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "A snapshot is already being written");
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(snapshot);
+    }
+
+    /**
+     * Stats windows too large to run at all: 422
+     */
+    @ExceptionHandler(QueryPlanner.TooExpensiveException.class)
+    public ResponseEntity<String> queryTooExpensive(QueryPlanner.TooExpensiveException e) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(e.getMessage());
+    }
+
+    /**
+     * Every heavy-query slot is taken: 429 with Retry-After, as for throttled ingest
+     */
+    @ExceptionHandler(QueryPlanner.BusyException.class)
+    public ResponseEntity<String> queryBusy(QueryPlanner.BusyException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
+
+    /**
+     * A heavy query ran out of time: 503
+     */
+    @ExceptionHandler(QueryPlanner.TimedOutException.class)
+    public ResponseEntity<String> queryTimedOut(QueryPlanner.TimedOutException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+    }
+
+    /**
+     * Every export slot is taken: 429 with Retry-After
+     */
+    @ExceptionHandler(EventExportService.BusyException.class)
+    public ResponseEntity<String> exportBusy(EventExportService.BusyException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
+
     /**
      * Health check endpoint
      * GET /api/health
@@ -0,0 +1,141 @@
+package com.internshala.factory_monitoring.controller;
+
+import com.internshala.factory_monitoring.dto.BatchIngestResponse;
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.dto.RejectionMode;
+import com.internshala.factory_monitoring.dto.StatsResponse;
+import com.internshala.factory_monitoring.dto.TopDefectLineResponse;
+import com.internshala.factory_monitoring.service.IngestAdmission;
+import com.internshala.factory_monitoring.service.QueryPlanner;
+import com.internshala.factory_monitoring.service.ReactiveEventService;
+import jakarta.validation.Valid;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * The event API on WebFlux and Netty (Spring profile "reactive"). Batch ingest,
+ * stats, top defect lines and health have the same paths, parameters and response
+ * shapes as {@link EventController}.
+ *
+ * This is deliberately a subset. The profile is for many slow, long-lived uploads
+ * and the reads dashboards poll. Streamed ingest with resumable rejections, export,
+ * windows, the global leaderboard, distinct machines, factory summaries, retention
+ * status, the machine list and snapshots stay on the servlet stack and answer 404
+ * here. They either rely on the servlet response stream or need no more than a few
+ * threads.
+ *
+ * Only reads use R2DBC. Ingest still writes through blocking JPA, on the bounded
+ * "reactive-ingest" workers of {@link ReactiveEventService} and never on a Netty
+ * event loop.
+ */
+@RestController
+@RequestMapping("/api")
+@Profile("reactive")
+public class ReactiveEventController {
+
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    private final ReactiveEventService reactiveEventService;
+
+    public ReactiveEventController(ReactiveEventService reactiveEventService) {
+        this.reactiveEventService = reactiveEventService;
+    }
+
+    /**
+     * Endpoint 1: Batch ingest events, read from the request body as it arrives
+     * POST /api/events/batch?rejections=full|summary
+     *
+     * Idempotency keys need the whole batch before anything is stored, so they are
+     * only accepted by the servlet stack.
+     */
+    @PostMapping("/events/batch")
+    public Mono<ResponseEntity<BatchIngestResponse>> ingestBatch(
+            @Valid @RequestBody Flux<EventRequest> events,
+            @RequestParam(name = "rejections", defaultValue = "full") String rejections,
+            @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        RejectionMode mode;
+        try {
+            mode = RejectionMode.fromParam(rejections);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (idempotencyKey != null && !idempotencyKey.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    IDEMPOTENCY_KEY + " is not supported by the reactive stack");
+        }
+
+        return reactiveEventService.ingest(events, mode)
+                .map(ResponseEntity::ok)
+                .onErrorResume(IngestAdmission.ThrottledException.class, e -> Mono.just(
+                        ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                                .build()))
+                .onErrorMap(IngestAdmission.TooLargeException.class,
+                        e -> new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage()));
+    }
+
+    /**
+     * Endpoint 2: Get statistics for a machine
+     * GET /api/stats?machineId=M-001&start=2026-01-15T00:00:00&end=2026-01-15T06:00:00
+     */
+    @GetMapping("/stats")
+    public Mono<StatsResponse> getStats(
+            @RequestParam String machineId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        return reactiveEventService.getStats(machineId, start, end);
+    }
+
+    /**
+     * Endpoint 3: Get top defect lines
+     * GET /api/stats/top-defect-lines?factoryId=F01&from=2026-01-15T00:00:00&to=2026-01-15T06:00:00&limit=10
+     */
+    @GetMapping("/stats/top-defect-lines")
+    public Mono<TopDefectLineResponse> getTopDefectLines(
+            @RequestParam String factoryId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "10") int limit) {
+        return reactiveEventService.getTopDefectLines(factoryId, from, to, limit);
+    }
+
+    /**
+     * Stats windows too large to run at all: 422
+     */
+    @ExceptionHandler(QueryPlanner.TooExpensiveException.class)
+    public ResponseEntity<String> queryTooExpensive(QueryPlanner.TooExpensiveException e) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(e.getMessage());
+    }
+
+    /**
+     * Every heavy-query slot is taken: 429 with Retry-After, as for throttled ingest
+     */
+    @ExceptionHandler(QueryPlanner.BusyException.class)
+    public ResponseEntity<String> queryBusy(QueryPlanner.BusyException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
+
+    /**
+     * A heavy query ran out of time: 503
+     */
+    @ExceptionHandler(QueryPlanner.TimedOutException.class)
+    public ResponseEntity<String> queryTimedOut(QueryPlanner.TimedOutException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+    }
+
+    @GetMapping("/health")
+    public Mono<String> health() {
+        return Mono.just("Factory Monitoring System is running!");
+    }
+}
@@ -0,0 +1,31 @@
+package com.internshala.factory_monitoring.controller;
+
+import com.internshala.factory_monitoring.config.ReadConsistency;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Applies {@code X-Consistency: strong} to the request thread (read-your-writes).
+ */
+@Component
+@Profile("!reactive")
+public class ReadConsistencyFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        ReadConsistency.set(ReadConsistency.fromHeader(request.getHeader(ReadConsistency.HEADER)));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadConsistency.clear();
+        }
+    }
+}
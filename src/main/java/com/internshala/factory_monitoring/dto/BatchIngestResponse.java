@@ -1,8 +1,12 @@
 package com.internshala.factory_monitoring.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.ArrayList;
 import java.util.List;
 
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class BatchIngestResponse {
 
     private int accepted;
@@ -11,6 +15,21 @@ public class BatchIngestResponse {
     private int rejected;
     private List<RejectionDetail> rejections = new ArrayList<>();
 
+    // Set instead of rejections when rejections are summarised
+    private List<RejectionSummary> rejectionSummary;
+    private String rejectionsTicket;
+
+    // Set when the batch was stored in more than one chunk
+    private List<ChunkOutcome> chunks;
+
+    // Set when a pipelined batch stopped early: index of the first event not stored, and why
+    private Integer stoppedAt;
+    private String error;
+
+    // Set when a chunk failed to store; not sent, since chunks may be dropped from the response
+    @JsonIgnore
+    private boolean incomplete;
+
     // Constructors
     public BatchIngestResponse() {}
 
@@ -39,6 +58,25 @@ public class BatchIngestResponse {
     public List<RejectionDetail> getRejections() { return rejections; }
     public void setRejections(List<RejectionDetail> rejections) { this.rejections = rejections; }
 
+    public List<RejectionSummary> getRejectionSummary() { return rejectionSummary; }
+    public void setRejectionSummary(List<RejectionSummary> rejectionSummary) { this.rejectionSummary = rejectionSummary; }
+
+    public String getRejectionsTicket() { return rejectionsTicket; }
+    public void setRejectionsTicket(String rejectionsTicket) { this.rejectionsTicket = rejectionsTicket; }
+
+    public List<ChunkOutcome> getChunks() { return chunks; }
+    public void setChunks(List<ChunkOutcome> chunks) { this.chunks = chunks; }
+
+    public Integer getStoppedAt() { return stoppedAt; }
+    public void setStoppedAt(Integer stoppedAt) { this.stoppedAt = stoppedAt; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    @JsonIgnore
+    public boolean isIncomplete() { return incomplete; }
+    public void setIncomplete(boolean incomplete) { this.incomplete = incomplete; }
+
     // Inner class for rejection details
     public static class RejectionDetail {
         private String eventId;
@@ -57,4 +95,76 @@ public class BatchIngestResponse {
         public String getReason() { return reason; }
         public void setReason(String reason) { this.reason = reason; }
     }
-}
\ No newline at end of file
+
+    // Inner class for rejections grouped by reason code
+    public static class RejectionSummary {
+        private String code;
+        private int count;
+        private List<String> sampleEventIds;
+
+        public RejectionSummary() {}
+
+        public RejectionSummary(String code, int count, List<String> sampleEventIds) {
+            this.code = code;
+            this.count = count;
+            this.sampleEventIds = sampleEventIds;
+        }
+
+        public String getCode() { return code; }
+        public void setCode(String code) { this.code = code; }
+
+        public int getCount() { return count; }
+        public void setCount(int count) { this.count = count; }
+
+        public List<String> getSampleEventIds() { return sampleEventIds; }
+        public void setSampleEventIds(List<String> sampleEventIds) { this.sampleEventIds = sampleEventIds; }
+    }
+
+    // Inner class for the outcome of one chunk (one transaction) of a large batch
+    public static class ChunkOutcome {
+        public static final String COMMITTED = "COMMITTED";
+        public static final String FAILED = "FAILED";
+        // Handed on before the batch stopped, but not written
+        public static final String SKIPPED = "SKIPPED";
+
+        private int offset;
+        private int size;
+        private String status;
+        private int accepted;
+        private int deduped;
+        private int updated;
+        private int rejected;
+        // Attempts repeated after losing a race with another writer
+        private int retries;
+        private long elapsedMs;
+
+        public ChunkOutcome() {}
+
+        public int getOffset() { return offset; }
+        public void setOffset(int offset) { this.offset = offset; }
+
+        public int getSize() { return size; }
+        public void setSize(int size) { this.size = size; }
+
+        public String getStatus() { return status; }
+        public void setStatus(String status) { this.status = status; }
+
+        public int getAccepted() { return accepted; }
+        public void setAccepted(int accepted) { this.accepted = accepted; }
+
+        public int getDeduped() { return deduped; }
+        public void setDeduped(int deduped) { this.deduped = deduped; }
+
+        public int getUpdated() { return updated; }
+        public void setUpdated(int updated) { this.updated = updated; }
+
+        public int getRejected() { return rejected; }
+        public void setRejected(int rejected) { this.rejected = rejected; }
+
+        public int getRetries() { return retries; }
+        public void setRetries(int retries) { this.retries = retries; }
+
+        public long getElapsedMs() { return elapsedMs; }
+        public void setElapsedMs(long elapsedMs) { this.elapsedMs = elapsedMs; }
+    }
+}
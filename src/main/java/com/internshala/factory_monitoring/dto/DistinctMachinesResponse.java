@@ -0,0 +1,72 @@
+package com.internshala.factory_monitoring.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class DistinctMachinesResponse {
+
+    private String factoryId;
+    private String lineId;
+
+    // The requested window widened to whole hours
+    private LocalDateTime start;
+    private LocalDateTime end;
+
+    // HyperLogLog estimate of distinct machines; about 95% of estimates lie within lowerBound..upperBound
+    private long estimate;
+    private double relativeStandardError;
+    private long lowerBound;
+    private long upperBound;
+
+    private List<HourEstimate> hourly;
+
+    // Constructors
+    public DistinctMachinesResponse() {}
+
+    // Getters and Setters
+    public String getFactoryId() { return factoryId; }
+    public void setFactoryId(String factoryId) { this.factoryId = factoryId; }
+
+    public String getLineId() { return lineId; }
+    public void setLineId(String lineId) { this.lineId = lineId; }
+
+    public LocalDateTime getStart() { return start; }
+    public void setStart(LocalDateTime start) { this.start = start; }
+
+    public LocalDateTime getEnd() { return end; }
+    public void setEnd(LocalDateTime end) { this.end = end; }
+
+    public long getEstimate() { return estimate; }
+    public void setEstimate(long estimate) { this.estimate = estimate; }
+
+    public double getRelativeStandardError() { return relativeStandardError; }
+    public void setRelativeStandardError(double relativeStandardError) { this.relativeStandardError = relativeStandardError; }
+
+    public long getLowerBound() { return lowerBound; }
+    public void setLowerBound(long lowerBound) { this.lowerBound = lowerBound; }
+
+    public long getUpperBound() { return upperBound; }
+    public void setUpperBound(long upperBound) { this.upperBound = upperBound; }
+
+    public List<HourEstimate> getHourly() { return hourly; }
+    public void setHourly(List<HourEstimate> hourly) { this.hourly = hourly; }
+
+    // Inner class: distinct machines of one hour that had events
+    public static class HourEstimate {
+        private LocalDateTime hour;
+        private long estimate;
+
+        public HourEstimate() {}
+
+        public HourEstimate(LocalDateTime hour, long estimate) {
+            this.hour = hour;
+            this.estimate = estimate;
+        }
+
+        public LocalDateTime getHour() { return hour; }
+        public void setHour(LocalDateTime hour) { this.hour = hour; }
+
+        public long getEstimate() { return estimate; }
+        public void setEstimate(long estimate) { this.estimate = estimate; }
+    }
+}
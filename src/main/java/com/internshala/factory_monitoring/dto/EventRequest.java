@@ -1,26 +1,38 @@
 package com.internshala.factory_monitoring.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.internshala.factory_monitoring.util.EventTimes;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotBlank;
-import jakarta.validation.constraints.NotNull;
 
 import java.time.LocalDateTime;
 
+/**
+ * One incoming event.
+ *
+ * Timestamps and numbers are kept as primitives (eventTime as epoch millis, see
+ * {@link EventTimes}) so ingesting a batch does not allocate a LocalDateTime and
+ * boxed Long/Integer per event. JSON is read by {@link EventRequestDeserializer}.
+ */
+@JsonDeserialize(using = EventRequestDeserializer.class)
 public class EventRequest {
 
+    // Marks durationMs/defectCount as not sent by the client
+    static final long UNSET_DURATION = Long.MIN_VALUE;
+    static final int UNSET_DEFECTS = Integer.MIN_VALUE;
+
     @NotBlank(message = "eventId is required")
     private String eventId;
 
-    @NotNull(message = "eventTime is required")
-    private LocalDateTime eventTime;
+    private long eventTimeMillis = EventTimes.UNSET;
 
     @NotBlank(message = "machineId is required")
     private String machineId;
 
-    @NotNull(message = "durationMs is required")
-    private Long durationMs;
+    private long durationMs = UNSET_DURATION;
 
-    @NotNull(message = "defectCount is required")
-    private Integer defectCount;
+    private int defectCount = UNSET_DEFECTS;
 
     private String lineId;
     private String factoryId;
@@ -31,10 +43,10 @@ public class EventRequest {
     public EventRequest(String eventId, LocalDateTime eventTime, String machineId,
                         Long durationMs, Integer defectCount, String lineId, String factoryId) {
         this.eventId = eventId;
-        this.eventTime = eventTime;
+        setEventTime(eventTime);
         this.machineId = machineId;
-        this.durationMs = durationMs;
-        this.defectCount = defectCount;
+        this.durationMs = durationMs != null ? durationMs : UNSET_DURATION;
+        this.defectCount = defectCount != null ? defectCount : UNSET_DEFECTS;
         this.lineId = lineId;
         this.factoryId = factoryId;
     }
@@ -43,21 +55,45 @@ public class EventRequest {
     public String getEventId() { return eventId; }
     public void setEventId(String eventId) { this.eventId = eventId; }
 
-    public LocalDateTime getEventTime() { return eventTime; }
-    public void setEventTime(LocalDateTime eventTime) { this.eventTime = eventTime; }
+    /**
+     * Builds a LocalDateTime on demand; the ingest path uses {@link #getEventTimeMillis()}.
+     */
+    public LocalDateTime getEventTime() {
+        return eventTimeMillis == EventTimes.UNSET ? null : EventTimes.toLocalDateTime(eventTimeMillis);
+    }
+    public void setEventTime(LocalDateTime eventTime) {
+        this.eventTimeMillis = eventTime == null ? EventTimes.UNSET : EventTimes.toEpochMillis(eventTime);
+    }
+
+    @JsonIgnore
+    public long getEventTimeMillis() { return eventTimeMillis; }
+    public void setEventTimeMillis(long eventTimeMillis) { this.eventTimeMillis = eventTimeMillis; }
 
     public String getMachineId() { return machineId; }
     public void setMachineId(String machineId) { this.machineId = machineId; }
 
-    public Long getDurationMs() { return durationMs; }
-    public void setDurationMs(Long durationMs) { this.durationMs = durationMs; }
+    public long getDurationMs() { return durationMs; }
+    public void setDurationMs(long durationMs) { this.durationMs = durationMs; }
 
-    public Integer getDefectCount() { return defectCount; }
-    public void setDefectCount(Integer defectCount) { this.defectCount = defectCount; }
+    public int getDefectCount() { return defectCount; }
+    public void setDefectCount(int defectCount) { this.defectCount = defectCount; }
 
     public String getLineId() { return lineId; }
     public void setLineId(String lineId) { this.lineId = lineId; }
 
     public String getFactoryId() { return factoryId; }
     public void setFactoryId(String factoryId) { this.factoryId = factoryId; }
-}
\ No newline at end of file
+
+    // Required-field checks for the primitive fields (replace @NotNull)
+    @JsonIgnore
+    @AssertTrue(message = "eventTime is required")
+    public boolean isEventTimePresent() { return eventTimeMillis != EventTimes.UNSET; }
+
+    @JsonIgnore
+    @AssertTrue(message = "durationMs is required")
+    public boolean isDurationMsPresent() { return durationMs != UNSET_DURATION; }
+
+    @JsonIgnore
+    @AssertTrue(message = "defectCount is required")
+    public boolean isDefectCountPresent() { return defectCount != UNSET_DEFECTS; }
+}
@@ -0,0 +1,88 @@
+package com.internshala.factory_monitoring.dto;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.internshala.factory_monitoring.util.EventTimes;
+
+import java.io.IOException;
+
+/**
+ * Streaming deserializer for {@link EventRequest}.
+ *
+ * Reads numbers straight into primitive fields and parses eventTime from the
+ * parser's character buffer, so no boxed numbers, intermediate strings or
+ * java.time objects are created per event. Unknown fields are skipped.
+ */
+public class EventRequestDeserializer extends JsonDeserializer<EventRequest> {
+
+    @Override
+    public EventRequest deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        return read(parser, context);
+    }
+
+    /**
+     * Reads one event object; the parser must be positioned on its START_OBJECT.
+     */
+    public static EventRequest read(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            return (EventRequest) context.handleUnexpectedToken(EventRequest.class, parser);
+        }
+
+        EventRequest event = new EventRequest();
+        for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (field) {
+                case "eventId" -> event.setEventId(parser.getValueAsString());
+                case "eventTime" -> event.setEventTimeMillis(readEpochMillis(parser, context));
+                case "machineId" -> event.setMachineId(parser.getValueAsString());
+                case "durationMs" -> event.setDurationMs(readLong(parser, context));
+                case "defectCount" -> event.setDefectCount(readInt(parser, context));
+                case "lineId" -> event.setLineId(parser.getValueAsString());
+                case "factoryId" -> event.setFactoryId(parser.getValueAsString());
+                default -> parser.skipChildren();
+            }
+        }
+        return event;
+    }
+
+    private static long readEpochMillis(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            return (Long) context.handleUnexpectedToken(long.class, parser);
+        }
+        try {
+            return EventTimes.parseEpochMillis(
+                    parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        } catch (IllegalArgumentException e) {
+            throw context.weirdStringException(parser.getText(), EventRequest.class, e.getMessage());
+        }
+    }
+
+    // A cast would wrap an out-of-range count into a valid-looking one
+    private static int readInt(JsonParser parser, DeserializationContext context) throws IOException {
+        long value = readLong(parser, context);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw context.weirdNumberException(value, int.class, "out of range for an int");
+        }
+        return (int) value;
+    }
+
+    private static long readLong(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                return Long.parseLong(parser.getText().trim());
+            } catch (NumberFormatException e) {
+                throw context.weirdStringException(parser.getText(), long.class, "not a valid integer");
+            }
+        }
+        return (Long) context.handleUnexpectedToken(long.class, parser);
+    }
+}
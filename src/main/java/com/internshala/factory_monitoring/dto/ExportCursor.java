@@ -0,0 +1,45 @@
+package com.internshala.factory_monitoring.dto;
+
+import com.internshala.factory_monitoring.util.EventTimes;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Keyset position in an export: the (eventTime, id) of the last row received.
+ * Exports are ordered by that pair, so resuming "after" it neither repeats nor
+ * skips rows, however many rows were inserted meanwhile at other positions.
+ *
+ * The token is opaque to clients: URL-safe Base64 of "epochMillis:id".
+ */
+public final class ExportCursor {
+
+    private final LocalDateTime eventTime;
+    private final long id;
+
+    public ExportCursor(LocalDateTime eventTime, long id) {
+        this.eventTime = eventTime;
+        this.id = id;
+    }
+
+    public LocalDateTime getEventTime() { return eventTime; }
+    public long getId() { return id; }
+
+    public String encode() {
+        String raw = EventTimes.toEpochMillis(eventTime) + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static ExportCursor parse(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            int colon = raw.indexOf(':');
+            long millis = Long.parseLong(raw.substring(0, colon));
+            long id = Long.parseLong(raw.substring(colon + 1));
+            return new ExportCursor(EventTimes.toLocalDateTime(millis), id);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid export cursor: " + token);
+        }
+    }
+}
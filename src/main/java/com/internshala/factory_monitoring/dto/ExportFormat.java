@@ -0,0 +1,24 @@
+package com.internshala.factory_monitoring.dto;
+
+/**
+ * Output format of the raw event export.
+ */
+public enum ExportFormat {
+
+    // One JSON object per line (application/x-ndjson)
+    NDJSON,
+
+    // Header row followed by one comma-separated row per event (text/csv)
+    CSV;
+
+    public static ExportFormat fromParam(String value) {
+        if (value == null || value.isBlank()) {
+            return NDJSON;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("format must be 'csv' or 'ndjson' but was: " + value);
+        }
+    }
+}
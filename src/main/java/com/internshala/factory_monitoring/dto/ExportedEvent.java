@@ -0,0 +1,75 @@
+package com.internshala.factory_monitoring.dto;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.time.LocalDateTime;
+
+import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+/**
+ * One row of the raw event export. {@code cursor} resumes the export right after
+ * this row (see {@link ExportCursor}).
+ */
+@JsonPropertyOrder({"eventId", "eventTime", "receivedTime", "machineId", "durationMs",
+        "defectCount", "lineId", "factoryId", "cursor"})
+public class ExportedEvent {
+
+    public static final String CSV_HEADER =
+            "eventId,eventTime,receivedTime,machineId,durationMs,defectCount,lineId,factoryId,cursor";
+
+    private String eventId;
+    private LocalDateTime eventTime;
+    private LocalDateTime receivedTime;
+    private String machineId;
+    private long durationMs;
+    private int defectCount;
+    private String lineId;
+    private String factoryId;
+    private String cursor;
+
+    // Getters and Setters
+    public String getEventId() { return eventId; }
+    public void setEventId(String eventId) { this.eventId = eventId; }
+
+    public LocalDateTime getEventTime() { return eventTime; }
+    public void setEventTime(LocalDateTime eventTime) { this.eventTime = eventTime; }
+
+    public LocalDateTime getReceivedTime() { return receivedTime; }
+    public void setReceivedTime(LocalDateTime receivedTime) { this.receivedTime = receivedTime; }
+
+    public String getMachineId() { return machineId; }
+    public void setMachineId(String machineId) { this.machineId = machineId; }
+
+    public long getDurationMs() { return durationMs; }
+    public void setDurationMs(long durationMs) { this.durationMs = durationMs; }
+
+    public int getDefectCount() { return defectCount; }
+    public void setDefectCount(int defectCount) { this.defectCount = defectCount; }
+
+    public String getLineId() { return lineId; }
+    public void setLineId(String lineId) { this.lineId = lineId; }
+
+    public String getFactoryId() { return factoryId; }
+    public void setFactoryId(String factoryId) { this.factoryId = factoryId; }
+
+    public String getCursor() { return cursor; }
+    public void setCursor(String cursor) { this.cursor = cursor; }
+
+    // Timestamps formatted like the JSON output (seconds always present)
+    public String toCsvLine() {
+        return csv(eventId) + ',' + ISO_LOCAL_DATE_TIME.format(eventTime) + ','
+                + ISO_LOCAL_DATE_TIME.format(receivedTime) + ',' + csv(machineId) + ','
+                + durationMs + ',' + defectCount + ',' + csv(lineId) + ',' + csv(factoryId) + ',' + cursor;
+    }
+
+    // RFC 4180 quoting; null becomes an empty field
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
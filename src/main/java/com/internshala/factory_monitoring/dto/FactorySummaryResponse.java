@@ -0,0 +1,112 @@
+package com.internshala.factory_monitoring.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class FactorySummaryResponse {
+
+    private String factoryId;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private double windowHours;
+
+    private LocalDateTime watermark;
+    private boolean windowFinal;
+
+    // Whole hours of the window answered from the in-memory rollup; the rest was read from the database
+    private long rollupHours;
+
+    private Usage totals;
+    private List<LineSummary> lines;
+
+    // Constructors
+    public FactorySummaryResponse() {}
+
+    // Getters and Setters
+    public String getFactoryId() { return factoryId; }
+    public void setFactoryId(String factoryId) { this.factoryId = factoryId; }
+
+    public LocalDateTime getFrom() { return from; }
+    public void setFrom(LocalDateTime from) { this.from = from; }
+
+    public LocalDateTime getTo() { return to; }
+    public void setTo(LocalDateTime to) { this.to = to; }
+
+    public double getWindowHours() { return windowHours; }
+    public void setWindowHours(double windowHours) { this.windowHours = windowHours; }
+
+    public LocalDateTime getWatermark() { return watermark; }
+    public void setWatermark(LocalDateTime watermark) { this.watermark = watermark; }
+
+    public boolean isWindowFinal() { return windowFinal; }
+    public void setWindowFinal(boolean windowFinal) { this.windowFinal = windowFinal; }
+
+    public long getRollupHours() { return rollupHours; }
+    public void setRollupHours(long rollupHours) { this.rollupHours = rollupHours; }
+
+    public Usage getTotals() { return totals; }
+    public void setTotals(Usage totals) { this.totals = totals; }
+
+    public List<LineSummary> getLines() { return lines; }
+    public void setLines(List<LineSummary> lines) { this.lines = lines; }
+
+    // Inner class: what a factory, a line or a machine did in the window
+    public static class Usage {
+        private long eventCount;
+        // Known defects only; events with defectCount -1 are counted as events but add no defects
+        private long defectCount;
+        private long totalDurationMs;
+        private int machineCount;
+        // totalDurationMs over the window's wall-clock time of every machine that reported
+        private double utilizationPercent;
+        private double eventsPerHour;
+        private double defectsPer1000Events;
+
+        public Usage() {}
+
+        public long getEventCount() { return eventCount; }
+        public void setEventCount(long eventCount) { this.eventCount = eventCount; }
+
+        public long getDefectCount() { return defectCount; }
+        public void setDefectCount(long defectCount) { this.defectCount = defectCount; }
+
+        public long getTotalDurationMs() { return totalDurationMs; }
+        public void setTotalDurationMs(long totalDurationMs) { this.totalDurationMs = totalDurationMs; }
+
+        public int getMachineCount() { return machineCount; }
+        public void setMachineCount(int machineCount) { this.machineCount = machineCount; }
+
+        public double getUtilizationPercent() { return utilizationPercent; }
+        public void setUtilizationPercent(double utilizationPercent) { this.utilizationPercent = utilizationPercent; }
+
+        public double getEventsPerHour() { return eventsPerHour; }
+        public void setEventsPerHour(double eventsPerHour) { this.eventsPerHour = eventsPerHour; }
+
+        public double getDefectsPer1000Events() { return defectsPer1000Events; }
+        public void setDefectsPer1000Events(double defectsPer1000Events) { this.defectsPer1000Events = defectsPer1000Events; }
+    }
+
+    // Inner class: one line and its machines
+    public static class LineSummary extends Usage {
+        private String lineId;
+        private List<MachineSummary> machines;
+
+        public LineSummary() {}
+
+        public String getLineId() { return lineId; }
+        public void setLineId(String lineId) { this.lineId = lineId; }
+
+        public List<MachineSummary> getMachines() { return machines; }
+        public void setMachines(List<MachineSummary> machines) { this.machines = machines; }
+    }
+
+    // Inner class: one machine of a line
+    public static class MachineSummary extends Usage {
+        private String machineId;
+
+        public MachineSummary() {}
+
+        public String getMachineId() { return machineId; }
+        public void setMachineId(String machineId) { this.machineId = machineId; }
+    }
+}
@@ -0,0 +1,85 @@
+package com.internshala.factory_monitoring.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class FleetResponse {
+
+    private String factoryId;
+    private LocalDateTime generatedAt;
+
+    // A machine is stale when nothing arrived from it for this long
+    private long staleAfterSeconds;
+    private int machineCount;
+    private int staleCount;
+
+    private List<MachineState> machines;
+
+    // Constructors
+    public FleetResponse() {}
+
+    // Getters and Setters
+    public String getFactoryId() { return factoryId; }
+    public void setFactoryId(String factoryId) { this.factoryId = factoryId; }
+
+    public LocalDateTime getGeneratedAt() { return generatedAt; }
+    public void setGeneratedAt(LocalDateTime generatedAt) { this.generatedAt = generatedAt; }
+
+    public long getStaleAfterSeconds() { return staleAfterSeconds; }
+    public void setStaleAfterSeconds(long staleAfterSeconds) { this.staleAfterSeconds = staleAfterSeconds; }
+
+    public int getMachineCount() { return machineCount; }
+    public void setMachineCount(int machineCount) { this.machineCount = machineCount; }
+
+    public int getStaleCount() { return staleCount; }
+    public void setStaleCount(int staleCount) { this.staleCount = staleCount; }
+
+    public List<MachineState> getMachines() { return machines; }
+    public void setMachines(List<MachineState> machines) { this.machines = machines; }
+
+    // Inner class: latest state of one machine
+    public static class MachineState {
+        private String machineId;
+        private String factoryId;
+        private String lineId;
+        private String lastEventId;
+        private LocalDateTime lastEventTime;
+        private LocalDateTime lastReceivedTime;
+        private long eventCount;
+        private long defectCount;
+        private long silentSeconds;
+        private boolean stale;
+
+        public MachineState() {}
+
+        public String getMachineId() { return machineId; }
+        public void setMachineId(String machineId) { this.machineId = machineId; }
+
+        public String getFactoryId() { return factoryId; }
+        public void setFactoryId(String factoryId) { this.factoryId = factoryId; }
+
+        public String getLineId() { return lineId; }
+        public void setLineId(String lineId) { this.lineId = lineId; }
+
+        public String getLastEventId() { return lastEventId; }
+        public void setLastEventId(String lastEventId) { this.lastEventId = lastEventId; }
+
+        public LocalDateTime getLastEventTime() { return lastEventTime; }
+        public void setLastEventTime(LocalDateTime lastEventTime) { this.lastEventTime = lastEventTime; }
+
+        public LocalDateTime getLastReceivedTime() { return lastReceivedTime; }
+        public void setLastReceivedTime(LocalDateTime lastReceivedTime) { this.lastReceivedTime = lastReceivedTime; }
+
+        public long getEventCount() { return eventCount; }
+        public void setEventCount(long eventCount) { this.eventCount = eventCount; }
+
+        public long getDefectCount() { return defectCount; }
+        public void setDefectCount(long defectCount) { this.defectCount = defectCount; }
+
+        public long getSilentSeconds() { return silentSeconds; }
+        public void setSilentSeconds(long silentSeconds) { this.silentSeconds = silentSeconds; }
+
+        public boolean isStale() { return stale; }
+        public void setStale(boolean stale) { this.stale = stale; }
+    }
+}
@@ -0,0 +1,65 @@
+package com.internshala.factory_monitoring.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class GlobalDefectLinesResponse {
+
+    // The shift the ranking covers: events with shiftStart <= eventTime < shiftEnd
+    private LocalDateTime shiftStart;
+    private LocalDateTime shiftEnd;
+    private List<RankedLine> lines;
+
+    // Constructors
+    public GlobalDefectLinesResponse() {}
+
+    public GlobalDefectLinesResponse(LocalDateTime shiftStart, LocalDateTime shiftEnd, List<RankedLine> lines) {
+        this.shiftStart = shiftStart;
+        this.shiftEnd = shiftEnd;
+        this.lines = lines;
+    }
+
+    // Getters and Setters
+    public LocalDateTime getShiftStart() { return shiftStart; }
+    public void setShiftStart(LocalDateTime shiftStart) { this.shiftStart = shiftStart; }
+
+    public LocalDateTime getShiftEnd() { return shiftEnd; }
+    public void setShiftEnd(LocalDateTime shiftEnd) { this.shiftEnd = shiftEnd; }
+
+    public List<RankedLine> getLines() { return lines; }
+    public void setLines(List<RankedLine> lines) { this.lines = lines; }
+
+    // Inner class: a line is identified by factory and line id together
+    public static class RankedLine {
+        private String factoryId;
+        private String lineId;
+        private Long totalDefects;
+        private Long eventCount;
+        private Double defectsPercent;
+
+        public RankedLine() {}
+
+        public RankedLine(String factoryId, String lineId, Long totalDefects, Long eventCount, Double defectsPercent) {
+            this.factoryId = factoryId;
+            this.lineId = lineId;
+            this.totalDefects = totalDefects;
+            this.eventCount = eventCount;
+            this.defectsPercent = defectsPercent;
+        }
+
+        public String getFactoryId() { return factoryId; }
+        public void setFactoryId(String factoryId) { this.factoryId = factoryId; }
+
+        public String getLineId() { return lineId; }
+        public void setLineId(String lineId) { this.lineId = lineId; }
+
+        public Long getTotalDefects() { return totalDefects; }
+        public void setTotalDefects(Long totalDefects) { this.totalDefects = totalDefects; }
+
+        public Long getEventCount() { return eventCount; }
+        public void setEventCount(Long eventCount) { this.eventCount = eventCount; }
+
+        public Double getDefectsPercent() { return defectsPercent; }
+        public void setDefectsPercent(Double defectsPercent) { this.defectsPercent = defectsPercent; }
+    }
+}
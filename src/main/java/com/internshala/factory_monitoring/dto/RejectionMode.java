@@ -0,0 +1,24 @@
+package com.internshala.factory_monitoring.dto;
+
+/**
+ * How rejected events are reported in a {@link BatchIngestResponse}.
+ */
+public enum RejectionMode {
+
+    // One RejectionDetail per rejected event
+    FULL,
+
+    // Counts per reason code with a capped sample of eventIds, plus a ticket for the full list
+    SUMMARY;
+
+    public static RejectionMode fromParam(String value) {
+        if (value == null || value.isBlank()) {
+            return FULL;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("rejections must be 'full' or 'summary' but was: " + value);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.internshala.factory_monitoring.dto;
+
+/**
+ * Why an event was rejected. Several reasons can share a code; the code is what
+ * clients group by, the description is the human readable "CODE: message" text.
+ */
+public enum RejectionReason {
+
+    NEGATIVE_DURATION("INVALID_DURATION", "durationMs cannot be negative"),
+    EXCESSIVE_DURATION("INVALID_DURATION", "durationMs cannot exceed 6 hours"),
+    FUTURE_EVENT_TIME("INVALID_TIME", "eventTime is more than 15 minutes in the future"),
+    CHUNK_FAILED("STORAGE_FAILED", "the chunk containing this event could not be stored");
+
+    private final String code;
+    private final String description;
+
+    RejectionReason(String code, String message) {
+        this.code = code;
+        this.description = code + ": " + message;
+    }
+
+    public String getCode() { return code; }
+    public String getDescription() { return description; }
+}
@@ -0,0 +1,73 @@
+package com.internshala.factory_monitoring.dto;
+
+import java.time.LocalDateTime;
+
+public class RetentionStatusResponse {
+
+    private boolean enabled;
+    private boolean running;
+
+    // Progress of the run in progress, if any
+    private String currentFactoryId;
+    private long deletedThisRun;
+
+    // Pause between chunks; grows while ingest is slow
+    private long pauseMs;
+    private long totalDeleted;
+    private Run lastRun;
+
+    // Constructors
+    public RetentionStatusResponse() {}
+
+    // Getters and Setters
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public boolean isRunning() { return running; }
+    public void setRunning(boolean running) { this.running = running; }
+
+    public String getCurrentFactoryId() { return currentFactoryId; }
+    public void setCurrentFactoryId(String currentFactoryId) { this.currentFactoryId = currentFactoryId; }
+
+    public long getDeletedThisRun() { return deletedThisRun; }
+    public void setDeletedThisRun(long deletedThisRun) { this.deletedThisRun = deletedThisRun; }
+
+    public long getPauseMs() { return pauseMs; }
+    public void setPauseMs(long pauseMs) { this.pauseMs = pauseMs; }
+
+    public long getTotalDeleted() { return totalDeleted; }
+    public void setTotalDeleted(long totalDeleted) { this.totalDeleted = totalDeleted; }
+
+    public Run getLastRun() { return lastRun; }
+    public void setLastRun(Run lastRun) { this.lastRun = lastRun; }
+
+    // Inner class: outcome of a finished run
+    public static class Run {
+        private LocalDateTime started;
+        private LocalDateTime finished;
+        private long deleted;
+        private long summarized;
+        private long chunks;
+        private long eventsPerSecond;
+
+        public Run() {}
+
+        public LocalDateTime getStarted() { return started; }
+        public void setStarted(LocalDateTime started) { this.started = started; }
+
+        public LocalDateTime getFinished() { return finished; }
+        public void setFinished(LocalDateTime finished) { this.finished = finished; }
+
+        public long getDeleted() { return deleted; }
+        public void setDeleted(long deleted) { this.deleted = deleted; }
+
+        public long getSummarized() { return summarized; }
+        public void setSummarized(long summarized) { this.summarized = summarized; }
+
+        public long getChunks() { return chunks; }
+        public void setChunks(long chunks) { this.chunks = chunks; }
+
+        public long getEventsPerSecond() { return eventsPerSecond; }
+        public void setEventsPerSecond(long eventsPerSecond) { this.eventsPerSecond = eventsPerSecond; }
+    }
+}
@@ -0,0 +1,40 @@
+package com.internshala.factory_monitoring.dto;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+public class SnapshotResponse {
+
+    private String file;
+    private LocalDateTime createdAt;
+
+    // Rows written per table, in restore order
+    private Map<String, Long> rows;
+
+    // Size of the data before and after compression
+    private long uncompressedBytes;
+    private long fileBytes;
+    private long durationMs;
+
+    // Constructors
+    public SnapshotResponse() {}
+
+    // Getters and Setters
+    public String getFile() { return file; }
+    public void setFile(String file) { this.file = file; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public Map<String, Long> getRows() { return rows; }
+    public void setRows(Map<String, Long> rows) { this.rows = rows; }
+
+    public long getUncompressedBytes() { return uncompressedBytes; }
+    public void setUncompressedBytes(long uncompressedBytes) { this.uncompressedBytes = uncompressedBytes; }
+
+    public long getFileBytes() { return fileBytes; }
+    public void setFileBytes(long fileBytes) { this.fileBytes = fileBytes; }
+
+    public long getDurationMs() { return durationMs; }
+    public void setDurationMs(long durationMs) { this.durationMs = durationMs; }
+}
@@ -13,6 +13,10 @@ public class StatsResponse {
     private Double avgDefectRate;
     private String status;
 
+    // Event-time watermark of the machine (null before its first event); windows ending at or before it are final
+    private LocalDateTime watermark;
+    private boolean windowFinal;
+
     // Constructors
     public StatsResponse() {}
 
@@ -48,4 +52,10 @@ public class StatsResponse {
 
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
+
+    public LocalDateTime getWatermark() { return watermark; }
+    public void setWatermark(LocalDateTime watermark) { this.watermark = watermark; }
+
+    public boolean isWindowFinal() { return windowFinal; }
+    public void setWindowFinal(boolean windowFinal) { this.windowFinal = windowFinal; }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.internshala.factory_monitoring.dto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * One window [start, end) of a multi-window stats request. Given either as an
+ * ISO-8601 duration ending at the request's end time ("PT8H") or as an explicit
+ * interval ("2026-01-15T06:00:00/2026-01-15T14:00:00").
+ */
+public final class StatsWindow {
+
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+
+    public StatsWindow(LocalDateTime start, LocalDateTime end) {
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("Window start must be before its end: " + start + "/" + end);
+        }
+        this.start = start;
+        this.end = end;
+    }
+
+    public LocalDateTime getStart() { return start; }
+    public LocalDateTime getEnd() { return end; }
+
+    public static StatsWindow parse(String value, LocalDateTime defaultEnd) {
+        String text = value.trim();
+        try {
+            int slash = text.indexOf('/');
+            if (slash >= 0) {
+                return new StatsWindow(LocalDateTime.parse(text.substring(0, slash)),
+                        LocalDateTime.parse(text.substring(slash + 1)));
+            }
+            return new StatsWindow(defaultEnd.minus(Duration.parse(text)), defaultEnd);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("window must be a duration like PT8H or an interval like "
+                    + "2026-01-15T06:00:00/2026-01-15T14:00:00 but was: " + value);
+        }
+    }
+}
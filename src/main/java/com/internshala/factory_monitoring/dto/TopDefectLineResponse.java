@@ -1,11 +1,16 @@
 package com.internshala.factory_monitoring.dto;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public class TopDefectLineResponse {
 
     private List<DefectLineStats> lines;
 
+    // Smallest watermark among the factory's machines (null before its first event)
+    private LocalDateTime watermark;
+    private boolean windowFinal;
+
     // Constructors
     public TopDefectLineResponse() {}
 
@@ -17,6 +22,12 @@ public class TopDefectLineResponse {
     public List<DefectLineStats> getLines() { return lines; }
     public void setLines(List<DefectLineStats> lines) { this.lines = lines; }
 
+    public LocalDateTime getWatermark() { return watermark; }
+    public void setWatermark(LocalDateTime watermark) { this.watermark = watermark; }
+
+    public boolean isWindowFinal() { return windowFinal; }
+    public void setWindowFinal(boolean windowFinal) { this.windowFinal = windowFinal; }
+
     // Inner class
     public static class DefectLineStats {
         private String lineId;
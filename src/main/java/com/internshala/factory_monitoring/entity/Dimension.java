@@ -0,0 +1,46 @@
+package com.internshala.factory_monitoring.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Dictionary entry mapping a machine, line or factory id to the integer key
+ * stored in {@link MachineEvent} rows.
+ */
+@Entity
+@Table(name = "dimensions", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_dimension_kind_id", columnNames = {"kind", "externalId"})
+})
+public class Dimension {
+
+    public enum Kind { MACHINE, LINE, FACTORY }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Kind kind;
+
+    // The id as the API sends it
+    @Column(nullable = false)
+    private String externalId;
+
+    // Constructors
+    public Dimension() {}
+
+    public Dimension(Kind kind, String externalId) {
+        this.kind = kind;
+        this.externalId = externalId;
+    }
+
+    // Getters and Setters
+    public Integer getId() { return id; }
+    public void setId(Integer id) { this.id = id; }
+
+    public Kind getKind() { return kind; }
+    public void setKind(Kind kind) { this.kind = kind; }
+
+    public String getExternalId() { return externalId; }
+    public void setExternalId(String externalId) { this.externalId = externalId; }
+}
@@ -0,0 +1,57 @@
+package com.internshala.factory_monitoring.entity;
+
+import com.internshala.factory_monitoring.service.DimensionDictionary;
+import jakarta.persistence.AttributeConverter;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Stores a machine, line or factory id as its dictionary key. Entities and JPQL
+ * queries keep using the string ids; Hibernate converts entity values, query
+ * parameters and selected columns through these converters.
+ *
+ * Converters only look keys up. Missing entries are created before an event is
+ * written (by ingest, and by {@link DimensionResolver} for any other save), so a
+ * query for an unknown id binds {@link DimensionDictionary#UNKNOWN} and simply
+ * matches nothing.
+ *
+ * Instances are created by Spring (Hibernate's bean container); the dictionary is
+ * looked up lazily because it depends on the EntityManagerFactory being built.
+ */
+public abstract class DimensionConverter implements AttributeConverter<String, Integer> {
+
+    private final ObjectProvider<DimensionDictionary> dictionary;
+    private final Dimension.Kind kind;
+
+    protected DimensionConverter(ObjectProvider<DimensionDictionary> dictionary, Dimension.Kind kind) {
+        this.dictionary = dictionary;
+        this.kind = kind;
+    }
+
+    @Override
+    public Integer convertToDatabaseColumn(String externalId) {
+        return externalId == null ? null : dictionary.getObject().keyOf(kind, externalId);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer key) {
+        return key == null ? null : dictionary.getObject().externalIdOf(key);
+    }
+
+    public static class Machine extends DimensionConverter {
+        public Machine(ObjectProvider<DimensionDictionary> dictionary) {
+            super(dictionary, Dimension.Kind.MACHINE);
+        }
+    }
+
+    public static class Line extends DimensionConverter {
+        public Line(ObjectProvider<DimensionDictionary> dictionary) {
+            super(dictionary, Dimension.Kind.LINE);
+        }
+    }
+
+    public static class Factory extends DimensionConverter {
+        public Factory(ObjectProvider<DimensionDictionary> dictionary) {
+            super(dictionary, Dimension.Kind.FACTORY);
+        }
+    }
+}
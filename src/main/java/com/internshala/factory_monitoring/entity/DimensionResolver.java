@@ -0,0 +1,29 @@
+package com.internshala.factory_monitoring.entity;
+
+import com.internshala.factory_monitoring.service.DimensionDictionary;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Makes sure every id written to machine_events has a dictionary entry, whatever
+ * code path saves the event. Ingest resolves whole batches up front, so here it
+ * is normally a cache hit.
+ */
+public class DimensionResolver {
+
+    private final ObjectProvider<DimensionDictionary> dictionary;
+
+    public DimensionResolver(ObjectProvider<DimensionDictionary> dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void resolve(MachineEvent event) {
+        DimensionDictionary dimensions = dictionary.getObject();
+        dimensions.resolve(Dimension.Kind.MACHINE, event.getMachineId());
+        dimensions.resolve(Dimension.Kind.LINE, event.getLineId());
+        dimensions.resolve(Dimension.Kind.FACTORY, event.getFactoryId());
+    }
+}
@@ -0,0 +1,74 @@
+package com.internshala.factory_monitoring.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Hourly totals of events removed by retention, per machine, line and factory.
+ * Written in the same transaction that deletes the events.
+ */
+@Entity
+@Table(name = "event_summaries", indexes = {
+        @Index(name = "idx_summary_machine_hour", columnList = "machineId,hourStart")
+})
+public class EventSummary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String machineId;
+
+    private String lineId;
+    private String factoryId;
+
+    @Column(nullable = false)
+    private LocalDateTime hourStart;
+
+    @Column(nullable = false)
+    private long eventCount;
+
+    // Sum of known defect counts (defectCount -1 is not included)
+    @Column(nullable = false)
+    private long defectCount;
+
+    @Column(nullable = false)
+    private long durationMs;
+
+    // Constructors
+    public EventSummary() {}
+
+    public EventSummary(String machineId, String lineId, String factoryId, LocalDateTime hourStart) {
+        this.machineId = machineId;
+        this.lineId = lineId;
+        this.factoryId = factoryId;
+        this.hourStart = hourStart;
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getMachineId() { return machineId; }
+    public void setMachineId(String machineId) { this.machineId = machineId; }
+
+    public String getLineId() { return lineId; }
+    public void setLineId(String lineId) { this.lineId = lineId; }
+
+    public String getFactoryId() { return factoryId; }
+    public void setFactoryId(String factoryId) { this.factoryId = factoryId; }
+
+    public LocalDateTime getHourStart() { return hourStart; }
+    public void setHourStart(LocalDateTime hourStart) { this.hourStart = hourStart; }
+
+    public long getEventCount() { return eventCount; }
+    public void setEventCount(long eventCount) { this.eventCount = eventCount; }
+
+    public long getDefectCount() { return defectCount; }
+    public void setDefectCount(long defectCount) { this.defectCount = defectCount; }
+
+    public long getDurationMs() { return durationMs; }
+    public void setDurationMs(long durationMs) { this.durationMs = durationMs; }
+}
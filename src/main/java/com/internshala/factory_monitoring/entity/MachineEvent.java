@@ -1,13 +1,37 @@
 package com.internshala.factory_monitoring.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import java.time.LocalDateTime;
 
+/**
+ * One stored event. machineId, lineId and factoryId are stored as integer keys of
+ * the dimensions table (see {@link DimensionConverter}) but read and queried as
+ * the original string ids.
+ *
+ * {@code version} makes every update conditional on the row being unchanged since
+ * it was read, so two instances updating the same event cannot overwrite each
+ * other unnoticed (see {@code EventService}).
+ *
+ * {@code eventId} is the natural id. Recently stored events and their eventId to id
+ * resolutions are kept in the second-level cache (see {@code EventCacheConfig}), so
+ * re-sends and updates of them are classified without a query.
+ */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "machine-events")
+@NaturalIdCache(region = "machine-events-by-event-id")
+@EntityListeners(DimensionResolver.class)
 @Table(name = "machine_events", indexes = {
         @Index(name = "idx_event_id", columnList = "eventId", unique = true),
-        @Index(name = "idx_machine_time", columnList = "machineId,eventTime")
+        @Index(name = "idx_machine_time", columnList = "machineId,eventTime"),
+        // Covers the factory summary's grouped query, so it never reads the table rows
+        @Index(name = "idx_factory_time", columnList = "factoryId,eventTime,lineId,machineId,defectCount,durationMs")
 })
 public class MachineEvent {
 
@@ -15,6 +39,7 @@ public class MachineEvent {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @NaturalId
     @Column(nullable = false, unique = true)
     private String eventId;
 
@@ -25,22 +50,32 @@ public class MachineEvent {
     private LocalDateTime receivedTime;
 
     @Column(nullable = false)
+    @Convert(converter = DimensionConverter.Machine.class)
     private String machineId;
 
     @Column(nullable = false)
-    private Long durationMs;
+    private long durationMs;
 
     @Column(nullable = false)
-    private Integer defectCount;
+    private int defectCount;
 
+    @Convert(converter = DimensionConverter.Line.class)
     private String lineId;
+
+    @Convert(converter = DimensionConverter.Factory.class)
     private String factoryId;
 
+    // Rows written outside JPA (replica copy, tests) start at 0
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+
     // Constructors
     public MachineEvent() {}
 
     public MachineEvent(Long id, String eventId, LocalDateTime eventTime, LocalDateTime receivedTime,
-                        String machineId, Long durationMs, Integer defectCount, String lineId, String factoryId) {
+                        String machineId, long durationMs, int defectCount, String lineId, String factoryId) {
         this.id = id;
         this.eventId = eventId;
         this.eventTime = eventTime;
@@ -93,19 +128,19 @@ public class MachineEvent {
         this.machineId = machineId;
     }
 
-    public Long getDurationMs() {
+    public long getDurationMs() {
         return durationMs;
     }
 
-    public void setDurationMs(Long durationMs) {
+    public void setDurationMs(long durationMs) {
         this.durationMs = durationMs;
     }
 
-    public Integer getDefectCount() {
+    public int getDefectCount() {
         return defectCount;
     }
 
-    public void setDefectCount(Integer defectCount) {
+    public void setDefectCount(int defectCount) {
         this.defectCount = defectCount;
     }
 
@@ -124,4 +159,8 @@ public class MachineEvent {
     public void setFactoryId(String factoryId) {
         this.factoryId = factoryId;
     }
+
+    public long getVersion() {
+        return version;
+    }
 }
\ No newline at end of file
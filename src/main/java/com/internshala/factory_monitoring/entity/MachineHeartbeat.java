@@ -0,0 +1,80 @@
+package com.internshala.factory_monitoring.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Latest state of one machine: when it last reported, its latest event and its
+ * running totals. Upserted by ingest in the same transaction as the events (see
+ * {@code MachineHeartbeats}), so it never disagrees with the committed events.
+ */
+@Entity
+@Table(name = "machine_heartbeats", indexes = {
+        @Index(name = "idx_heartbeat_factory", columnList = "factoryId")
+})
+public class MachineHeartbeat {
+
+    @Id
+    private String machineId;
+
+    // Line and factory of the latest event
+    private String lineId;
+    private String factoryId;
+
+    @Column(nullable = false)
+    private String lastEventId;
+
+    // Latest eventTime reported by the machine, and when the last of its events arrived
+    @Column(nullable = false)
+    private LocalDateTime lastEventTime;
+
+    @Column(nullable = false)
+    private LocalDateTime lastReceivedTime;
+
+    @Column(nullable = false)
+    private long eventCount;
+
+    // Running total of known defects (defectCount -1 is not included)
+    @Column(nullable = false)
+    private long defectCount;
+
+    // Incremented by every upsert; the in-memory mirror keeps the highest it has seen
+    @Column(nullable = false)
+    private long revision;
+
+    // Constructors
+    public MachineHeartbeat() {}
+
+    public MachineHeartbeat(String machineId) {
+        this.machineId = machineId;
+    }
+
+    // Getters and Setters
+    public String getMachineId() { return machineId; }
+    public void setMachineId(String machineId) { this.machineId = machineId; }
+
+    public String getLineId() { return lineId; }
+    public void setLineId(String lineId) { this.lineId = lineId; }
+
+    public String getFactoryId() { return factoryId; }
+    public void setFactoryId(String factoryId) { this.factoryId = factoryId; }
+
+    public String getLastEventId() { return lastEventId; }
+    public void setLastEventId(String lastEventId) { this.lastEventId = lastEventId; }
+
+    public LocalDateTime getLastEventTime() { return lastEventTime; }
+    public void setLastEventTime(LocalDateTime lastEventTime) { this.lastEventTime = lastEventTime; }
+
+    public LocalDateTime getLastReceivedTime() { return lastReceivedTime; }
+    public void setLastReceivedTime(LocalDateTime lastReceivedTime) { this.lastReceivedTime = lastReceivedTime; }
+
+    public long getEventCount() { return eventCount; }
+    public void setEventCount(long eventCount) { this.eventCount = eventCount; }
+
+    public long getDefectCount() { return defectCount; }
+    public void setDefectCount(long defectCount) { this.defectCount = defectCount; }
+
+    public long getRevision() { return revision; }
+    public void setRevision(long revision) { this.revision = revision; }
+}
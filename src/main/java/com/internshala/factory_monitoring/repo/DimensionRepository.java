@@ -0,0 +1,16 @@
+package com.internshala.factory_monitoring.repo;
+
+import com.internshala.factory_monitoring.entity.Dimension;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface DimensionRepository extends JpaRepository<Dimension, Integer> {
+
+    List<Dimension> findByKindAndExternalIdIn(Dimension.Kind kind, Collection<String> externalIds);
+
+    List<Dimension> findByKind(Dimension.Kind kind);
+}
@@ -0,0 +1,17 @@
+package com.internshala.factory_monitoring.repo;
+
+import com.internshala.factory_monitoring.entity.EventSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EventSummaryRepository extends JpaRepository<EventSummary, Long> {
+
+    // Candidates for the summaries a retention chunk adds to; matched on line and factory in memory
+    List<EventSummary> findByMachineIdInAndHourStartBetween(Collection<String> machineIds,
+                                                            LocalDateTime fromHour, LocalDateTime toHour);
+}
@@ -2,17 +2,23 @@ package com.internshala.factory_monitoring.repo;
 
 
 import com.internshala.factory_monitoring.entity.MachineEvent;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface MachineEventRepository extends JpaRepository<MachineEvent, Long> {
+public interface MachineEventRepository extends JpaRepository<MachineEvent, Long>, MachineEventRepositoryCustom {
 
     // Find event by eventId (for duplicate detection)
     Optional<MachineEvent> findByEventId(String eventId);
@@ -26,6 +32,41 @@ public interface MachineEventRepository extends JpaRepository<MachineEvent, Long
             @Param("end") LocalDateTime end
     );
 
+    // Scans and retention bypass the second-level cache: they must not displace the recently
+    // stored events that ingest looks up there.
+
+    // Raw export in keyset order: rows after (afterTime, afterId) within [start, end), read through a JDBC cursor
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")})
+    @Query("SELECT e FROM MachineEvent e WHERE e.machineId = :machineId " +
+            "AND e.eventTime >= :start AND e.eventTime < :end " +
+            "AND (e.eventTime > :afterTime OR (e.eventTime = :afterTime AND e.id > :afterId)) " +
+            "ORDER BY e.eventTime, e.id")
+    Stream<MachineEvent> streamForExport(
+            @Param("machineId") String machineId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end,
+            @Param("afterTime") LocalDateTime afterTime,
+            @Param("afterId") long afterId
+    );
+
+    // Every stored event through a JDBC cursor (rebuilding in-memory aggregates)
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")})
+    @Query("SELECT e FROM MachineEvent e")
+    Stream<MachineEvent> streamAll();
+
+    // (machineId, lineId, factoryId, eventTime) of every stored event through a JDBC cursor (rebuilding sketches)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT e.machineId, e.lineId, e.factoryId, e.eventTime FROM MachineEvent e")
+    Stream<Object[]> streamSources();
+
+    // Events at or after a point in time through a JDBC cursor (rebuilding the shift leaderboard)
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")})
+    @Query("SELECT e FROM MachineEvent e WHERE e.eventTime >= :from")
+    Stream<MachineEvent> streamSince(@Param("from") LocalDateTime from);
+
     // Count defects for a machine in a time window (excluding unknown defects)
     @Query("SELECT COALESCE(SUM(e.defectCount), 0) FROM MachineEvent e " +
             "WHERE e.machineId = :machineId " +
@@ -37,7 +78,30 @@ public interface MachineEventRepository extends JpaRepository<MachineEvent, Long
             @Param("end") LocalDateTime end
     );
 
-    List<MachineEvent> findAllByEventIdIn(List<String> eventIds);
+    // Retention: events of a factory older than the cutoff, in id order after afterId (keyset chunks)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE"))
+    @Query("SELECT e FROM MachineEvent e WHERE e.factoryId = :factoryId " +
+            "AND e.eventTime < :cutoff AND e.id > :afterId ORDER BY e.id")
+    List<MachineEvent> findExpired(
+            @Param("factoryId") String factoryId,
+            @Param("cutoff") LocalDateTime cutoff,
+            @Param("afterId") long afterId,
+            Limit limit
+    );
+
+    // Retention: as findExpired, for events without a factory
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE"))
+    @Query("SELECT e FROM MachineEvent e WHERE e.factoryId IS NULL " +
+            "AND e.eventTime < :cutoff AND e.id > :afterId ORDER BY e.id")
+    List<MachineEvent> findExpiredWithoutFactory(
+            @Param("cutoff") LocalDateTime cutoff,
+            @Param("afterId") long afterId,
+            Limit limit
+    );
+
+    @Modifying
+    @Query("DELETE FROM MachineEvent e WHERE e.id IN :ids")
+    int deleteByIds(@Param("ids") List<Long> ids);
 
     // Count total events for a machine in a time window
     @Query("SELECT COUNT(e) FROM MachineEvent e " +
@@ -49,6 +113,29 @@ public interface MachineEventRepository extends JpaRepository<MachineEvent, Long
             @Param("end") LocalDateTime end
     );
 
+    // Planner checks of the rollup's row estimate: events in a window, counted only up to a limit.
+    // Ordered like idx_machine_time and idx_factory_time, so the scan stops at the limit.
+
+    @Query("SELECT COUNT(*) FROM (SELECT e.id AS id FROM MachineEvent e " +
+            "WHERE e.machineId = :machineId " +
+            "AND e.eventTime >= :start AND e.eventTime < :end ORDER BY e.eventTime LIMIT :limit) matching")
+    long countByMachineIdAndTimeRangeUpTo(
+            @Param("machineId") String machineId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end,
+            @Param("limit") long limit
+    );
+
+    @Query("SELECT COUNT(*) FROM (SELECT e.id AS id FROM MachineEvent e " +
+            "WHERE e.factoryId = :factoryId " +
+            "AND e.eventTime >= :start AND e.eventTime < :end ORDER BY e.eventTime LIMIT :limit) matching")
+    long countByFactoryAndTimeRangeUpTo(
+            @Param("factoryId") String factoryId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end,
+            @Param("limit") long limit
+    );
+
     // For top defect lines endpoint
     @Query("SELECT e.lineId, " +
             "SUM(CASE WHEN e.defectCount >= 0 THEN e.defectCount ELSE 0 END) as totalDefects, " +
@@ -64,4 +151,19 @@ public interface MachineEventRepository extends JpaRepository<MachineEvent, Long
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end
     );
+
+    // For the factory summary: (lineId, machineId, eventCount, knownDefects, totalDurationMs), read from idx_factory_time
+    @Query("SELECT e.lineId, e.machineId, COUNT(e), " +
+            "SUM(CASE WHEN e.defectCount >= 0 THEN e.defectCount ELSE 0 END), " +
+            "SUM(e.durationMs) " +
+            "FROM MachineEvent e " +
+            "WHERE e.factoryId = :factoryId " +
+            "AND e.eventTime >= :start AND e.eventTime < :end " +
+            "AND e.lineId IS NOT NULL " +
+            "GROUP BY e.lineId, e.machineId")
+    List<Object[]> sumByLineAndMachine(
+            @Param("factoryId") String factoryId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end
+    );
 }
\ No newline at end of file
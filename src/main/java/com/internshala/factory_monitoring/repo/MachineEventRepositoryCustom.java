@@ -0,0 +1,36 @@
+package com.internshala.factory_monitoring.repo;
+
+import com.internshala.factory_monitoring.entity.MachineEvent;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Queries of {@link MachineEventRepository} whose shape depends on the arguments,
+ * and lookups that go through the second-level cache first.
+ */
+public interface MachineEventRepositoryCustom {
+
+    /**
+     * Event count and known-defect sum of each machine for every window
+     * [starts[i], ends[i]), from one scan of the range covering all windows.
+     * Rows are (machineId, count0, defects0, count1, defects1, ...); machines
+     * without events in that range have no row.
+     */
+    List<Object[]> sumByMachineAndWindows(Collection<String> machineIds,
+                                          List<LocalDateTime> starts, List<LocalDateTime> ends);
+
+    /**
+     * Stored events with these eventIds, in no particular order. Events in the
+     * second-level cache are taken from it; the rest are read in one query, which
+     * caches them in turn. Lookups are counted in factory.ingest.event-cache.lookups.
+     */
+    List<MachineEvent> findAllByEventIdCached(Collection<String> eventIds);
+
+    /**
+     * Drops every cached event, for when the cache may be behind the database
+     * (another writer won a race for one of them).
+     */
+    void evictCachedEvents();
+}
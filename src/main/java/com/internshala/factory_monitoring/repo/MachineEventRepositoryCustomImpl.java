@@ -0,0 +1,133 @@
+package com.internshala.factory_monitoring.repo;
+
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.cache.spi.CacheImplementor;
+import org.hibernate.cache.spi.access.NaturalIdDataAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+class MachineEventRepositoryCustomImpl implements MachineEventRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    MachineEventRepositoryCustomImpl(MeterRegistry meterRegistry) {
+        this.cacheHits = Counter.builder("factory.ingest.event-cache.lookups")
+                .description("eventIds looked up by ingest, by whether the stored event was cached")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.cacheMisses = Counter.builder("factory.ingest.event-cache.lookups")
+                .description("eventIds looked up by ingest, by whether the stored event was cached")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("factory.ingest.event-cache.hit-ratio", this, MachineEventRepositoryCustomImpl::hitRatio)
+                .description("Share of ingest lookups answered by the cache since startup")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<Object[]> sumByMachineAndWindows(Collection<String> machineIds,
+                                                 List<LocalDateTime> starts, List<LocalDateTime> ends) {
+        // One pair of conditional sums per window; the WHERE clause bounds the scan to the widest range
+        StringBuilder jpql = new StringBuilder("SELECT e.machineId");
+        for (int i = 0; i < starts.size(); i++) {
+            String inWindow = "e.eventTime >= :start" + i + " AND e.eventTime < :end" + i;
+            jpql.append(", SUM(CASE WHEN ").append(inWindow).append(" THEN 1 ELSE 0 END)")
+                    .append(", SUM(CASE WHEN ").append(inWindow)
+                    .append(" AND e.defectCount >= 0 THEN e.defectCount ELSE 0 END)");
+        }
+        jpql.append(" FROM MachineEvent e WHERE e.machineId IN :machineIds")
+                .append(" AND e.eventTime >= :from AND e.eventTime < :to GROUP BY e.machineId");
+
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql.toString(), Object[].class);
+        query.setParameter("machineIds", machineIds);
+        query.setParameter("from", Collections.min(starts));
+        query.setParameter("to", Collections.max(ends));
+        for (int i = 0; i < starts.size(); i++) {
+            query.setParameter("start" + i, starts.get(i));
+            query.setParameter("end" + i, ends.get(i));
+        }
+        return query.getResultList();
+    }
+
+    @Override
+    public List<MachineEvent> findAllByEventIdCached(Collection<String> eventIds) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMappingMetamodel()
+                .getEntityDescriptor(MachineEvent.class);
+        if (!persister.hasNaturalIdCache() || !persister.canReadFromCache()) {
+            return findAllByEventId(eventIds);
+        }
+
+        // eventId -> id from the natural-id region; only ids whose event is cached as well are hits
+        NaturalIdDataAccess resolutions = persister.getNaturalIdCacheAccessStrategy();
+        CacheImplementor cache = session.getFactory().getCache();
+        List<Object> cachedIds = new ArrayList<>();
+        for (String eventId : eventIds) {
+            Object id = resolutions.get(session, resolutions.generateCacheKey(eventId, persister, session));
+            if (id != null && cache.containsEntity(MachineEvent.class, id)) {
+                cachedIds.add(id);
+            }
+        }
+
+        List<MachineEvent> found = new ArrayList<>(eventIds.size());
+        Set<String> missing = new HashSet<>(eventIds);
+        if (!cachedIds.isEmpty()) {
+            // Without an explicit cache mode, multiLoad skips the second-level cache
+            for (MachineEvent event : session.unwrap(Session.class).byMultipleIds(MachineEvent.class)
+                    .with(CacheMode.NORMAL)
+                    .enableOrderedReturn(false)
+                    .multiLoad(cachedIds)) {
+                if (event != null && missing.remove(event.getEventId())) {
+                    found.add(event);
+                }
+            }
+        }
+        cacheHits.increment(found.size());
+        cacheMisses.increment(missing.size());
+        if (!missing.isEmpty()) {
+            found.addAll(findAllByEventId(missing));
+        }
+        return found;
+    }
+
+    @Override
+    public void evictCachedEvents() {
+        CacheImplementor cache = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getCache();
+        cache.evictEntityData(MachineEvent.class);
+        cache.evictNaturalIdData(MachineEvent.class);
+    }
+
+    private List<MachineEvent> findAllByEventId(Collection<String> eventIds) {
+        return entityManager.createQuery("SELECT e FROM MachineEvent e WHERE e.eventId IN :eventIds",
+                        MachineEvent.class)
+                .setParameter("eventIds", eventIds)
+                .getResultList();
+    }
+
+    private double hitRatio() {
+        double lookups = cacheHits.count() + cacheMisses.count();
+        return lookups == 0 ? 0.0 : cacheHits.count() / lookups;
+    }
+}
@@ -0,0 +1,9 @@
+package com.internshala.factory_monitoring.repo;
+
+import com.internshala.factory_monitoring.entity.MachineHeartbeat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MachineHeartbeatRepository extends JpaRepository<MachineHeartbeat, String> {
+}
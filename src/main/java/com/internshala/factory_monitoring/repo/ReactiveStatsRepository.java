@@ -0,0 +1,155 @@
+package com.internshala.factory_monitoring.repo;
+
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+
+/**
+ * The stats queries of {@link MachineEventRepository} over R2DBC, for the reactive
+ * stack (Spring profile "reactive").
+ *
+ * The pool connects to the H2 database in spring.datasource.url, so it reads the
+ * rows JPA writes. It is deliberately not a ConnectionFactory bean: one would
+ * switch off the JDBC DataSource auto-configuration that JPA still needs. Ids are
+ * looked up in dimensions by the query itself, so no query waits on the dictionary.
+ *
+ * H2's R2DBC driver runs the embedded engine on the subscribing thread. Queries are
+ * therefore subscribed on their own pool, the size of the connection pool, and never
+ * on Netty's event loop.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveStatsRepository implements DisposableBean {
+
+    private static final String H2_URL_PREFIX = "jdbc:h2:";
+
+    private static final String DEFECTS = "CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END";
+
+    // Dictionary key of an id, looked up once per query. The cast keeps the driver's
+    // string binding usable for the unique index on (kind, external_id).
+    private static final String MACHINE_KEY = "(SELECT d.id FROM dimensions d " +
+            "WHERE d.kind = 'MACHINE' AND d.external_id = CAST(:machineId AS VARCHAR))";
+    private static final String FACTORY_KEY = "(SELECT d.id FROM dimensions d " +
+            "WHERE d.kind = 'FACTORY' AND d.external_id = CAST(:factoryId AS VARCHAR))";
+
+    // Same result as countByMachineIdAndTimeRange and sumDefectsByMachineAndTimeRange, in one query
+    private static final String COUNT_AND_SUM_DEFECTS = "SELECT COUNT(*), COALESCE(SUM(" + DEFECTS + "), 0) " +
+            "FROM machine_events e " +
+            "WHERE e.machine_id = " + MACHINE_KEY + " " +
+            "AND e.event_time >= :start AND e.event_time < :end";
+
+    // Same counts as countByMachineIdAndTimeRangeUpTo and countByFactoryAndTimeRangeUpTo: stop at :limit rows
+    private static final String COUNT_MACHINE_UP_TO = "SELECT COUNT(*) FROM (SELECT 1 FROM machine_events e " +
+            "WHERE e.machine_id = " + MACHINE_KEY + " " +
+            "AND e.event_time >= :start AND e.event_time < :end LIMIT :limit) matching";
+    private static final String COUNT_FACTORY_UP_TO = "SELECT COUNT(*) FROM (SELECT 1 FROM machine_events e " +
+            "WHERE e.factory_id = " + FACTORY_KEY + " " +
+            "AND e.event_time >= :start AND e.event_time < :end LIMIT :limit) matching";
+
+    // Same rows as findTopDefectLines: (lineId, totalDefects, eventCount), most defects first
+    private static final String TOP_DEFECT_LINES = "SELECT l.external_id, t.total_defects, t.event_count " +
+            "FROM (SELECT e.line_id, SUM(" + DEFECTS + ") AS total_defects, COUNT(*) AS event_count " +
+            "FROM machine_events e " +
+            "WHERE e.factory_id = " + FACTORY_KEY + " " +
+            "AND e.event_time >= :start AND e.event_time < :end " +
+            "GROUP BY e.line_id) t " +
+            "JOIN dimensions l ON l.id = t.line_id " +
+            "ORDER BY t.total_defects DESC";
+
+    private final ConnectionPool pool;
+    private final DatabaseClient client;
+    private final Scheduler queries;
+
+    public ReactiveStatsRepository(@Value("${spring.datasource.url}") String url,
+                                   @Value("${spring.datasource.username:sa}") String username,
+                                   @Value("${spring.datasource.password:}") String password,
+                                   @Value("${factory.reactive.r2dbc.pool-size:10}") int poolSize) {
+        if (!url.startsWith(H2_URL_PREFIX)) {
+            throw new IllegalStateException("The reactive profile reads through R2DBC H2, "
+                    + "spring.datasource.url must be an H2 URL: " + url);
+        }
+        H2ConnectionFactory connections = new H2ConnectionFactory(H2ConnectionConfiguration.builder()
+                .url(url.substring(H2_URL_PREFIX.length()))
+                .username(username)
+                .password(password)
+                .build());
+        this.pool = new ConnectionPool(ConnectionPoolConfiguration.builder(connections)
+                .name("r2dbc")
+                .maxSize(poolSize)
+                .build());
+        this.client = DatabaseClient.create(pool);
+        this.queries = Schedulers.newBoundedElastic(poolSize, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE,
+                "r2dbc-h2");
+    }
+
+    /**
+     * (eventsCount, defectsCount) of a machine in [start, end), unknown defect counts excluded.
+     */
+    public Mono<Object[]> countAndSumDefects(String machineId, LocalDateTime start, LocalDateTime end) {
+        return client.sql(COUNT_AND_SUM_DEFECTS)
+                .bind("machineId", machineId)
+                .bind("start", start)
+                .bind("end", end)
+                .map(row -> new Object[]{row.get(0, Long.class), row.get(1, Long.class)})
+                .one()
+                .subscribeOn(queries);
+    }
+
+    /**
+     * Events of a machine in [start, end), counted up to {@code limit}.
+     */
+    public Mono<Long> countByMachineUpTo(String machineId, LocalDateTime start, LocalDateTime end, long limit) {
+        return countUpTo(COUNT_MACHINE_UP_TO, "machineId", machineId, start, end, limit);
+    }
+
+    /**
+     * Events of a factory in [start, end), counted up to {@code limit}.
+     */
+    public Mono<Long> countByFactoryUpTo(String factoryId, LocalDateTime start, LocalDateTime end, long limit) {
+        return countUpTo(COUNT_FACTORY_UP_TO, "factoryId", factoryId, start, end, limit);
+    }
+
+    /**
+     * Lines of a factory by defects in [start, end). Rows are read as the subscriber
+     * requests them; cancelling (as {@code take} does) stops reading the result.
+     */
+    public Flux<Object[]> findTopDefectLines(String factoryId, LocalDateTime start, LocalDateTime end) {
+        return client.sql(TOP_DEFECT_LINES)
+                .bind("factoryId", factoryId)
+                .bind("start", start)
+                .bind("end", end)
+                .map(row -> new Object[]{row.get(0, String.class), row.get(1, Long.class), row.get(2, Long.class)})
+                .all()
+                .subscribeOn(queries);
+    }
+
+    private Mono<Long> countUpTo(String sql, String idName, String id, LocalDateTime start, LocalDateTime end,
+                                 long limit) {
+        return client.sql(sql)
+                .bind(idName, id)
+                .bind("start", start)
+                .bind("end", end)
+                .bind("limit", limit)
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .subscribeOn(queries);
+    }
+
+    @Override
+    public void destroy() {
+        pool.dispose();
+        queries.dispose();
+    }
+}
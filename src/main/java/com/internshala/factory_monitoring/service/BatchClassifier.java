@@ -0,0 +1,296 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.dto.RejectionReason;
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.util.EventTimes;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Decides for every event of a batch whether it is rejected, a duplicate, an
+ * update of a stored event or a new event, and prepares the entities to save.
+ *
+ * Large batches are classified on the common fork-join pool. Each leaf keeps its
+ * own counters and lists, and leaves are merged left to right, so the result is
+ * identical to the sequential path whatever the thread timing.
+ *
+ * An eventId that appears more than once in a batch is resolved in batch order:
+ * once one occurrence is inserted or updated, later occurrences carry the same
+ * receivedTime and are therefore deduped.
+ */
+@Component
+public class BatchClassifier {
+
+    // Constants for validation
+    private static final long MAX_DURATION_MS = 6 * 60 * 60 * 1000L;
+    private static final long FUTURE_TIME_THRESHOLD_MINUTES = 15;
+    private static final long FUTURE_TIME_THRESHOLD_MS = (FUTURE_TIME_THRESHOLD_MINUTES + 1) * EventTimes.MILLIS_PER_MINUTE;
+
+    private static final byte REJECT = 0;
+    private static final byte INSERT = 1;
+    private static final byte UPDATE = 2;
+    private static final byte DEDUPE = 3;
+
+    private final int parallelThreshold;
+    private final int leafSize;
+
+    public BatchClassifier(
+            @Value("${factory.ingest.parallel-threshold:10000}") int parallelThreshold,
+            @Value("${factory.ingest.parallel-leaf-size:2048}") int leafSize) {
+        this.parallelThreshold = parallelThreshold;
+        this.leafSize = Math.max(1, leafSize);
+    }
+
+    /**
+     * Outcome of classifying one batch.
+     */
+    public static class Classification {
+        private int accepted;
+        private int deduped;
+        private int updated;
+        private final RejectionLog rejections = new RejectionLog();
+        private final List<MachineEvent> toInsert = new ArrayList<>();
+        private final List<MachineEvent> toUpdate = new ArrayList<>();
+        private final List<EventSnapshot> replaced = new ArrayList<>();
+
+        public int getAccepted() { return accepted; }
+        public int getDeduped() { return deduped; }
+        public int getUpdated() { return updated; }
+        public int getRejected() { return rejections.size(); }
+        public RejectionLog getRejections() { return rejections; }
+        public List<MachineEvent> getToInsert() { return toInsert; }
+        public List<MachineEvent> getToUpdate() { return toUpdate; }
+        // Stored state before each update, aligned with getToUpdate()
+        public List<EventSnapshot> getReplaced() { return replaced; }
+
+        void merge(Classification other) {
+            accepted += other.accepted;
+            deduped += other.deduped;
+            updated += other.updated;
+            rejections.addAll(other.rejections);
+            toInsert.addAll(other.toInsert);
+            toUpdate.addAll(other.toUpdate);
+            replaced.addAll(other.replaced);
+        }
+    }
+
+    /**
+     * @param existing stored events of this batch by eventId; updated entities are modified in place
+     * @param nowMillis receivedTime of the batch as epoch millis
+     */
+    public Classification classify(List<EventRequest> events, Map<String, MachineEvent> existing, long nowMillis) {
+        int size = events.size();
+        byte[] decisions = new byte[size];
+        RejectionReason[] reasons = new RejectionReason[size];
+        boolean parallel = size >= parallelThreshold;
+
+        // Phase 1: validate and decide against the stored state (independent per event)
+        Decide decide = new Decide(events, existing, nowMillis, decisions, reasons, 0, size);
+        if (parallel) {
+            ForkJoinPool.commonPool().invoke(decide);
+        } else {
+            decide.compute();
+        }
+
+        // Phase 2: repeated eventIds depend on earlier occurrences, resolve them in order
+        resolveRepeatedIds(events, decisions);
+
+        // Phase 3: build entities and per-leaf counters, merged in batch order
+        LocalDateTime receivedTime = EventTimes.toLocalDateTime(nowMillis);
+        Build build = new Build(events, existing, receivedTime, decisions, reasons, 0, size);
+        return parallel ? ForkJoinPool.commonPool().invoke(build) : build.compute();
+    }
+
+    private static void resolveRepeatedIds(List<EventRequest> events, byte[] decisions) {
+        Set<String> seen = new HashSet<>(events.size() * 2);
+        Set<String> repeated = null;
+        for (EventRequest event : events) {
+            if (!seen.add(event.getEventId())) {
+                if (repeated == null) {
+                    repeated = new HashSet<>();
+                }
+                repeated.add(event.getEventId());
+            }
+        }
+        if (repeated == null) {
+            return;
+        }
+
+        Set<String> changed = new HashSet<>();
+        for (int i = 0; i < decisions.length; i++) {
+            String eventId = events.get(i).getEventId();
+            if ((decisions[i] == INSERT || decisions[i] == UPDATE) && repeated.contains(eventId)
+                    && !changed.add(eventId)) {
+                decisions[i] = DEDUPE;
+            }
+        }
+    }
+
+    private final class Decide extends RecursiveAction {
+        private final List<EventRequest> events;
+        private final Map<String, MachineEvent> existing;
+        private final long nowMillis;
+        private final byte[] decisions;
+        private final RejectionReason[] reasons;
+        private final int from;
+        private final int to;
+
+        Decide(List<EventRequest> events, Map<String, MachineEvent> existing, long nowMillis,
+               byte[] decisions, RejectionReason[] reasons, int from, int to) {
+            this.events = events;
+            this.existing = existing;
+            this.nowMillis = nowMillis;
+            this.decisions = decisions;
+            this.reasons = reasons;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public void compute() {
+            if (to - from > leafSize && to - from >= 2) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Decide(events, existing, nowMillis, decisions, reasons, from, mid),
+                        new Decide(events, existing, nowMillis, decisions, reasons, mid, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                EventRequest event = events.get(i);
+                RejectionReason reason = validateEvent(event, nowMillis);
+                if (reason != null) {
+                    reasons[i] = reason;
+                    decisions[i] = REJECT;
+                    continue;
+                }
+
+                MachineEvent stored = existing.get(event.getEventId());
+                if (stored == null) {
+                    decisions[i] = INSERT;
+                } else if (!isIdenticalPayload(stored, event)
+                        && nowMillis > EventTimes.toEpochMillis(stored.getReceivedTime())) {
+                    decisions[i] = UPDATE;
+                } else {
+                    decisions[i] = DEDUPE;
+                }
+            }
+        }
+    }
+
+    private final class Build extends RecursiveTask<Classification> {
+        private final List<EventRequest> events;
+        private final Map<String, MachineEvent> existing;
+        private final LocalDateTime receivedTime;
+        private final byte[] decisions;
+        private final RejectionReason[] reasons;
+        private final int from;
+        private final int to;
+
+        Build(List<EventRequest> events, Map<String, MachineEvent> existing, LocalDateTime receivedTime,
+              byte[] decisions, RejectionReason[] reasons, int from, int to) {
+            this.events = events;
+            this.existing = existing;
+            this.receivedTime = receivedTime;
+            this.decisions = decisions;
+            this.reasons = reasons;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Classification compute() {
+            if (to - from > leafSize && to - from >= 2) {
+                int mid = (from + to) >>> 1;
+                Build right = new Build(events, existing, receivedTime, decisions, reasons, mid, to);
+                right.fork();
+                Classification left = new Build(events, existing, receivedTime, decisions, reasons, from, mid).compute();
+                left.merge(right.join());
+                return left;
+            }
+
+            Classification result = new Classification();
+            for (int i = from; i < to; i++) {
+                EventRequest event = events.get(i);
+                switch (decisions[i]) {
+                    case REJECT -> result.rejections.add(event.getEventId(), reasons[i]);
+                    case INSERT -> {
+                        result.toInsert.add(convertToEntity(event, receivedTime));
+                        result.accepted++;
+                    }
+                    case UPDATE -> {
+                        // At most one UPDATE per eventId survives phase 2, so no entity is shared between leaves
+                        MachineEvent stored = existing.get(event.getEventId());
+                        result.replaced.add(EventSnapshot.of(stored));
+                        updateEvent(stored, event, receivedTime);
+                        result.toUpdate.add(stored);
+                        result.updated++;
+                    }
+                    default -> result.deduped++;
+                }
+            }
+            return result;
+        }
+    }
+
+    // Validation and comparison work on primitives only; package-private for IngestPathBenchmark
+    static RejectionReason validateEvent(EventRequest event, long nowMillis) {
+        if (event.getDurationMs() < 0) {
+            return RejectionReason.NEGATIVE_DURATION;
+        }
+        if (event.getDurationMs() > MAX_DURATION_MS) {
+            return RejectionReason.EXCESSIVE_DURATION;
+        }
+
+        // Same as ChronoUnit.MINUTES.between(now, eventTime) > 15: whole minutes, truncated
+        if (event.getEventTimeMillis() - nowMillis >= FUTURE_TIME_THRESHOLD_MS) {
+            return RejectionReason.FUTURE_EVENT_TIME;
+        }
+
+        return null;
+    }
+
+    static boolean isIdenticalPayload(MachineEvent existing, EventRequest request) {
+        return EventTimes.toEpochMillis(existing.getEventTime()) == request.getEventTimeMillis() &&
+                existing.getMachineId().equals(request.getMachineId()) &&
+                existing.getDurationMs() == request.getDurationMs() &&
+                existing.getDefectCount() == request.getDefectCount() &&
+                Objects.equals(existing.getLineId(), request.getLineId()) &&
+                Objects.equals(existing.getFactoryId(), request.getFactoryId());
+    }
+
+    // The only per-event LocalDateTime, needed because the entity persists one
+    static void updateEvent(MachineEvent existing, EventRequest request, LocalDateTime receivedTime) {
+        existing.setEventTime(EventTimes.toLocalDateTime(request.getEventTimeMillis()));
+        existing.setReceivedTime(receivedTime);
+        existing.setMachineId(request.getMachineId());
+        existing.setDurationMs(request.getDurationMs());
+        existing.setDefectCount(request.getDefectCount());
+        existing.setLineId(request.getLineId());
+        existing.setFactoryId(request.getFactoryId());
+    }
+
+    static MachineEvent convertToEntity(EventRequest request, LocalDateTime receivedTime) {
+        MachineEvent event = new MachineEvent();
+        event.setEventId(request.getEventId());
+        event.setEventTime(EventTimes.toLocalDateTime(request.getEventTimeMillis()));
+        event.setReceivedTime(receivedTime);
+        event.setMachineId(request.getMachineId());
+        event.setDurationMs(request.getDurationMs());
+        event.setDefectCount(request.getDefectCount());
+        event.setLineId(request.getLineId());
+        event.setFactoryId(request.getFactoryId());
+        return event;
+    }
+}
@@ -0,0 +1,65 @@
+package com.internshala.factory_monitoring.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size of the chunks large batches are split into, adapted to observed chunk
+ * latency (additive increase, multiplicative decrease): a full chunk that commits
+ * within the target grows the size by one step, a chunk that takes longer halves it.
+ * The size is kept between batches and bounded by the configured minimum and maximum.
+ *
+ * Also tracks a moving average of chunk latency, which background work (retention)
+ * uses to back off while ingest is slow.
+ */
+@Component
+public class ChunkSizer {
+
+    private final int minSize;
+    private final int maxSize;
+    private final long targetNanos;
+    private final AtomicInteger size;
+    // Exponentially weighted (1/4) average of chunk latency
+    private final AtomicLong averageNanos = new AtomicLong();
+
+    public ChunkSizer(
+            @Value("${factory.ingest.chunk.initial-size:5000}") int initialSize,
+            @Value("${factory.ingest.chunk.min-size:500}") int minSize,
+            @Value("${factory.ingest.chunk.max-size:20000}") int maxSize,
+            @Value("${factory.ingest.chunk.target-latency:PT0.5S}") Duration targetLatency) {
+        this.minSize = Math.max(1, minSize);
+        this.maxSize = Math.max(this.minSize, maxSize);
+        this.targetNanos = targetLatency.toNanos();
+        this.size = new AtomicInteger(Math.min(this.maxSize, Math.max(this.minSize, initialSize)));
+    }
+
+    public int current() {
+        return size.get();
+    }
+
+    /**
+     * Whether recent ingest chunks took longer than the target latency.
+     */
+    public boolean isIngestSlow() {
+        return averageNanos.get() > targetNanos;
+    }
+
+    /**
+     * @param chunkSize events in the chunk that was just stored
+     * @param elapsedNanos time from loading its stored events to commit
+     */
+    public void record(int chunkSize, long elapsedNanos) {
+        averageNanos.updateAndGet(average -> average + (elapsedNanos - average) / 4);
+        size.updateAndGet(current -> {
+            if (elapsedNanos > targetNanos) {
+                return Math.max(minSize, current / 2);
+            }
+            // A short tail chunk being fast says nothing about the current size
+            return chunkSize >= current ? Math.min(maxSize, current + minSize) : current;
+        });
+    }
+}
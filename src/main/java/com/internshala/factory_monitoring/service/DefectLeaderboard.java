@@ -0,0 +1,279 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.GlobalDefectLinesResponse;
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import com.internshala.factory_monitoring.util.EventTimes;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Live ranking of defect lines across all factories for the current shift,
+ * maintained from committed ingest changes like {@link HourlyRollup}.
+ *
+ * Each shift has a board: per-line totals in a hash map plus an indexed max-heap
+ * ordered by defects, so a change is O(log lines) and the top K are read in
+ * O(K log K) without regrouping. Shifts start at {@code shift-anchor} and last
+ * {@code shift-length} (a day with PT24H). Boards of earlier shifts are dropped
+ * when the clock reaches the next one; the board of an upcoming shift already
+ * holds the events that arrived early for it.
+ *
+ * Built from the database on startup. Retention deletes are subtracted; other
+ * deletes made directly through the repository are not seen.
+ */
+@Component
+public class DefectLeaderboard implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(DefectLeaderboard.class);
+
+    private final MachineEventRepository repository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readOnlyTransaction;
+    private final long shiftLengthMillis;
+    private final long anchorMillis;
+
+    private final NavigableMap<Long, Board> boards = new ConcurrentSkipListMap<>();
+
+    public DefectLeaderboard(MachineEventRepository repository, EntityManager entityManager,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${factory.leaderboard.shift-length:PT8H}") Duration shiftLength,
+                             @Value("${factory.leaderboard.shift-anchor:06:00}") LocalTime shiftAnchor) {
+        this.repository = repository;
+        this.entityManager = entityManager;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.shiftLengthMillis = shiftLength.toMillis();
+        this.anchorMillis = shiftAnchor.toSecondOfDay() * 1000L;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long shift = shiftOf(EventTimes.toEpochMillis(LocalDateTime.now()));
+        long events = readOnlyTransaction.execute(status -> {
+            long count = 0;
+            try (Stream<MachineEvent> stored = repository.streamSince(EventTimes.toLocalDateTime(shift))) {
+                for (MachineEvent event : (Iterable<MachineEvent>) stored::iterator) {
+                    EventSnapshot snapshot = EventSnapshot.of(event);
+                    entityManager.detach(event);
+                    apply(snapshot, 1, shift);
+                    count++;
+                }
+            }
+            return count;
+        });
+        log.info("Defect leaderboard built from {} events of the shift starting {}",
+                events, EventTimes.toLocalDateTime(shift));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEventsChanged(EventsChangedEvent change) {
+        long currentShift = roll();
+        for (EventChange eventChange : change.getChanges()) {
+            if (eventChange.before() != null) {
+                apply(eventChange.before(), -1, currentShift);
+            }
+            apply(EventSnapshot.of(eventChange.after()), 1, currentShift);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEventsExpired(EventsExpiredEvent expired) {
+        long currentShift = roll();
+        for (EventSnapshot event : expired.getSnapshots()) {
+            apply(event, -1, currentShift);
+        }
+    }
+
+    /**
+     * The {@code limit} lines with the most defects in the current shift, across all factories.
+     */
+    public GlobalDefectLinesResponse top(int limit) {
+        long currentShift = roll();
+        Board board = boards.get(currentShift);
+        List<GlobalDefectLinesResponse.RankedLine> lines = board == null ? List.of() : board.top(limit);
+        return new GlobalDefectLinesResponse(EventTimes.toLocalDateTime(currentShift),
+                EventTimes.toLocalDateTime(currentShift + shiftLengthMillis), lines);
+    }
+
+    /**
+     * Start of the shift containing the given time, as epoch millis.
+     */
+    public long shiftOf(long epochMillis) {
+        return anchorMillis + Math.floorDiv(epochMillis - anchorMillis, shiftLengthMillis) * shiftLengthMillis;
+    }
+
+    // Drops the boards of finished shifts; returns the current shift
+    private long roll() {
+        long currentShift = shiftOf(EventTimes.toEpochMillis(LocalDateTime.now()));
+        boards.headMap(currentShift, false).clear();
+        return currentShift;
+    }
+
+    private void apply(EventSnapshot event, int sign, long currentShift) {
+        if (event.factoryId() == null || event.lineId() == null) {
+            return;
+        }
+        long shift = shiftOf(event.eventTimeMillis());
+        if (shift < currentShift) {
+            return;
+        }
+        boards.computeIfAbsent(shift, s -> new Board()).apply(event, sign);
+    }
+
+    private static final class Line {
+        private final String factoryId;
+        private final String lineId;
+        private long defects;
+        private long events;
+        private int index;
+
+        Line(String factoryId, String lineId) {
+            this.factoryId = factoryId;
+            this.lineId = lineId;
+        }
+
+        // Heap order: more defects first, ties by factory and line id so the ranking is stable
+        boolean ranksAbove(Line other) {
+            if (defects != other.defects) {
+                return defects > other.defects;
+            }
+            int byFactory = factoryId.compareTo(other.factoryId);
+            return byFactory != 0 ? byFactory < 0 : lineId.compareTo(other.lineId) < 0;
+        }
+    }
+
+    private record LineKey(String factoryId, String lineId) {}
+
+    /**
+     * Totals of one shift; every operation runs under the board's lock.
+     */
+    private static final class Board {
+        private final Map<LineKey, Line> lines = new HashMap<>();
+        private Line[] heap = new Line[16];
+        private int size;
+
+        synchronized void apply(EventSnapshot event, int sign) {
+            LineKey key = new LineKey(event.factoryId(), event.lineId());
+            Line line = lines.get(key);
+            if (line == null) {
+                if (sign < 0) {
+                    return;
+                }
+                line = new Line(event.factoryId(), event.lineId());
+                lines.put(key, line);
+                if (size == heap.length) {
+                    heap = Arrays.copyOf(heap, size * 2);
+                }
+                line.index = size;
+                heap[size++] = line;
+            }
+
+            line.events += sign;
+            if (event.defectCount() >= 0) {
+                line.defects += (long) sign * event.defectCount();
+            }
+
+            if (line.events <= 0) {
+                lines.remove(key);
+                removeAt(line.index);
+            } else if (sign > 0) {
+                siftUp(line.index);
+            } else {
+                siftDown(line.index);
+            }
+        }
+
+        synchronized List<GlobalDefectLinesResponse.RankedLine> top(int limit) {
+            List<GlobalDefectLinesResponse.RankedLine> result = new ArrayList<>(Math.min(limit, size));
+            // Best-first walk of the heap: only the frontier of the top entries is ever queued
+            PriorityQueue<Line> frontier = new PriorityQueue<>((a, b) -> a.ranksAbove(b) ? -1 : 1);
+            if (size > 0) {
+                frontier.add(heap[0]);
+            }
+            while (result.size() < limit && !frontier.isEmpty()) {
+                Line line = frontier.poll();
+                result.add(toRankedLine(line));
+                for (int child = 2 * line.index + 1; child <= 2 * line.index + 2 && child < size; child++) {
+                    frontier.add(heap[child]);
+                }
+            }
+            return result;
+        }
+
+        private void removeAt(int index) {
+            Line last = heap[--size];
+            heap[size] = null;
+            if (index == size) {
+                return;
+            }
+            heap[index] = last;
+            last.index = index;
+            siftDown(index);
+            siftUp(last.index);
+        }
+
+        private void siftUp(int index) {
+            Line line = heap[index];
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (!line.ranksAbove(heap[parent])) {
+                    break;
+                }
+                place(heap[parent], index);
+                index = parent;
+            }
+            place(line, index);
+        }
+
+        private void siftDown(int index) {
+            Line line = heap[index];
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1].ranksAbove(heap[child])) {
+                    child++;
+                }
+                if (!heap[child].ranksAbove(line)) {
+                    break;
+                }
+                place(heap[child], index);
+                index = child;
+            }
+            place(line, index);
+        }
+
+        private void place(Line line, int index) {
+            heap[index] = line;
+            line.index = index;
+        }
+    }
+
+    private static GlobalDefectLinesResponse.RankedLine toRankedLine(Line line) {
+        double defectsPercent = line.events > 0 ? (line.defects * 100.0 / line.events) : 0.0;
+        defectsPercent = Math.round(defectsPercent * 100.0) / 100.0;
+        return new GlobalDefectLinesResponse.RankedLine(line.factoryId, line.lineId,
+                line.defects, line.events, defectsPercent);
+    }
+}
@@ -0,0 +1,182 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.entity.Dimension;
+import com.internshala.factory_monitoring.repo.DimensionRepository;
+import com.internshala.factory_monitoring.util.BoundedExpiringMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Bidirectional cache of the dimensions table: externalId to key per kind, and key
+ * to externalId. Once an id has been seen, resolving it needs no query.
+ *
+ * Entries are never changed or deleted, so cached values cannot go stale. The whole
+ * table is loaded at startup. A lookup that misses (an entry another instance created
+ * since) reads the table with plain JDBC: on the caller's connection when it runs in
+ * a transaction, so converters, which call in here while Hibernate is reading or
+ * writing events, neither flush the persistence context nor take a second connection.
+ *
+ * Creating entries runs in a transaction of its own, so a caller's rollback cannot
+ * leave keys in the cache that the table does not have. Ingest resolves every id of
+ * a chunk before opening the chunk's transaction, so no connection is held meanwhile.
+ *
+ * Ids with no entry are remembered too, for {@code factory.dimensions.unknown-ttl}
+ * (at most {@code factory.dimensions.unknown-max-entries} of them), so repeated
+ * queries for a machine or line that does not exist skip the table. Creating the
+ * entry here forgets the miss at once; an entry created by another instance on the
+ * same database is seen once the miss expires.
+ */
+@Component
+public class DimensionDictionary implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(DimensionDictionary.class);
+
+    private static final String COLUMNS = "SELECT id, kind, external_id FROM dimensions ";
+
+    // Key bound for ids that have no entry; no event row carries it
+    public static final int UNKNOWN = -1;
+
+    private final DimensionRepository repository;
+    private final TransactionTemplate newTransaction;
+    private final JdbcTemplate lookups;
+
+    private final Map<Dimension.Kind, Map<String, Integer>> keys = new EnumMap<>(Dimension.Kind.class);
+    private final Map<Integer, String> externalIds = new ConcurrentHashMap<>();
+    private final BoundedExpiringMap<String, Boolean> unknown;
+
+    public DimensionDictionary(DimensionRepository repository, PlatformTransactionManager transactionManager,
+                               DataSource dataSource,
+                               @Value("${factory.dimensions.unknown-max-entries:10000}") int unknownMaxEntries,
+                               @Value("${factory.dimensions.unknown-ttl:PT5S}") Duration unknownTtl) {
+        this.repository = repository;
+        this.unknown = new BoundedExpiringMap<>(unknownMaxEntries, unknownTtl);
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.lookups = new JdbcTemplate(dataSource);
+        for (Dimension.Kind kind : Dimension.Kind.values()) {
+            keys.put(kind, new ConcurrentHashMap<>());
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        List<Dimension> all = newTransaction.execute(status -> repository.findAll());
+        all.forEach(this::cache);
+        log.info("Dimension dictionary loaded with {} entries", all.size());
+    }
+
+    /**
+     * Key of an existing entry, or {@link #UNKNOWN}. Never creates entries.
+     */
+    public int keyOf(Dimension.Kind kind, String externalId) {
+        Integer key = keys.get(kind).get(externalId);
+        if (key != null) {
+            return key;
+        }
+        String unknownKey = unknownKey(kind, externalId);
+        if (unknown.get(unknownKey) != null) {
+            return UNKNOWN;
+        }
+        List<Dimension> found = lookups.query(COLUMNS + "WHERE kind = ? AND external_id = ?", DimensionDictionary::row,
+                kind.name(), externalId);
+        if (found.isEmpty()) {
+            unknown.put(unknownKey, Boolean.TRUE);
+            return UNKNOWN;
+        }
+        cache(found.get(0));
+        return found.get(0).getId();
+    }
+
+    public String externalIdOf(int key) {
+        String externalId = externalIds.get(key);
+        if (externalId != null) {
+            return externalId;
+        }
+        List<Dimension> found = lookups.query(COLUMNS + "WHERE id = ?", DimensionDictionary::row, key);
+        if (found.isEmpty()) {
+            throw new IllegalStateException("No dimension with key " + key);
+        }
+        cache(found.get(0));
+        return found.get(0).getExternalId();
+    }
+
+    // Single-id resolveAll with an allocation-free cache hit
+    public void resolve(Dimension.Kind kind, String id) {
+        if (id != null && !keys.get(kind).containsKey(id)) {
+            resolveAll(kind, List.of(id));
+        }
+    }
+
+    /**
+     * Makes sure every id has an entry, creating the missing ones. Ids already
+     * cached cost nothing; the rest take one lookup and, if new, one insert.
+     */
+    public void resolveAll(Dimension.Kind kind, Collection<String> ids) {
+        Map<String, Integer> cached = keys.get(kind);
+        Set<String> missing = ids.stream()
+                .filter(id -> id != null && !cached.containsKey(id))
+                .collect(Collectors.toSet());
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        try {
+            newTransaction.executeWithoutResult(status -> loadOrCreate(kind, missing));
+        } catch (DataIntegrityViolationException e) {
+            // Another writer created some of them first; theirs are in the table now
+            newTransaction.executeWithoutResult(status -> loadOrCreate(kind, missing));
+        }
+    }
+
+    private void loadOrCreate(Dimension.Kind kind, Set<String> missing) {
+        Map<String, Integer> cached = keys.get(kind);
+        repository.findByKindAndExternalIdIn(kind, missing).forEach(this::cache);
+
+        List<Dimension> created = new ArrayList<>();
+        for (String id : missing) {
+            if (!cached.containsKey(id)) {
+                created.add(new Dimension(kind, id));
+            }
+        }
+        if (!created.isEmpty()) {
+            repository.saveAllAndFlush(created).forEach(this::cache);
+        }
+    }
+
+    private void cache(Dimension dimension) {
+        externalIds.put(dimension.getId(), dimension.getExternalId());
+        keys.get(dimension.getKind()).put(dimension.getExternalId(), dimension.getId());
+        unknown.remove(unknownKey(dimension.getKind(), dimension.getExternalId()));
+    }
+
+    private static Dimension row(ResultSet rs, int rowNum) throws SQLException {
+        Dimension dimension = new Dimension(Dimension.Kind.valueOf(rs.getString(2)), rs.getString(3));
+        dimension.setId(rs.getInt(1));
+        return dimension;
+    }
+
+    private static String unknownKey(Dimension.Kind kind, String externalId) {
+        return kind.name() + ':' + externalId;
+    }
+}
@@ -0,0 +1,139 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.DistinctMachinesResponse;
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import com.internshala.factory_monitoring.util.EventTimes;
+import com.internshala.factory_monitoring.util.HyperLogLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * HyperLogLog sketches of the machines that reported per factory and per factory
+ * line for every hour, so distinct-machine counts over long windows are a merge
+ * of hourly sketches instead of a COUNT(DISTINCT) scan.
+ *
+ * Sketches cannot forget: an update that moves an event to another hour or line
+ * adds the machine to the new bucket and leaves it in the old one. Built from the
+ * database on startup; kept current from committed ingest changes.
+ */
+@Component
+public class DistinctMachineSketches implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(DistinctMachineSketches.class);
+
+    private final MachineEventRepository repository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int precision;
+
+    private final Map<String, NavigableMap<Long, HyperLogLog>> byFactory = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, NavigableMap<Long, HyperLogLog>>> byFactoryLine = new ConcurrentHashMap<>();
+
+    public DistinctMachineSketches(MachineEventRepository repository, PlatformTransactionManager transactionManager,
+                                   @Value("${factory.sketch.precision:12}") int precision) {
+        this.repository = repository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // Fail at startup rather than on the first event
+        this.precision = new HyperLogLog(precision).getPrecision();
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long events = readOnlyTransaction.execute(status -> {
+            long count = 0;
+            try (Stream<Object[]> sources = repository.streamSources()) {
+                for (Object[] row : (Iterable<Object[]>) sources::iterator) {
+                    add((String) row[0], (String) row[1], (String) row[2],
+                            EventTimes.toEpochMillis((LocalDateTime) row[3]));
+                    count++;
+                }
+            }
+            return count;
+        });
+        log.info("Distinct-machine sketches built from {} stored events", events);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEventsChanged(EventsChangedEvent change) {
+        for (EventChange eventChange : change.getChanges()) {
+            MachineEvent event = eventChange.after();
+            add(event.getMachineId(), event.getLineId(), event.getFactoryId(),
+                    EventTimes.toEpochMillis(event.getEventTime()));
+        }
+    }
+
+    /**
+     * Distinct machines of a factory, or of one of its lines when {@code lineId} is
+     * given, in the hours overlapping [start, end).
+     */
+    public DistinctMachinesResponse distinctMachines(String factoryId, String lineId,
+                                                     LocalDateTime start, LocalDateTime end) {
+        long fromHour = HourlyRollup.hourOf(EventTimes.toEpochMillis(start));
+        long toHour = HourlyRollup.hourOf(EventTimes.toEpochMillis(end) - 1) + EventTimes.MILLIS_PER_HOUR;
+
+        NavigableMap<Long, HyperLogLog> hours;
+        if (lineId == null) {
+            hours = byFactory.get(factoryId);
+        } else {
+            Map<String, NavigableMap<Long, HyperLogLog>> lines = byFactoryLine.get(factoryId);
+            hours = lines == null ? null : lines.get(lineId);
+        }
+
+        HyperLogLog window = new HyperLogLog(precision);
+        List<DistinctMachinesResponse.HourEstimate> hourly = new ArrayList<>();
+        if (hours != null) {
+            for (Map.Entry<Long, HyperLogLog> hour : hours.subMap(fromHour, true, toHour, false).entrySet()) {
+                hour.getValue().mergeInto(window);
+                hourly.add(new DistinctMachinesResponse.HourEstimate(
+                        EventTimes.toLocalDateTime(hour.getKey()), hour.getValue().estimate()));
+            }
+        }
+
+        long estimate = window.estimate();
+        double error = window.relativeStandardError();
+        DistinctMachinesResponse response = new DistinctMachinesResponse();
+        response.setFactoryId(factoryId);
+        response.setLineId(lineId);
+        response.setStart(EventTimes.toLocalDateTime(fromHour));
+        response.setEnd(EventTimes.toLocalDateTime(toHour));
+        response.setEstimate(estimate);
+        response.setRelativeStandardError(Math.round(error * 10000.0) / 10000.0);
+        response.setLowerBound(Math.max(0, Math.round(estimate * (1 - 2 * error))));
+        response.setUpperBound(Math.round(estimate * (1 + 2 * error)));
+        response.setHourly(hourly);
+        return response;
+    }
+
+    private void add(String machineId, String lineId, String factoryId, long eventTimeMillis) {
+        if (factoryId == null) {
+            return;
+        }
+        long hash = HyperLogLog.hash(machineId);
+        long hour = HourlyRollup.hourOf(eventTimeMillis);
+        byFactory.computeIfAbsent(factoryId, id -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(hour, h -> new HyperLogLog(precision))
+                .add(hash);
+        if (lineId != null) {
+            byFactoryLine.computeIfAbsent(factoryId, id -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(lineId, id -> new ConcurrentSkipListMap<>())
+                    .computeIfAbsent(hour, h -> new HyperLogLog(precision))
+                    .add(hash);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.entity.MachineEvent;
+
+/**
+ * One inserted or updated event: {@code before} is the stored state an update
+ * replaced (null for inserts), {@code after} the entity as saved.
+ */
+public record EventChange(EventSnapshot before, MachineEvent after) {}
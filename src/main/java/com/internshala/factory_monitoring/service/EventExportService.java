@@ -0,0 +1,160 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.ExportCursor;
+import com.internshala.factory_monitoring.dto.ExportedEvent;
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Streams raw events of one machine and time window in (eventTime, id) order.
+ *
+ * Rows come from a JDBC cursor (see {@link MachineEventRepository#streamForExport})
+ * and each entity is detached once written, so neither the result set nor the
+ * persistence context grows with the export: memory is constant per export.
+ *
+ * An export holds a pooled connection and a read-only transaction for as long as
+ * the client takes to read it, so at most {@code factory.export.max-concurrent} run
+ * at a time. Callers take a {@link Slot} with {@link #startExport()} before the export
+ * and release it on every path the export can end by, on whichever thread: it is
+ * given back once. A cancelled slot stops the export at its next row.
+ */
+@Service
+public class EventExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(EventExportService.class);
+
+    // Receives each exported row; may throw when the client goes away
+    @FunctionalInterface
+    public interface RowWriter {
+        void write(ExportedEvent row) throws IOException;
+    }
+
+    /**
+     * Every export slot is taken; retry after {@link #getRetryAfterSeconds()}.
+     */
+    public static class BusyException extends RuntimeException {
+        private final long retryAfterSeconds;
+
+        public BusyException(int maxConcurrent, long retryAfterSeconds) {
+            super(maxConcurrent + " exports are already running; retry in " + retryAfterSeconds + " s");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() { return retryAfterSeconds; }
+    }
+
+    /**
+     * A taken export slot.
+     */
+    public final class Slot {
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean cancelled;
+
+        private Slot() {
+        }
+
+        // Safe to call from every ending of the export; only the first call gives the slot back
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                slots.release();
+            }
+        }
+
+        // The export stops before its next row, e.g. once the response has timed out
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * The writer, failing with {@link InterruptedIOException} once the slot is cancelled.
+         */
+        public RowWriter guard(RowWriter writer) {
+            return row -> {
+                if (cancelled) {
+                    throw new InterruptedIOException("Export cancelled");
+                }
+                writer.write(row);
+            };
+        }
+    }
+
+    private final MachineEventRepository repository;
+    private final EntityManager entityManager;
+    private final int maxConcurrent;
+    private final Semaphore slots;
+
+    @Autowired
+    public EventExportService(MachineEventRepository repository, EntityManager entityManager,
+                              @Value("${factory.export.max-concurrent:4}") int maxConcurrent) {
+        this.repository = repository;
+        this.entityManager = entityManager;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.slots = new Semaphore(this.maxConcurrent);
+    }
+
+    /**
+     * Takes an export slot without waiting.
+     *
+     * @throws BusyException if every slot is taken
+     */
+    public Slot startExport() {
+        if (!slots.tryAcquire()) {
+            throw new BusyException(maxConcurrent, 1);
+        }
+        return new Slot();
+    }
+
+    /**
+     * @param after resume position from a previous export, or null to start at {@code start}
+     * @return number of rows written
+     */
+    @Transactional(readOnly = true)
+    public long export(String machineId, LocalDateTime start, LocalDateTime end,
+                       ExportCursor after, RowWriter writer) throws IOException {
+        LocalDateTime afterTime = after != null ? after.getEventTime() : start;
+        long afterId = after != null ? after.getId() : Long.MIN_VALUE;
+
+        long rows = 0;
+        ExportedEvent row = new ExportedEvent();
+        try (Stream<MachineEvent> events = repository.streamForExport(machineId, start, end, afterTime, afterId)) {
+            Iterator<MachineEvent> iterator = events.iterator();
+            while (iterator.hasNext()) {
+                MachineEvent event = iterator.next();
+                fill(row, event);
+                entityManager.detach(event);
+                writer.write(row);
+                rows++;
+            }
+        }
+
+        log.info("Exported {} events for machine={}, start={}, end={}", rows, machineId, start, end);
+        return rows;
+    }
+
+    private static void fill(ExportedEvent row, MachineEvent event) {
+        row.setEventId(event.getEventId());
+        row.setEventTime(event.getEventTime());
+        row.setReceivedTime(event.getReceivedTime());
+        row.setMachineId(event.getMachineId());
+        row.setDurationMs(event.getDurationMs());
+        row.setDefectCount(event.getDefectCount());
+        row.setLineId(event.getLineId());
+        row.setFactoryId(event.getFactoryId());
+        row.setCursor(new ExportCursor(event.getEventTime(), event.getId()).encode());
+    }
+}
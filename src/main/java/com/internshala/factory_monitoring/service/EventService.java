@@ -2,21 +2,42 @@ package com.internshala.factory_monitoring.service;
 
 import com.internshala.factory_monitoring.dto.BatchIngestResponse;
 import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.dto.RejectionMode;
+import com.internshala.factory_monitoring.dto.RejectionReason;
 import com.internshala.factory_monitoring.dto.StatsResponse;
+import com.internshala.factory_monitoring.dto.StatsWindow;
 import com.internshala.factory_monitoring.dto.TopDefectLineResponse;
+import com.internshala.factory_monitoring.entity.Dimension;
 import com.internshala.factory_monitoring.entity.MachineEvent;
 import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import com.internshala.factory_monitoring.util.EventTimes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,158 +46,487 @@ public class EventService {
     private static final Logger log = LoggerFactory.getLogger(EventService.class);
 
     private final MachineEventRepository repository;
+    private final BatchClassifier classifier;
+    private final DimensionDictionary dimensions;
+    private final RejectionTicketStore rejectionTickets;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EventWatermarks watermarks;
+    private final HourlyRollup rollup;
+    private final ChunkSizer chunkSizer;
+    private final MachineHeartbeats heartbeats;
+    private final QueryPlanner queryPlanner;
+    private final TransactionTemplate transactionTemplate;
+
+    // Waiting batches queue per factory and take turns, so one factory cannot starve the others
+    private final FairIngestLock ingestLock;
+
+    // Above this many rejections a FULL response is summarised as well, keeping responses bounded
+    private final int maxRejectionDetails;
+    private final int rejectionSampleSize;
+
+    // Answer final, hour-aligned stats windows from the rollup instead of the database
+    private final boolean serveFinalFromRollup;
+
+    // Attempts of a chunk that lost a race with another writer, after the first
+    private final int conflictRetries;
+    private final Counter conflictRetryCounter;
 
     @Autowired
-    public EventService(MachineEventRepository repository) {
+    public EventService(MachineEventRepository repository,
+                        BatchClassifier classifier,
+                        DimensionDictionary dimensions,
+                        RejectionTicketStore rejectionTickets,
+                        ApplicationEventPublisher eventPublisher,
+                        EventWatermarks watermarks,
+                        HourlyRollup rollup,
+                        ChunkSizer chunkSizer,
+                        MachineHeartbeats heartbeats,
+                        QueryPlanner queryPlanner,
+                        PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry,
+                        @Value("${factory.ingest.rejections.max-details:1000}") int maxRejectionDetails,
+                        @Value("${factory.ingest.rejections.sample-size:10}") int rejectionSampleSize,
+                        @Value("${factory.stats.serve-final-from-rollup:false}") boolean serveFinalFromRollup,
+                        @Value("${factory.ingest.conflict-retries:3}") int conflictRetries,
+                        @Value("${factory.ingest.lock.quantum:5000}") int lockQuantum) {
         this.repository = repository;
+        this.classifier = classifier;
+        this.dimensions = dimensions;
+        this.rejectionTickets = rejectionTickets;
+        this.eventPublisher = eventPublisher;
+        this.watermarks = watermarks;
+        this.rollup = rollup;
+        this.chunkSizer = chunkSizer;
+        this.heartbeats = heartbeats;
+        this.queryPlanner = queryPlanner;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxRejectionDetails = maxRejectionDetails;
+        this.rejectionSampleSize = rejectionSampleSize;
+        this.serveFinalFromRollup = serveFinalFromRollup;
+        this.conflictRetries = Math.max(0, conflictRetries);
+        this.ingestLock = new FairIngestLock(lockQuantum);
+        this.conflictRetryCounter = Counter.builder("factory.ingest.conflict.retries")
+                .description("Chunks retried after losing a race with another writer")
+                .register(meterRegistry);
     }
 
-    // Constants for validation
-    private static final long MAX_DURATION_MS = 6 * 60 * 60 * 1000L;
-    private static final long FUTURE_TIME_THRESHOLD_MINUTES = 15;
     private static final double HEALTHY_THRESHOLD = 2.0;
 
-    @Transactional
-    public synchronized BatchIngestResponse ingestBatch(List<EventRequest> events) {
+    // Queue of runExclusive callers at the ingest lock
+    private static final String EXCLUSIVE = "(exclusive)";
+
+    public BatchIngestResponse ingestBatch(List<EventRequest> events) {
+        return ingestBatch(events, RejectionMode.FULL);
+    }
+
+    /**
+     * Stores the batch in chunks of {@link ChunkSizer#current()} events, each in its own
+     * transaction with its own persistence context. The lock is held until the last
+     * chunk has committed, so no other batch reads stored events a chunk is still writing.
+     *
+     * The lock only orders batches within this process. Against writers in other
+     * processes, a chunk relies on the database: the unique eventId index turns a
+     * concurrent insert of the same event into a duplicate-key error, and the
+     * {@code version} column turns an update of a row changed since it was read into
+     * an optimistic-lock failure. Either rolls the chunk back and it is retried, up
+     * to {@code factory.ingest.conflict-retries} times, against the stored state as it
+     * is now: the events that collided become updates or duplicates, the others are
+     * stored as before. Other chunks are not affected.
+     *
+     * A chunk that fails to store is rolled back alone and its events are reported as
+     * rejected; chunks before and after it stay committed. Called inside an existing
+     * transaction, chunks join it and a failure propagates to the caller.
+     */
+    public BatchIngestResponse ingestBatch(List<EventRequest> events, RejectionMode rejectionMode) {
+        RejectionLog rejections = new RejectionLog();
+        BatchIngestResponse response = ingestCollecting(events, rejections);
+        if (response.getChunks().size() <= 1) {
+            response.setChunks(null);
+        }
+        reportRejections(response, rejections, rejectionMode);
+        return response;
+    }
+
+    /**
+     * Stores one batch as {@link #ingestBatch(List, RejectionMode)} does, but adds its
+     * rejections to the caller's log and always lists its chunks, so a caller storing
+     * a stream batch by batch can report them once for the whole stream.
+     */
+    BatchIngestResponse ingestCollecting(List<EventRequest> events, RejectionLog rejections) {
+        lockIngest(events);
+        try {
+            return ingestInChunks(events, rejections);
+        } finally {
+            ingestLock.release();
+        }
+    }
+
+    /**
+     * Runs work that must not interleave with ingest (retention deletes) under the ingest lock.
+     */
+    <T> T runExclusive(Supplier<T> work) {
+        ingestLock.acquire(EXCLUSIVE, 0);
+        try {
+            return work.get();
+        } finally {
+            ingestLock.release();
+        }
+    }
+
+    /**
+     * Takes the ingest lock for a batch, queued under the factory of its first event:
+     * gateways send one factory per batch.
+     */
+    void lockIngest(List<EventRequest> events) {
+        String factoryId = events.isEmpty() ? null : events.get(0).getFactoryId();
+        ingestLock.acquire(factoryId != null ? factoryId : IngestAdmission.NO_FACTORY, events.size());
+    }
+
+    // IngestPipeline takes the lock on one thread and may release it on another
+
+    void unlockIngest() {
+        ingestLock.release();
+    }
+
+    private BatchIngestResponse ingestInChunks(List<EventRequest> events, RejectionLog rejections) {
         log.info("Processing batch of {} events", events.size());
 
+        // One clock read per batch; everything below compares epoch millis. Sharing it across
+        // chunks keeps repeated eventIds resolving in batch order (later ones are deduped).
+        long nowMillis = EventTimes.toEpochMillis(LocalDateTime.now());
+        boolean callerTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+
         BatchIngestResponse response = new BatchIngestResponse();
-        response.setAccepted(0);
-        response.setDeduped(0);
-        response.setUpdated(0);
-        response.setRejected(0);
-        response.setRejections(new ArrayList<>());
+        List<BatchIngestResponse.ChunkOutcome> chunks = new ArrayList<>();
+        int offset = 0;
+        do {
+            int size = Math.min(chunkSizer.current(), events.size() - offset);
+            BatchIngestResponse.ChunkOutcome outcome = storeChunk(events.subList(offset, offset + size), offset,
+                    nowMillis, null, 0, rejections, callerTransaction);
+            chunks.add(outcome);
+            addOutcome(response, outcome);
+            offset += size;
+        } while (offset < events.size());
+
+        response.setChunks(chunks);
+
+        log.info("Batch processing complete: accepted={}, deduped={}, updated={}, rejected={}, chunks={}",
+                response.getAccepted(), response.getDeduped(),
+                response.getUpdated(), response.getRejected(), chunks.size());
+
+        return response;
+    }
+
+    /**
+     * Stores one chunk in its own transaction and reports how it went. A chunk that
+     * fails to store is reported as FAILED with all its events rejected.
+     *
+     * @param classified the chunk as already classified by {@link #classifyAhead}, written
+     *                   on the first attempt; null to classify it inside the transaction
+     * @param classifyNanos time already spent classifying it, added to its latency
+     */
+    BatchIngestResponse.ChunkOutcome storeChunk(List<EventRequest> chunk, int offset, long nowMillis,
+                                                BatchClassifier.Classification classified, long classifyNanos,
+                                                RejectionLog rejections, boolean callerTransaction) {
+        BatchIngestResponse.ChunkOutcome outcome = new BatchIngestResponse.ChunkOutcome();
+        outcome.setOffset(offset);
+        outcome.setSize(chunk.size());
+        long started = System.nanoTime() - classifyNanos;
+        try {
+            BatchClassifier.Classification classification =
+                    storeWithRetries(chunk, nowMillis, classified, outcome, callerTransaction);
+            outcome.setStatus(BatchIngestResponse.ChunkOutcome.COMMITTED);
+            outcome.setAccepted(classification.getAccepted());
+            outcome.setDeduped(classification.getDeduped());
+            outcome.setUpdated(classification.getUpdated());
+            outcome.setRejected(classification.getRejected());
+            rejections.addAll(classification.getRejections());
+        } catch (DataAccessException | TransactionException e) {
+            if (callerTransaction) {
+                throw e;
+            }
+            log.warn("Chunk at offset {} ({} events) was rolled back", offset, chunk.size(), e);
+            outcome.setStatus(BatchIngestResponse.ChunkOutcome.FAILED);
+            outcome.setRejected(chunk.size());
+            for (EventRequest event : chunk) {
+                rejections.add(event.getEventId(), RejectionReason.CHUNK_FAILED);
+            }
+        }
+        long elapsedNanos = System.nanoTime() - started;
+        chunkSizer.record(chunk.size(), elapsedNanos);
+        outcome.setElapsedMs(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        return outcome;
+    }
+
+    static void addOutcome(BatchIngestResponse response, BatchIngestResponse.ChunkOutcome outcome) {
+        response.setAccepted(response.getAccepted() + outcome.getAccepted());
+        response.setDeduped(response.getDeduped() + outcome.getDeduped());
+        response.setUpdated(response.getUpdated() + outcome.getUpdated());
+        response.setRejected(response.getRejected() + outcome.getRejected());
+        if (BatchIngestResponse.ChunkOutcome.FAILED.equals(outcome.getStatus())) {
+            response.setIncomplete(true);
+        }
+    }
+
+    private BatchClassifier.Classification storeWithRetries(List<EventRequest> chunk, long nowMillis,
+                                                           BatchClassifier.Classification classified,
+                                                           BatchIngestResponse.ChunkOutcome outcome,
+                                                           boolean callerTransaction) {
+        while (true) {
+            try {
+                // A retry classifies again: the stored state it was classified against is gone
+                if (classified != null && outcome.getRetries() == 0) {
+                    resolveDimensions(classified);
+                    return transactionTemplate.execute(status -> writeChunk(classified));
+                }
+                resolveDimensions(chunk, nowMillis);
+                return transactionTemplate.execute(status -> ingestChunk(chunk, nowMillis));
+            } catch (DataAccessException | TransactionException e) {
+                // Inside a caller's transaction the rollback is the caller's; nothing to retry here
+                if (callerTransaction || outcome.getRetries() >= conflictRetries || !isConflict(e)) {
+                    throw e;
+                }
+                outcome.setRetries(outcome.getRetries() + 1);
+                conflictRetryCounter.increment();
+                // The winner's write is not in this instance's cache; the retry must read it
+                repository.evictCachedEvents();
+                log.info("Chunk at offset {} lost a race with another writer, retrying ({}/{})",
+                        outcome.getOffset(), outcome.getRetries(), conflictRetries);
+            }
+        }
+    }
+
+    // A concurrent insert of the same eventId, an update of a row changed since it was read,
+    // or a lock wait on a row another transaction holds
+    private static boolean isConflict(RuntimeException e) {
+        if (e instanceof ConcurrencyFailureException || e instanceof DuplicateKeyException) {
+            return true;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return violation.getKind() == ConstraintViolationException.ConstraintKind.UNIQUE;
+            }
+        }
+        return false;
+    }
+
+    private BatchClassifier.Classification ingestChunk(List<EventRequest> events, long nowMillis) {
+        return writeChunk(classifyChunk(events, nowMillis, Map.of()));
+    }
 
-        LocalDateTime now = LocalDateTime.now();
+    /**
+     * Classifies a chunk of {@link IngestPipeline} ahead of the chunks still being
+     * written, in a transaction of its own. It reads the primary, as a read-only
+     * transaction could be routed to the replica. The entities it returns are detached:
+     * their updates are merged, so a row changed since fails on its version as usual.
+     *
+     * @param pending events earlier chunks of the batch are writing, by eventId; they
+     *                stand in for the stored state those chunks have not committed yet
+     */
+    BatchClassifier.Classification classifyAhead(List<EventRequest> events, long nowMillis,
+                                                 Map<String, MachineEvent> pending) {
+        return transactionTemplate.execute(status -> classifyChunk(events, nowMillis, pending));
+    }
 
+    private BatchClassifier.Classification classifyChunk(List<EventRequest> events, long nowMillis,
+                                                         Map<String, MachineEvent> pending) {
         // OPTIMIZATION 1: Collect all eventIds first
         List<String> eventIds = events.stream()
                 .map(EventRequest::getEventId)
+                .distinct()
                 .collect(Collectors.toList());
 
-        // OPTIMIZATION 2: Batch fetch all existing events (single query instead of N queries)
-        Map<String, MachineEvent> existingEventsMap = repository.findAllByEventIdIn(eventIds)
+        // OPTIMIZATION 2: Existing events from the second-level cache, the rest in a single query
+        Map<String, MachineEvent> existingEventsMap = repository.findAllByEventIdCached(eventIds)
                 .stream()
                 .collect(Collectors.toMap(MachineEvent::getEventId, e -> e));
-
-        // OPTIMIZATION 3: Prepare lists for batch operations
-        List<MachineEvent> toInsert = new ArrayList<>();
-        List<MachineEvent> toUpdate = new ArrayList<>();
-
-        // Process each event
-        for (EventRequest eventRequest : events) {
-            String validationError = validateEvent(eventRequest, now);
-            if (validationError != null) {
-                response.setRejected(response.getRejected() + 1);
-                BatchIngestResponse.RejectionDetail rejection = new BatchIngestResponse.RejectionDetail();
-                rejection.setEventId(eventRequest.getEventId());
-                rejection.setReason(validationError);
-                response.getRejections().add(rejection);
-                continue;
-            }
-
-            MachineEvent existingEvent = existingEventsMap.get(eventRequest.getEventId());
-
-            if (existingEvent != null) {
-                if (isIdenticalPayload(existingEvent, eventRequest)) {
-                    response.setDeduped(response.getDeduped() + 1);
-                    log.debug("Deduped event: {}", eventRequest.getEventId());
-                } else {
-                    if (now.isAfter(existingEvent.getReceivedTime())) {
-                        updateEvent(existingEvent, eventRequest, now);
-                        toUpdate.add(existingEvent);
-                        response.setUpdated(response.getUpdated() + 1);
-                        log.debug("Updated event: {}", eventRequest.getEventId());
-                    } else {
-                        response.setDeduped(response.getDeduped() + 1);
-                        log.debug("Ignored older update for event: {}", eventRequest.getEventId());
-                    }
+        if (!pending.isEmpty()) {
+            for (String eventId : eventIds) {
+                MachineEvent written = pending.get(eventId);
+                if (written != null) {
+                    existingEventsMap.put(eventId, written);
                 }
-            } else {
-                MachineEvent newEvent = convertToEntity(eventRequest, now);
-                toInsert.add(newEvent);
-                response.setAccepted(response.getAccepted() + 1);
-                log.debug("Accepted new event: {}", eventRequest.getEventId());
             }
         }
 
-        // OPTIMIZATION 4: Batch save all at once (instead of one-by-one)
-        if (!toInsert.isEmpty()) {
-            repository.saveAll(toInsert);
+        // OPTIMIZATION 3: Classify every event (fork-join for large chunks)
+        return classifier.classify(events, existingEventsMap, nowMillis);
+    }
+
+    private BatchClassifier.Classification writeChunk(BatchClassifier.Classification classification) {
+        // OPTIMIZATION 5: Batch save all at once (instead of one-by-one)
+        if (!classification.getToInsert().isEmpty()) {
+            repository.saveAll(classification.getToInsert());
         }
-        if (!toUpdate.isEmpty()) {
-            repository.saveAll(toUpdate);
+        if (!classification.getToUpdate().isEmpty()) {
+            // Flushed here so a stale version fails as a conflict, not at commit
+            repository.saveAllAndFlush(classification.getToUpdate());
         }
 
-        log.info("Batch processing complete: accepted={}, deduped={}, updated={}, rejected={}",
-                response.getAccepted(), response.getDeduped(),
-                response.getUpdated(), response.getRejected());
-
-        return response;
+        // OPTIMIZATION 6: One heartbeat upsert per touched machine, in the same transaction
+        heartbeats.record(classification);
+        publishChanges(classification);
+        return classification;
     }
 
-
-
-    private String validateEvent(EventRequest event, LocalDateTime now) {
-        if (event.getDurationMs() < 0) {
-            return "INVALID_DURATION: durationMs cannot be negative";
+    // Delivered to after-commit listeners (replica sync, rollups)
+    private void publishChanges(BatchClassifier.Classification classification) {
+        List<EventChange> changed = new ArrayList<>(
+                classification.getToInsert().size() + classification.getToUpdate().size());
+        for (MachineEvent inserted : classification.getToInsert()) {
+            changed.add(new EventChange(null, inserted));
         }
-        if (event.getDurationMs() > MAX_DURATION_MS) {
-            return "INVALID_DURATION: durationMs cannot exceed 6 hours";
+        for (int i = 0; i < classification.getToUpdate().size(); i++) {
+            changed.add(new EventChange(classification.getReplaced().get(i), classification.getToUpdate().get(i)));
         }
-
-        long minutesInFuture = ChronoUnit.MINUTES.between(now, event.getEventTime());
-        if (minutesInFuture > FUTURE_TIME_THRESHOLD_MINUTES) {
-            return "INVALID_TIME: eventTime is more than 15 minutes in the future";
+        if (!changed.isEmpty()) {
+            eventPublisher.publishEvent(new EventsChangedEvent(changed));
         }
+    }
 
-        return null;
+    // OPTIMIZATION 4: Dictionary keys for new machine/line/factory ids (cached ids need no query).
+    // Resolved before the chunk's transaction: creating entries takes a connection of its own.
+    private void resolveDimensions(BatchClassifier.Classification classification) {
+        Set<String> machineIds = new HashSet<>();
+        Set<String> lineIds = new HashSet<>();
+        Set<String> factoryIds = new HashSet<>();
+        for (List<MachineEvent> events : List.of(classification.getToInsert(), classification.getToUpdate())) {
+            for (MachineEvent event : events) {
+                machineIds.add(event.getMachineId());
+                lineIds.add(event.getLineId());
+                factoryIds.add(event.getFactoryId());
+            }
+        }
+        resolveDimensions(machineIds, lineIds, factoryIds);
     }
 
-    private boolean isIdenticalPayload(MachineEvent existing, EventRequest request) {
-        return existing.getEventTime().equals(request.getEventTime()) &&
-                existing.getMachineId().equals(request.getMachineId()) &&
-                existing.getDurationMs().equals(request.getDurationMs()) &&
-                existing.getDefectCount().equals(request.getDefectCount()) &&
-                objectEquals(existing.getLineId(), request.getLineId()) &&
-                objectEquals(existing.getFactoryId(), request.getFactoryId());
+    // Not classified yet: every event that will not be rejected may be written
+    private void resolveDimensions(List<EventRequest> chunk, long nowMillis) {
+        Set<String> machineIds = new HashSet<>();
+        Set<String> lineIds = new HashSet<>();
+        Set<String> factoryIds = new HashSet<>();
+        for (EventRequest event : chunk) {
+            if (BatchClassifier.validateEvent(event, nowMillis) == null) {
+                machineIds.add(event.getMachineId());
+                lineIds.add(event.getLineId());
+                factoryIds.add(event.getFactoryId());
+            }
+        }
+        resolveDimensions(machineIds, lineIds, factoryIds);
     }
 
-    private boolean objectEquals(Object a, Object b) {
-        if (a == null && b == null) return true;
-        if (a == null || b == null) return false;
-        return a.equals(b);
+    private void resolveDimensions(Set<String> machineIds, Set<String> lineIds, Set<String> factoryIds) {
+        dimensions.resolveAll(Dimension.Kind.MACHINE, machineIds);
+        dimensions.resolveAll(Dimension.Kind.LINE, lineIds);
+        dimensions.resolveAll(Dimension.Kind.FACTORY, factoryIds);
     }
 
-    private void updateEvent(MachineEvent existing, EventRequest request, LocalDateTime receivedTime) {
-        existing.setEventTime(request.getEventTime());
-        existing.setReceivedTime(receivedTime);
-        existing.setMachineId(request.getMachineId());
-        existing.setDurationMs(request.getDurationMs());
-        existing.setDefectCount(request.getDefectCount());
-        existing.setLineId(request.getLineId());
-        existing.setFactoryId(request.getFactoryId());
+    /**
+     * FULL lists every rejection; SUMMARY (or FULL beyond maxRejectionDetails) groups
+     * them by code with a capped sample and parks the full list behind a ticket.
+     */
+    void reportRejections(BatchIngestResponse response, RejectionLog rejections, RejectionMode mode) {
+        if (mode == RejectionMode.FULL && rejections.size() <= maxRejectionDetails) {
+            response.setRejections(rejections.toDetails());
+            return;
+        }
+
+        response.setRejections(null);
+        response.setRejectionSummary(rejections.summarize(rejectionSampleSize));
+        if (rejections.size() > 0) {
+            response.setRejectionsTicket(rejectionTickets.store(rejections));
+        }
     }
 
-    private MachineEvent convertToEntity(EventRequest request, LocalDateTime receivedTime) {
-        MachineEvent event = new MachineEvent();
-        event.setEventId(request.getEventId());
-        event.setEventTime(request.getEventTime());
-        event.setReceivedTime(receivedTime);
-        event.setMachineId(request.getMachineId());
-        event.setDurationMs(request.getDurationMs());
-        event.setDefectCount(request.getDefectCount());
-        event.setLineId(request.getLineId());
-        event.setFactoryId(request.getFactoryId());
-        return event;
+    /**
+     * Full rejection list of a summarised batch, or null if the ticket is unknown or expired.
+     */
+    public RejectionLog findRejections(String ticket) {
+        return rejectionTickets.find(ticket);
     }
 
+
+    /**
+     * Stats of a machine, planned by {@link QueryPlanner}: from the database, or from
+     * the rollup for whole final hours and the database for the rest of the window.
+     */
     public StatsResponse getStats(String machineId, LocalDateTime start, LocalDateTime end) {
         log.info("Getting stats for machine={}, start={}, end={}", machineId, start, end);
 
-        Long eventsCount = repository.countByMachineIdAndTimeRange(machineId, start, end);
-        Long defectsCount = repository.sumDefectsByMachineAndTimeRange(machineId, start, end);
+        long watermark = watermarks.machineWatermark(machineId);
+        QueryPlanner.Plan plan = queryPlanner.plan("stats", start, end, watermark, true,
+                (fromHour, toHour) -> rollup.machineTotals(machineId, fromHour, toHour).getEvents());
+        return queryPlanner.execute(plan,
+                upTo -> repository.countByMachineIdAndTimeRangeUpTo(machineId, start, end, upTo), planned -> {
+            HourlyRollup.Totals totals = planned.usesRollup()
+                    ? rollup.machineTotals(machineId, planned.getRollupFrom(), planned.getRollupTo())
+                    : new HourlyRollup.Totals();
+            planned.forEachDatabaseRange((rangeStart, rangeEnd) -> totals.add(
+                    repository.countByMachineIdAndTimeRange(machineId, rangeStart, rangeEnd),
+                    repository.sumDefectsByMachineAndTimeRange(machineId, rangeStart, rangeEnd), 0));
+            return toStatsResponse(machineId, start, end, totals.getEvents(), totals.getDefects(), watermark);
+        });
+    }
+
+    /**
+     * Stats of a final, hour-aligned window from the in-memory rollup, or null when
+     * the window has to be read from the database.
+     */
+    StatsResponse statsFromRollup(String machineId, LocalDateTime start, LocalDateTime end, long watermark) {
+        if (!isFinal(end, watermark) || !servesFromRollup(start, end)) {
+            return null;
+        }
+        HourlyRollup.Totals totals = rollup.machineTotals(machineId,
+                EventTimes.toEpochMillis(start), EventTimes.toEpochMillis(end));
+        return toStatsResponse(machineId, start, end, totals.getEvents(), totals.getDefects(), watermark);
+    }
 
+    /**
+     * Stats of every machine for every window, one {@link StatsResponse} per pair in
+     * machine-then-window order, from a single scan of the range covering all windows
+     * with one conditional count and sum per window. Gaps between disjoint windows
+     * are scanned too, and count towards the query's estimated cost.
+     */
+    public List<StatsResponse> getStatsForWindows(List<String> machineIds, List<StatsWindow> windows) {
+        log.info("Getting stats for machines={}, windows={}", machineIds, windows.size());
+
+        List<LocalDateTime> starts = windows.stream().map(StatsWindow::getStart).toList();
+        List<LocalDateTime> ends = windows.stream().map(StatsWindow::getEnd).toList();
+        LocalDateTime rangeStart = starts.stream().min(Comparator.naturalOrder()).orElseThrow();
+        LocalDateTime rangeEnd = ends.stream().max(Comparator.naturalOrder()).orElseThrow();
+        QueryPlanner.Plan plan = queryPlanner.plan("stats-windows", rangeStart, rangeEnd, EventTimes.UNSET, false,
+                (fromHour, toHour) -> machineIds.stream()
+                        .mapToLong(machineId -> rollup.machineTotals(machineId, fromHour, toHour).getEvents())
+                        .sum());
+        Map<String, Object[]> rows = queryPlanner.execute(plan, upTo -> {
+                    long counted = 0;
+                    for (String machineId : machineIds) {
+                        if (counted >= upTo) {
+                            break;
+                        }
+                        counted += repository.countByMachineIdAndTimeRangeUpTo(machineId, rangeStart, rangeEnd,
+                                upTo - counted);
+                    }
+                    return counted;
+                }, planned -> repository.sumByMachineAndWindows(machineIds, starts, ends).stream()
+                        .collect(Collectors.toMap(row -> (String) row[0], row -> row)));
+
+        List<StatsResponse> responses = new ArrayList<>(machineIds.size() * windows.size());
+        for (String machineId : machineIds) {
+            long watermark = watermarks.machineWatermark(machineId);
+            Object[] row = rows.get(machineId);
+            for (int i = 0; i < windows.size(); i++) {
+                long eventsCount = row == null ? 0 : ((Number) row[1 + 2 * i]).longValue();
+                long defectsCount = row == null ? 0 : ((Number) row[2 + 2 * i]).longValue();
+                responses.add(toStatsResponse(machineId, starts.get(i), ends.get(i),
+                        eventsCount, defectsCount, watermark));
+            }
+        }
+        return responses;
+    }
+
+    static StatsResponse toStatsResponse(String machineId, LocalDateTime start, LocalDateTime end,
+                                                 long eventsCount, long defectsCount, long watermark) {
         double windowHours = ChronoUnit.SECONDS.between(start, end) / 3600.0;
         double avgDefectRate = windowHours > 0 ? defectsCount / windowHours : 0.0;
         avgDefectRate = Math.round(avgDefectRate * 100.0) / 100.0;
@@ -192,42 +542,105 @@ public class EventService {
         response.setDefectsCount(defectsCount);
         response.setAvgDefectRate(avgDefectRate);
         response.setStatus(status);
-
+        response.setWatermark(watermark == EventTimes.UNSET ? null : EventTimes.toLocalDateTime(watermark));
+        response.setWindowFinal(isFinal(end, watermark));
         return response;
     }
 
+    /**
+     * Top defect lines of a factory, planned by {@link QueryPlanner} like {@link #getStats}.
+     */
     public TopDefectLineResponse getTopDefectLines(String factoryId, LocalDateTime start,
                                                    LocalDateTime end, int limit) {
         log.info("Getting top {} defect lines for factory={}, start={}, end={}",
                 limit, factoryId, start, end);
 
-        List<Object[]> results = repository.findTopDefectLines(factoryId, start, end);
+        long watermark = watermarks.factoryWatermark(factoryId);
+        QueryPlanner.Plan plan = queryPlanner.plan("top-defect-lines", start, end, watermark, true,
+                (fromHour, toHour) -> rollup.factoryEvents(factoryId, fromHour, toHour));
+        return queryPlanner.execute(plan,
+                upTo -> repository.countByFactoryAndTimeRangeUpTo(factoryId, start, end, upTo), planned -> {
+            if (!planned.usesRollup()) {
+                List<Object[]> results = repository.findTopDefectLines(factoryId, start, end);
+                List<TopDefectLineResponse.DefectLineStats> lines = results.stream()
+                        .limit(limit)
+                        .map(row -> toLineStats((String) row[0], ((Number) row[1]).longValue(), ((Number) row[2]).longValue()))
+                        .collect(Collectors.toList());
+                return toTopDefectLineResponse(lines, end, watermark);
+            }
+
+            Map<String, HourlyRollup.Totals> totals = rollup.lineTotals(factoryId,
+                    planned.getRollupFrom(), planned.getRollupTo());
+            planned.forEachDatabaseRange((rangeStart, rangeEnd) -> {
+                for (Object[] row : repository.findTopDefectLines(factoryId, rangeStart, rangeEnd)) {
+                    totals.computeIfAbsent((String) row[0], lineId -> new HourlyRollup.Totals())
+                            .add(((Number) row[2]).longValue(), ((Number) row[1]).longValue(), 0);
+                }
+            });
+            List<TopDefectLineResponse.DefectLineStats> lines = totals.entrySet().stream()
+                    .map(line -> toLineStats(line.getKey(), line.getValue().getDefects(), line.getValue().getEvents()))
+                    .sorted(Comparator.comparing(TopDefectLineResponse.DefectLineStats::getTotalDefects).reversed())
+                    .limit(limit)
+                    .collect(Collectors.toList());
+            return toTopDefectLineResponse(lines, end, watermark);
+        });
+    }
 
-        List<TopDefectLineResponse.DefectLineStats> lines = results.stream()
+    /**
+     * Top lines of a final, hour-aligned window from the in-memory rollup, or null when
+     * the window has to be read from the database.
+     */
+    TopDefectLineResponse topDefectLinesFromRollup(String factoryId, LocalDateTime start, LocalDateTime end,
+                                                   int limit, long watermark) {
+        if (!isFinal(end, watermark) || !servesFromRollup(start, end)) {
+            return null;
+        }
+        List<TopDefectLineResponse.DefectLineStats> lines = rollup.lineTotals(factoryId,
+                        EventTimes.toEpochMillis(start), EventTimes.toEpochMillis(end))
+                .entrySet().stream()
+                .map(line -> toLineStats(line.getKey(), line.getValue().getDefects(), line.getValue().getEvents()))
+                .sorted(Comparator.comparing(TopDefectLineResponse.DefectLineStats::getTotalDefects).reversed())
                 .limit(limit)
-                .map(row -> {
-                    String lineId = (String) row[0];
-                    Long totalDefects = ((Number) row[1]).longValue();
-                    Long eventCount = ((Number) row[2]).longValue();
-
-                    double defectsPercent = eventCount > 0
-                            ? (totalDefects * 100.0 / eventCount)
-                            : 0.0;
-                    defectsPercent = Math.round(defectsPercent * 100.0) / 100.0;
-
-                    // Create stats without builder
-                    TopDefectLineResponse.DefectLineStats stats = new TopDefectLineResponse.DefectLineStats();
-                    stats.setLineId(lineId);
-                    stats.setTotalDefects(totalDefects);
-                    stats.setEventCount(eventCount);
-                    stats.setDefectsPercent(defectsPercent);
-                    return stats;
-                })
                 .collect(Collectors.toList());
+        return toTopDefectLineResponse(lines, end, watermark);
+    }
 
+    static TopDefectLineResponse toTopDefectLineResponse(List<TopDefectLineResponse.DefectLineStats> lines,
+                                                         LocalDateTime end, long watermark) {
         // Create response without builder
         TopDefectLineResponse response = new TopDefectLineResponse();
         response.setLines(lines);
+        response.setWatermark(watermark == EventTimes.UNSET ? null : EventTimes.toLocalDateTime(watermark));
+        response.setWindowFinal(isFinal(end, watermark));
         return response;
     }
-}
\ No newline at end of file
+
+    static TopDefectLineResponse.DefectLineStats toLineStats(String lineId, Long totalDefects, Long eventCount) {
+        double defectsPercent = eventCount > 0
+                ? (totalDefects * 100.0 / eventCount)
+                : 0.0;
+        defectsPercent = Math.round(defectsPercent * 100.0) / 100.0;
+
+        // Create stats without builder
+        TopDefectLineResponse.DefectLineStats stats = new TopDefectLineResponse.DefectLineStats();
+        stats.setLineId(lineId);
+        stats.setTotalDefects(totalDefects);
+        stats.setEventCount(eventCount);
+        stats.setDefectsPercent(defectsPercent);
+        return stats;
+    }
+
+    private static boolean isFinal(LocalDateTime end, long watermark) {
+        return watermark != EventTimes.UNSET && EventTimes.toEpochMillis(end) <= watermark;
+    }
+
+    // Rollup buckets are whole hours from the horizon on, so only hour-aligned windows there can be answered from them
+    private boolean servesFromRollup(LocalDateTime start, LocalDateTime end) {
+        long startMillis = EventTimes.toEpochMillis(start);
+        long endMillis = EventTimes.toEpochMillis(end);
+        return serveFinalFromRollup
+                && startMillis >= rollup.getHorizon()
+                && HourlyRollup.hourOf(startMillis) == startMillis
+                && HourlyRollup.hourOf(endMillis) == endMillis;
+    }
+}
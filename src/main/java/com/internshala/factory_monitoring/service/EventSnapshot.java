@@ -0,0 +1,16 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.util.EventTimes;
+
+/**
+ * Immutable copy of the aggregated fields of a stored event.
+ */
+public record EventSnapshot(String machineId, String lineId, String factoryId,
+                            long eventTimeMillis, long durationMs, int defectCount) {
+
+    public static EventSnapshot of(MachineEvent event) {
+        return new EventSnapshot(event.getMachineId(), event.getLineId(), event.getFactoryId(),
+                EventTimes.toEpochMillis(event.getEventTime()), event.getDurationMs(), event.getDefectCount());
+    }
+}
@@ -0,0 +1,393 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.SnapshotResponse;
+import com.internshala.factory_monitoring.service.SnapshotFile.Column;
+import com.internshala.factory_monitoring.service.SnapshotFile.Type;
+import com.internshala.factory_monitoring.util.EventTimes;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Snapshots of the stored tables on local disk, so an in-memory database does not
+ * start empty after a restart.
+ *
+ * A snapshot holds dimensions, machine_events, machine_heartbeats and
+ * event_summaries as they were at one instant: the tables are read in pages
+ * (keyset on the first column) inside one REPEATABLE READ transaction, which sees
+ * a single committed state without blocking ingest. Rows are streamed into a
+ * {@link SnapshotFile} under a temporary name that is moved into place once the
+ * file is complete, and only the newest {@code factory.snapshot.keep} are kept.
+ *
+ * With {@code restore-on-startup=true} and an empty machine_events table, the
+ * newest snapshot is bulk-loaded with JDBC batch inserts, one transaction per
+ * page, before any in-memory aggregate is built; the aggregates then build from
+ * the restored rows as usual. A snapshot that fails its checks is rolled out again
+ * and the next older one is tried.
+ *
+ * With {@code enabled=true} a snapshot is written every {@code interval} and on
+ * shutdown. {@code POST /api/snapshots} writes one on demand.
+ */
+@Component
+public class EventStoreSnapshots {
+
+    private static final Logger log = LoggerFactory.getLogger(EventStoreSnapshots.class);
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".fms.gz";
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmssSSS");
+
+    // Tables in restore order; the first column is the keyset column
+    private record Table(String name, boolean identity, List<Column> columns) {
+
+        String selectSql() {
+            String key = columns.get(0).name();
+            return "SELECT " + columnList() + " FROM " + name + " WHERE " + key + " > ? ORDER BY " + key + " LIMIT ?";
+        }
+
+        String insertSql() {
+            return "INSERT INTO " + name + " (" + columnList() + ") VALUES ("
+                    + columns.stream().map(column -> "?").collect(Collectors.joining(", ")) + ")";
+        }
+
+        Object firstKey() {
+            return columns.get(0).type() == Type.STRING ? "" : Long.MIN_VALUE;
+        }
+
+        private String columnList() {
+            return columns.stream().map(Column::name).collect(Collectors.joining(", "));
+        }
+    }
+
+    private static final List<Table> TABLES = List.of(
+            new Table("dimensions", true, List.of(
+                    column("id", Type.INT), column("kind", Type.STRING), column("external_id", Type.STRING))),
+            new Table("machine_events", true, List.of(
+                    column("id", Type.LONG), column("event_id", Type.STRING),
+                    column("event_time", Type.TIMESTAMP), column("received_time", Type.TIMESTAMP),
+                    column("machine_id", Type.INT), column("duration_ms", Type.LONG),
+                    column("defect_count", Type.INT), nullable("line_id", Type.INT),
+                    nullable("factory_id", Type.INT), column("version", Type.LONG))),
+            new Table("machine_heartbeats", false, List.of(
+                    column("machine_id", Type.STRING), nullable("line_id", Type.STRING),
+                    nullable("factory_id", Type.STRING), column("last_event_id", Type.STRING),
+                    column("last_event_time", Type.TIMESTAMP), column("last_received_time", Type.TIMESTAMP),
+                    column("event_count", Type.LONG), column("defect_count", Type.LONG),
+                    column("revision", Type.LONG))),
+            new Table("event_summaries", true, List.of(
+                    column("id", Type.LONG), column("machine_id", Type.STRING), nullable("line_id", Type.STRING),
+                    nullable("factory_id", Type.STRING), column("hour_start", Type.TIMESTAMP),
+                    column("event_count", Type.LONG), column("defect_count", Type.LONG),
+                    column("duration_ms", Type.LONG))));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTransaction;
+    private final TransactionTemplate transactionTemplate;
+    private final Path directory;
+    private final boolean enabled;
+    private final boolean restoreOnStartup;
+    private final int keep;
+    private final int pageSize;
+    private final Timer writeTimer;
+
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    // The EntityManagerFactory is only a dependency so the schema exists before restoring into it
+    public EventStoreSnapshots(DataSource dataSource,
+                               PlatformTransactionManager transactionManager,
+                               EntityManagerFactory entityManagerFactory,
+                               MeterRegistry meterRegistry,
+                               @Value("${factory.snapshot.dir:snapshots}") Path directory,
+                               @Value("${factory.snapshot.enabled:false}") boolean enabled,
+                               @Value("${factory.snapshot.restore-on-startup:false}") boolean restoreOnStartup,
+                               @Value("${factory.snapshot.keep:3}") int keep,
+                               @Value("${factory.snapshot.page-size:10000}") int pageSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // Not read-only: the replica carries machine_events only, snapshots read every table from the primary
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.directory = directory;
+        this.enabled = enabled;
+        this.restoreOnStartup = restoreOnStartup;
+        this.keep = Math.max(1, keep);
+        this.pageSize = Math.max(1, pageSize);
+        this.writeTimer = Timer.builder("factory.snapshot.write")
+                .description("Time to write one snapshot")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void restoreOnStartup() {
+        if (!restoreOnStartup) {
+            return;
+        }
+        long stored = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM machine_events", Long.class);
+        if (stored > 0) {
+            log.info("Snapshot not restored: machine_events already holds {} rows", stored);
+            return;
+        }
+        for (Path file : snapshots()) {
+            try {
+                restore(file);
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Snapshot {} could not be restored, trying an older one: {}", file, e.getMessage());
+                clear();
+            }
+        }
+        log.info("No snapshot restored from {}", directory.toAbsolutePath());
+    }
+
+    @Scheduled(fixedDelayString = "${factory.snapshot.interval:PT15M}",
+            initialDelayString = "${factory.snapshot.interval:PT15M}")
+    public void scheduledWrite() {
+        if (enabled) {
+            write();
+        }
+    }
+
+    @PreDestroy
+    public void writeOnShutdown() {
+        if (enabled) {
+            write();
+        }
+    }
+
+    /**
+     * Writes a snapshot of every table now. Returns null if a snapshot is already being written.
+     */
+    public SnapshotResponse write() {
+        if (!writing.compareAndSet(false, true)) {
+            return null;
+        }
+        long startedNanos = System.nanoTime();
+        LocalDateTime createdAt = LocalDateTime.now();
+        Path target = directory.resolve(PREFIX + FILE_TIME.format(createdAt) + SUFFIX);
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            Map<String, Long> rows;
+            long uncompressedBytes;
+            try (SnapshotFile.Writer writer = new SnapshotFile.Writer(temporary, EventTimes.toEpochMillis(createdAt))) {
+                rows = snapshotTransaction.execute(status -> writeTables(writer));
+                uncompressedBytes = writer.bytes();
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            prune();
+
+            long durationNanos = System.nanoTime() - startedNanos;
+            writeTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+            SnapshotResponse response = new SnapshotResponse();
+            response.setFile(target.toString());
+            response.setCreatedAt(createdAt);
+            response.setRows(rows);
+            response.setUncompressedBytes(uncompressedBytes);
+            response.setFileBytes(Files.size(target));
+            response.setDurationMs(durationNanos / 1_000_000);
+            log.info("Snapshot {} written: {} in {} ms", target, rows, response.getDurationMs());
+            return response;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Snapshot " + target + " could not be written", e);
+        } finally {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException e) {
+                log.warn("Could not delete {}", temporary, e);
+            }
+            writing.set(false);
+        }
+    }
+
+    // Newest first
+    List<Path> snapshots() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        files.sort(Comparator.comparing((Path file) -> file.getFileName().toString()).reversed());
+        return files;
+    }
+
+    private Map<String, Long> writeTables(SnapshotFile.Writer writer) {
+        Map<String, Long> rows = new LinkedHashMap<>();
+        try {
+            for (Table table : TABLES) {
+                writer.beginTable(table.name(), table.columns().size());
+                long written = 0;
+                Object lastKey = table.firstKey();
+                while (true) {
+                    List<Object[]> page = jdbcTemplate.query(table.selectSql(),
+                            (rs, i) -> read(rs, table.columns()), lastKey, pageSize);
+                    for (Object[] row : page) {
+                        writer.writeRow(table.columns(), row);
+                    }
+                    written += page.size();
+                    if (page.size() < pageSize) {
+                        break;
+                    }
+                    lastKey = page.get(page.size() - 1)[0];
+                }
+                writer.endTable();
+                rows.put(table.name(), written);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows;
+    }
+
+    private void restore(Path file) throws IOException {
+        long startedNanos = System.nanoTime();
+        long total = 0;
+        try (SnapshotFile.Reader reader = new SnapshotFile.Reader(file)) {
+            for (Table table : TABLES) {
+                String name = reader.nextTable();
+                if (!table.name().equals(name) || reader.columnCount() != table.columns().size()) {
+                    throw new IOException("Snapshot " + file + " has table " + name + " where "
+                            + table.name() + " was expected");
+                }
+                List<Object[]> page = new ArrayList<>(pageSize);
+                Object[] row;
+                while ((row = reader.nextRow(table.columns())) != null) {
+                    page.add(row);
+                    if (page.size() == pageSize) {
+                        insert(table, page);
+                        total += page.size();
+                        page.clear();
+                    }
+                }
+                insert(table, page);
+                total += page.size();
+                if (table.identity()) {
+                    restartIdentity(table);
+                }
+            }
+            if (reader.nextTable() != null) {
+                throw new IOException("Snapshot " + file + " has more tables than expected");
+            }
+        }
+        long elapsedMs = Math.max(1, (System.nanoTime() - startedNanos) / 1_000_000);
+        log.info("Restored {} rows from snapshot {} in {} ms ({} rows/sec)",
+                total, file, elapsedMs, total * 1000 / elapsedMs);
+    }
+
+    private void insert(Table table, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<Column> columns = table.columns();
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(table.insertSql(), rows,
+                rows.size(), (ps, row) -> {
+                    for (int i = 0; i < columns.size(); i++) {
+                        bind(ps, i + 1, columns.get(i).type(), row[i]);
+                    }
+                }));
+    }
+
+    // Later inserts continue after the restored keys
+    private void restartIdentity(Table table) {
+        String key = table.columns().get(0).name();
+        long next = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(" + key + "), 0) + 1 FROM " + table.name(),
+                Long.class);
+        jdbcTemplate.execute("ALTER TABLE " + table.name() + " ALTER COLUMN " + key + " RESTART WITH " + next);
+    }
+
+    // Rolls back a partial restore
+    private void clear() {
+        try {
+            for (Table table : TABLES) {
+                jdbcTemplate.execute("TRUNCATE TABLE " + table.name() + " RESTART IDENTITY");
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not clear the tables after a failed restore", e);
+        }
+    }
+
+    private void prune() throws IOException {
+        List<Path> files = snapshots();
+        for (Path old : files.subList(Math.min(keep, files.size()), files.size())) {
+            Files.deleteIfExists(old);
+        }
+    }
+
+    private static Object[] read(ResultSet rs, List<Column> columns) throws SQLException {
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            int index = i + 1;
+            Object value = switch (columns.get(i).type()) {
+                case LONG -> rs.getLong(index);
+                case INT -> rs.getInt(index);
+                case STRING -> rs.getString(index);
+                case TIMESTAMP -> rs.getObject(index, LocalDateTime.class);
+            };
+            values[i] = rs.wasNull() ? null : value;
+        }
+        return values;
+    }
+
+    private static void bind(PreparedStatement ps, int index, Type type, Object value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, switch (type) {
+                case LONG -> Types.BIGINT;
+                case INT -> Types.INTEGER;
+                case STRING -> Types.VARCHAR;
+                case TIMESTAMP -> Types.TIMESTAMP;
+            });
+            return;
+        }
+        switch (type) {
+            case LONG -> ps.setLong(index, (Long) value);
+            case INT -> ps.setInt(index, (Integer) value);
+            case STRING -> ps.setString(index, (String) value);
+            case TIMESTAMP -> ps.setObject(index, value);
+        }
+    }
+
+    private static Column column(String name, Type type) {
+        return new Column(name, type, false);
+    }
+
+    private static Column nullable(String name, Type type) {
+        return new Column(name, type, true);
+    }
+}
@@ -0,0 +1,67 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.util.EventTimes;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-machine event-time watermarks.
+ *
+ * A machine's watermark is the latest eventTime it has reported minus the allowed
+ * lateness: events before it are expected to be complete. It only moves forward.
+ * Windows ending at or before the watermark are treated as final; an event that
+ * still lands behind it is late and handled as a correction of final data.
+ *
+ * A factory's watermark is the smallest watermark among its machines, since its
+ * windows are only complete once every machine has caught up.
+ */
+@Component
+public class EventWatermarks {
+
+    private final long allowedLatenessMillis;
+    private final Map<String, AtomicLong> latestEventTime = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> machinesByFactory = new ConcurrentHashMap<>();
+
+    public EventWatermarks(@Value("${factory.watermark.allowed-lateness:PT1H}") Duration allowedLateness) {
+        this.allowedLatenessMillis = allowedLateness.toMillis();
+    }
+
+    public void observe(String machineId, String factoryId, long eventTimeMillis) {
+        latestEventTime.computeIfAbsent(machineId, id -> new AtomicLong(Long.MIN_VALUE))
+                .accumulateAndGet(eventTimeMillis, Math::max);
+        if (factoryId != null) {
+            machinesByFactory.computeIfAbsent(factoryId, id -> ConcurrentHashMap.newKeySet()).add(machineId);
+        }
+    }
+
+    /**
+     * @return epoch millis, or {@link EventTimes#UNSET} for a machine without events
+     */
+    public long machineWatermark(String machineId) {
+        AtomicLong latest = latestEventTime.get(machineId);
+        return latest == null ? EventTimes.UNSET : latest.get() - allowedLatenessMillis;
+    }
+
+    public long factoryWatermark(String factoryId) {
+        Set<String> machines = machinesByFactory.get(factoryId);
+        if (machines == null || machines.isEmpty()) {
+            return EventTimes.UNSET;
+        }
+        long watermark = Long.MAX_VALUE;
+        for (String machineId : machines) {
+            watermark = Math.min(watermark, machineWatermark(machineId));
+        }
+        return watermark;
+    }
+
+    public boolean isLate(String machineId, long eventTimeMillis) {
+        long watermark = machineWatermark(machineId);
+        return watermark != EventTimes.UNSET && eventTimeMillis < watermark;
+    }
+}
@@ -0,0 +1,18 @@
+package com.internshala.factory_monitoring.service;
+
+import java.util.List;
+
+/**
+ * Published by ingest for the events it inserted or updated. Listeners that need
+ * committed data use {@code @TransactionalEventListener} (AFTER_COMMIT).
+ */
+public class EventsChangedEvent {
+
+    private final List<EventChange> changes;
+
+    public EventsChangedEvent(List<EventChange> changes) {
+        this.changes = changes;
+    }
+
+    public List<EventChange> getChanges() { return changes; }
+}
@@ -0,0 +1,22 @@
+package com.internshala.factory_monitoring.service;
+
+import java.util.List;
+
+/**
+ * Published by retention for the events it deleted, ids aligned with their last
+ * stored state. Listeners that need committed data use
+ * {@code @TransactionalEventListener} (AFTER_COMMIT).
+ */
+public class EventsExpiredEvent {
+
+    private final List<Long> ids;
+    private final List<EventSnapshot> snapshots;
+
+    public EventsExpiredEvent(List<Long> ids, List<EventSnapshot> snapshots) {
+        this.ids = ids;
+        this.snapshots = snapshots;
+    }
+
+    public List<Long> getIds() { return ids; }
+    public List<EventSnapshot> getSnapshots() { return snapshots; }
+}
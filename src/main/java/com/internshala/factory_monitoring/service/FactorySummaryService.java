@@ -0,0 +1,142 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.FactorySummaryResponse;
+import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import com.internshala.factory_monitoring.util.EventTimes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Utilization and throughput of a factory's lines and machines over a window.
+ *
+ * Every event counts towards the hour of its eventTime with its whole durationMs,
+ * so a long event that starts just before the window's end adds its full duration.
+ * Events without a lineId belong to no line and are left out.
+ *
+ * The window is planned by {@link QueryPlanner}. When it routes to the rollup, the
+ * whole hours behind the factory's watermark are summed from {@link HourlyRollup},
+ * and only the partial hours at either edge and the hours not yet final are read
+ * from the database. Otherwise the whole window is one grouped query over
+ * idx_factory_time.
+ */
+@Service
+public class FactorySummaryService {
+
+    private static final Logger log = LoggerFactory.getLogger(FactorySummaryService.class);
+
+    private final MachineEventRepository repository;
+    private final EventWatermarks watermarks;
+    private final HourlyRollup rollup;
+    private final QueryPlanner queryPlanner;
+
+    public FactorySummaryService(MachineEventRepository repository, EventWatermarks watermarks, HourlyRollup rollup,
+                                 QueryPlanner queryPlanner) {
+        this.repository = repository;
+        this.watermarks = watermarks;
+        this.rollup = rollup;
+        this.queryPlanner = queryPlanner;
+    }
+
+    public FactorySummaryResponse summarize(String factoryId, LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to: " + from + "/" + to);
+        }
+        log.info("Summarizing factory={}, from={}, to={}", factoryId, from, to);
+
+        long fromMillis = EventTimes.toEpochMillis(from);
+        long toMillis = EventTimes.toEpochMillis(to);
+        long watermark = watermarks.factoryWatermark(factoryId);
+        QueryPlanner.Plan plan = queryPlanner.plan("factory-summary", from, to, watermark, true,
+                (fromHour, toHour) -> rollup.factoryEvents(factoryId, fromHour, toHour));
+
+        // lineId -> machineId -> totals
+        long[] rollupHours = new long[1];
+        Map<String, Map<String, HourlyRollup.Totals>> lines = queryPlanner.execute(plan,
+                upTo -> repository.countByFactoryAndTimeRangeUpTo(factoryId, from, to, upTo), planned -> {
+            Map<String, Map<String, HourlyRollup.Totals>> totals = new TreeMap<>();
+            if (planned.usesRollup()) {
+                rollup.lineMachineTotals(factoryId, planned.getRollupFrom(), planned.getRollupTo())
+                        .forEach((lineId, machines) -> totals.put(lineId, new TreeMap<>(machines)));
+            }
+            planned.forEachDatabaseRange((rangeStart, rangeEnd) ->
+                    addFromDatabase(totals, factoryId, rangeStart, rangeEnd));
+            rollupHours[0] = planned.getRollupHours();
+            return totals;
+        });
+
+        long windowMs = toMillis - fromMillis;
+        FactorySummaryResponse response = new FactorySummaryResponse();
+        response.setFactoryId(factoryId);
+        response.setFrom(from);
+        response.setTo(to);
+        response.setWindowHours(round(windowMs / (double) EventTimes.MILLIS_PER_HOUR));
+        response.setWatermark(watermark == EventTimes.UNSET ? null : EventTimes.toLocalDateTime(watermark));
+        response.setWindowFinal(watermark != EventTimes.UNSET && toMillis <= watermark);
+        response.setRollupHours(rollupHours[0]);
+
+        HourlyRollup.Totals factoryTotals = new HourlyRollup.Totals();
+        Set<String> factoryMachines = new HashSet<>();
+        List<FactorySummaryResponse.LineSummary> lineSummaries = new ArrayList<>(lines.size());
+        lines.forEach((lineId, machines) -> {
+            HourlyRollup.Totals lineTotals = new HourlyRollup.Totals();
+            List<FactorySummaryResponse.MachineSummary> machineSummaries = new ArrayList<>(machines.size());
+            machines.forEach((machineId, totals) -> {
+                FactorySummaryResponse.MachineSummary machine = new FactorySummaryResponse.MachineSummary();
+                machine.setMachineId(machineId);
+                fill(machine, totals, 1, windowMs);
+                machineSummaries.add(machine);
+                lineTotals.add(totals.getEvents(), totals.getDefects(), totals.getDurationMs());
+            });
+            FactorySummaryResponse.LineSummary line = new FactorySummaryResponse.LineSummary();
+            line.setLineId(lineId);
+            line.setMachines(machineSummaries);
+            fill(line, lineTotals, machines.size(), windowMs);
+            lineSummaries.add(line);
+            factoryTotals.add(lineTotals.getEvents(), lineTotals.getDefects(), lineTotals.getDurationMs());
+            factoryMachines.addAll(machines.keySet());
+        });
+
+        FactorySummaryResponse.Usage totals = new FactorySummaryResponse.Usage();
+        fill(totals, factoryTotals, factoryMachines.size(), windowMs);
+        response.setTotals(totals);
+        response.setLines(lineSummaries);
+        return response;
+    }
+
+    private void addFromDatabase(Map<String, Map<String, HourlyRollup.Totals>> lines, String factoryId,
+                                 LocalDateTime start, LocalDateTime end) {
+        for (Object[] row : repository.sumByLineAndMachine(factoryId, start, end)) {
+            lines.computeIfAbsent((String) row[0], id -> new TreeMap<>())
+                    .computeIfAbsent((String) row[1], id -> new HourlyRollup.Totals())
+                    .add(((Number) row[2]).longValue(), ((Number) row[3]).longValue(), ((Number) row[4]).longValue());
+        }
+    }
+
+    private static void fill(FactorySummaryResponse.Usage usage, HourlyRollup.Totals totals, int machineCount,
+                             long windowMs) {
+        usage.setEventCount(totals.getEvents());
+        usage.setDefectCount(totals.getDefects());
+        usage.setTotalDurationMs(totals.getDurationMs());
+        usage.setMachineCount(machineCount);
+        usage.setUtilizationPercent(machineCount > 0
+                ? round(totals.getDurationMs() * 100.0 / ((double) windowMs * machineCount))
+                : 0.0);
+        usage.setEventsPerHour(round(totals.getEvents() * (double) EventTimes.MILLIS_PER_HOUR / windowMs));
+        usage.setDefectsPer1000Events(totals.getEvents() > 0
+                ? round(totals.getDefects() * 1000.0 / totals.getEvents())
+                : 0.0);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
@@ -0,0 +1,134 @@
+package com.internshala.factory_monitoring.service;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The ingest lock, with one queue per factory in front of it served by deficit round
+ * robin.
+ *
+ * A caller that finds the lock free and nobody waiting takes it at once. Otherwise it
+ * waits in its factory's queue. Factories with waiting batches take turns. Each turn
+ * adds {@code quantum} events to a factory's deficit, and its queued batches are let
+ * in while the deficit covers their size. A factory that floods the endpoint
+ * therefore only lengthens its own queue. Another factory's batch waits for at most
+ * one turn of each busy factory, whatever their queue lengths. A factory's deficit is
+ * dropped once its queue is empty, so idle time cannot be saved up.
+ *
+ * The lock is handed directly to the next waiter, so nobody can barge in between. It
+ * is not owned by a thread: IngestPipeline takes it on one thread and may release it
+ * on another. Waiting is uninterruptible, as it was with the fair semaphore this
+ * replaces.
+ */
+final class FairIngestLock {
+
+    private static final class Waiter {
+        final int events;
+        final Condition turn;
+        boolean granted;
+
+        Waiter(int events, Condition turn) {
+            this.events = events;
+            this.turn = turn;
+        }
+    }
+
+    private static final class Queue {
+        final String key;
+        final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        long deficit;
+        // Whether the quantum of the current turn was already added
+        boolean inTurn;
+
+        Queue(String key) {
+            this.key = key;
+        }
+    }
+
+    private final long quantum;
+    private final ReentrantLock guard = new ReentrantLock();
+    private final Map<String, Queue> queues = new HashMap<>();
+    // Queues with waiters, in the order of their next turn
+    private final ArrayDeque<Queue> round = new ArrayDeque<>();
+    private boolean held;
+
+    FairIngestLock(long quantum) {
+        this.quantum = Math.max(1, quantum);
+    }
+
+    /**
+     * Waits for the lock, queued under {@code key} with a batch of {@code events} events.
+     */
+    void acquire(String key, int events) {
+        guard.lock();
+        try {
+            if (!held && round.isEmpty()) {
+                held = true;
+                return;
+            }
+            Queue queue = queues.computeIfAbsent(key, Queue::new);
+            if (queue.waiters.isEmpty()) {
+                round.addLast(queue);
+            }
+            Waiter waiter = new Waiter(Math.max(0, events), guard.newCondition());
+            queue.waiters.addLast(waiter);
+            while (!waiter.granted) {
+                waiter.turn.awaitUninterruptibly();
+            }
+        } finally {
+            guard.unlock();
+        }
+    }
+
+    void release() {
+        guard.lock();
+        try {
+            Waiter next = next();
+            if (next == null) {
+                held = false;
+            } else {
+                next.granted = true;
+                next.turn.signal();
+            }
+        } finally {
+            guard.unlock();
+        }
+    }
+
+    // Batches waiting for the lock, for tests
+    int waiting() {
+        guard.lock();
+        try {
+            return round.stream().mapToInt(queue -> queue.waiters.size()).sum();
+        } finally {
+            guard.unlock();
+        }
+    }
+
+    private Waiter next() {
+        while (!round.isEmpty()) {
+            Queue queue = round.peekFirst();
+            if (!queue.inTurn) {
+                queue.deficit += quantum;
+                queue.inTurn = true;
+            }
+            Waiter head = queue.waiters.peekFirst();
+            if (head.events <= queue.deficit) {
+                queue.deficit -= head.events;
+                queue.waiters.pollFirst();
+                if (queue.waiters.isEmpty()) {
+                    round.pollFirst();
+                    queues.remove(queue.key);
+                }
+                return head;
+            }
+            // Turn over: the rest of the deficit is kept for the next one
+            queue.inTurn = false;
+            round.addLast(round.pollFirst());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,355 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import com.internshala.factory_monitoring.util.EventTimes;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory hourly totals (events, known defects, duration) per machine, per
+ * factory line and per machine of a factory line, maintained incrementally from
+ * committed ingest changes.
+ *
+ * Every change is applied as a delta: an insert adds the new event, an update
+ * subtracts the replaced state and adds the new one, so an update that moves an
+ * event to another hour, machine or line corrects both buckets. A change that
+ * touches an hour behind the machine's watermark is counted as a late correction
+ * and bumps the revision of the affected buckets, so anything cached from them
+ * can tell it changed.
+ *
+ * Built from the database on startup, before the web server accepts requests.
+ * Retention deletes are subtracted and drop the buckets they empty; other deletes
+ * made directly through the repository are not seen.
+ *
+ * Only hours from the horizon on are held: the first whole hour younger than
+ * {@code factory.stats.rollup.max-age} (default the retention max-age). Startup
+ * reads only the events from the horizon on, changes to older hours are ignored,
+ * and every {@code factory.stats.rollup.evict-interval} the horizon moves forward
+ * and the hours behind it are dropped. Callers read windows that start before
+ * {@link #getHorizon()} from the database.
+ */
+@Component
+public class HourlyRollup implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(HourlyRollup.class);
+
+    /**
+     * Totals of one hour; updated under its own lock.
+     */
+    public static class Bucket {
+        private long events;
+        private long defects;
+        private long durationMs;
+        private long revision;
+
+        synchronized void apply(EventSnapshot event, int sign, boolean late) {
+            events += sign;
+            if (event.defectCount() >= 0) {
+                defects += (long) sign * event.defectCount();
+            }
+            durationMs += sign * event.durationMs();
+            if (late) {
+                revision++;
+            }
+        }
+
+        synchronized boolean isEmpty() {
+            return events <= 0;
+        }
+
+        synchronized void addTo(Totals totals) {
+            totals.events += events;
+            totals.defects += defects;
+            totals.durationMs += durationMs;
+        }
+
+        public synchronized long getRevision() { return revision; }
+    }
+
+    /**
+     * Sum of the buckets of a window.
+     */
+    public static class Totals {
+        private long events;
+        private long defects;
+        private long durationMs;
+
+        public long getEvents() { return events; }
+        public long getDefects() { return defects; }
+        public long getDurationMs() { return durationMs; }
+
+        void add(long events, long defects, long durationMs) {
+            this.events += events;
+            this.defects += defects;
+            this.durationMs += durationMs;
+        }
+    }
+
+    private final EventWatermarks watermarks;
+    private final MachineEventRepository repository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final Map<String, NavigableMap<Long, Bucket>> byMachine = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, NavigableMap<Long, Bucket>>> byFactoryLine = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Map<String, NavigableMap<Long, Bucket>>>> byFactoryLineMachine =
+            new ConcurrentHashMap<>();
+    private final AtomicLong lateCorrections = new AtomicLong();
+    private final Duration maxAge;
+
+    // Hours before it are not held; only moves forward
+    private volatile long horizon = Long.MIN_VALUE;
+
+    // Shared by changes, exclusive to eviction, so no change lands in a map being dropped
+    private final ReadWriteLock evictionLock = new ReentrantReadWriteLock();
+
+    public HourlyRollup(EventWatermarks watermarks, MachineEventRepository repository,
+                        EntityManager entityManager, PlatformTransactionManager transactionManager,
+                        @Value("${factory.stats.rollup.max-age:${factory.retention.max-age:P90D}}") Duration maxAge) {
+        this.watermarks = watermarks;
+        this.repository = repository;
+        this.entityManager = entityManager;
+        this.maxAge = maxAge;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        horizon = currentHorizon();
+        long events = readOnlyTransaction.execute(status -> {
+            long count = 0;
+            try (Stream<MachineEvent> stored = repository.streamSince(EventTimes.toLocalDateTime(horizon))) {
+                for (MachineEvent event : (Iterable<MachineEvent>) stored::iterator) {
+                    EventSnapshot snapshot = EventSnapshot.of(event);
+                    entityManager.detach(event);
+                    apply(snapshot, 1, false);
+                    watermarks.observe(snapshot.machineId(), snapshot.factoryId(), snapshot.eventTimeMillis());
+                    count++;
+                }
+            }
+            return count;
+        });
+        log.info("Hourly rollup built from {} stored events since {}", events, EventTimes.toLocalDateTime(horizon));
+    }
+
+    /**
+     * Moves the horizon forward and drops the hours behind it.
+     */
+    @Scheduled(fixedDelayString = "${factory.stats.rollup.evict-interval:PT10M}",
+            initialDelayString = "${factory.stats.rollup.evict-interval:PT10M}")
+    public void evictExpired() {
+        evictBefore(currentHorizon());
+    }
+
+    /**
+     * Drops the hours before {@code next}, if it is ahead of the current horizon.
+     */
+    void evictBefore(long next) {
+        if (next <= horizon) {
+            return;
+        }
+        evictionLock.writeLock().lock();
+        try {
+            horizon = next;
+            evict(byMachine, next);
+            byFactoryLine.values().removeIf(lines -> evict(lines, next));
+            byFactoryLineMachine.values().removeIf(lines -> {
+                lines.values().removeIf(machines -> evict(machines, next));
+                return lines.isEmpty();
+            });
+        } finally {
+            evictionLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * First hour (epoch millis) the rollup holds; totals of earlier hours are not kept.
+     */
+    public long getHorizon() {
+        return horizon;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEventsChanged(EventsChangedEvent change) {
+        // Lateness is judged against the watermarks from before this batch
+        for (EventChange eventChange : change.getChanges()) {
+            EventSnapshot after = EventSnapshot.of(eventChange.after());
+            EventSnapshot before = eventChange.before();
+            boolean late = watermarks.isLate(after.machineId(), after.eventTimeMillis())
+                    || (before != null && watermarks.isLate(before.machineId(), before.eventTimeMillis()));
+            if (late) {
+                lateCorrections.incrementAndGet();
+            }
+            if (before != null) {
+                apply(before, -1, late);
+            }
+            apply(after, 1, late);
+        }
+        for (EventChange eventChange : change.getChanges()) {
+            MachineEvent after = eventChange.after();
+            watermarks.observe(after.getMachineId(), after.getFactoryId(), EventTimes.toEpochMillis(after.getEventTime()));
+        }
+    }
+
+    // Runs under the ingest lock with the retention chunk, so no ingest change can land in a bucket being dropped
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEventsExpired(EventsExpiredEvent expired) {
+        for (EventSnapshot event : expired.getSnapshots()) {
+            long hour = hourOf(event.eventTimeMillis());
+            subtract(byMachine.get(event.machineId()), hour, event);
+            Map<String, NavigableMap<Long, Bucket>> lines = event.factoryId() == null ? null : byFactoryLine.get(event.factoryId());
+            if (lines != null && event.lineId() != null) {
+                subtract(lines.get(event.lineId()), hour, event);
+                Map<String, NavigableMap<Long, Bucket>> machines =
+                        byFactoryLineMachine.getOrDefault(event.factoryId(), Map.of()).get(event.lineId());
+                subtract(machines == null ? null : machines.get(event.machineId()), hour, event);
+            }
+        }
+    }
+
+    /**
+     * Totals of one machine for the hours in [fromHour, toHour), both epoch millis on hour boundaries.
+     */
+    public Totals machineTotals(String machineId, long fromHour, long toHour) {
+        Totals totals = new Totals();
+        NavigableMap<Long, Bucket> hours = byMachine.get(machineId);
+        if (hours != null) {
+            hours.subMap(fromHour, true, toHour, false).values().forEach(bucket -> bucket.addTo(totals));
+        }
+        return totals;
+    }
+
+    /**
+     * Totals of every line of a factory for the hours in [fromHour, toHour).
+     */
+    public Map<String, Totals> lineTotals(String factoryId, long fromHour, long toHour) {
+        Map<String, Totals> result = new ConcurrentHashMap<>();
+        Map<String, NavigableMap<Long, Bucket>> lines = byFactoryLine.get(factoryId);
+        if (lines != null) {
+            lines.forEach((lineId, hours) -> {
+                Totals totals = new Totals();
+                hours.subMap(fromHour, true, toHour, false).values().forEach(bucket -> bucket.addTo(totals));
+                if (totals.events > 0) {
+                    result.put(lineId, totals);
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Events of every line of a factory for the hours in [fromHour, toHour); events without a line are not counted.
+     */
+    public long factoryEvents(String factoryId, long fromHour, long toHour) {
+        long events = 0;
+        for (Totals totals : lineTotals(factoryId, fromHour, toHour).values()) {
+            events += totals.events;
+        }
+        return events;
+    }
+
+    /**
+     * Totals of every machine of every line of a factory for the hours in [fromHour, toHour),
+     * by lineId and then machineId. A machine that moved between lines is counted under each.
+     */
+    public Map<String, Map<String, Totals>> lineMachineTotals(String factoryId, long fromHour, long toHour) {
+        Map<String, Map<String, Totals>> result = new HashMap<>();
+        Map<String, Map<String, NavigableMap<Long, Bucket>>> lines = byFactoryLineMachine.get(factoryId);
+        if (lines != null) {
+            lines.forEach((lineId, machines) -> machines.forEach((machineId, hours) -> {
+                Totals totals = new Totals();
+                hours.subMap(fromHour, true, toHour, false).values().forEach(bucket -> bucket.addTo(totals));
+                if (totals.events > 0) {
+                    result.computeIfAbsent(lineId, id -> new HashMap<>()).put(machineId, totals);
+                }
+            }));
+        }
+        return result;
+    }
+
+    public long getLateCorrections() {
+        return lateCorrections.get();
+    }
+
+    private long currentHorizon() {
+        long cutoff = EventTimes.toEpochMillis(LocalDateTime.now().minus(maxAge));
+        long hour = hourOf(cutoff);
+        // The hour the cutoff falls in may already be partly deleted by retention
+        return hour == cutoff ? hour : hour + EventTimes.MILLIS_PER_HOUR;
+    }
+
+    // Drops the hours before the horizon from every machine or line; true if none is left
+    private static boolean evict(Map<String, NavigableMap<Long, Bucket>> hoursByKey, long horizon) {
+        hoursByKey.values().removeIf(hours -> {
+            hours.headMap(horizon).clear();
+            return hours.isEmpty();
+        });
+        return hoursByKey.isEmpty();
+    }
+
+    public static long hourOf(long epochMillis) {
+        return Math.floorDiv(epochMillis, EventTimes.MILLIS_PER_HOUR) * EventTimes.MILLIS_PER_HOUR;
+    }
+
+    private static void subtract(NavigableMap<Long, Bucket> hours, long hour, EventSnapshot event) {
+        Bucket bucket = hours == null ? null : hours.get(hour);
+        if (bucket == null) {
+            return;
+        }
+        bucket.apply(event, -1, false);
+        if (bucket.isEmpty()) {
+            hours.remove(hour, bucket);
+        }
+    }
+
+    private void apply(EventSnapshot event, int sign, boolean late) {
+        long hour = hourOf(event.eventTimeMillis());
+        evictionLock.readLock().lock();
+        try {
+            if (hour >= horizon) {
+                add(event, hour, sign, late);
+            }
+        } finally {
+            evictionLock.readLock().unlock();
+        }
+    }
+
+    private void add(EventSnapshot event, long hour, int sign, boolean late) {
+        byMachine.computeIfAbsent(event.machineId(), id -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(hour, h -> new Bucket())
+                .apply(event, sign, late);
+        if (event.factoryId() != null && event.lineId() != null) {
+            byFactoryLine.computeIfAbsent(event.factoryId(), id -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(event.lineId(), id -> new ConcurrentSkipListMap<>())
+                    .computeIfAbsent(hour, h -> new Bucket())
+                    .apply(event, sign, late);
+            byFactoryLineMachine.computeIfAbsent(event.factoryId(), id -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(event.lineId(), id -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(event.machineId(), id -> new ConcurrentSkipListMap<>())
+                    .computeIfAbsent(hour, h -> new Bucket())
+                    .apply(event, sign, late);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.BatchIngestResponse;
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.util.BoundedExpiringMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the responses of completed batches by idempotency key, so a retried
+ * batch gets the original response without touching the database.
+ *
+ * The first request for a key registers a pending entry and runs the ingest; a
+ * duplicate arriving meanwhile waits for that result instead of running in
+ * parallel. Failed batches are forgotten so the client can retry them, and so
+ * are batches with a chunk that failed to store: their response is returned
+ * (and shared with the duplicates already waiting), but a retry with the same
+ * key runs again and stores what is missing. Every entry keeps a fingerprint of
+ * the batch: reusing a key for a different batch is rejected rather than
+ * answered with someone else's result.
+ *
+ * Pending entries are kept apart from the completed ones, which are bounded by
+ * max-entries and ttl: a batch that runs long or arrives with many others is never
+ * forgotten while it runs, so its duplicates always wait for it.
+ */
+@Component
+public class IdempotencyStore {
+
+    /**
+     * A key was reused for a batch with different content.
+     */
+    public static class KeyReusedException extends RuntimeException {
+        public KeyReusedException(String key) {
+            super("Idempotency-Key " + key + " was already used for a different batch");
+        }
+    }
+
+    /**
+     * The request holding the key did not finish within the wait timeout.
+     */
+    public static class StillInFlightException extends RuntimeException {
+        public StillInFlightException(String key) {
+            super("A batch with Idempotency-Key " + key + " is still being processed");
+        }
+    }
+
+    private record Entry(String fingerprint, CompletableFuture<BatchIngestResponse> response) {}
+
+    // Result of execute(): the response and whether it was replayed from the store
+    public record Outcome(BatchIngestResponse response, boolean replayed) {}
+
+    // Both maps are guarded by this, so a key moves from one to the other at once
+    private final Map<String, Entry> pending = new HashMap<>();
+    private final BoundedExpiringMap<String, Entry> completed;
+    private final long waitTimeoutMillis;
+
+    public IdempotencyStore(
+            @Value("${factory.ingest.idempotency.max-entries:1000}") int maxEntries,
+            @Value("${factory.ingest.idempotency.ttl:PT10M}") Duration ttl,
+            @Value("${factory.ingest.idempotency.wait-timeout:PT30S}") Duration waitTimeout) {
+        this.completed = new BoundedExpiringMap<>(maxEntries, ttl);
+        this.waitTimeoutMillis = waitTimeout.toMillis();
+    }
+
+    public Outcome execute(String key, String fingerprint, Supplier<BatchIngestResponse> ingest) {
+        Entry mine = new Entry(fingerprint, new CompletableFuture<>());
+        Entry existing;
+        synchronized (this) {
+            existing = completed.get(key);
+            if (existing == null) {
+                existing = pending.putIfAbsent(key, mine);
+            }
+        }
+        if (existing != null) {
+            if (!existing.fingerprint().equals(fingerprint)) {
+                throw new KeyReusedException(key);
+            }
+            return new Outcome(await(key, existing), true);
+        }
+
+        try {
+            BatchIngestResponse response = ingest.get();
+            synchronized (this) {
+                pending.remove(key);
+                if (!response.isIncomplete()) {
+                    completed.put(key, mine);
+                }
+            }
+            mine.response().complete(response);
+            return new Outcome(response, false);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pending.remove(key);
+            }
+            mine.response().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private BatchIngestResponse await(String key, Entry entry) {
+        try {
+            return entry.response().get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new StillInFlightException(key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StillInFlightException(key);
+        } catch (ExecutionException e) {
+            // The first request failed; its waiters fail the same way
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * SHA-256 over every field of every event, in batch order.
+     */
+    public static String fingerprint(List<EventRequest> events) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer numbers = ByteBuffer.allocate(20);
+        for (EventRequest event : events) {
+            update(digest, event.getEventId());
+            update(digest, event.getMachineId());
+            update(digest, event.getLineId());
+            update(digest, event.getFactoryId());
+            numbers.clear();
+            numbers.putLong(event.getEventTimeMillis()).putLong(event.getDurationMs()).putInt(event.getDefectCount());
+            digest.update(numbers.array());
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+    }
+
+    // Length-prefixed so ("ab", "c") and ("a", "bc") differ; null differs from ""
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update((byte) 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) 1);
+        digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+}
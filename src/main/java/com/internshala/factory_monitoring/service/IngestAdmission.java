@@ -0,0 +1,272 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.EventRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-factory rate limit on ingested events, checked before a batch queues for
+ * the ingest lock.
+ *
+ * Each factory has a token bucket of {@code factory.admission.rates.<factoryId>}
+ * events per second (default {@code factory.admission.default-rate}) holding up to
+ * {@code factory.admission.burst} worth of events. The bucket is kept in GCRA form:
+ * a single AtomicLong with the time at which it will be full again, updated by
+ * compare-and-set, so a decision takes no lock and a few nanoseconds. A batch
+ * with more of a factory's events than its burst could never be admitted, and is
+ * refused outright rather than throttled.
+ *
+ * Events without a factoryId share one bucket at the default rate. Factories
+ * without a configured rate get their own bucket too, but at most
+ * {@code factory.admission.max-unconfigured} of them at once: buckets that are full
+ * again carry no state and are dropped to make room, and while every slot is in
+ * debt the remaining unconfigured factories share one overflow bucket. Rotating
+ * factoryIds therefore neither grows memory nor escapes the limit for long. A bucket
+ * is retired by the same compare-and-set that charges it, so a batch that looked it
+ * up just before it was dropped looks again instead of charging a bucket nobody sees.
+ *
+ * Admitted and throttled events are counted in {@code factory.ingest.admission},
+ * tagged by outcome and by factory for configured factories; all others are
+ * tagged {@code (other)}, so clients cannot create meters.
+ *
+ * Admission bounds each factory's rate. Its share of the ingest lock is bounded
+ * separately, by {@link FairIngestLock}.
+ */
+@Component
+public class IngestAdmission {
+
+    static final String NO_FACTORY = "(none)";
+    static final String OTHER = "(other)";
+
+    /**
+     * The batch would exceed a factory's rate; retry after {@link #getRetryAfterSeconds()}.
+     */
+    public static class ThrottledException extends RuntimeException {
+        private final String factoryId;
+        private final long retryAfterNanos;
+
+        public ThrottledException(String factoryId, long retryAfterNanos) {
+            super("Ingest rate of factory " + factoryId + " exceeded; retry in "
+                    + TimeUnit.NANOSECONDS.toMillis(retryAfterNanos) + " ms");
+            this.factoryId = factoryId;
+            this.retryAfterNanos = retryAfterNanos;
+        }
+
+        public String getFactoryId() { return factoryId; }
+
+        public long getRetryAfterSeconds() {
+            return Math.max(1, (retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * The batch has more of a factory's events than its burst; it has to be split.
+     */
+    public static class TooLargeException extends RuntimeException {
+        private final String factoryId;
+        private final long maxEvents;
+
+        public TooLargeException(String factoryId, int events, long maxEvents) {
+            super("Batch has " + events + " events of factory " + factoryId + ", more than its burst of "
+                    + maxEvents + "; split it");
+            this.factoryId = factoryId;
+            this.maxEvents = maxEvents;
+        }
+
+        public String getFactoryId() { return factoryId; }
+
+        public long getMaxEvents() { return maxEvents; }
+    }
+
+    // tryAcquire's answer for a bucket dropped from the unconfigured map: look it up again
+    private static final long RETIRED = -1;
+
+    private final class Bucket {
+        private final long nanosPerEvent;
+        // When the bucket will be full again (System.nanoTime); in the past means full.
+        // Long.MIN_VALUE once retired from the unconfigured map.
+        private final AtomicLong fullAt;
+        private final Counter admitted;
+        private final Counter throttled;
+
+        Bucket(String tag, double eventsPerSecond, long nowNanos) {
+            this.nanosPerEvent = Math.round(TimeUnit.SECONDS.toNanos(1) / eventsPerSecond);
+            this.fullAt = new AtomicLong(nowNanos);
+            this.admitted = counter(tag, "admitted");
+            this.throttled = counter(tag, "throttled");
+        }
+
+        long maxEvents() {
+            return burstNanos / nanosPerEvent;
+        }
+
+        // Succeeds only for a full bucket, and then no charge can land on it any more
+        boolean retireIfFull(long nowNanos) {
+            long current = fullAt.get();
+            return current <= nowNanos && fullAt.compareAndSet(current, Long.MIN_VALUE);
+        }
+
+        // 0 if the events were taken, RETIRED if the bucket was dropped, else the nanos until they could be
+        long tryAcquire(int events, long nowNanos) {
+            long cost = events * nanosPerEvent;
+            while (true) {
+                long current = fullAt.get();
+                if (current == Long.MIN_VALUE) {
+                    return RETIRED;
+                }
+                long debt = Math.max(0, current - nowNanos);
+                if (debt + cost > burstNanos) {
+                    return debt + cost - burstNanos;
+                }
+                if (fullAt.compareAndSet(current, nowNanos + debt + cost)) {
+                    return 0;
+                }
+            }
+        }
+
+        void release(int events) {
+            fullAt.getAndUpdate(current -> current == Long.MIN_VALUE ? current : current - events * nanosPerEvent);
+        }
+    }
+
+    private final boolean enabled;
+    private final double defaultRate;
+    private final long burstNanos;
+    private final int maxUnconfigured;
+    private final MeterRegistry meterRegistry;
+
+    // Factories with a configured rate, bound once at startup; their buckets are made on first use
+    private final Map<String, Double> configuredRates;
+    private final Map<String, Bucket> configured = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> unconfigured = new ConcurrentHashMap<>();
+    private Bucket overflow;
+
+    public IngestAdmission(Environment environment, MeterRegistry meterRegistry,
+                           @Value("${factory.admission.enabled:true}") boolean enabled,
+                           @Value("${factory.admission.default-rate:20000}") double defaultRate,
+                           @Value("${factory.admission.burst:PT5S}") Duration burst,
+                           @Value("${factory.admission.max-unconfigured:256}") int maxUnconfigured) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.defaultRate = defaultRate;
+        this.burstNanos = burst.toNanos();
+        this.maxUnconfigured = maxUnconfigured;
+        this.configuredRates = Binder.get(environment)
+                .bind("factory.admission.rates", Bindable.mapOf(String.class, Double.class))
+                .orElse(Map.of());
+    }
+
+    /**
+     * Takes the batch's events from the buckets of its factories, or none of them.
+     *
+     * @throws ThrottledException if a factory's bucket cannot take its events now
+     * @throws TooLargeException if a factory's events exceed what its bucket can ever hold
+     */
+    public void admit(List<EventRequest> events) {
+        admit(events, System.nanoTime());
+    }
+
+    void admit(List<EventRequest> events, long nowNanos) {
+        if (!enabled || events.isEmpty()) {
+            return;
+        }
+
+        // Gateways usually send one factory per batch; only mixed batches need the map
+        String first = factoryOf(events.get(0));
+        Map<String, Integer> perFactory = null;
+        for (int i = 1; i < events.size(); i++) {
+            String factoryId = factoryOf(events.get(i));
+            if (perFactory == null && !factoryId.equals(first)) {
+                perFactory = new HashMap<>();
+                perFactory.put(first, i);
+            }
+            if (perFactory != null) {
+                perFactory.merge(factoryId, 1, Integer::sum);
+            }
+        }
+        if (perFactory == null) {
+            perFactory = Map.of(first, events.size());
+        }
+
+        Map<Bucket, Integer> taken = new HashMap<>();
+        for (Map.Entry<String, Integer> factory : perFactory.entrySet()) {
+            Bucket bucket;
+            long wait;
+            do {
+                bucket = bucket(factory.getKey(), nowNanos);
+                if (factory.getValue() > bucket.maxEvents()) {
+                    taken.forEach(Bucket::release);
+                    perFactory.forEach((factoryId, count) -> bucket(factoryId, nowNanos).throttled.increment(count));
+                    throw new TooLargeException(factory.getKey(), factory.getValue(), bucket.maxEvents());
+                }
+                wait = bucket.tryAcquire(factory.getValue(), nowNanos);
+            } while (wait == RETIRED);
+            if (wait > 0) {
+                taken.forEach(Bucket::release);
+                perFactory.forEach((factoryId, count) -> bucket(factoryId, nowNanos).throttled.increment(count));
+                throw new ThrottledException(factory.getKey(), wait);
+            }
+            // Unconfigured factories may share the overflow bucket
+            taken.merge(bucket, factory.getValue(), Integer::sum);
+        }
+        taken.forEach((bucket, count) -> bucket.admitted.increment(count));
+    }
+
+    private Bucket bucket(String factoryId, long nowNanos) {
+        Bucket bucket = configured.get(factoryId);
+        if (bucket != null) {
+            return bucket;
+        }
+        Double rate = configuredRates.get(factoryId);
+        if (rate != null) {
+            return configured.computeIfAbsent(factoryId, id -> new Bucket(id, rate, nowNanos));
+        }
+        bucket = unconfigured.get(factoryId);
+        return bucket != null ? bucket : newUnconfiguredBucket(factoryId, nowNanos);
+    }
+
+    private synchronized Bucket newUnconfiguredBucket(String factoryId, long nowNanos) {
+        Bucket bucket = unconfigured.get(factoryId);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (unconfigured.size() >= maxUnconfigured) {
+            unconfigured.values().removeIf(idle -> idle.retireIfFull(nowNanos));
+            if (unconfigured.size() >= maxUnconfigured) {
+                if (overflow == null) {
+                    overflow = new Bucket(OTHER, defaultRate, nowNanos);
+                }
+                return overflow;
+            }
+        }
+        bucket = new Bucket(NO_FACTORY.equals(factoryId) ? NO_FACTORY : OTHER, defaultRate, nowNanos);
+        unconfigured.put(factoryId, bucket);
+        return bucket;
+    }
+
+    private Counter counter(String tag, String outcome) {
+        return Counter.builder("factory.ingest.admission")
+                .description("Events admitted to or throttled at batch ingest")
+                .baseUnit("events")
+                .tag("factory", tag)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static String factoryOf(EventRequest event) {
+        return event.getFactoryId() != null ? event.getFactoryId() : NO_FACTORY;
+    }
+}
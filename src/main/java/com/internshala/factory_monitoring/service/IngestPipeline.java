@@ -0,0 +1,496 @@
+package com.internshala.factory_monitoring.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.internshala.factory_monitoring.dto.BatchIngestResponse;
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.dto.RejectionMode;
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.util.EventTimes;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Batch ingest as three overlapping stages: parsing the request body, classifying
+ * chunks against the stored state, and writing them. While chunk N is written,
+ * chunk N+1 is classified and chunk N+2 parsed.
+ *
+ * The request thread reads the body with Jackson's streaming parser, checks every
+ * event as {@code @Valid} would, and cuts the events into chunks of
+ * {@link ChunkSizer#current()}. Each chunk passes the admission check before it is
+ * handed on. A classify thread looks its events up and classifies them, and a write
+ * thread stores the chunk in its own transaction. Every hand-off is a queue of one
+ * chunk, so a request holds a few chunks in memory whatever its size, and a slow
+ * stage slows down the stages before it.
+ *
+ * The batch has one clock reading and resolves repeated eventIds in batch order, as
+ * {@link EventService#ingestBatch} does. A chunk is classified before the chunks
+ * ahead of it have committed, so the events those chunks are writing stand in for the
+ * stored state. Once a chunk needs a retry or fails, that stand-in may be wrong, and
+ * the rest of the batch is classified inside each chunk's transaction instead.
+ *
+ * The ingest lock is taken when the first chunk is classified. When the pipeline runs
+ * dry waiting for the body, it is released once the chunks handed on are written, so a
+ * slow sender does not hold up other batches.
+ *
+ * An invalid event, malformed JSON or a throttled chunk ends the request. Chunks not
+ * yet handed on are dropped, and those already handed on are not written but listed
+ * as SKIPPED. If nothing was committed by then, the error is thrown as is. Otherwise
+ * it comes as a {@link PartlyStoredException} with the response for the chunks
+ * written, which says where the batch stopped.
+ *
+ * Every request in flight takes two stage threads. The pool has two per request
+ * thread ({@code server.tomcat.threads.max}), which the stream endpoint runs on; a
+ * request that finds it full anyway is refused with {@link BusyException}.
+ */
+@Service
+@Profile("!reactive")
+public class IngestPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestPipeline.class);
+
+    /**
+     * The body is not a JSON array of valid events.
+     */
+    public static class InvalidBodyException extends RuntimeException {
+        public InvalidBodyException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * The batch stopped early but some chunks were committed; the response covers them.
+     */
+    public static class PartlyStoredException extends RuntimeException {
+        private final BatchIngestResponse response;
+
+        public PartlyStoredException(BatchIngestResponse response, RuntimeException cause) {
+            super("Batch stopped at event " + response.getStoppedAt() + ": " + cause.getMessage(), cause);
+            this.response = response;
+        }
+
+        public BatchIngestResponse getResponse() { return response; }
+    }
+
+    /**
+     * Every stage thread is taken; retry after {@link #getRetryAfterSeconds()}.
+     */
+    public static class BusyException extends RuntimeException {
+        public BusyException(int maxThreads) {
+            super("All " + maxThreads + " ingest pipeline threads are busy");
+        }
+
+        public long getRetryAfterSeconds() { return 1; }
+    }
+
+    // A run of events from the body; classification is null when the write stage classifies it
+    private static final class Chunk {
+        private final List<EventRequest> events;
+        private final int offset;
+        private BatchClassifier.Classification classification;
+        private long classifyNanos;
+
+        Chunk(List<EventRequest> events, int offset) {
+            this.events = events;
+            this.offset = offset;
+        }
+    }
+
+    private static final Chunk END = new Chunk(List.of(), -1);
+
+    private final EventService eventService;
+    private final IngestAdmission ingestAdmission;
+    private final ChunkSizer chunkSizer;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader eventReader;
+    private final Validator validator;
+    // Two threads per request in flight, started on demand and stopped when idle
+    private final ThreadPoolExecutor stages;
+
+    public IngestPipeline(EventService eventService, IngestAdmission ingestAdmission, ChunkSizer chunkSizer,
+                          ObjectMapper objectMapper, Validator validator,
+                          @Value("${server.tomcat.threads.max:200}") int requestThreads) {
+        this.eventService = eventService;
+        this.ingestAdmission = ingestAdmission;
+        this.chunkSizer = chunkSizer;
+        this.objectMapper = objectMapper;
+        this.eventReader = objectMapper.readerFor(EventRequest.class);
+        this.validator = validator;
+        int maxThreads = 2 * Math.max(1, requestThreads);
+        this.stages = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "ingest-pipeline");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.stages.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Stores a JSON array of events read from the body as one batch.
+     *
+     * @throws InvalidBodyException if the body is not a JSON array of valid events, and
+     *                              no chunk was committed before the bad event
+     * @throws IngestAdmission.ThrottledException if a chunk exceeds its factory's rate, and
+     *                                            no chunk was committed before it
+     * @throws IngestAdmission.TooLargeException if a chunk exceeds its factory's burst, and
+     *                                           no chunk was committed before it
+     * @throws PartlyStoredException if either happens after some chunks were committed
+     * @throws BusyException if no stage threads are free
+     */
+    public BatchIngestResponse ingest(InputStream body, RejectionMode rejectionMode) throws IOException {
+        Run run = new Run(EventTimes.toEpochMillis(LocalDateTime.now()));
+        Future<?> classify;
+        Future<?> write;
+        try {
+            classify = stages.submit(run::classifyStage);
+        } catch (RejectedExecutionException e) {
+            throw new BusyException(stages.getMaximumPoolSize());
+        }
+        try {
+            write = stages.submit(run::writeStage);
+        } catch (RejectedExecutionException e) {
+            put(run.parsed, END);
+            await(classify);
+            throw new BusyException(stages.getMaximumPoolSize());
+        }
+        try {
+            run.parse(body);
+        } catch (IOException | RuntimeException e) {
+            run.fail(e);
+        } finally {
+            put(run.parsed, END);
+            await(classify);
+            await(write);
+        }
+
+        Throwable failure = run.failure.get();
+        if (failure instanceof IOException e) {
+            throw e;
+        }
+        boolean stopped = failure instanceof InvalidBodyException
+                || failure instanceof IngestAdmission.ThrottledException
+                || failure instanceof IngestAdmission.TooLargeException;
+        if (failure != null && (!stopped || run.chunks.stream().noneMatch(
+                chunk -> BatchIngestResponse.ChunkOutcome.COMMITTED.equals(chunk.getStatus())))) {
+            throw (RuntimeException) failure;
+        }
+
+        BatchIngestResponse response = run.response;
+        // A batch that stopped lists its chunks, so the client sees what was committed
+        response.setChunks(run.chunks.size() > 1 || stopped ? run.chunks : null);
+        eventService.reportRejections(response, run.rejections, rejectionMode);
+        log.info("Pipelined batch complete: accepted={}, deduped={}, updated={}, rejected={}, chunks={}",
+                response.getAccepted(), response.getDeduped(), response.getUpdated(), response.getRejected(),
+                run.chunks.size());
+        if (stopped) {
+            // The first event of the first chunk not written, or the one after the last chunk
+            BatchIngestResponse.ChunkOutcome last = run.chunks.get(run.chunks.size() - 1);
+            response.setStoppedAt(run.chunks.stream()
+                    .filter(chunk -> BatchIngestResponse.ChunkOutcome.SKIPPED.equals(chunk.getStatus()))
+                    .mapToInt(BatchIngestResponse.ChunkOutcome::getOffset)
+                    .findFirst().orElse(last.getOffset() + last.getSize()));
+            response.setError(failure.getMessage());
+            throw new PartlyStoredException(response, (RuntimeException) failure);
+        }
+        return response;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stages.shutdown();
+        stages.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    // State of one request, shared by its three stages
+    private final class Run {
+        private final long nowMillis;
+        private final BlockingQueue<Chunk> parsed = new ArrayBlockingQueue<>(1);
+        private final BlockingQueue<Chunk> classified = new ArrayBlockingQueue<>(1);
+        // Chunks the write stage is done with, stored or not
+        private final AtomicInteger writtenCount = new AtomicInteger();
+        private final Semaphore written = new Semaphore(0);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        // Set by the write stage once a chunk was retried or failed
+        private volatile boolean classifyInTransaction;
+
+        // Written by the write stage only, read after it has finished
+        private final BatchIngestResponse response = new BatchIngestResponse();
+        private final List<BatchIngestResponse.ChunkOutcome> chunks = new ArrayList<>();
+        private final RejectionLog rejections = new RejectionLog();
+
+        Run(long nowMillis) {
+            this.nowMillis = nowMillis;
+        }
+
+        void fail(Throwable e) {
+            failure.compareAndSet(null, e);
+        }
+
+        boolean failed() {
+            return failure.get() != null;
+        }
+
+        void parse(InputStream body) throws IOException {
+            int index = 0;
+            try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new InvalidBodyException("The body must be a JSON array of events", null);
+                }
+                int offset = 0;
+                List<EventRequest> events = new ArrayList<>(chunkSizer.current());
+                for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                    if (token == null) {
+                        throw new InvalidBodyException("The body ends inside the array of events", null);
+                    }
+                    EventRequest event = eventReader.readValue(parser);
+                    validate(event, index++);
+                    events.add(event);
+                    if (events.size() >= chunkSizer.current()) {
+                        handOff(events, offset);
+                        offset += events.size();
+                        events = new ArrayList<>(chunkSizer.current());
+                    }
+                    if (failed()) {
+                        return;
+                    }
+                }
+                if (!events.isEmpty()) {
+                    handOff(events, offset);
+                }
+            } catch (JsonProcessingException e) {
+                throw new InvalidBodyException("Malformed event at index " + index + ": " + e.getOriginalMessage(), e);
+            }
+        }
+
+        private void validate(EventRequest event, int index) {
+            Set<ConstraintViolation<EventRequest>> violations = validator.validate(event);
+            if (!violations.isEmpty()) {
+                throw new InvalidBodyException("Invalid event at index " + index + ": " + violations.stream()
+                        .map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(", ")), null);
+            }
+        }
+
+        private void handOff(List<EventRequest> events, int offset) {
+            ingestAdmission.admit(events);
+            put(parsed, new Chunk(events, offset));
+        }
+
+        void classifyStage() {
+            boolean locked = false;
+            int handed = 0;
+            int awaited = 0;
+            // Events of the chunks handed on that may not have committed yet, by chunk number
+            Deque<Map.Entry<Integer, Map<String, MachineEvent>>> pending = new ArrayDeque<>();
+            try {
+                while (true) {
+                    Chunk chunk = parsed.poll();
+                    if (chunk == null && locked) {
+                        // Waiting for the body: let other batches in once everything handed on is written
+                        acquire(written, handed - awaited);
+                        awaited = handed;
+                        pending.clear();
+                        eventService.unlockIngest();
+                        locked = false;
+                    }
+                    if (chunk == null) {
+                        chunk = take(parsed);
+                    }
+                    if (chunk == END) {
+                        break;
+                    }
+                    if (failed()) {
+                        continue;
+                    }
+                    if (!locked) {
+                        eventService.lockIngest(chunk.events);
+                        locked = true;
+                    }
+                    if (!classifyInTransaction) {
+                        classify(chunk, pending);
+                        if (chunk.classification != null) {
+                            pending.addLast(Map.entry(handed, written(chunk.classification)));
+                        }
+                    }
+                    put(classified, chunk);
+                    handed++;
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+                // Keep taking chunks so the parser never waits on a stage that has stopped
+                for (Chunk chunk = take(parsed); chunk != END; chunk = take(parsed)) {
+                    // dropped
+                }
+            } finally {
+                put(classified, END);
+                if (locked) {
+                    acquire(written, handed - awaited);
+                    eventService.unlockIngest();
+                }
+            }
+        }
+
+        private void classify(Chunk chunk, Deque<Map.Entry<Integer, Map<String, MachineEvent>>> pending) {
+            // Chunks already written are visible to the lookup itself
+            int done = writtenCount.get();
+            pending.removeIf(entry -> entry.getKey() < done);
+            Map<String, MachineEvent> standIn = new HashMap<>();
+            for (Map.Entry<Integer, Map<String, MachineEvent>> entry : pending) {
+                standIn.putAll(entry.getValue());
+            }
+            long started = System.nanoTime();
+            try {
+                chunk.classification = eventService.classifyAhead(chunk.events, nowMillis, standIn);
+            } catch (DataAccessException | TransactionException e) {
+                // Classified again in the write transaction, where a failure fails the chunk
+                log.warn("Could not classify chunk at offset {} ahead of its write", chunk.offset, e);
+            }
+            chunk.classifyNanos = System.nanoTime() - started;
+        }
+
+        private Map<String, MachineEvent> written(BatchClassifier.Classification classification) {
+            Map<String, MachineEvent> events = new HashMap<>();
+            for (MachineEvent event : classification.getToInsert()) {
+                events.put(event.getEventId(), event);
+            }
+            for (MachineEvent event : classification.getToUpdate()) {
+                events.put(event.getEventId(), event);
+            }
+            return events;
+        }
+
+        void writeStage() {
+            try {
+                for (Chunk chunk = take(classified); chunk != END; chunk = take(classified)) {
+                    writeOrSkip(chunk);
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+                // Keep taking chunks so the classify stage gets the permits it waits for under the ingest lock
+                for (Chunk chunk = takeUninterruptibly(classified); chunk != END;
+                     chunk = takeUninterruptibly(classified)) {
+                    writeOrSkip(chunk);
+                }
+            }
+        }
+
+        private void writeOrSkip(Chunk chunk) {
+            try {
+                if (failed()) {
+                    skip(chunk);
+                } else {
+                    write(chunk);
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+            } finally {
+                writtenCount.incrementAndGet();
+                written.release();
+            }
+        }
+
+        private void skip(Chunk chunk) {
+            BatchIngestResponse.ChunkOutcome outcome = new BatchIngestResponse.ChunkOutcome();
+            outcome.setOffset(chunk.offset);
+            outcome.setSize(chunk.events.size());
+            outcome.setStatus(BatchIngestResponse.ChunkOutcome.SKIPPED);
+            chunks.add(outcome);
+        }
+
+        private void write(Chunk chunk) {
+            BatchClassifier.Classification classification = classifyInTransaction ? null : chunk.classification;
+            BatchIngestResponse.ChunkOutcome outcome = eventService.storeChunk(chunk.events, chunk.offset, nowMillis,
+                    classification, classification != null ? chunk.classifyNanos : 0, rejections, false);
+            if (classification == null || outcome.getRetries() > 0
+                    || BatchIngestResponse.ChunkOutcome.FAILED.equals(outcome.getStatus())) {
+                classifyInTransaction = true;
+            }
+            chunks.add(outcome);
+            EventService.addOutcome(response, outcome);
+        }
+    }
+
+    private static <T> void put(BlockingQueue<T> queue, T item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while handing a chunk on", e);
+        }
+    }
+
+    private static <T> T take(BlockingQueue<T> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a chunk", e);
+        }
+    }
+
+    private static <T> T takeUninterruptibly(BlockingQueue<T> queue) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void acquire(Semaphore semaphore, int permits) {
+        semaphore.acquireUninterruptibly(permits);
+    }
+
+    private static void await(Future<?> stage) {
+        try {
+            stage.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ingest pipeline stage failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the ingest pipeline", e);
+        }
+    }
+}
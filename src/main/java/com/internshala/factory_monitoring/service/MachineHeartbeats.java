@@ -0,0 +1,244 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.FleetResponse;
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.entity.MachineHeartbeat;
+import com.internshala.factory_monitoring.repo.MachineHeartbeatRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latest state of every machine ({@link MachineHeartbeat}), stored in the
+ * machine_heartbeats table and mirrored in memory so the fleet overview needs no query.
+ *
+ * Each ingest chunk folds its inserts and updates into one delta per machine and
+ * applies them with one batched MERGE in the chunk's transaction. The MERGE adds the
+ * counts to the stored row and keeps the later eventTime, so it commutes: another
+ * instance writing the same machine waits for the row lock instead of failing a
+ * version check. Deltas are applied in machineId order, so two chunks never lock
+ * the same rows in opposite orders.
+ *
+ * The touched rows are read back in the same transaction and put into the mirror
+ * after commit. The mirror is loaded from the table on startup and reloaded every
+ * {@code factory.heartbeat.refresh}, which picks up other instances' writes.
+ *
+ * An update that moves an event to another machine moves its counts; the
+ * latest-event fields only move forward in eventTime. Retention does not change
+ * heartbeats, so the counts cover expired events too.
+ */
+@Component
+public class MachineHeartbeats implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(MachineHeartbeats.class);
+
+    // A delta with no event (one that only moved events away) carries a NULL lastEventTime
+    private static final String MERGE_SQL =
+            "MERGE INTO machine_heartbeats t USING (SELECT CAST(? AS VARCHAR) machine_id, " +
+            "CAST(? AS VARCHAR) line_id, CAST(? AS VARCHAR) factory_id, CAST(? AS VARCHAR) last_event_id, " +
+            "CAST(? AS TIMESTAMP(6)) last_event_time, CAST(? AS TIMESTAMP(6)) last_received_time, " +
+            "CAST(? AS BIGINT) event_count, CAST(? AS BIGINT) defect_count) s ON t.machine_id = s.machine_id " +
+            "WHEN MATCHED THEN UPDATE SET " +
+            "line_id = CASE WHEN s.last_event_time >= t.last_event_time THEN s.line_id ELSE t.line_id END, " +
+            "factory_id = CASE WHEN s.last_event_time >= t.last_event_time THEN s.factory_id ELSE t.factory_id END, " +
+            "last_event_id = CASE WHEN s.last_event_time >= t.last_event_time THEN s.last_event_id ELSE t.last_event_id END, " +
+            "last_event_time = GREATEST(t.last_event_time, COALESCE(s.last_event_time, t.last_event_time)), " +
+            "last_received_time = GREATEST(t.last_received_time, COALESCE(s.last_received_time, t.last_received_time)), " +
+            "event_count = t.event_count + s.event_count, defect_count = t.defect_count + s.defect_count, " +
+            "revision = t.revision + 1 " +
+            "WHEN NOT MATCHED AND s.last_event_time IS NOT NULL THEN INSERT (machine_id, line_id, factory_id, " +
+            "last_event_id, last_event_time, last_received_time, event_count, defect_count, revision) " +
+            "VALUES (s.machine_id, s.line_id, s.factory_id, s.last_event_id, s.last_event_time, " +
+            "s.last_received_time, s.event_count, s.defect_count, 1)";
+
+    // Immutable mirror entry
+    record State(String machineId, String lineId, String factoryId, String lastEventId,
+                 LocalDateTime lastEventTime, LocalDateTime lastReceivedTime,
+                 long eventCount, long defectCount, long revision) {
+
+        static State of(MachineHeartbeat row) {
+            return new State(row.getMachineId(), row.getLineId(), row.getFactoryId(), row.getLastEventId(),
+                    row.getLastEventTime(), row.getLastReceivedTime(), row.getEventCount(), row.getDefectCount(),
+                    row.getRevision());
+        }
+    }
+
+    /**
+     * Heartbeats upserted by a chunk, installed in the mirror once it commits.
+     */
+    record Updated(List<State> states) {}
+
+    // Changes of one machine within a chunk
+    private static final class Delta {
+        private String lineId;
+        private String factoryId;
+        private String lastEventId;
+        private LocalDateTime lastEventTime;
+        private LocalDateTime lastReceivedTime;
+        private long events;
+        private long defects;
+
+        void add(MachineEvent event) {
+            events++;
+            defects += Math.max(0, event.getDefectCount());
+            if (lastReceivedTime == null || event.getReceivedTime().isAfter(lastReceivedTime)) {
+                lastReceivedTime = event.getReceivedTime();
+            }
+            if (lastEventTime == null || !event.getEventTime().isBefore(lastEventTime)) {
+                lastEventTime = event.getEventTime();
+                lastEventId = event.getEventId();
+                lineId = event.getLineId();
+                factoryId = event.getFactoryId();
+            }
+        }
+
+        void remove(EventSnapshot event) {
+            events--;
+            defects -= Math.max(0, event.defectCount());
+        }
+
+        Object[] toParameters(String machineId) {
+            return new Object[]{machineId, lineId, factoryId, lastEventId,
+                    lastEventTime == null ? null : Timestamp.valueOf(lastEventTime),
+                    lastReceivedTime == null ? null : Timestamp.valueOf(lastReceivedTime),
+                    events, defects};
+        }
+    }
+
+    private final MachineHeartbeatRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration staleAfter;
+
+    private final Map<String, State> states = new ConcurrentHashMap<>();
+
+    public MachineHeartbeats(MachineHeartbeatRepository repository, DataSource dataSource,
+                             ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager,
+                             @Value("${factory.heartbeat.stale-after:PT15M}") Duration staleAfter) {
+        this.repository = repository;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.eventPublisher = eventPublisher;
+        // Not read-only: the replica carries machine_events only, heartbeats are read from the primary
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.staleAfter = staleAfter;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        log.info("Machine heartbeats loaded for {} machines", reload());
+    }
+
+    @Scheduled(fixedDelayString = "${factory.heartbeat.refresh:PT30S}",
+            initialDelayString = "${factory.heartbeat.refresh:PT30S}")
+    public void scheduledReload() {
+        reload();
+    }
+
+    /**
+     * Upserts the heartbeats of the machines a chunk inserted or updated. Runs in the chunk's transaction.
+     */
+    void record(BatchClassifier.Classification classification) {
+        Map<String, Delta> deltas = new TreeMap<>();
+        for (MachineEvent inserted : classification.getToInsert()) {
+            deltas.computeIfAbsent(inserted.getMachineId(), id -> new Delta()).add(inserted);
+        }
+        for (int i = 0; i < classification.getToUpdate().size(); i++) {
+            EventSnapshot before = classification.getReplaced().get(i);
+            MachineEvent after = classification.getToUpdate().get(i);
+            deltas.computeIfAbsent(before.machineId(), id -> new Delta()).remove(before);
+            deltas.computeIfAbsent(after.getMachineId(), id -> new Delta()).add(after);
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(MERGE_SQL, deltas.entrySet().stream()
+                .map(delta -> delta.getValue().toParameters(delta.getKey()))
+                .toList());
+        List<State> updated = repository.findAllById(deltas.keySet()).stream().map(State::of).toList();
+        eventPublisher.publishEvent(new Updated(updated));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUpdated(Updated updated) {
+        updated.states().forEach(this::install);
+    }
+
+    /**
+     * Latest state of every machine, or of the machines whose latest event is from {@code factoryId}.
+     */
+    public FleetResponse fleet(String factoryId) {
+        LocalDateTime now = LocalDateTime.now();
+        List<FleetResponse.MachineState> machines = new ArrayList<>();
+        int stale = 0;
+        for (State state : states.values()) {
+            if (factoryId != null && !factoryId.equals(state.factoryId())) {
+                continue;
+            }
+            FleetResponse.MachineState machine = toMachineState(state, now);
+            if (machine.isStale()) {
+                stale++;
+            }
+            machines.add(machine);
+        }
+        machines.sort(Comparator.comparing(FleetResponse.MachineState::getMachineId));
+
+        FleetResponse response = new FleetResponse();
+        response.setFactoryId(factoryId);
+        response.setGeneratedAt(now.truncatedTo(ChronoUnit.SECONDS));
+        response.setStaleAfterSeconds(staleAfter.toSeconds());
+        response.setMachineCount(machines.size());
+        response.setStaleCount(stale);
+        response.setMachines(machines);
+        return response;
+    }
+
+    private int reload() {
+        List<MachineHeartbeat> rows = transactionTemplate.execute(status -> repository.findAll());
+        rows.forEach(row -> install(State.of(row)));
+        return rows.size();
+    }
+
+    // Keeps the newer of the mirrored and the given state; reloads can race with after-commit updates
+    private void install(State state) {
+        states.merge(state.machineId(), state,
+                (current, candidate) -> candidate.revision() >= current.revision() ? candidate : current);
+    }
+
+    private FleetResponse.MachineState toMachineState(State state, LocalDateTime now) {
+        long silentSeconds = Math.max(0, ChronoUnit.SECONDS.between(state.lastReceivedTime(), now));
+        FleetResponse.MachineState machine = new FleetResponse.MachineState();
+        machine.setMachineId(state.machineId());
+        machine.setFactoryId(state.factoryId());
+        machine.setLineId(state.lineId());
+        machine.setLastEventId(state.lastEventId());
+        machine.setLastEventTime(state.lastEventTime());
+        machine.setLastReceivedTime(state.lastReceivedTime());
+        machine.setEventCount(state.eventCount());
+        machine.setDefectCount(state.defectCount());
+        machine.setSilentSeconds(silentSeconds);
+        machine.setStale(silentSeconds > staleAfter.toSeconds());
+        return machine;
+    }
+}
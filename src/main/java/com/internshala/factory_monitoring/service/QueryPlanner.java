@@ -0,0 +1,401 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.util.EventTimes;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongFunction;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Decides how a stats query is answered, from an estimate of the rows it would read.
+ *
+ * The estimate is the number of events the hourly rollup holds for the hours the
+ * window touches, so it costs no query. A window of at most
+ * {@code factory.query.max-rows} rows is read from the database as before. A larger
+ * one is answered from the rollup when that is exact: the rollup is trusted
+ * ({@code factory.stats.serve-final-from-rollup}), and the rows left for the database
+ * (partial hours at the edges, hours not yet final) are within max-rows again.
+ * Otherwise a window of at most {@code factory.query.reject-rows} rows is run as a
+ * heavy query: at most {@code factory.query.heavy.max-concurrent} at a time, waiting
+ * up to {@code factory.query.heavy.max-wait} for a slot, in a transaction that
+ * times out after {@code factory.query.heavy.timeout}. Larger windows are refused.
+ *
+ * Final, hour-aligned windows are answered from a trusted rollup whatever their size,
+ * as they always were. Every decision is counted in {@code factory.query.routes},
+ * tagged by query and route, and heavy queries in {@code factory.query.heavy}, tagged
+ * by outcome.
+ *
+ * The rollup only sees this instance's writes (and what was stored at startup), so
+ * with several instances on one database it is low by their share. Nothing is
+ * answered from it unless {@code factory.stats.serve-final-from-rollup} says this
+ * instance is the single writer. When {@code factory.stats.multi-writer} says other
+ * instances write too, a plan that would read the database on a small estimate is
+ * only settled by {@link #execute}: it first counts the window, stopping after
+ * max-rows + 1 rows, in a read-only transaction (so on the replica when there is one)
+ * that times out after {@code factory.query.count-timeout}. A window the other
+ * instances filled, or one too large to count in time, then runs as a heavy query.
+ * A single writer pays for no count.
+ *
+ * The rollup holds no hours before its horizon ({@link HourlyRollup#getHorizon()}).
+ * A window starting earlier is estimated low as well and checked the same way,
+ * whoever writes, and only its hours from the horizon on can come from the rollup.
+ */
+@Component
+public class QueryPlanner {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryPlanner.class);
+
+    public enum Route { DATABASE, ROLLUP, HEAVY }
+
+    /**
+     * The window would read more rows than any query may; narrow it.
+     */
+    public static class TooExpensiveException extends RuntimeException {
+        public TooExpensiveException(String query, long estimatedRows, long maxRows) {
+            super("The window of " + query + " would read about " + estimatedRows + " events, more than "
+                    + maxRows + "; narrow the window");
+        }
+    }
+
+    /**
+     * Every heavy-query slot stayed busy; retry after {@link #getRetryAfterSeconds()}.
+     */
+    public static class BusyException extends RuntimeException {
+        private final long retryAfterSeconds;
+
+        public BusyException(String query, long retryAfterSeconds) {
+            super("Too many expensive queries are running; retry " + query + " in " + retryAfterSeconds + " s");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() { return retryAfterSeconds; }
+    }
+
+    /**
+     * A heavy query ran out of time and was cancelled.
+     */
+    public static class TimedOutException extends RuntimeException {
+        public TimedOutException(String query, Duration timeout, Throwable cause) {
+            super("The " + query + " query did not finish within " + timeout + "; narrow the window", cause);
+        }
+    }
+
+    /**
+     * How one query is answered. With {@link Route#ROLLUP}, the whole hours in
+     * [rollupFrom, rollupTo) come from the rollup and the rest of the window from the database.
+     */
+    public static final class Plan {
+        private final String query;
+        private final Route route;
+        private final long estimatedRows;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final long rollupFrom;
+        private final long rollupTo;
+        // Plans the query again from counted rows; null once the plan is settled
+        private final LongFunction<Plan> recount;
+
+        Plan(String query, Route route, long estimatedRows, LocalDateTime start, LocalDateTime end,
+             long rollupFrom, long rollupTo) {
+            this(query, route, estimatedRows, start, end, rollupFrom, rollupTo, null);
+        }
+
+        private Plan(String query, Route route, long estimatedRows, LocalDateTime start, LocalDateTime end,
+                     long rollupFrom, long rollupTo, LongFunction<Plan> recount) {
+            this.query = query;
+            this.route = route;
+            this.estimatedRows = estimatedRows;
+            this.start = start;
+            this.end = end;
+            this.rollupFrom = rollupFrom;
+            this.rollupTo = rollupTo;
+            this.recount = recount;
+        }
+
+        /**
+         * Whether the estimate still has to be checked with a database count before the query runs.
+         */
+        public boolean needsCount() {
+            return recount != null;
+        }
+
+        public Route getRoute() { return route; }
+        public long getEstimatedRows() { return estimatedRows; }
+        public long getRollupFrom() { return rollupFrom; }
+        public long getRollupTo() { return rollupTo; }
+
+        public boolean usesRollup() {
+            return route == Route.ROLLUP;
+        }
+
+        public long getRollupHours() {
+            return usesRollup() ? (rollupTo - rollupFrom) / EventTimes.MILLIS_PER_HOUR : 0;
+        }
+
+        /**
+         * The parts of the window to read from the database, as [start, end) pairs.
+         */
+        public void forEachDatabaseRange(BiConsumer<LocalDateTime, LocalDateTime> range) {
+            if (!usesRollup()) {
+                range.accept(start, end);
+                return;
+            }
+            LocalDateTime rollupStart = EventTimes.toLocalDateTime(rollupFrom);
+            LocalDateTime rollupEnd = EventTimes.toLocalDateTime(rollupTo);
+            if (start.isBefore(rollupStart)) {
+                range.accept(start, rollupStart);
+            }
+            if (rollupEnd.isBefore(end)) {
+                range.accept(rollupEnd, end);
+            }
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final HourlyRollup rollup;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate heavyTransaction;
+    private final TransactionTemplate countTransaction;
+    private final boolean serveFinalFromRollup;
+    private final boolean multiWriter;
+    private final Duration countTimeout;
+    private final long maxRows;
+    private final long rejectRows;
+    private final Semaphore heavySlots;
+    private final int maxConcurrentHeavy;
+    private final Duration heavyMaxWait;
+    private final Duration heavyTimeout;
+
+    public QueryPlanner(MeterRegistry meterRegistry, HourlyRollup rollup, PlatformTransactionManager transactionManager,
+                        @Value("${factory.stats.serve-final-from-rollup:false}") boolean serveFinalFromRollup,
+                        @Value("${factory.stats.multi-writer:false}") boolean multiWriter,
+                        @Value("${factory.query.count-timeout:PT5S}") Duration countTimeout,
+                        @Value("${factory.query.max-rows:500000}") long maxRows,
+                        @Value("${factory.query.reject-rows:20000000}") long rejectRows,
+                        @Value("${factory.query.heavy.max-concurrent:2}") int maxConcurrentHeavy,
+                        @Value("${factory.query.heavy.max-wait:PT1S}") Duration heavyMaxWait,
+                        @Value("${factory.query.heavy.timeout:PT30S}") Duration heavyTimeout) {
+        this.meterRegistry = meterRegistry;
+        this.rollup = rollup;
+        this.serveFinalFromRollup = serveFinalFromRollup;
+        this.multiWriter = multiWriter;
+        this.countTimeout = countTimeout;
+        this.maxRows = maxRows;
+        this.rejectRows = Math.max(maxRows, rejectRows);
+        this.maxConcurrentHeavy = Math.max(1, maxConcurrentHeavy);
+        this.heavySlots = new Semaphore(this.maxConcurrentHeavy, true);
+        this.heavyMaxWait = heavyMaxWait;
+        this.heavyTimeout = heavyTimeout;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.countTransaction = new TransactionTemplate(transactionManager);
+        this.countTransaction.setReadOnly(true);
+        this.countTransaction.setTimeout(wholeSeconds(countTimeout));
+        // Spring applies the remaining transaction time to every query as its JDBC timeout (whole seconds)
+        this.heavyTransaction = new TransactionTemplate(transactionManager);
+        this.heavyTransaction.setReadOnly(true);
+        this.heavyTransaction.setTimeout(wholeSeconds(heavyTimeout));
+        Gauge.builder("factory.query.heavy.active", heavySlots,
+                        slots -> this.maxConcurrentHeavy - slots.availablePermits())
+                .description("Heavy queries running now")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Plans a query over [start, end). When its estimate has to be checked first
+     * ({@link Plan#needsCount()}), the plan is only settled by {@link #execute} or
+     * {@link #executeReactive}.
+     *
+     * @param watermark the event-time watermark the window is final against
+     * @param rollupExact whether the caller can answer whole hours from the rollup
+     * @param rows events the rollup holds for the hours in [fromHour, toHour)
+     * @throws TooExpensiveException if the window would read more than reject-rows rows
+     */
+    public Plan plan(String query, LocalDateTime start, LocalDateTime end, long watermark, boolean rollupExact,
+                     LongBinaryOperator rows) {
+        long startMillis = EventTimes.toEpochMillis(start);
+        long estimate = rows.applyAsLong(HourlyRollup.hourOf(startMillis), ceilHour(EventTimes.toEpochMillis(end)));
+        Plan plan = decide(query, start, end, watermark, rollupExact, rows, estimate);
+        boolean held = HourlyRollup.hourOf(startMillis) >= rollup.getHorizon();
+        if (plan.route == Route.DATABASE && (multiWriter || !held)) {
+            // The rollup may miss other instances' writes, or hours before its horizon. It is only ever
+            // low, so only a plan trusting a small estimate needs checking.
+            return new Plan(query, plan.route, estimate, start, end, 0, 0, counted ->
+                    decide(query, start, end, watermark, rollupExact, rows, Math.max(estimate, counted)));
+        }
+        return settle(plan);
+    }
+
+    /**
+     * Runs a planned query with the plan it settles on, in a read-only transaction. A
+     * plan that needs a count first counts the window up to max-rows + 1 rows in a
+     * read-only transaction with the count timeout. A heavy query first takes a slot
+     * and runs with the heavy timeout.
+     *
+     * @param countRows events the database holds for the window, counted up to the given limit
+     * @throws BusyException if no heavy slot frees up within max-wait
+     * @throws TimedOutException if a heavy query runs out of time
+     */
+    public <T> T execute(Plan plan, LongUnaryOperator countRows, Function<Plan, T> query) {
+        Plan settled = plan.needsCount() ? recount(plan, count(plan, countRows)) : plan;
+        if (settled.route != Route.HEAVY) {
+            return readOnlyTransaction.execute(status -> query.apply(settled));
+        }
+        acquireHeavy(settled.query);
+        try {
+            T result = heavyTransaction.execute(status -> query.apply(settled));
+            countHeavy(settled.query, "completed");
+            return result;
+        } catch (QueryTimeoutException | jakarta.persistence.QueryTimeoutException | TransactionTimedOutException e) {
+            countHeavy(settled.query, "timed-out");
+            throw new TimedOutException(settled.query, heavyTimeout, e);
+        } finally {
+            heavySlots.release();
+        }
+    }
+
+    /**
+     * {@link #execute} for the reactive stack: the count and the query are publishers,
+     * and the count is given up after the count timeout. A heavy query waits for its
+     * slot off the event loop and is cancelled after the heavy timeout.
+     */
+    public <T> Mono<T> executeReactive(Plan plan, LongFunction<Mono<Long>> countRows, Function<Plan, Mono<T>> query) {
+        Mono<Plan> settled = !plan.needsCount() ? Mono.just(plan) : countRows.apply(maxRows + 1)
+                .timeout(countTimeout)
+                .onErrorResume(TimeoutException.class, e -> Mono.just(countTimedOut(plan)))
+                .map(counted -> recount(plan, counted));
+        return settled.flatMap(checked -> checked.route != Route.HEAVY ? query.apply(checked) : Mono.using(
+                        () -> {
+                            acquireHeavy(checked.query);
+                            return heavySlots;
+                        },
+                        slots -> query.apply(checked)
+                                .timeout(heavyTimeout, Mono.error(() -> {
+                                    countHeavy(checked.query, "timed-out");
+                                    return new TimedOutException(checked.query, heavyTimeout, null);
+                                }))
+                                .doOnSuccess(result -> countHeavy(checked.query, "completed")),
+                        Semaphore::release)
+                .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    // The routing of plan(), from an estimate that may have been corrected by a count
+    private Plan decide(String query, LocalDateTime start, LocalDateTime end, long watermark, boolean rollupExact,
+                        LongBinaryOperator rows, long estimate) {
+        long startMillis = EventTimes.toEpochMillis(start);
+        long endMillis = EventTimes.toEpochMillis(end);
+        if (serveFinalFromRollup && rollupExact && watermark != EventTimes.UNSET) {
+            // Whole hours inside the window that end at or before the watermark
+            long rollupFrom = Math.max(ceilHour(startMillis), rollup.getHorizon());
+            long rollupTo = Math.min(HourlyRollup.hourOf(endMillis), HourlyRollup.hourOf(watermark));
+            if (rollupFrom < rollupTo) {
+                long databaseRows = estimate - rows.applyAsLong(rollupFrom, rollupTo);
+                boolean wholeWindow = rollupFrom == startMillis && rollupTo == endMillis;
+                if (wholeWindow || (estimate > maxRows && databaseRows <= maxRows)) {
+                    return new Plan(query, Route.ROLLUP, databaseRows, start, end, rollupFrom, rollupTo);
+                }
+            }
+        }
+        if (estimate <= maxRows) {
+            return new Plan(query, Route.DATABASE, estimate, start, end, 0, 0);
+        }
+        if (estimate <= rejectRows) {
+            return new Plan(query, Route.HEAVY, estimate, start, end, 0, 0);
+        }
+        countRoute(query, "rejected");
+        log.warn("Rejected {} over {}/{}: about {} events", query, start, end, estimate);
+        throw new TooExpensiveException(query, estimate, rejectRows);
+    }
+
+    private long count(Plan plan, LongUnaryOperator countRows) {
+        try {
+            return countTransaction.execute(status -> countRows.applyAsLong(maxRows + 1));
+        } catch (QueryTimeoutException | jakarta.persistence.QueryTimeoutException | TransactionTimedOutException e) {
+            return countTimedOut(plan);
+        }
+    }
+
+    // A window too large to count in time is treated as larger than max-rows
+    private long countTimedOut(Plan plan) {
+        log.warn("Counting {} over {}/{} took longer than {}; running it as a heavy query",
+                plan.query, plan.start, plan.end, countTimeout);
+        return maxRows + 1;
+    }
+
+    private Plan recount(Plan plan, long counted) {
+        return settle(plan.recount.apply(counted));
+    }
+
+    private void acquireHeavy(String query) {
+        boolean acquired;
+        try {
+            acquired = heavySlots.tryAcquire(heavyMaxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            countHeavy(query, "busy");
+            throw new BusyException(query, Math.max(1, heavyMaxWait.toSeconds()));
+        }
+    }
+
+    private Plan settle(Plan plan) {
+        DistributionSummary.builder("factory.query.estimated-rows")
+                .description("Rows a query was estimated to read")
+                .baseUnit("events")
+                .tag("query", plan.query)
+                .register(meterRegistry)
+                .record(plan.estimatedRows);
+        countRoute(plan.query, plan.route.name().toLowerCase());
+        return plan;
+    }
+
+    private void countRoute(String query, String route) {
+        Counter.builder("factory.query.routes")
+                .description("Stats queries by how they were answered")
+                .tag("query", query)
+                .tag("route", route)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void countHeavy(String query, String outcome) {
+        Counter.builder("factory.query.heavy")
+                .description("Heavy stats queries by outcome")
+                .tag("query", query)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static int wholeSeconds(Duration timeout) {
+        return (int) Math.max(1, (timeout.toMillis() + 999) / 1000);
+    }
+
+    private static long ceilHour(long epochMillis) {
+        long hour = HourlyRollup.hourOf(epochMillis);
+        return hour == epochMillis ? hour : hour + EventTimes.MILLIS_PER_HOUR;
+    }
+}
@@ -0,0 +1,162 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.BatchIngestResponse;
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.dto.RejectionMode;
+import com.internshala.factory_monitoring.dto.StatsResponse;
+import com.internshala.factory_monitoring.dto.TopDefectLineResponse;
+import com.internshala.factory_monitoring.repo.ReactiveStatsRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Event API of the reactive stack (Spring profile "reactive").
+ *
+ * Ingest takes the request body as a stream of events and stores it in batches of
+ * {@code factory.reactive.chunk-size} through {@link EventService}, on a bounded
+ * pool of {@code factory.reactive.ingest-threads} workers. A request has one batch
+ * being stored and at most one more read ahead. Further events are only requested
+ * from the JSON decoder, and so read from the socket, once a batch has committed.
+ * A slow database therefore slows down the sender instead of filling the heap.
+ *
+ * Writes stay on JPA so the dedupe and update rules, dimension keys, heartbeats and
+ * in-memory aggregates have one implementation. Stats and top lines are read through
+ * R2DBC, unless the rollup can answer them. {@link QueryPlanner} plans those reads as
+ * on the servlet stack: an estimate it has to check is counted through R2DBC, windows
+ * above its reject limit are refused, and heavy ones take a heavy-query slot and are
+ * cancelled after the heavy timeout.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveEventService {
+
+    private final EventService eventService;
+    private final IngestAdmission ingestAdmission;
+    private final EventWatermarks watermarks;
+    private final ReactiveStatsRepository statsRepository;
+    private final QueryPlanner queryPlanner;
+    private final HourlyRollup rollup;
+    private final int chunkSize;
+    private final Scheduler ingestWorkers;
+
+    public ReactiveEventService(EventService eventService, IngestAdmission ingestAdmission,
+                                EventWatermarks watermarks, ReactiveStatsRepository statsRepository,
+                                QueryPlanner queryPlanner, HourlyRollup rollup,
+                                @Value("${factory.reactive.chunk-size:5000}") int chunkSize,
+                                @Value("${factory.reactive.ingest-threads:4}") int ingestThreads) {
+        this.eventService = eventService;
+        this.ingestAdmission = ingestAdmission;
+        this.watermarks = watermarks;
+        this.statsRepository = statsRepository;
+        this.queryPlanner = queryPlanner;
+        this.rollup = rollup;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.ingestWorkers = Schedulers.newBoundedElastic(Math.max(1, ingestThreads),
+                Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "reactive-ingest");
+    }
+
+    /**
+     * Stores a stream of events. A stream of at most chunk-size events is one batch
+     * and gets the same response as the servlet endpoint. A longer one is stored as
+     * consecutive batches, each with its own admission check and clock reading. An
+     * eventId repeated with a different payload in a later batch therefore counts as
+     * an update, not a duplicate. A failure (throttling, an invalid event) ends the
+     * stream, but batches already stored stay stored.
+     */
+    public Mono<BatchIngestResponse> ingest(Flux<EventRequest> events, RejectionMode rejectionMode) {
+        return Mono.defer(() -> {
+            StreamedBatch streamed = new StreamedBatch();
+            return events.buffer(chunkSize)
+                    .concatMap(batch -> Mono.fromCallable(() -> store(batch, streamed.rejections))
+                            .subscribeOn(ingestWorkers), 1)
+                    .doOnNext(streamed::add)
+                    .then(Mono.fromCallable(() -> streamed.finish(rejectionMode)));
+        });
+    }
+
+    public Mono<StatsResponse> getStats(String machineId, LocalDateTime start, LocalDateTime end) {
+        return Mono.defer(() -> {
+            long watermark = watermarks.machineWatermark(machineId);
+            StatsResponse fromRollup = eventService.statsFromRollup(machineId, start, end, watermark);
+            if (fromRollup != null) {
+                return Mono.just(fromRollup);
+            }
+            QueryPlanner.Plan plan = queryPlanner.plan("stats", start, end, watermark, false,
+                    (fromHour, toHour) -> rollup.machineTotals(machineId, fromHour, toHour).getEvents());
+            return queryPlanner.executeReactive(plan,
+                    upTo -> statsRepository.countByMachineUpTo(machineId, start, end, upTo),
+                    planned -> statsRepository.countAndSumDefects(machineId, start, end)
+                            .map(row -> EventService.toStatsResponse(machineId, start, end,
+                                    (Long) row[0], (Long) row[1], watermark)));
+        });
+    }
+
+    public Mono<TopDefectLineResponse> getTopDefectLines(String factoryId, LocalDateTime start,
+                                                         LocalDateTime end, int limit) {
+        return Mono.defer(() -> {
+            long watermark = watermarks.factoryWatermark(factoryId);
+            TopDefectLineResponse fromRollup = eventService.topDefectLinesFromRollup(factoryId, start, end,
+                    limit, watermark);
+            if (fromRollup != null) {
+                return Mono.just(fromRollup);
+            }
+            QueryPlanner.Plan plan = queryPlanner.plan("top-defect-lines", start, end, watermark, false,
+                    (fromHour, toHour) -> rollup.factoryEvents(factoryId, fromHour, toHour));
+            return queryPlanner.executeReactive(plan,
+                    upTo -> statsRepository.countByFactoryUpTo(factoryId, start, end, upTo),
+                    planned -> statsRepository.findTopDefectLines(factoryId, start, end)
+                            .take(limit)
+                            .map(row -> EventService.toLineStats((String) row[0], (Long) row[1], (Long) row[2]))
+                            .collectList()
+                            .map(lines -> EventService.toTopDefectLineResponse(lines, end, watermark)));
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ingestWorkers.dispose();
+    }
+
+    private BatchIngestResponse store(List<EventRequest> batch, RejectionLog rejections) {
+        ingestAdmission.admit(batch);
+        return eventService.ingestCollecting(batch, rejections);
+    }
+
+    // Totals of one streamed request; only touched by one batch at a time
+    private final class StreamedBatch {
+        private final BatchIngestResponse response = new BatchIngestResponse();
+        private final List<BatchIngestResponse.ChunkOutcome> chunks = new ArrayList<>();
+        private final RejectionLog rejections = new RejectionLog();
+        private int offset;
+
+        void add(BatchIngestResponse stored) {
+            response.setAccepted(response.getAccepted() + stored.getAccepted());
+            response.setDeduped(response.getDeduped() + stored.getDeduped());
+            response.setUpdated(response.getUpdated() + stored.getUpdated());
+            response.setRejected(response.getRejected() + stored.getRejected());
+            int batchSize = 0;
+            for (BatchIngestResponse.ChunkOutcome chunk : stored.getChunks()) {
+                chunk.setOffset(offset + chunk.getOffset());
+                chunks.add(chunk);
+                batchSize += chunk.getSize();
+            }
+            offset += batchSize;
+        }
+
+        BatchIngestResponse finish(RejectionMode rejectionMode) {
+            response.setChunks(chunks.size() > 1 ? chunks : null);
+            eventService.reportRejections(response, rejections, rejectionMode);
+            return response;
+        }
+    }
+}
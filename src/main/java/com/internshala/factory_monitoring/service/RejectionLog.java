@@ -0,0 +1,76 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.BatchIngestResponse;
+import com.internshala.factory_monitoring.dto.RejectionReason;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rejected events of one batch, stored compactly as (eventId, reason) pairs.
+ *
+ * Rendered either as one RejectionDetail per event or as a per-code summary,
+ * depending on the requested {@link com.internshala.factory_monitoring.dto.RejectionMode}.
+ */
+public class RejectionLog {
+
+    private String[] eventIds = new String[16];
+    private RejectionReason[] reasons = new RejectionReason[16];
+    private int size;
+
+    public void add(String eventId, RejectionReason reason) {
+        if (size == eventIds.length) {
+            eventIds = Arrays.copyOf(eventIds, size * 2);
+            reasons = Arrays.copyOf(reasons, size * 2);
+        }
+        eventIds[size] = eventId;
+        reasons[size] = reason;
+        size++;
+    }
+
+    public void addAll(RejectionLog other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.eventIds[i], other.reasons[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String eventIdAt(int index) {
+        return eventIds[index];
+    }
+
+    public RejectionReason reasonAt(int index) {
+        return reasons[index];
+    }
+
+    public List<BatchIngestResponse.RejectionDetail> toDetails() {
+        List<BatchIngestResponse.RejectionDetail> details = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            details.add(new BatchIngestResponse.RejectionDetail(eventIds[i], reasons[i].getDescription()));
+        }
+        return details;
+    }
+
+    /**
+     * Groups by reason code in order of first occurrence, keeping at most
+     * {@code sampleSize} eventIds per code.
+     */
+    public List<BatchIngestResponse.RejectionSummary> summarize(int sampleSize) {
+        Map<String, BatchIngestResponse.RejectionSummary> byCode = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            BatchIngestResponse.RejectionSummary summary = byCode.computeIfAbsent(reasons[i].getCode(),
+                    code -> new BatchIngestResponse.RejectionSummary(code, 0, new ArrayList<>()));
+            summary.setCount(summary.getCount() + 1);
+            if (summary.getSampleEventIds().size() < sampleSize) {
+                summary.getSampleEventIds().add(eventIds[i]);
+            }
+        }
+        return new ArrayList<>(byCode.values());
+    }
+}
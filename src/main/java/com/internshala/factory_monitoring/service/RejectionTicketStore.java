@@ -0,0 +1,35 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.util.BoundedExpiringMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Keeps the full rejection lists of summarised batches for a limited time, so
+ * clients can fetch every rejected eventId without it bloating the ingest response.
+ */
+@Component
+public class RejectionTicketStore {
+
+    private final BoundedExpiringMap<String, RejectionLog> tickets;
+
+    public RejectionTicketStore(
+            @Value("${factory.ingest.rejections.max-tickets:100}") int maxTickets,
+            @Value("${factory.ingest.rejections.ticket-ttl:PT10M}") Duration ticketTtl) {
+        this.tickets = new BoundedExpiringMap<>(maxTickets, ticketTtl);
+    }
+
+    public String store(RejectionLog rejections) {
+        String ticket = UUID.randomUUID().toString();
+        tickets.put(ticket, rejections);
+        return ticket;
+    }
+
+    // Returns null once the ticket expired or was evicted
+    public RejectionLog find(String ticket) {
+        return tickets.get(ticket);
+    }
+}
@@ -0,0 +1,236 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.config.ReplicaLag;
+import com.internshala.factory_monitoring.entity.Dimension;
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the replica database in sync with the primary (stand-in for database
+ * replication, factory.replica.enabled=true).
+ *
+ * On startup the replica gets the primary's schema and current rows. After every
+ * ingest commit the changed rows are snapshotted and applied on a single
+ * background thread, so ingest never waits for the replica. The MERGE keeps the
+ * row with the newer receivedTime, which makes out-of-order applies harmless.
+ * Retention deletes follow on the same thread, so they land after the merges of
+ * the rows they remove.
+ *
+ * When a batch fails to apply, the replica has a gap, and reads stay on the primary.
+ * A full resync then replaces the replica's rows with the primary's in one
+ * transaction, after {@code factory.replica.resync-delay}, and marks every commit
+ * before it as applied. A resync that fails is retried with the delay doubled, up
+ * to a minute.
+ *
+ * Only machine_events is replicated as it changes. The dimensions dictionary is
+ * copied along with it on startup and resync, so a dictionary lookup on a replica
+ * connection finds every key the replica's rows carry; keys created here since are
+ * in the dictionary's cache.
+ */
+@Component
+@ConditionalOnProperty(name = "factory.replica.enabled", havingValue = "true")
+public class ReplicaSynchronizer {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaSynchronizer.class);
+
+    private static final String COLUMNS =
+            "id, event_id, event_time, received_time, machine_id, duration_ms, defect_count, line_id, factory_id, version";
+
+    private static final String MERGE_SQL =
+            "MERGE INTO machine_events t USING (SELECT CAST(? AS BIGINT) id, CAST(? AS VARCHAR) event_id, " +
+            "CAST(? AS TIMESTAMP(6)) event_time, CAST(? AS TIMESTAMP(6)) received_time, CAST(? AS INT) machine_id, " +
+            "CAST(? AS BIGINT) duration_ms, CAST(? AS INT) defect_count, CAST(? AS INT) line_id, " +
+            "CAST(? AS INT) factory_id, CAST(? AS BIGINT) version) s ON t.id = s.id " +
+            "WHEN MATCHED AND s.received_time >= t.received_time THEN UPDATE SET " +
+            "event_id = s.event_id, event_time = s.event_time, received_time = s.received_time, " +
+            "machine_id = s.machine_id, duration_ms = s.duration_ms, defect_count = s.defect_count, " +
+            "line_id = s.line_id, factory_id = s.factory_id, version = s.version " +
+            "WHEN NOT MATCHED THEN INSERT (" + COLUMNS + ") VALUES (s.id, s.event_id, s.event_time, " +
+            "s.received_time, s.machine_id, s.duration_ms, s.defect_count, s.line_id, s.factory_id, s.version)";
+
+    private static final String DELETE_SQL = "DELETE FROM machine_events WHERE id = ?";
+
+    private static final String MERGE_DIMENSION_SQL = "MERGE INTO dimensions (id, kind, external_id) KEY (id) "
+            + "VALUES (?, ?, ?)";
+
+    private static final Duration MAX_RESYNC_DELAY = Duration.ofMinutes(1);
+
+    // One machine_events row as stored, dimension ids already encoded
+    private record Row(long id, String eventId, LocalDateTime eventTime, LocalDateTime receivedTime,
+                       int machineKey, long durationMs, int defectCount, Integer lineKey, Integer factoryKey,
+                       long version) {
+
+        Object[] toParameters() {
+            return new Object[]{id, eventId, Timestamp.valueOf(eventTime), Timestamp.valueOf(receivedTime),
+                    machineKey, durationMs, defectCount, lineKey, factoryKey, version};
+        }
+    }
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final TransactionTemplate replicaTransaction;
+    private final ReplicaLag lag;
+    private final DimensionDictionary dimensions;
+    private final Duration resyncDelay;
+    private final AtomicBoolean resyncScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService applier = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replica-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The EntityManagerFactory and snapshots are only dependencies so the schema and any
+    // restored rows exist before copying them
+    public ReplicaSynchronizer(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                               @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                               ReplicaLag lag,
+                               DimensionDictionary dimensions,
+                               EntityManagerFactory entityManagerFactory,
+                               EventStoreSnapshots snapshots,
+                               @Value("${factory.replica.resync-delay:PT1S}") Duration resyncDelay) {
+        this.primary = new JdbcTemplate(primaryDataSource);
+        this.replica = new JdbcTemplate(replicaDataSource);
+        this.replicaTransaction = new TransactionTemplate(new DataSourceTransactionManager(replicaDataSource));
+        this.lag = lag;
+        this.dimensions = dimensions;
+        this.resyncDelay = resyncDelay;
+    }
+
+    @PostConstruct
+    public void initializeReplica() {
+        replica.execute("DROP ALL OBJECTS");
+        for (String statement : primary.queryForList("SCRIPT NODATA", String.class)) {
+            if (statement.startsWith("CREATE USER") || statement.startsWith("--")) {
+                continue;
+            }
+            replica.execute(statement);
+        }
+
+        log.info("Replica initialized with {} events", copyPrimaryRows());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        applier.shutdown();
+        applier.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEventsChanged(EventsChangedEvent change) {
+        if (change.getChanges().isEmpty()) {
+            return;
+        }
+
+        // Snapshot now: the entities must not be read once this thread moves on
+        List<Row> rows = new ArrayList<>(change.getChanges().size());
+        for (EventChange eventChange : change.getChanges()) {
+            MachineEvent event = eventChange.after();
+            rows.add(new Row(event.getId(), event.getEventId(), event.getEventTime(), event.getReceivedTime(),
+                    dimensions.keyOf(Dimension.Kind.MACHINE, event.getMachineId()), event.getDurationMs(),
+                    event.getDefectCount(), keyOrNull(Dimension.Kind.LINE, event.getLineId()),
+                    keyOrNull(Dimension.Kind.FACTORY, event.getFactoryId()), event.getVersion()));
+        }
+
+        long ticket = lag.committed();
+        applier.execute(() -> apply(ticket, rows));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEventsExpired(EventsExpiredEvent expired) {
+        List<Object[]> ids = expired.getIds().stream().map(id -> new Object[]{id}).toList();
+        long ticket = lag.committed();
+        applier.execute(() -> {
+            try {
+                replica.batchUpdate(DELETE_SQL, ids);
+                lag.applied(ticket);
+            } catch (RuntimeException e) {
+                log.error("Failed to delete {} expired events from the replica; reads stay on the primary "
+                        + "until it is resynced", ids.size(), e);
+                scheduleResync(resyncDelay);
+            }
+        });
+    }
+
+    private void apply(long ticket, List<Row> rows) {
+        try {
+            replica.batchUpdate(MERGE_SQL, rows.stream().map(Row::toParameters).toList());
+            lag.applied(ticket);
+        } catch (RuntimeException e) {
+            // Left pending on purpose: the replica now has a gap, so reads go to the primary
+            log.error("Failed to apply {} events to the replica; reads stay on the primary until it is resynced",
+                    rows.size(), e);
+            scheduleResync(resyncDelay);
+        }
+    }
+
+    private void scheduleResync(Duration delay) {
+        if (resyncScheduled.compareAndSet(false, true)) {
+            applier.schedule(() -> resync(delay), delay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Runs on the applier thread, so no apply or delete interleaves with it
+    private void resync(Duration delay) {
+        resyncScheduled.set(false);
+        // Commits up to here were visible before the copy started
+        long upTo = lag.lastTicket();
+        try {
+            int rows = replicaTransaction.execute(status -> {
+                replica.update("DELETE FROM machine_events");
+                return copyPrimaryRows();
+            });
+            lag.appliedUpTo(upTo);
+            log.info("Replica resynced with {} events", rows);
+        } catch (RuntimeException e) {
+            Duration next = delay.multipliedBy(2).compareTo(MAX_RESYNC_DELAY) > 0
+                    ? MAX_RESYNC_DELAY : delay.multipliedBy(2);
+            log.error("Failed to resync the replica; retrying in {}", next, e);
+            scheduleResync(next);
+        }
+    }
+
+    // Every machine_events row of the primary, merged into the replica, then the dictionary entries:
+    // read after the rows, they include every key those rows carry
+    private int copyPrimaryRows() {
+        List<Object[]> rows = primary.query("SELECT " + COLUMNS + " FROM machine_events", (rs, i) -> new Row(
+                rs.getLong(1), rs.getString(2), rs.getTimestamp(3).toLocalDateTime(),
+                rs.getTimestamp(4).toLocalDateTime(), rs.getInt(5), rs.getLong(6), rs.getInt(7),
+                (Integer) rs.getObject(8), (Integer) rs.getObject(9), rs.getLong(10)).toParameters());
+        if (!rows.isEmpty()) {
+            replica.batchUpdate(MERGE_SQL, rows);
+        }
+        List<Object[]> dimensionRows = primary.query("SELECT id, kind, external_id FROM dimensions",
+                (rs, i) -> new Object[]{rs.getInt(1), rs.getString(2), rs.getString(3)});
+        if (!dimensionRows.isEmpty()) {
+            replica.batchUpdate(MERGE_DIMENSION_SQL, dimensionRows);
+        }
+        return rows.size();
+    }
+
+    private Integer keyOrNull(Dimension.Kind kind, String externalId) {
+        return externalId == null ? null : dimensions.keyOf(kind, externalId);
+    }
+}
@@ -0,0 +1,281 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.RetentionStatusResponse;
+import com.internshala.factory_monitoring.entity.Dimension;
+import com.internshala.factory_monitoring.entity.EventSummary;
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.repo.DimensionRepository;
+import com.internshala.factory_monitoring.repo.EventSummaryRepository;
+import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import com.internshala.factory_monitoring.util.EventTimes;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes events older than their factory's retention age
+ * ({@code factory.retention.factories.<factoryId>}, default {@code factory.retention.max-age}).
+ *
+ * Expired events are removed in chunks of {@code chunk-size} rows, walking the
+ * primary key (keyset), each chunk in its own short transaction under the ingest
+ * lock, so a batch waits for at most one chunk and never sees a half-deleted one.
+ * Between chunks the job pauses; while ingest chunks are slower than their target
+ * latency the pause doubles up to {@code max-pause}.
+ *
+ * With {@code summarize=true} every chunk first adds its events to hourly
+ * {@link EventSummary} rows in the same transaction. Deletions are published as
+ * {@link EventsExpiredEvent} so the replica and in-memory rollups follow.
+ * Disabled by default.
+ */
+@Component
+public class RetentionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionService.class);
+
+    private final MachineEventRepository repository;
+    private final EventSummaryRepository summaryRepository;
+    private final DimensionRepository dimensionRepository;
+    private final EventService eventService;
+    private final ChunkSizer chunkSizer;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+    private final Duration defaultMaxAge;
+    private final int chunkSize;
+    private final long basePauseNanos;
+    private final long maxPauseNanos;
+    private final boolean summarize;
+
+    private final Timer chunkTimer;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong totalDeleted = new AtomicLong();
+
+    // Progress of the current run and outcome of the last one, read by status()
+    private volatile String currentFactoryId;
+    private volatile long deletedThisRun;
+    private volatile long pauseNanos;
+    private volatile RetentionStatusResponse.Run lastRun;
+
+    private record SummaryKey(String machineId, String lineId, String factoryId, long hour) {}
+
+    public RetentionService(MachineEventRepository repository,
+                            EventSummaryRepository summaryRepository,
+                            DimensionRepository dimensionRepository,
+                            EventService eventService,
+                            ChunkSizer chunkSizer,
+                            ApplicationEventPublisher eventPublisher,
+                            PlatformTransactionManager transactionManager,
+                            Environment environment,
+                            MeterRegistry meterRegistry,
+                            @Value("${factory.retention.enabled:false}") boolean enabled,
+                            @Value("${factory.retention.max-age:P90D}") Duration defaultMaxAge,
+                            @Value("${factory.retention.chunk-size:1000}") int chunkSize,
+                            @Value("${factory.retention.pause:PT0.05S}") Duration pause,
+                            @Value("${factory.retention.max-pause:PT5S}") Duration maxPause,
+                            @Value("${factory.retention.summarize:false}") boolean summarize) {
+        this.repository = repository;
+        this.summaryRepository = summaryRepository;
+        this.dimensionRepository = dimensionRepository;
+        this.eventService = eventService;
+        this.chunkSizer = chunkSizer;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.defaultMaxAge = defaultMaxAge;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.basePauseNanos = pause.toNanos();
+        this.maxPauseNanos = Math.max(basePauseNanos, maxPause.toNanos());
+        this.summarize = summarize;
+        this.pauseNanos = basePauseNanos;
+        this.chunkTimer = Timer.builder("factory.retention.chunk")
+                .description("Time to delete one retention chunk, lock wait included")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${factory.retention.interval:PT10M}",
+            initialDelayString = "${factory.retention.initial-delay:PT1M}")
+    public void scheduledRun() {
+        if (enabled) {
+            run();
+        }
+    }
+
+    /**
+     * Deletes every expired event now. Returns the number deleted, or -1 if a run is already in progress.
+     */
+    public long run() {
+        if (!running.compareAndSet(false, true)) {
+            return -1;
+        }
+        LocalDateTime started = LocalDateTime.now();
+        long startedNanos = System.nanoTime();
+        deletedThisRun = 0;
+        long[] counts = new long[2]; // deleted, chunks
+        try {
+            Set<String> factoryIds = new LinkedHashSet<>();
+            for (Dimension factory : dimensionRepository.findByKind(Dimension.Kind.FACTORY)) {
+                factoryIds.add(factory.getExternalId());
+            }
+            for (String factoryId : factoryIds) {
+                purge(factoryId, started.minus(maxAge(factoryId)), counts);
+            }
+            purge(null, started.minus(defaultMaxAge), counts);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Retention run interrupted after deleting {} events", counts[0]);
+        } finally {
+            long elapsedNanos = System.nanoTime() - startedNanos;
+            RetentionStatusResponse.Run run = new RetentionStatusResponse.Run();
+            run.setStarted(started);
+            run.setFinished(LocalDateTime.now());
+            run.setDeleted(counts[0]);
+            run.setSummarized(summarize ? counts[0] : 0);
+            run.setChunks(counts[1]);
+            run.setEventsPerSecond(elapsedNanos > 0
+                    ? Math.round(counts[0] * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos) : 0);
+            lastRun = run;
+            currentFactoryId = null;
+            running.set(false);
+        }
+        if (counts[0] > 0) {
+            log.info("Retention deleted {} events in {} chunks", counts[0], counts[1]);
+        }
+        return counts[0];
+    }
+
+    public RetentionStatusResponse status() {
+        RetentionStatusResponse status = new RetentionStatusResponse();
+        status.setEnabled(enabled);
+        status.setRunning(running.get());
+        status.setCurrentFactoryId(currentFactoryId);
+        status.setDeletedThisRun(running.get() ? deletedThisRun : 0);
+        status.setPauseMs(TimeUnit.NANOSECONDS.toMillis(pauseNanos));
+        status.setTotalDeleted(totalDeleted.get());
+        status.setLastRun(lastRun);
+        return status;
+    }
+
+    private Duration maxAge(String factoryId) {
+        return environment.getProperty("factory.retention.factories." + factoryId, Duration.class, defaultMaxAge);
+    }
+
+    // factoryId null: events without a factory
+    private void purge(String factoryId, LocalDateTime cutoff, long[] counts) throws InterruptedException {
+        currentFactoryId = factoryId;
+        Counter deleted = Counter.builder("factory.retention.deleted")
+                .description("Events deleted by retention")
+                .baseUnit("events")
+                .tag("factory", factoryId != null ? factoryId : IngestAdmission.NO_FACTORY)
+                .register(meterRegistry);
+
+        long afterId = 0;
+        while (true) {
+            long from = afterId;
+            long startedNanos = System.nanoTime();
+            List<Long> ids = eventService.runExclusive(() ->
+                    transactionTemplate.execute(status -> deleteChunk(factoryId, cutoff, from)));
+            chunkTimer.record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+            if (ids.isEmpty()) {
+                return;
+            }
+
+            counts[0] += ids.size();
+            counts[1]++;
+            deletedThisRun = counts[0];
+            totalDeleted.addAndGet(ids.size());
+            deleted.increment(ids.size());
+            if (ids.size() < chunkSize) {
+                return;
+            }
+            afterId = ids.get(ids.size() - 1);
+            pause();
+        }
+    }
+
+    private List<Long> deleteChunk(String factoryId, LocalDateTime cutoff, long afterId) {
+        List<MachineEvent> expired = factoryId == null
+                ? repository.findExpiredWithoutFactory(cutoff, afterId, Limit.of(chunkSize))
+                : repository.findExpired(factoryId, cutoff, afterId, Limit.of(chunkSize));
+        if (expired.isEmpty()) {
+            return List.of();
+        }
+
+        List<Long> ids = new ArrayList<>(expired.size());
+        List<EventSnapshot> snapshots = new ArrayList<>(expired.size());
+        for (MachineEvent event : expired) {
+            ids.add(event.getId());
+            snapshots.add(EventSnapshot.of(event));
+        }
+        if (summarize) {
+            addToSummaries(snapshots);
+        }
+        repository.deleteByIds(ids);
+        eventPublisher.publishEvent(new EventsExpiredEvent(ids, snapshots));
+        return ids;
+    }
+
+    private void addToSummaries(List<EventSnapshot> events) {
+        Set<String> machineIds = new HashSet<>();
+        long fromHour = Long.MAX_VALUE;
+        long toHour = Long.MIN_VALUE;
+        for (EventSnapshot event : events) {
+            machineIds.add(event.machineId());
+            fromHour = Math.min(fromHour, HourlyRollup.hourOf(event.eventTimeMillis()));
+            toHour = Math.max(toHour, HourlyRollup.hourOf(event.eventTimeMillis()));
+        }
+
+        Map<SummaryKey, EventSummary> summaries = new HashMap<>();
+        for (EventSummary summary : summaryRepository.findByMachineIdInAndHourStartBetween(machineIds,
+                EventTimes.toLocalDateTime(fromHour), EventTimes.toLocalDateTime(toHour))) {
+            summaries.put(new SummaryKey(summary.getMachineId(), summary.getLineId(), summary.getFactoryId(),
+                    EventTimes.toEpochMillis(summary.getHourStart())), summary);
+        }
+
+        Map<SummaryKey, EventSummary> touched = new HashMap<>();
+        for (EventSnapshot event : events) {
+            SummaryKey key = new SummaryKey(event.machineId(), event.lineId(), event.factoryId(),
+                    HourlyRollup.hourOf(event.eventTimeMillis()));
+            EventSummary summary = touched.computeIfAbsent(key, k -> summaries.getOrDefault(k,
+                    new EventSummary(k.machineId(), k.lineId(), k.factoryId(), EventTimes.toLocalDateTime(k.hour()))));
+            summary.setEventCount(summary.getEventCount() + 1);
+            if (event.defectCount() >= 0) {
+                summary.setDefectCount(summary.getDefectCount() + event.defectCount());
+            }
+            summary.setDurationMs(summary.getDurationMs() + event.durationMs());
+        }
+        summaryRepository.saveAll(touched.values());
+    }
+
+    private void pause() throws InterruptedException {
+        pauseNanos = chunkSizer.isIngestSlow() ? Math.min(maxPauseNanos, Math.max(1, pauseNanos) * 2) : basePauseNanos;
+        TimeUnit.NANOSECONDS.sleep(pauseNanos);
+    }
+}
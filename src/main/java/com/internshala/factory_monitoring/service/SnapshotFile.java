@@ -0,0 +1,328 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.util.EventTimes;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Binary snapshot file: a gzip stream of checksummed blocks (see {@link EventStoreSnapshots}).
+ *
+ * After a header (magic, format version, creation time) come blocks of
+ * {@code [int length][int CRC32][length bytes]}, ended by a block of length 0.
+ * A block only holds whole records, so it is checked before anything in it is
+ * decoded. Records are a table start (name, column count), its rows, and a table
+ * end carrying the row count. Numbers are fixed-width big-endian, strings
+ * length-prefixed UTF-8, timestamps epoch millis; a nullable value is preceded by
+ * a presence byte.
+ */
+final class SnapshotFile {
+
+    enum Type { LONG, INT, STRING, TIMESTAMP }
+
+    record Column(String name, Type type, boolean nullable) {}
+
+    private static final int MAGIC = 0x464D5331; // "FMS1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int STREAM_BUFFER = 64 * 1024;
+
+    private static final byte TABLE = 1;
+    private static final byte ROW = 2;
+    private static final byte END = 3;
+
+    private SnapshotFile() {}
+
+    static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final GZIPOutputStream gzip;
+        private final DataOutputStream out;
+        private final CRC32 crc = new CRC32();
+        private ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+        private long rows;
+        private long bytes;
+
+        Writer(Path path, long createdAtMillis) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            // Fastest level: the writer runs beside ingest, and most of the gain is in the first level
+            this.gzip = new GZIPOutputStream(Channels.newOutputStream(channel), STREAM_BUFFER) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+            this.out = new DataOutputStream(new BufferedOutputStream(gzip, STREAM_BUFFER));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(createdAtMillis);
+        }
+
+        void beginTable(String name, int columns) throws IOException {
+            rows = 0;
+            byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+            put(buffer -> {
+                buffer.put(TABLE);
+                buffer.putInt(encoded.length).put(encoded);
+                buffer.putInt(columns);
+            });
+        }
+
+        void writeRow(List<Column> columns, Object[] values) throws IOException {
+            put(buffer -> {
+                buffer.put(ROW);
+                for (int i = 0; i < columns.size(); i++) {
+                    encode(buffer, columns.get(i), values[i]);
+                }
+            });
+            rows++;
+        }
+
+        void endTable() throws IOException {
+            long count = rows;
+            put(buffer -> buffer.put(END).putLong(count));
+        }
+
+        /**
+         * Uncompressed bytes written so far.
+         */
+        long bytes() {
+            return bytes;
+        }
+
+        // Ends the block sequence and makes the file durable
+        @Override
+        public void close() throws IOException {
+            try (channel) {
+                flushBlock();
+                out.writeInt(0);
+                out.flush();
+                gzip.finish();
+                channel.force(true);
+                out.close();
+            }
+        }
+
+        private interface Record {
+            void encode(ByteBuffer buffer);
+        }
+
+        // A record that does not fit goes to the next block; one larger than a block gets a bigger block
+        private void put(Record record) throws IOException {
+            while (true) {
+                int start = block.position();
+                try {
+                    record.encode(block);
+                    return;
+                } catch (BufferOverflowException e) {
+                    block.position(start);
+                    if (start > 0) {
+                        flushBlock();
+                    } else {
+                        block = ByteBuffer.allocate(block.capacity() * 2);
+                    }
+                }
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            if (block.position() == 0) {
+                return;
+            }
+            crc.reset();
+            crc.update(block.array(), 0, block.position());
+            out.writeInt(block.position());
+            out.writeInt((int) crc.getValue());
+            out.write(block.array(), 0, block.position());
+            bytes += block.position();
+            block.clear();
+        }
+
+        private static void encode(ByteBuffer buffer, Column column, Object value) {
+            if (column.nullable()) {
+                buffer.put(value == null ? (byte) 0 : (byte) 1);
+                if (value == null) {
+                    return;
+                }
+            }
+            switch (column.type()) {
+                case LONG -> buffer.putLong((Long) value);
+                case INT -> buffer.putInt((Integer) value);
+                case STRING -> {
+                    byte[] encoded = ((String) value).getBytes(StandardCharsets.UTF_8);
+                    buffer.putInt(encoded.length).put(encoded);
+                }
+                case TIMESTAMP -> buffer.putLong(EventTimes.toEpochMillis((LocalDateTime) value));
+            }
+        }
+    }
+
+    static final class Reader implements Closeable {
+        private final Path path;
+        private final DataInputStream in;
+        private final CRC32 crc = new CRC32();
+        private final long createdAtMillis;
+        private ByteBuffer block = ByteBuffer.allocate(0);
+        private byte[] blockBytes = new byte[BLOCK_SIZE];
+        private int blocks;
+        private int columns;
+        private long rows;
+        private boolean ended;
+
+        Reader(Path path) throws IOException {
+            this.path = path;
+            this.in = new DataInputStream(new GZIPInputStream(
+                    Channels.newInputStream(FileChannel.open(path, StandardOpenOption.READ)), STREAM_BUFFER));
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException(path + " is not a snapshot");
+                }
+                int version = in.readInt();
+                if (version != FORMAT_VERSION) {
+                    throw new IOException(path + " has unsupported snapshot format " + version);
+                }
+                this.createdAtMillis = in.readLong();
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        long createdAtMillis() {
+            return createdAtMillis;
+        }
+
+        /**
+         * Name of the next table, or null after the last one.
+         */
+        String nextTable() throws IOException {
+            if (!nextRecord()) {
+                return null;
+            }
+            expect(TABLE);
+            String name = decodeString(block);
+            columns = block.getInt();
+            rows = 0;
+            return name;
+        }
+
+        int columnCount() {
+            return columns;
+        }
+
+        /**
+         * Next row of the current table, or null at its end.
+         */
+        Object[] nextRow(List<Column> columns) throws IOException {
+            if (!nextRecord()) {
+                throw corrupt("ends inside a table");
+            }
+            byte tag = block.get();
+            if (tag == END) {
+                long written = block.getLong();
+                if (written != rows) {
+                    throw corrupt("table holds " + rows + " rows, " + written + " were written");
+                }
+                return null;
+            }
+            block.position(block.position() - 1);
+            expect(ROW);
+            Object[] values = new Object[columns.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = decode(columns.get(i));
+            }
+            rows++;
+            return values;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        // False at the end-of-blocks marker; also makes gzip check its own trailer
+        private boolean nextRecord() throws IOException {
+            if (block.hasRemaining()) {
+                return true;
+            }
+            if (ended) {
+                return false;
+            }
+            try {
+                int length = in.readInt();
+                if (length == 0) {
+                    ended = true;
+                    if (in.read() != -1) {
+                        throw corrupt("has data after the last block");
+                    }
+                    return false;
+                }
+                int expected = in.readInt();
+                if (length < 0 || length > 64 * BLOCK_SIZE) {
+                    throw corrupt("has a block of " + length + " bytes");
+                }
+                if (blockBytes.length < length) {
+                    blockBytes = new byte[length];
+                }
+                in.readFully(blockBytes, 0, length);
+                crc.reset();
+                crc.update(blockBytes, 0, length);
+                blocks++;
+                if ((int) crc.getValue() != expected) {
+                    throw corrupt("block " + blocks + " fails its checksum");
+                }
+                block = ByteBuffer.wrap(blockBytes, 0, length);
+                return true;
+            } catch (EOFException e) {
+                throw corrupt("is truncated");
+            }
+        }
+
+        private void expect(byte tag) throws IOException {
+            byte found = block.get();
+            if (found != tag) {
+                throw corrupt("has record type " + found + " where " + tag + " was expected");
+            }
+        }
+
+        private Object decode(Column column) {
+            if (column.nullable() && block.get() == 0) {
+                return null;
+            }
+            return switch (column.type()) {
+                case LONG -> block.getLong();
+                case INT -> block.getInt();
+                case STRING -> decodeString(block);
+                case TIMESTAMP -> EventTimes.toLocalDateTime(block.getLong());
+            };
+        }
+
+        private static String decodeString(ByteBuffer buffer) {
+            int length = buffer.getInt();
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+
+        private IOException corrupt(String problem) {
+            return new IOException("Snapshot " + path + " " + problem);
+        }
+    }
+}
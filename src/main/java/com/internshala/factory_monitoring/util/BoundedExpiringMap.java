@@ -0,0 +1,106 @@
+package com.internshala.factory_monitoring.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small thread-safe map with a maximum size and a time-to-live per entry.
+ *
+ * Entries are kept in insertion order; the oldest entry is evicted when the map
+ * is full, and expired entries are dropped lazily on access. Meant for a few
+ * hundred to a few thousand short-lived entries, not as a general cache.
+ */
+public class BoundedExpiringMap<K, V> {
+
+    private record Entry<V>(V value, long expiresAtMillis) {}
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Clock clock;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>();
+
+    public BoundedExpiringMap(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, Clock.systemUTC());
+    }
+
+    public BoundedExpiringMap(int maxEntries, Duration ttl, Clock clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+    }
+
+    public synchronized void put(K key, V value) {
+        long now = clock.millis();
+        evictExpired(now);
+        entries.remove(key);
+        while (entries.size() >= maxEntries) {
+            Iterator<K> oldest = entries.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+        }
+        entries.put(key, new Entry<>(value, now + ttlMillis));
+    }
+
+    /**
+     * Stores the value unless a live entry exists for the key.
+     *
+     * @return the existing live value, or null if {@code value} was stored
+     */
+    public synchronized V putIfAbsent(K key, V value) {
+        V existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        put(key, value);
+        return null;
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis() <= clock.millis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    public synchronized V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        return entry == null ? null : entry.value();
+    }
+
+    // Removes the entry only if it still maps to this value
+    public synchronized boolean remove(K key, V value) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || entry.value() != value) {
+            return false;
+        }
+        entries.remove(key);
+        return true;
+    }
+
+    public synchronized int size() {
+        evictExpired(clock.millis());
+        return entries.size();
+    }
+
+    // Insertion order means expiry order, so stop at the first live entry
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().expiresAtMillis() > now) {
+                return;
+            }
+            iterator.remove();
+        }
+    }
+}
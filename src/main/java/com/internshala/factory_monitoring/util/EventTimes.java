@@ -0,0 +1,155 @@
+package com.internshala.factory_monitoring.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Conversions between ISO-8601 local date-times and epoch milliseconds.
+ *
+ * Event times are local date-times without a zone. Internally they are handled
+ * as "epoch millis of that local date-time read as UTC", which is just a compact,
+ * comparable encoding - no time zone conversion takes place. Millisecond
+ * precision is the finest the ingest path keeps.
+ */
+public final class EventTimes {
+
+    // Marks an unset timestamp in primitive fields
+    public static final long UNSET = Long.MIN_VALUE;
+
+    public static final long MILLIS_PER_MINUTE = 60_000L;
+    public static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    private EventTimes() {}
+
+    public static long toEpochMillis(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1000L + time.getNano() / 1_000_000;
+    }
+
+    public static LocalDateTime toLocalDateTime(long epochMillis) {
+        long seconds = Math.floorDiv(epochMillis, 1000L);
+        int nanos = (int) Math.floorMod(epochMillis, 1000L) * 1_000_000;
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+
+    public static long parseEpochMillis(CharSequence text) {
+        char[] chars = text.toString().toCharArray();
+        return parseEpochMillis(chars, 0, chars.length);
+    }
+
+    /**
+     * Parses {@code yyyy-MM-ddTHH:mm[:ss[.SSS...]]} straight to epoch millis
+     * without creating any intermediate objects. Fractions beyond milliseconds are
+     * truncated. Anything else falls back to
+     * {@link DateTimeFormatter#ISO_LOCAL_DATE_TIME}. A trailing 'Z' is accepted, as it
+     * names the UTC encoding used here; any other offset is rejected rather than
+     * dropped, which would store the event at the wrong instant.
+     *
+     * Takes a char range so JSON parsers can hand over their text buffer directly.
+     */
+    public static long parseEpochMillis(char[] text, int offset, int length) {
+        int end = offset + length;
+        if (length < 16 || text[offset + 4] != '-' || text[offset + 7] != '-'
+                || text[offset + 10] != 'T' || text[offset + 13] != ':') {
+            return parseFallback(text, offset, end);
+        }
+
+        int year = digits(text, offset, 4);
+        int month = digits(text, offset + 5, 2);
+        int day = digits(text, offset + 8, 2);
+        int hour = digits(text, offset + 11, 2);
+        int minute = digits(text, offset + 14, 2);
+        int second = 0;
+        int millis = 0;
+
+        int pos = offset + 16;
+        if (pos < end) {
+            if (text[pos] != ':' || pos + 3 > end) {
+                return parseFallback(text, offset, end);
+            }
+            second = digits(text, pos + 1, 2);
+            pos += 3;
+
+            if (pos < end) {
+                if (text[pos] != '.') {
+                    return parseFallback(text, offset, end);
+                }
+                pos++;
+                int fractionDigits = 0;
+                while (pos < end) {
+                    int digit = text[pos++] - '0';
+                    if (digit < 0 || digit > 9) {
+                        return parseFallback(text, offset, end);
+                    }
+                    if (fractionDigits < 3) {
+                        millis = millis * 10 + digit;
+                    }
+                    fractionDigits++;
+                }
+                if (fractionDigits == 0 || fractionDigits > 9) {
+                    return parseFallback(text, offset, end);
+                }
+                for (int i = fractionDigits; i < 3; i++) {
+                    millis *= 10;
+                }
+            }
+        }
+
+        if ((year | month | day | hour | minute | second) < 0
+                || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59) {
+            return parseFallback(text, offset, end);
+        }
+
+        return daysFromCivil(year, month, day) * MILLIS_PER_DAY
+                + hour * MILLIS_PER_HOUR
+                + minute * MILLIS_PER_MINUTE
+                + second * 1000L
+                + millis;
+    }
+
+    // Returns -1 for anything that is not exactly `count` ASCII digits
+    private static int digits(char[] text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = text[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    // Days since 1970-01-01 for a proleptic Gregorian date (H. Hinnant's algorithm)
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static long parseFallback(char[] text, int offset, int end) {
+        String value = new String(text, offset, end - offset);
+        String local = value.endsWith("Z") ? value.substring(0, value.length() - 1) : value;
+        try {
+            return toEpochMillis(LocalDateTime.parse(local, DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid ISO-8601 local date-time (no offset other than Z): "
+                    + value, e);
+        }
+    }
+}
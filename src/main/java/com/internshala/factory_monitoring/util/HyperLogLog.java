@@ -0,0 +1,196 @@
+package com.internshala.factory_monitoring.util;
+
+import java.util.Arrays;
+
+/**
+ * HyperLogLog distinct-count sketch with 2^precision registers.
+ *
+ * The relative standard error is 1.04 / sqrt(2^precision), about 1.6% at the
+ * default precision 12. Small sketches keep their non-zero registers in a sorted
+ * int array and switch to a dense byte array once that would be larger, so a
+ * bucket that saw a few dozen machines costs a few hundred bytes, not 4 KB.
+ * Small counts use linear counting, which is close to exact.
+ *
+ * Sketches only grow: adding a value twice, or merging overlapping sketches,
+ * counts it once, but a value cannot be removed. Every operation locks the sketch;
+ * {@link #mergeInto} locks the source and the target in turn, never both at once.
+ */
+public final class HyperLogLog {
+
+    public static final int MIN_PRECISION = 7;
+    public static final int MAX_PRECISION = 16;
+
+    private final int precision;
+    private final int registerCount;
+    private final int sparseLimit;
+
+    // Sparse form: (index << 8 | rank) sorted by index; registers stays null until dense
+    private int[] sparse = new int[4];
+    private int sparseSize;
+    private byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("precision must be between " + MIN_PRECISION
+                    + " and " + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+        // An int per entry: beyond a quarter of the registers the byte array is smaller
+        this.sparseLimit = registerCount / 4;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public synchronized void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // The marker bit caps the rank at 64 - precision + 1 when the remaining bits are all zero
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        set(index, rank);
+    }
+
+    /**
+     * Adds every value of this sketch to {@code target}.
+     */
+    public void mergeInto(HyperLogLog target) {
+        if (target.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge precision " + precision + " into " + target.precision);
+        }
+        int[] entries;
+        int count;
+        synchronized (this) {
+            if (registers != null) {
+                entries = new int[registerCount];
+                count = 0;
+                for (int i = 0; i < registerCount; i++) {
+                    if (registers[i] != 0) {
+                        entries[count++] = i << 8 | registers[i];
+                    }
+                }
+            } else {
+                entries = Arrays.copyOf(sparse, sparseSize);
+                count = sparseSize;
+            }
+        }
+        synchronized (target) {
+            for (int i = 0; i < count; i++) {
+                target.set(entries[i] >>> 8, entries[i] & 0xFF);
+            }
+        }
+    }
+
+    public synchronized long estimate() {
+        double sum = 0;
+        int zeros;
+        if (registers != null) {
+            zeros = 0;
+            for (byte rank : registers) {
+                if (rank == 0) {
+                    zeros++;
+                }
+                sum += 1.0 / (1L << rank);
+            }
+        } else {
+            zeros = registerCount - sparseSize;
+            sum = zeros;
+            for (int i = 0; i < sparseSize; i++) {
+                sum += 1.0 / (1L << (sparse[i] & 0xFF));
+            }
+        }
+
+        double alpha = 0.7213 / (1 + 1.079 / registerCount);
+        double estimate = alpha * registerCount * registerCount / sum;
+        if (estimate <= 2.5 * registerCount && zeros > 0) {
+            estimate = registerCount * Math.log((double) registerCount / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Relative standard error of {@link #estimate()} for large counts; about 95% of
+     * estimates are within twice this of the true count.
+     */
+    public double relativeStandardError() {
+        return relativeStandardError(precision);
+    }
+
+    public static double relativeStandardError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    /**
+     * 64-bit hash of a string (FNV-1a over the chars, then the MurmurHash3 finalizer
+     * so that the high bits used for the register index are well mixed).
+     */
+    public static long hash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private void set(int index, int rank) {
+        if (registers != null) {
+            if (rank > registers[index]) {
+                registers[index] = (byte) rank;
+            }
+            return;
+        }
+
+        int position = sparseIndexOf(index);
+        if (position >= 0) {
+            if (rank > (sparse[position] & 0xFF)) {
+                sparse[position] = index << 8 | rank;
+            }
+            return;
+        }
+        if (sparseSize == sparseLimit) {
+            toDense();
+            registers[index] = (byte) rank;
+            return;
+        }
+
+        int insertAt = -position - 1;
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, Math.min(sparseLimit, sparseSize * 2));
+        }
+        System.arraycopy(sparse, insertAt, sparse, insertAt + 1, sparseSize - insertAt);
+        sparse[insertAt] = index << 8 | rank;
+        sparseSize++;
+    }
+
+    private int sparseIndexOf(int index) {
+        int low = 0;
+        int high = sparseSize - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midIndex = sparse[mid] >>> 8;
+            if (midIndex < index) {
+                low = mid + 1;
+            } else if (midIndex > index) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void toDense() {
+        registers = new byte[registerCount];
+        for (int i = 0; i < sparseSize; i++) {
+            registers[sparse[i] >>> 8] = (byte) (sparse[i] & 0xFF);
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+}
@@ -0,0 +1,41 @@
+package com.internshala.factory_monitoring.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.internshala.factory_monitoring.util.EventTimes;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventRequestDeserializerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Test 1: Values that cannot be stored as sent are rejected instead of being
+     * silently changed: event times with an offset and counts beyond an int
+     */
+    @Test
+    public void testRejectsValuesThatWouldBeStoredWrong() throws Exception {
+        EventRequest event = mapper.readValue(json("2026-01-15T10:00:00", "2"), EventRequest.class);
+        assertEquals(EventTimes.toEpochMillis(LocalDateTime.of(2026, 1, 15, 10, 0)), event.getEventTimeMillis());
+        assertEquals(2, event.getDefectCount());
+        assertEquals(Integer.MAX_VALUE,
+                mapper.readValue(json("2026-01-15T10:00:00", "2147483647"), EventRequest.class).getDefectCount());
+
+        assertThrows(InvalidFormatException.class,
+                () -> mapper.readValue(json("2026-01-15T10:00:00+05:30", "2"), EventRequest.class));
+        // 2^32 + 1 would wrap around to a defect count of 1
+        assertThrows(InvalidFormatException.class,
+                () -> mapper.readValue(json("2026-01-15T10:00:00", "4294967297"), EventRequest.class));
+        assertThrows(InvalidFormatException.class,
+                () -> mapper.readValue(json("2026-01-15T10:00:00", "\"-2147483649\""), EventRequest.class));
+    }
+
+    private static String json(String eventTime, String defectCount) {
+        return "{\"eventId\":\"E-1\",\"eventTime\":\"" + eventTime + "\",\"machineId\":\"M-1\","
+                + "\"durationMs\":1000,\"defectCount\":" + defectCount + "}";
+    }
+}
@@ -0,0 +1,67 @@
+package com.internshala.factory_monitoring.loadgen;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects raw latency samples (in nanoseconds) and computes percentiles.
+ *
+ * Samples are kept exactly instead of in a bucketed histogram: a run of a few
+ * minutes at a few thousand requests/sec is well within what a long[] can hold,
+ * and exact values keep p999 honest.
+ */
+public class LatencyRecorder {
+
+    private long[] samples = new long[4096];
+    private int size;
+
+    public synchronized void record(long latencyNanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = latencyNanos;
+    }
+
+    public synchronized int count() {
+        return size;
+    }
+
+    /**
+     * Summarises the recorded samples in milliseconds, suitable for the JSON report.
+     */
+    public synchronized Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", size);
+        if (size == 0) {
+            return summary;
+        }
+
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+
+        long total = 0;
+        for (long sample : sorted) {
+            total += sample;
+        }
+
+        summary.put("meanMs", toMillis(total / size));
+        summary.put("p50Ms", toMillis(percentile(sorted, 50.0)));
+        summary.put("p90Ms", toMillis(percentile(sorted, 90.0)));
+        summary.put("p99Ms", toMillis(percentile(sorted, 99.0)));
+        summary.put("p999Ms", toMillis(percentile(sorted, 99.9)));
+        summary.put("maxMs", toMillis(sorted[size - 1]));
+        return summary;
+    }
+
+    // Nearest-rank percentile over an already sorted array. The epsilon keeps
+    // 99.9% of 1000 samples at rank 999 despite 99.9 not being exact in binary.
+    static long percentile(long[] sorted, double percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length - 1e-9);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+}
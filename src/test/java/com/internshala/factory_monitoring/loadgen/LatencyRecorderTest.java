@@ -0,0 +1,29 @@
+package com.internshala.factory_monitoring.loadgen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LatencyRecorderTest {
+
+    /**
+     * Percentiles use nearest-rank, so p50 of 1..1000 ms is 500 ms and p999 is 999 ms
+     */
+    @Test
+    public void testPercentilesUseNearestRank() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 1000; i >= 1; i--) {
+            recorder.record(i * 1_000_000L);
+        }
+
+        Map<String, Object> summary = recorder.summary();
+
+        assertEquals(1000, summary.get("count"));
+        assertEquals(500.0, summary.get("p50Ms"));
+        assertEquals(990.0, summary.get("p99Ms"));
+        assertEquals(999.0, summary.get("p999Ms"));
+        assertEquals(1000.0, summary.get("maxMs"));
+    }
+}
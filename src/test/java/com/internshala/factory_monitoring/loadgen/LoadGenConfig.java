@@ -0,0 +1,78 @@
+package com.internshala.factory_monitoring.loadgen;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line options of {@link ReplayLoadGenerator}, given as --name=value.
+ */
+public record LoadGenConfig(
+        String target,
+        Path trafficFile,
+        double rate,
+        Duration duration,
+        Duration warmup,
+        int concurrency,
+        int batchSize,
+        int machines,
+        double duplicateRatio,
+        double updateRatio,
+        double invalidRatio,
+        double statsRatio,
+        long seed,
+        Path report) {
+
+    public static LoadGenConfig parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            int split = arg.indexOf('=');
+            options.put(arg.substring(2, split), arg.substring(split + 1));
+        }
+
+        LoadGenConfig config = new LoadGenConfig(
+                options.getOrDefault("target", "http://localhost:8080"),
+                options.containsKey("traffic") ? Path.of(options.get("traffic")) : null,
+                Double.parseDouble(options.getOrDefault("rate", "50")),
+                parseDuration(options.getOrDefault("duration", "30s")),
+                parseDuration(options.getOrDefault("warmup", "5s")),
+                Integer.parseInt(options.getOrDefault("concurrency", "16")),
+                Integer.parseInt(options.getOrDefault("batch-size", "100")),
+                Integer.parseInt(options.getOrDefault("machines", "200")),
+                Double.parseDouble(options.getOrDefault("duplicate-ratio", "0.05")),
+                Double.parseDouble(options.getOrDefault("update-ratio", "0.02")),
+                Double.parseDouble(options.getOrDefault("invalid-ratio", "0.01")),
+                Double.parseDouble(options.getOrDefault("stats-ratio", "0.2")),
+                Long.parseLong(options.getOrDefault("seed", "42")),
+                Path.of(options.getOrDefault("report", "target/loadgen-report.json")));
+
+        if (config.rate() <= 0 || config.concurrency() <= 0 || config.batchSize() <= 0) {
+            throw new IllegalArgumentException("rate, concurrency and batch-size must be positive");
+        }
+        if (config.duplicateRatio() + config.updateRatio() + config.invalidRatio() > 1.0) {
+            throw new IllegalArgumentException("duplicate, update and invalid ratios must add up to at most 1.0");
+        }
+        return config;
+    }
+
+    // Accepts "30s", "5m", "500ms" or an ISO-8601 duration such as "PT1M"
+    private static Duration parseDuration(String value) {
+        if (value.startsWith("P") || value.startsWith("p")) {
+            return Duration.parse(value);
+        }
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        return switch (value.charAt(value.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            case 'h' -> Duration.ofHours(amount);
+            default -> throw new IllegalArgumentException("Unsupported duration: " + value);
+        };
+    }
+}
@@ -0,0 +1,229 @@
+package com.internshala.factory_monitoring.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop HTTP load generator for a locally started application.
+ *
+ * Requests are scheduled at a fixed rate independent of how fast the server
+ * answers. Latency is measured from the time a request was <em>supposed</em> to
+ * be sent, not from when a worker got around to sending it, so queueing caused
+ * by a slow server shows up in the percentiles instead of being hidden
+ * (coordinated omission correction). The uncorrected service time is reported
+ * alongside for comparison. Failed and timed-out requests count towards both, as
+ * they are often the slowest ones, and are also summarised on their own.
+ * Requests still queued when the run gives up waiting were never sent. Rather than
+ * dropping out of the totals, they count as errors and in the corrected latency,
+ * from their scheduled send time to giving up.
+ *
+ * Usage (see BENCHMARK.md):
+ * <pre>
+ * mvn -Ploadgen test-compile exec:java -Dloadgen.args="--rate=200 --duration=60s"
+ * </pre>
+ */
+public class ReplayLoadGenerator {
+
+    private final LoadGenConfig config;
+    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final HttpClient client;
+
+    private final Map<String, LatencyRecorder> corrected = new LinkedHashMap<>();
+    private final Map<String, LatencyRecorder> serviceTime = new LinkedHashMap<>();
+    private final Map<String, LatencyRecorder> errorLatency = new LinkedHashMap<>();
+    private final AtomicLong ingestedEvents = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final Map<String, AtomicLong> errorsByStatus = new ConcurrentHashMap<>();
+    private final AtomicLong lastCompletionNanos = new AtomicLong();
+    private final AtomicLong unsent = new AtomicLong();
+
+    // A request waiting for a worker, kept so one that never ran can still be counted
+    private final class Scheduled implements Runnable {
+        private final TrafficSource.PlannedRequest request;
+        private final long intendedStart;
+        private final boolean measured;
+
+        Scheduled(TrafficSource.PlannedRequest request, long intendedStart, boolean measured) {
+            this.request = request;
+            this.intendedStart = intendedStart;
+            this.measured = measured;
+        }
+
+        @Override
+        public void run() {
+            send(request, intendedStart, measured);
+        }
+    }
+
+    public ReplayLoadGenerator(LoadGenConfig config) {
+        this.config = config;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        for (String type : new String[]{"ingest", "stats"}) {
+            corrected.put(type, new LatencyRecorder());
+            serviceTime.put(type, new LatencyRecorder());
+            errorLatency.put(type, new LatencyRecorder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadGenConfig config = LoadGenConfig.parse(args);
+        Map<String, Object> report = new ReplayLoadGenerator(config).run();
+
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        Files.createDirectories(config.report().toAbsolutePath().getParent());
+        mapper.writeValue(config.report().toFile(), report);
+        System.out.println(mapper.writeValueAsString(report));
+        System.out.println("Report written to " + config.report().toAbsolutePath());
+    }
+
+    public Map<String, Object> run() throws InterruptedException {
+        TrafficSource traffic = new TrafficSource(config, mapper);
+        ExecutorService workers = Executors.newFixedThreadPool(config.concurrency());
+
+        long intervalNanos = (long) (1_000_000_000L / config.rate());
+        long warmupRequests = (long) (config.warmup().toNanos() / (double) intervalNanos);
+        long measuredRequests = (long) (config.duration().toNanos() / (double) intervalNanos);
+
+        System.out.printf("Sending %d warm-up + %d measured requests at %.1f req/s to %s%n",
+                warmupRequests, measuredRequests, config.rate(), config.target());
+
+        long startNanos = System.nanoTime();
+        long measureStartNanos = startNanos + warmupRequests * intervalNanos;
+
+        for (long i = 0; i < warmupRequests + measuredRequests; i++) {
+            long intendedStart = startNanos + i * intervalNanos;
+            TrafficSource.PlannedRequest request = traffic.next();
+
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            boolean measured = i >= warmupRequests;
+            workers.execute(new Scheduled(request, intendedStart, measured));
+        }
+
+        workers.shutdown();
+        if (!workers.awaitTermination(5, TimeUnit.MINUTES)) {
+            long gaveUp = System.nanoTime();
+            for (Runnable never : workers.shutdownNow()) {
+                Scheduled scheduled = (Scheduled) never;
+                if (scheduled.measured) {
+                    recordUnsent(scheduled.request, scheduled.intendedStart, gaveUp);
+                }
+            }
+            workers.awaitTermination(30, TimeUnit.SECONDS);
+        }
+
+        return buildReport(measureStartNanos, measuredRequests);
+    }
+
+    private void send(TrafficSource.PlannedRequest planned, long intendedStart, boolean measured) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(config.target() + planned.path()))
+                .timeout(Duration.ofSeconds(30));
+        if (planned.body() != null) {
+            builder.header("Content-Type", "application/json")
+                    .method(planned.method(), HttpRequest.BodyPublishers.ofByteArray(planned.body()));
+        } else {
+            builder.method(planned.method(), HttpRequest.BodyPublishers.noBody());
+        }
+
+        long actualStart = System.nanoTime();
+        String status;
+        try {
+            HttpResponse<Void> response = client.send(builder.build(), HttpResponse.BodyHandlers.discarding());
+            status = String.valueOf(response.statusCode());
+        } catch (Exception e) {
+            status = e.getClass().getSimpleName();
+        }
+        long end = System.nanoTime();
+
+        if (!measured) {
+            return;
+        }
+        lastCompletionNanos.accumulateAndGet(end, Math::max);
+        corrected.get(planned.type()).record(end - intendedStart);
+        serviceTime.get(planned.type()).record(end - actualStart);
+        if (status.length() != 3 || status.charAt(0) >= '4') {
+            errors.incrementAndGet();
+            errorsByStatus.computeIfAbsent(status, s -> new AtomicLong()).incrementAndGet();
+            errorLatency.get(planned.type()).record(end - intendedStart);
+            return;
+        }
+        ingestedEvents.addAndGet(planned.eventCount());
+    }
+
+    // No response and no service time, but it was due: the wait until the run gave up is its latency
+    private void recordUnsent(TrafficSource.PlannedRequest planned, long intendedStart, long gaveUp) {
+        unsent.incrementAndGet();
+        errors.incrementAndGet();
+        errorsByStatus.computeIfAbsent("UNSENT", s -> new AtomicLong()).incrementAndGet();
+        corrected.get(planned.type()).record(gaveUp - intendedStart);
+        errorLatency.get(planned.type()).record(gaveUp - intendedStart);
+    }
+
+    private Map<String, Object> buildReport(long measureStartNanos, long measuredRequests) {
+        double elapsedSeconds = Math.max(1, lastCompletionNanos.get() - measureStartNanos) / 1e9;
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", Instant.now().toString());
+        report.put("target", config.target());
+        report.put("trafficFile", config.trafficFile() == null ? null : config.trafficFile().toString());
+
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("rate", config.rate());
+        settings.put("durationSeconds", config.duration().toSeconds());
+        settings.put("warmupSeconds", config.warmup().toSeconds());
+        settings.put("concurrency", config.concurrency());
+        settings.put("batchSize", config.batchSize());
+        settings.put("duplicateRatio", config.duplicateRatio());
+        settings.put("updateRatio", config.updateRatio());
+        settings.put("invalidRatio", config.invalidRatio());
+        settings.put("statsRatio", config.statsRatio());
+        settings.put("seed", config.seed());
+        report.put("settings", settings);
+
+        report.put("requests", measuredRequests);
+        report.put("errors", errors.get());
+        report.put("unsent", unsent.get());
+        Map<String, Long> byStatus = new TreeMap<>();
+        errorsByStatus.forEach((status, count) -> byStatus.put(status, count.get()));
+        report.put("errorsByStatus", byStatus);
+        report.put("elapsedSeconds", Math.round(elapsedSeconds * 1000) / 1000.0);
+        report.put("requestsPerSec", Math.round(measuredRequests / elapsedSeconds * 10) / 10.0);
+        report.put("eventsPerSec", Math.round(ingestedEvents.get() / elapsedSeconds * 10) / 10.0);
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        corrected.forEach((type, recorder) -> latency.put(type, recorder.summary()));
+        report.put("latency", latency);
+
+        Map<String, Object> service = new LinkedHashMap<>();
+        serviceTime.forEach((type, recorder) -> service.put(type, recorder.summary()));
+        report.put("serviceTimeUncorrected", service);
+
+        Map<String, Object> failed = new LinkedHashMap<>();
+        errorLatency.forEach((type, recorder) -> failed.put(type, recorder.summary()));
+        report.put("errorLatency", failed);
+        return report;
+    }
+}
@@ -0,0 +1,193 @@
+package com.internshala.factory_monitoring.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Produces the sequence of HTTP requests the load generator sends.
+ *
+ * Traffic is either replayed from a recorded JSONL file (one request per line:
+ * {"method":"POST","path":"/api/events/batch","body":[...]}) or synthesised.
+ * On top of that the configured duplicate/update/invalid mix is applied to every
+ * ingested event, and stats queries are interleaved at the configured ratio.
+ *
+ * Not thread-safe: only the dispatcher thread calls {@link #next()}.
+ */
+public class TrafficSource {
+
+    private static final String BATCH_PATH = "/api/events/batch";
+    private static final int RECENT_EVENTS_CAPACITY = 10_000;
+
+    public record PlannedRequest(String type, String method, String path, byte[] body, int eventCount) {}
+
+    private final LoadGenConfig config;
+    private final ObjectMapper mapper;
+    private final SplittableRandom random;
+
+    private final List<ArrayNode> recordedBatches = new ArrayList<>();
+    private final List<String> recordedQueries = new ArrayList<>();
+    private int batchCursor;
+    private int queryCursor;
+    private int replayPass;
+
+    // Ring buffer of recently sent valid events, used for duplicates and updates
+    private final ObjectNode[] recentEvents = new ObjectNode[RECENT_EVENTS_CAPACITY];
+    private int recentCount;
+    private int recentNext;
+
+    private long syntheticSequence;
+
+    public TrafficSource(LoadGenConfig config, ObjectMapper mapper) {
+        this.config = config;
+        this.mapper = mapper;
+        this.random = new SplittableRandom(config.seed());
+        if (config.trafficFile() != null) {
+            loadRecordedTraffic(config.trafficFile());
+        }
+    }
+
+    public PlannedRequest next() {
+        if (random.nextDouble() < config.statsRatio()) {
+            return new PlannedRequest("stats", "GET", nextQueryPath(), null, 0);
+        }
+
+        ArrayNode batch = nextBatch();
+        try {
+            return new PlannedRequest("ingest", "POST", BATCH_PATH, mapper.writeValueAsBytes(batch), batch.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ArrayNode nextBatch() {
+        ArrayNode source = recordedBatches.isEmpty() ? syntheticBatch() : nextRecordedBatch();
+        ArrayNode batch = mapper.createArrayNode();
+
+        for (JsonNode node : source) {
+            double roll = random.nextDouble();
+            if (roll < config.duplicateRatio() && recentCount > 0) {
+                batch.add(randomRecentEvent().deepCopy());
+            } else if (roll < config.duplicateRatio() + config.updateRatio() && recentCount > 0) {
+                ObjectNode update = randomRecentEvent().deepCopy();
+                update.put("defectCount", update.path("defectCount").asInt() + 1 + random.nextInt(3));
+                batch.add(update);
+            } else if (roll < config.duplicateRatio() + config.updateRatio() + config.invalidRatio()) {
+                ObjectNode invalid = ((ObjectNode) node).deepCopy();
+                invalid.put("durationMs", -1 - random.nextInt(1000));
+                batch.add(invalid);
+            } else {
+                ObjectNode event = ((ObjectNode) node).deepCopy();
+                batch.add(event);
+                remember(event);
+            }
+        }
+        return batch;
+    }
+
+    private ArrayNode nextRecordedBatch() {
+        ArrayNode recorded = recordedBatches.get(batchCursor);
+        int pass = replayPass;
+        if (++batchCursor == recordedBatches.size()) {
+            batchCursor = 0;
+            replayPass++;
+        }
+        if (pass == 0) {
+            return recorded;
+        }
+
+        // Later passes get fresh eventIds, otherwise every replayed event would be a duplicate
+        ArrayNode copy = recorded.deepCopy();
+        for (JsonNode event : copy) {
+            ((ObjectNode) event).put("eventId", event.path("eventId").asText() + "#" + pass);
+        }
+        return copy;
+    }
+
+    private ArrayNode syntheticBatch() {
+        ArrayNode batch = mapper.createArrayNode();
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+        for (int i = 0; i < config.batchSize(); i++) {
+            long sequence = syntheticSequence++;
+            int machine = random.nextInt(config.machines());
+            ObjectNode event = batch.addObject();
+            event.put("eventId", "LG-" + config.seed() + "-" + sequence);
+            event.put("eventTime", now.minusSeconds(random.nextInt(3600)).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            event.put("machineId", machineId(machine));
+            event.put("durationMs", 1000L + random.nextInt(60_000));
+            event.put("defectCount", random.nextInt(10) == 0 ? -1 : random.nextInt(5));
+            event.put("lineId", String.format("L-%03d", machine % 20 + 1));
+            event.put("factoryId", String.format("F-%03d", machine % 4 + 1));
+        }
+        return batch;
+    }
+
+    private String nextQueryPath() {
+        if (!recordedQueries.isEmpty()) {
+            String path = recordedQueries.get(queryCursor);
+            queryCursor = (queryCursor + 1) % recordedQueries.size();
+            return path;
+        }
+
+        LocalDateTime end = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        LocalDateTime start = end.minusHours(1);
+        if (random.nextBoolean()) {
+            return "/api/stats?machineId=" + machineId(random.nextInt(config.machines()))
+                    + "&start=" + start + "&end=" + end;
+        }
+        return "/api/stats/top-defect-lines?factoryId=" + String.format("F-%03d", random.nextInt(4) + 1)
+                + "&from=" + start + "&to=" + end + "&limit=10";
+    }
+
+    private void remember(ObjectNode event) {
+        recentEvents[recentNext] = event;
+        recentNext = (recentNext + 1) % RECENT_EVENTS_CAPACITY;
+        recentCount = Math.min(recentCount + 1, RECENT_EVENTS_CAPACITY);
+    }
+
+    private ObjectNode randomRecentEvent() {
+        return recentEvents[random.nextInt(recentCount)];
+    }
+
+    private static String machineId(int machine) {
+        return String.format("M-%03d", machine + 1);
+    }
+
+    private void loadRecordedTraffic(Path file) {
+        try {
+            for (String line : Files.readAllLines(file)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode entry = mapper.readTree(line);
+                String method = entry.path("method").asText("POST");
+                String path = entry.path("path").asText(BATCH_PATH);
+
+                if ("GET".equalsIgnoreCase(method)) {
+                    recordedQueries.add(path);
+                } else if (entry.path("body").isArray()) {
+                    recordedBatches.add((ArrayNode) entry.get("body"));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read traffic file " + file, e);
+        }
+
+        if (recordedBatches.isEmpty() && recordedQueries.isEmpty()) {
+            throw new IllegalArgumentException("Traffic file " + file + " contains no replayable requests");
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.BatchIngestResponse;
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.util.EventTimes;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.internshala.factory_monitoring.service.TestEvents.event;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BatchClassifierTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 1, 15, 12, 0);
+    private static final long NOW_MILLIS = EventTimes.toEpochMillis(NOW);
+    private static final LocalDateTime EVENT_TIME = NOW.minusMinutes(30);
+
+    /**
+     * The fork-join path must produce exactly what the sequential path produces
+     */
+    @Test
+    public void testParallelClassificationMatchesSequential() {
+        List<EventRequest> events = randomBatch(20_000, new Random(11));
+
+        BatchClassifier.Classification sequential = new BatchClassifier(Integer.MAX_VALUE, 64)
+                .classify(events, storedEvents(), NOW_MILLIS);
+        BatchClassifier.Classification parallel = new BatchClassifier(1, 64)
+                .classify(events, storedEvents(), NOW_MILLIS);
+
+        assertEquals(sequential.getAccepted(), parallel.getAccepted());
+        assertEquals(sequential.getDeduped(), parallel.getDeduped());
+        assertEquals(sequential.getUpdated(), parallel.getUpdated());
+        assertEquals(sequential.getRejected(), parallel.getRejected());
+        assertEquals(events.size(), parallel.getAccepted() + parallel.getDeduped()
+                + parallel.getUpdated() + parallel.getRejected());
+
+        assertEquals(describe(sequential.getRejections().toDetails()), describe(parallel.getRejections().toDetails()));
+        assertEquals(eventIds(sequential.getToInsert()), eventIds(parallel.getToInsert()));
+        assertEquals(eventIds(sequential.getToUpdate()), eventIds(parallel.getToUpdate()));
+    }
+
+    /**
+     * A repeated eventId is inserted or updated once; later occurrences are deduped
+     */
+    @Test
+    public void testRepeatedEventIdInBatchIsResolvedInOrder() {
+        List<EventRequest> events = List.of(
+                event("E-NEW", EVENT_TIME, "M-001", "L-001", "F-001", 1000, 1),
+                event("E-NEW", EVENT_TIME, "M-001", "L-001", "F-001", 2000, 1),
+                // identical to stored -> dedupe
+                event("E-STORED-0", EVENT_TIME, "M-001", "L-001", "F-001", 5000, 0),
+                // first change -> update
+                event("E-STORED-0", EVENT_TIME, "M-001", "L-001", "F-001", 7000, 0),
+                // same receivedTime as the update -> dedupe
+                event("E-STORED-0", EVENT_TIME, "M-001", "L-001", "F-001", 8000, 0));
+
+        BatchClassifier.Classification result = new BatchClassifier(Integer.MAX_VALUE, 64)
+                .classify(events, storedEvents(), NOW_MILLIS);
+
+        assertEquals(1, result.getAccepted());
+        assertEquals(1, result.getUpdated());
+        assertEquals(3, result.getDeduped());
+        assertEquals(7000L, result.getToUpdate().get(0).getDurationMs());
+    }
+
+    private static Map<String, MachineEvent> storedEvents() {
+        Map<String, MachineEvent> stored = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            EventRequest request = event("E-STORED-" + i, EVENT_TIME, "M-001", "L-001", "F-001", 5000, 0);
+            stored.put(request.getEventId(), BatchClassifier.convertToEntity(request, NOW.minusHours(1)));
+        }
+        return stored;
+    }
+
+    private static List<EventRequest> randomBatch(int size, Random random) {
+        List<EventRequest> events = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            String eventId = random.nextInt(4) == 0
+                    ? "E-STORED-" + random.nextInt(500)
+                    : "E-NEW-" + random.nextInt(size / 2);
+            long duration = random.nextInt(20) == 0 ? -1 : 5000 + random.nextInt(3) * 1000;
+            EventRequest event = event(eventId, EVENT_TIME, "M-001", "L-001", "F-001", duration,
+                    random.nextInt(3));
+            if (random.nextInt(50) == 0) {
+                event.setEventTime(NOW.plusHours(1));
+            }
+            events.add(event);
+        }
+        return events;
+    }
+
+    private static List<String> eventIds(List<MachineEvent> events) {
+        return events.stream().map(e -> e.getEventId() + "/" + e.getDurationMs()).toList();
+    }
+
+    private static List<String> describe(List<BatchIngestResponse.RejectionDetail> details) {
+        return details.stream().map(d -> d.getEventId() + "/" + d.getReason()).toList();
+    }
+}
@@ -0,0 +1,189 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.controller.EventController;
+import com.internshala.factory_monitoring.dto.BatchIngestResponse;
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import org.h2.api.Trigger;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.internshala.factory_monitoring.service.TestEvents.event;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "factory.ingest.chunk.initial-size=4",
+        "factory.ingest.chunk.min-size=2",
+        "factory.ingest.chunk.max-size=8",
+        "factory.ingest.chunk.target-latency=PT1M",
+        "spring.datasource.url=jdbc:h2:mem:chunk_test"
+})
+public class ChunkedIngestTest {
+
+    private static final LocalDateTime EVENT_TIME = LocalDateTime.now().minusMinutes(30);
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @Autowired
+    private EventController eventController;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Rows with this eventId fail to insert while the trigger is installed
+    private static final String FAILING_EVENT_ID = "E-CHK-9";
+
+    /**
+     * Fails every insert of {@link #FAILING_EVENT_ID}, like a write that hits a
+     * transient database error.
+     */
+    public static class FailingInsert implements Trigger {
+        @Override
+        public void fire(Connection connection, Object[] oldRow, Object[] newRow) throws SQLException {
+            if (Arrays.asList(newRow).contains(FAILING_EVENT_ID)) {
+                throw new SQLException("Injected failure for " + FAILING_EVENT_ID);
+            }
+        }
+    }
+
+    /**
+     * Test 1: Chunk outcomes cover the batch and add up to the merged counts
+     */
+    @Test
+    public void testChunkOutcomesAddUp() {
+        List<EventRequest> batch = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            batch.add(event("E-CH-" + i, EVENT_TIME, "M-CH", "L-CH", "F-CH", 1000L, 0));
+        }
+        batch.set(5, event("E-CH-5", EVENT_TIME, "M-CH", "L-CH", "F-CH", -1L, 0));
+        // Repeats of an earlier eventId in a later chunk are deduped, as within one chunk
+        batch.set(11, event("E-CH-0", EVENT_TIME, "M-CH", "L-CH", "F-CH", 2000L, 0));
+
+        BatchIngestResponse response = eventService.ingestBatch(batch);
+        assertEquals(10, response.getAccepted());
+        assertEquals(1, response.getDeduped());
+        assertEquals(1, response.getRejected());
+        assertEquals(1, response.getRejections().size());
+
+        List<BatchIngestResponse.ChunkOutcome> chunks = response.getChunks();
+        assertNotNull(chunks);
+        assertTrue(chunks.size() > 1);
+        int offset = 0;
+        int accepted = 0;
+        for (BatchIngestResponse.ChunkOutcome chunk : chunks) {
+            assertEquals(offset, chunk.getOffset());
+            assertEquals(BatchIngestResponse.ChunkOutcome.COMMITTED, chunk.getStatus());
+            offset += chunk.getSize();
+            accepted += chunk.getAccepted();
+        }
+        assertEquals(batch.size(), offset);
+        assertEquals(response.getAccepted(), accepted);
+        assertEquals(1000L, repository.findByEventId("E-CH-0").orElseThrow().getDurationMs());
+    }
+
+    /**
+     * Test 2: A chunk that cannot be stored is rolled back alone
+     */
+    @Test
+    public void testFailedChunkDoesNotRollBackOthers() {
+        List<EventRequest> batch = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            batch.add(event("E-CHF-" + i, EVENT_TIME, "M-CH", "L-CH", "F-CH", 1000L, 0));
+        }
+        // Violates the NOT NULL eventId column (the controller would have rejected it)
+        batch.set(11, event(null, EVENT_TIME, "M-CH", "L-CH", "F-CH", 1000L, 0));
+
+        BatchIngestResponse response = eventService.ingestBatch(batch);
+
+        List<BatchIngestResponse.ChunkOutcome> failed = response.getChunks().stream()
+                .filter(chunk -> BatchIngestResponse.ChunkOutcome.FAILED.equals(chunk.getStatus()))
+                .toList();
+        assertEquals(1, failed.size());
+        int failedFrom = failed.get(0).getOffset();
+        assertEquals(batch.size(), failedFrom + failed.get(0).getSize());
+
+        assertEquals(failedFrom, response.getAccepted());
+        assertEquals(batch.size() - failedFrom, response.getRejected());
+        assertTrue(response.getRejections().stream()
+                .allMatch(rejection -> rejection.getReason().startsWith("STORAGE_FAILED")));
+        assertTrue(repository.findByEventId("E-CHF-0").isPresent());
+        assertTrue(repository.findByEventId("E-CHF-" + (failedFrom - 1)).isPresent());
+        assertFalse(repository.findByEventId("E-CHF-" + failedFrom).isPresent());
+    }
+
+    /**
+     * Test 3: A retry of a partly failed batch with the same Idempotency-Key is stored
+     * again instead of replaying the failure
+     */
+    @Test
+    public void testPartlyFailedBatchIsNotReplayed() {
+        List<EventRequest> batch = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            batch.add(event("E-CHK-" + i, EVENT_TIME, "M-CH", "L-CH", "F-CH", 1000L, 0));
+        }
+
+        jdbcTemplate.execute("CREATE TRIGGER fail_chk BEFORE INSERT ON machine_events FOR EACH ROW CALL '"
+                + FailingInsert.class.getName() + "'");
+        BatchIngestResponse failed;
+        try {
+            failed = eventController.ingestBatch(batch, "full", "K-CHK").getBody();
+        } finally {
+            jdbcTemplate.execute("DROP TRIGGER fail_chk");
+        }
+        assertNotNull(failed);
+        assertTrue(failed.getChunks().stream()
+                .anyMatch(chunk -> BatchIngestResponse.ChunkOutcome.FAILED.equals(chunk.getStatus())));
+        assertTrue(failed.getAccepted() > 0);
+        assertFalse(repository.findByEventId(FAILING_EVENT_ID).isPresent());
+
+        ResponseEntity<BatchIngestResponse> retry = eventController.ingestBatch(batch, "full", "K-CHK");
+        assertEquals("false", retry.getHeaders().getFirst("Idempotent-Replayed"));
+        assertEquals(batch.size() - failed.getAccepted(), retry.getBody().getAccepted());
+        assertEquals(failed.getAccepted(), retry.getBody().getDeduped());
+        assertTrue(repository.findByEventId(FAILING_EVENT_ID).isPresent());
+
+        // Now complete, so a further retry is replayed
+        ResponseEntity<BatchIngestResponse> replay = eventController.ingestBatch(batch, "full", "K-CHK");
+        assertEquals("true", replay.getHeaders().getFirst("Idempotent-Replayed"));
+        assertSame(retry.getBody(), replay.getBody());
+    }
+
+    /**
+     * Test 4: Chunk size grows additively while fast and halves when slow
+     */
+    @Test
+    public void testChunkSizeAdaptsToLatency() {
+        ChunkSizer sizer = new ChunkSizer(100, 50, 400, Duration.ofMillis(100));
+        long fast = Duration.ofMillis(10).toNanos();
+        long slow = Duration.ofMillis(500).toNanos();
+
+        sizer.record(100, fast);
+        assertEquals(150, sizer.current());
+        sizer.record(20, fast); // short tail chunk
+        assertEquals(150, sizer.current());
+        sizer.record(150, slow);
+        assertEquals(75, sizer.current());
+        sizer.record(75, slow);
+        sizer.record(50, slow);
+        assertEquals(50, sizer.current());
+        for (int i = 0; i < 10; i++) {
+            sizer.record(sizer.current(), fast);
+        }
+        assertEquals(400, sizer.current());
+    }
+}
@@ -0,0 +1,101 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.GlobalDefectLinesResponse;
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.util.EventTimes;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.internshala.factory_monitoring.service.TestEvents.event;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:leaderboard_test")
+public class DefectLeaderboardTest {
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private DefectLeaderboard leaderboard;
+
+    /**
+     * Test 1: Lines of all factories are ranked together; updates re-rank and earlier shifts are ignored
+     */
+    @Test
+    public void testRanksLinesAcrossFactories() throws InterruptedException {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime previousShift = EventTimes.toLocalDateTime(
+                leaderboard.shiftOf(EventTimes.toEpochMillis(now)) - 1);
+        eventService.ingestBatch(List.of(
+                event("E-LB-1", now, "M-LB", "L-LB-A", "F-LB-1", 3),
+                event("E-LB-2", now, "M-LB", "L-LB-A", "F-LB-2", 5),
+                event("E-LB-3", now, "M-LB", "L-LB-B", "F-LB-2", 4),
+                event("E-LB-4", previousShift, "M-LB", "L-LB-A", "F-LB-1", 100)));
+
+        assertEquals(List.of("F-LB-2/L-LB-A", "F-LB-2/L-LB-B", "F-LB-1/L-LB-A"), ranking());
+
+        Thread.sleep(5);
+        eventService.ingestBatch(List.of(event("E-LB-2", now, "M-LB", "L-LB-A", "F-LB-2", 1)));
+        assertEquals(List.of("F-LB-2/L-LB-B", "F-LB-1/L-LB-A", "F-LB-2/L-LB-A"), ranking());
+
+        GlobalDefectLinesResponse response = leaderboard.top(1);
+        assertEquals(1, response.getLines().size());
+        assertTrue(!response.getShiftStart().isAfter(now) && response.getShiftEnd().isAfter(now));
+    }
+
+    /**
+     * Test 2: Random inserts and updates give the same top K as regrouping from scratch
+     */
+    @Test
+    public void testHeapMatchesRegrouping() {
+        DefectLeaderboard board = new DefectLeaderboard(null, null, null, Duration.ofHours(8), LocalTime.of(6, 0));
+        LocalDateTime now = LocalDateTime.now();
+        Random random = new Random(7);
+        Map<String, MachineEvent> stored = new HashMap<>();
+
+        for (int i = 0; i < 5000; i++) {
+            String eventId = "E-" + random.nextInt(800);
+            MachineEvent after = new MachineEvent(null, eventId, now, now, "M-1", 1000,
+                    random.nextInt(12) - 1, "L-" + random.nextInt(40), "F-" + random.nextInt(3));
+            MachineEvent before = stored.put(eventId, after);
+            board.onEventsChanged(new EventsChangedEvent(List.of(
+                    new EventChange(before == null ? null : EventSnapshot.of(before), after))));
+        }
+
+        Map<String, long[]> expected = new HashMap<>();
+        for (MachineEvent event : stored.values()) {
+            long[] totals = expected.computeIfAbsent(event.getFactoryId() + "/" + event.getLineId(), k -> new long[2]);
+            totals[0] += Math.max(0, event.getDefectCount());
+            totals[1]++;
+        }
+        List<String> expectedTop = expected.entrySet().stream()
+                .sorted(Comparator.<Map.Entry<String, long[]>>comparingLong(e -> -e.getValue()[0])
+                        .thenComparing(Map.Entry::getKey))
+                .limit(25)
+                .map(e -> e.getKey() + "=" + e.getValue()[0] + "/" + e.getValue()[1])
+                .toList();
+        List<String> actualTop = new ArrayList<>();
+        for (GlobalDefectLinesResponse.RankedLine line : board.top(25).getLines()) {
+            actualTop.add(line.getFactoryId() + "/" + line.getLineId() + "=" + line.getTotalDefects() + "/" + line.getEventCount());
+        }
+        assertEquals(expectedTop, actualTop);
+    }
+
+    private List<String> ranking() {
+        return leaderboard.top(100).getLines().stream()
+                .filter(line -> line.getFactoryId().startsWith("F-LB-"))
+                .map(line -> line.getFactoryId() + "/" + line.getLineId())
+                .toList();
+    }
+}
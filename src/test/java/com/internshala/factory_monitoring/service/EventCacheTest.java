@@ -0,0 +1,141 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.BatchIngestResponse;
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.internshala.factory_monitoring.service.TestEvents.event;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:event_cache_test",
+        "factory.ingest.event-cache.enabled=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+public class EventCacheTest {
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Test 1: Re-sends and updates of stored events are classified from the cache,
+     * and an update replaces the cached payload
+     */
+    @Test
+    public void testResendsAndUpdatesHitTheCache() {
+        LocalDateTime baseTime = LocalDateTime.now().minusHours(1).truncatedTo(ChronoUnit.SECONDS);
+        List<EventRequest> events = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            events.add(event("E-EC-" + i, baseTime.plusSeconds(i), "M-EC", "L-EC", "F-EC", 1));
+        }
+        assertEquals(100, eventService.ingestBatch(events).getAccepted());
+
+        // Identity-inserted events are not cached until first read; that read is one query for all of them
+        double hitsBefore = lookups("hit");
+        double missesBefore = lookups("miss");
+        assertEquals(100, eventService.ingestBatch(events).getDeduped());
+        assertEquals(0, lookups("hit") - hitsBefore);
+        assertEquals(100, lookups("miss") - missesBefore);
+
+        // 90 re-sends and 10 changed payloads, without reading machine_events
+        List<EventRequest> resent = new ArrayList<>(events.subList(10, 100));
+        for (int i = 0; i < 10; i++) {
+            resent.add(event("E-EC-" + i, baseTime.plusSeconds(i), "M-EC", "L-EC", "F-EC", 5));
+        }
+        Statistics statistics = statistics();
+        statistics.clear();
+        hitsBefore = lookups("hit");
+        missesBefore = lookups("miss");
+        BatchIngestResponse response = eventService.ingestBatch(resent);
+        assertEquals(90, response.getDeduped());
+        assertEquals(10, response.getUpdated());
+        assertEquals(100, lookups("hit") - hitsBefore);
+        assertEquals(0, lookups("miss") - missesBefore);
+        assertEquals(0, eventsLoaded(statistics));
+
+        // The updated payloads are what is cached now: sending them again is a duplicate
+        statistics.clear();
+        BatchIngestResponse again = eventService.ingestBatch(resent.subList(90, 100));
+        assertEquals(10, again.getDeduped());
+        assertEquals(0, again.getUpdated());
+        assertEquals(0, eventsLoaded(statistics));
+        assertEquals(5, repository.findByEventId("E-EC-3").orElseThrow().getDefectCount());
+
+        assertTrue(meterRegistry.get("factory.ingest.event-cache.hit-ratio").gauge().value() > 0.0);
+    }
+
+    /**
+     * Test 2: Deleted events leave the cache, and changes made behind the cache's
+     * back are seen after an eviction
+     */
+    @Test
+    public void testDeletesAndEvictionsInvalidate() {
+        LocalDateTime eventTime = LocalDateTime.now().minusHours(2).truncatedTo(ChronoUnit.SECONDS);
+        eventService.ingestBatch(List.of(
+                event("E-EC-DEL", eventTime, "M-EC", "L-EC", "F-EC", 1),
+                event("E-EC-EXT", eventTime, "M-EC", "L-EC", "F-EC", 1)));
+
+        // Bulk delete (as retention does): the event is new again, not a duplicate
+        Long deletedId = repository.findByEventId("E-EC-DEL").orElseThrow().getId();
+        transactionTemplate.executeWithoutResult(status -> repository.deleteByIds(List.of(deletedId)));
+        assertEquals(1, eventService.ingestBatch(
+                List.of(event("E-EC-DEL", eventTime, "M-EC", "L-EC", "F-EC", 1))).getAccepted());
+
+        // Another writer changes the row; once evicted, ingest compares against its payload
+        jdbcTemplate.update("UPDATE machine_events SET defect_count = 7, version = version + 1 "
+                + "WHERE event_id = 'E-EC-EXT'");
+        repository.evictCachedEvents();
+        double missesBefore = lookups("miss");
+        BatchIngestResponse response = eventService.ingestBatch(
+                List.of(event("E-EC-EXT", eventTime, "M-EC", "L-EC", "F-EC", 7)));
+        assertEquals(1, response.getDeduped());
+        assertEquals(1, lookups("miss") - missesBefore);
+
+        MachineEvent stored = repository.findByEventId("E-EC-EXT").orElseThrow();
+        assertEquals(7, stored.getDefectCount());
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    // Events read from the database; events taken from the cache are not counted
+    private static long eventsLoaded(Statistics statistics) {
+        return statistics.getEntityStatistics(MachineEvent.class.getName()).getLoadCount();
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.get("factory.ingest.event-cache.lookups").tag("result", result).counter().count();
+    }
+}
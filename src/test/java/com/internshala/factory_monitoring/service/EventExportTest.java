@@ -0,0 +1,115 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.EventRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The export endpoint over HTTP: its own async timeout instead of the container's,
+ * and a bounded number of exports at a time.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.mvc.async.request-timeout=1ms",
+        "factory.export.timeout=PT1M",
+        "factory.export.max-concurrent=1",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:event_export_test"
+})
+public class EventExportTest {
+
+    private static final LocalDateTime START = LocalDateTime.now().minusHours(2).truncatedTo(ChronoUnit.HOURS);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private EventExportService eventExportService;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    /**
+     * Test 1: An export outlives the container's async timeout, and is refused with 429
+     * while every export slot is taken
+     */
+    @Test
+    public void testExportHasOwnTimeoutAndSlots() throws Exception {
+        List<EventRequest> events = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            EventRequest event = new EventRequest("E-EX-" + i, START.plusSeconds(i), "M-EX", 1000L, 0,
+                    "L-EX", "F-EX");
+            events.add(event);
+        }
+        eventService.ingestBatch(events);
+
+        HttpResponse<String> export = export();
+        assertEquals(200, export.statusCode());
+        assertTrue(export.headers().firstValue("Content-Type").orElseThrow().startsWith("application/x-ndjson"));
+        assertEquals(500, export.body().lines().count());
+
+        EventExportService.Slot slot = eventExportService.startExport();
+        try {
+            HttpResponse<String> busy = export();
+            assertEquals(429, busy.statusCode());
+            assertEquals("1", busy.headers().firstValue("Retry-After").orElseThrow());
+        } finally {
+            slot.release();
+        }
+        assertEquals(200, export().statusCode());
+    }
+
+    /**
+     * Test 2: A slot is given back once however often its export's endings release it,
+     * and a cancelled export stops before its next row
+     */
+    @Test
+    public void testSlotIsReleasedOnceAndCancelStopsExport() {
+        List<EventRequest> events = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            events.add(new EventRequest("E-EXC-" + i, START.plusSeconds(i), "M-EXC", 1000L, 0, "L-EX", "F-EX"));
+        }
+        eventService.ingestBatch(events);
+
+        EventExportService.Slot released = eventExportService.startExport();
+        released.release();
+        released.release();
+        EventExportService.Slot slot = eventExportService.startExport();
+        try {
+            assertThrows(EventExportService.BusyException.class, () -> eventExportService.startExport());
+
+            List<String> written = new ArrayList<>();
+            assertThrows(InterruptedIOException.class, () -> eventExportService.export("M-EXC", START,
+                    START.plusHours(1), null, slot.guard(row -> {
+                        written.add(row.getEventId());
+                        if (written.size() == 10) {
+                            slot.cancel();
+                        }
+                    })));
+            assertEquals(10, written.size());
+        } finally {
+            slot.release();
+        }
+    }
+
+    private HttpResponse<String> export() throws Exception {
+        URI uri = URI.create("http://localhost:" + port + "/api/events/export?machineId=M-EX&start=" + START
+                + "&end=" + START.plusHours(1));
+        return client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -1,14 +1,20 @@
 package com.internshala.factory_monitoring.service;
 
 import com.internshala.factory_monitoring.dto.*;
+import com.internshala.factory_monitoring.entity.Dimension;
 import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.repo.DimensionRepository;
 import com.internshala.factory_monitoring.repo.MachineEventRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.sql.DataSource;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -26,9 +32,21 @@ public class EventServiceTest {
     @Autowired
     private EventService eventService;
 
+    @Autowired
+    private EventExportService eventExportService;
+
     @Autowired
     private MachineEventRepository repository;
 
+    @Autowired
+    private DimensionRepository dimensionRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @BeforeEach
     public void setup() {
         // Clean database before each test
@@ -315,6 +333,175 @@ public class EventServiceTest {
         assertEquals(threadCount * eventsPerThread, count);
     }
 
+    /**
+     * Test 10: Summary mode groups rejections by code with a capped sample and a ticket
+     */
+    @Test
+    public void testSummaryModeGroupsRejectionsByCode() {
+        List<EventRequest> batch = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            EventRequest futureEvent = createEventRequest("E-FUT-" + i, "M-001", 5000, 0);
+            futureEvent.setEventTime(LocalDateTime.now().plusHours(2));
+            batch.add(futureEvent);
+        }
+        batch.add(createEventRequest("E-NEG", "M-001", -1, 0));
+        batch.add(createEventRequest("E-OK", "M-001", 5000, 0));
+
+        BatchIngestResponse response = eventService.ingestBatch(batch, RejectionMode.SUMMARY);
+
+        assertEquals(1, response.getAccepted());
+        assertEquals(51, response.getRejected());
+        assertNull(response.getRejections());
+        assertEquals(2, response.getRejectionSummary().size());
+
+        BatchIngestResponse.RejectionSummary invalidTime = response.getRejectionSummary().get(0);
+        assertEquals("INVALID_TIME", invalidTime.getCode());
+        assertEquals(50, invalidTime.getCount());
+        assertEquals(10, invalidTime.getSampleEventIds().size());
+        assertEquals("INVALID_DURATION", response.getRejectionSummary().get(1).getCode());
+
+        // The ticket gives access to every rejected event
+        assertNotNull(response.getRejectionsTicket());
+        assertEquals(51, eventService.findRejections(response.getRejectionsTicket()).size());
+    }
+
+    /**
+     * Test 11: The same new eventId twice in one batch is stored once instead of failing the batch
+     */
+    @Test
+    public void testRepeatedEventIdInOneBatchIsStoredOnce() {
+        List<EventRequest> batch = new ArrayList<>();
+        batch.add(createEventRequest("E-020", "M-001", 5000, 1));
+        batch.add(createEventRequest("E-020", "M-001", 6000, 2));
+
+        BatchIngestResponse response = eventService.ingestBatch(batch);
+
+        assertEquals(1, response.getAccepted());
+        assertEquals(1, response.getDeduped());
+        assertEquals(5000L, repository.findByEventId("E-020").orElseThrow().getDurationMs());
+    }
+
+    /**
+     * Test 12: Machine/line/factory ids get one dictionary entry each and round-trip as strings
+     */
+    @Test
+    public void testDimensionIdsAreDictionaryEncoded() {
+        List<EventRequest> batch = new ArrayList<>();
+        batch.add(createEventRequest("E-030", "M-DICT-1", 5000, 1));
+        batch.add(createEventRequest("E-031", "M-DICT-1", 5000, 1));
+        batch.add(createEventRequest("E-032", "M-DICT-2", 5000, 1));
+        eventService.ingestBatch(batch);
+
+        List<Dimension> machines = dimensionRepository.findByKindAndExternalIdIn(
+                Dimension.Kind.MACHINE, List.of("M-DICT-1", "M-DICT-2"));
+        assertEquals(2, machines.size());
+
+        MachineEvent stored = repository.findByEventId("E-032").orElseThrow();
+        assertEquals("M-DICT-2", stored.getMachineId());
+        assertEquals("L-001", stored.getLineId());
+        assertEquals("F-001", stored.getFactoryId());
+
+        // Queries for unknown ids match nothing and do not create entries
+        LocalDateTime now = LocalDateTime.now();
+        assertEquals(0, eventService.getStats("M-DICT-UNKNOWN", now.minusHours(1), now).getEventsCount());
+        assertTrue(dimensionRepository.findByKindAndExternalIdIn(
+                Dimension.Kind.MACHINE, List.of("M-DICT-UNKNOWN")).isEmpty());
+
+        // The remembered miss is forgotten once the id is ingested
+        eventService.ingestBatch(List.of(createEventRequest("E-033", "M-DICT-UNKNOWN", 5000, 1)));
+        assertEquals(1, eventService.getStats("M-DICT-UNKNOWN", now.minusHours(1), now).getEventsCount());
+    }
+
+    /**
+     * Test 13: Export streams rows in (eventTime, id) order and resumes after a cursor
+     */
+    @Test
+    public void testExportResumesAfterCursor() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2026, 1, 15, 10, 0);
+        List<EventRequest> batch = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            EventRequest event = createEventRequest("E-EXP-" + i, "M-EXP", 5000, i);
+            // Two events share each timestamp, so the id breaks ties
+            event.setEventTime(start.plusMinutes(i / 2));
+            batch.add(event);
+        }
+        batch.add(createEventRequest("E-EXP-OTHER", "M-OTHER", 5000, 0));
+        eventService.ingestBatch(batch);
+
+        List<ExportedEvent> all = new ArrayList<>();
+        long rows = eventExportService.export("M-EXP", start, start.plusHours(1), null, row -> all.add(copy(row)));
+        assertEquals(5, rows);
+        assertEquals(List.of("E-EXP-0", "E-EXP-1", "E-EXP-2", "E-EXP-3", "E-EXP-4"),
+                all.stream().map(ExportedEvent::getEventId).toList());
+
+        // Resume after the second row, which shares its eventTime with the first
+        List<String> resumed = new ArrayList<>();
+        eventExportService.export("M-EXP", start, start.plusHours(1),
+                ExportCursor.parse(all.get(1).getCursor()), row -> resumed.add(row.getEventId()));
+        assertEquals(List.of("E-EXP-2", "E-EXP-3", "E-EXP-4"), resumed);
+    }
+
+    /**
+     * Test 14: Multi-window stats match one getStats call per machine and window
+     */
+    @Test
+    public void testMultiWindowStatsMatchSingleWindowStats() {
+        LocalDateTime end = LocalDateTime.of(2026, 1, 15, 12, 0);
+        List<EventRequest> batch = new ArrayList<>();
+        int[] minutesAgo = {5, 50, 70, 300, 600, 1000, 1500};
+        for (int i = 0; i < minutesAgo.length; i++) {
+            EventRequest event = createEventRequest("E-MW-" + i, i % 2 == 0 ? "M-MW-1" : "M-MW-2", 1000L, i == 3 ? -1 : i);
+            event.setEventTime(end.minusMinutes(minutesAgo[i]));
+            batch.add(event);
+        }
+        eventService.ingestBatch(batch);
+
+        List<StatsWindow> windows = List.of(
+                StatsWindow.parse("PT1H", end),
+                StatsWindow.parse("PT8H", end),
+                StatsWindow.parse("PT24H", end),
+                StatsWindow.parse("2026-01-15T00:00:00/2026-01-15T06:00:00", end));
+        List<String> machineIds = List.of("M-MW-1", "M-MW-2", "M-MW-NONE");
+        List<StatsResponse> stats = eventService.getStatsForWindows(machineIds, windows);
+
+        assertEquals(machineIds.size() * windows.size(), stats.size());
+        int index = 0;
+        for (String machineId : machineIds) {
+            for (StatsWindow window : windows) {
+                StatsResponse expected = eventService.getStats(machineId, window.getStart(), window.getEnd());
+                StatsResponse actual = stats.get(index++);
+                assertEquals(machineId, actual.getMachineId());
+                assertEquals(window.getStart(), actual.getStart());
+                assertEquals(expected.getEventsCount(), actual.getEventsCount());
+                assertEquals(expected.getDefectsCount(), actual.getDefectsCount());
+                assertEquals(expected.getAvgDefectRate(), actual.getAvgDefectRate());
+                assertEquals(expected.getStatus(), actual.getStatus());
+            }
+        }
+        // Events 5, 70 and 600 minutes before the end; the 1000- and 1500-minute ones fall outside 24h
+        assertEquals(3L, stats.get(2).getEventsCount());
+        assertEquals(0L, stats.get(2 * windows.size()).getEventsCount());
+    }
+
+    /**
+     * Test 15: A dictionary miss inside a transaction reads the table on the caller's
+     * connection, so it sees the test transaction's uncommitted entry and takes no second one
+     */
+    @Test
+    public void testDictionaryMissUsesCallersConnection() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("INSERT INTO dimensions (kind, external_id) VALUES ('MACHINE', 'M-DICT-TX')");
+        int key = jdbcTemplate.queryForObject(
+                "SELECT id FROM dimensions WHERE kind = 'MACHINE' AND external_id = 'M-DICT-TX'", Integer.class);
+
+        assertEquals(key, newDictionary().keyOf(Dimension.Kind.MACHINE, "M-DICT-TX"));
+        assertEquals("M-DICT-TX", newDictionary().externalIdOf(key));
+    }
+
+    private DimensionDictionary newDictionary() {
+        return new DimensionDictionary(dimensionRepository, transactionManager, dataSource, 100, Duration.ofSeconds(5));
+    }
+
     /**
      * Helper method to create EventRequest
      */
@@ -329,4 +516,12 @@ public class EventServiceTest {
         event.setFactoryId("F-001");
         return event;
     }
+
+    // Export rows are reused between callbacks
+    private ExportedEvent copy(ExportedEvent row) {
+        ExportedEvent copy = new ExportedEvent();
+        copy.setEventId(row.getEventId());
+        copy.setCursor(row.getCursor());
+        return copy;
+    }
 }
\ No newline at end of file
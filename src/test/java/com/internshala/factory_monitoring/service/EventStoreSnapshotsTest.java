@@ -0,0 +1,141 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.FactoryMonitoringApplication;
+import com.internshala.factory_monitoring.dto.BatchIngestResponse;
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.dto.FleetResponse;
+import com.internshala.factory_monitoring.dto.SnapshotResponse;
+import com.internshala.factory_monitoring.dto.StatsResponse;
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.internshala.factory_monitoring.service.TestEvents.event;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Snapshots written by one application instance and restored by a fresh one with
+ * its own in-memory database, as after a restart.
+ */
+public class EventStoreSnapshotsTest {
+
+    private static final Path SNAPSHOT_DIR = Path.of("target", "snapshot-test");
+
+    @BeforeEach
+    public void clearSnapshots() throws IOException {
+        FileSystemUtils.deleteRecursively(SNAPSHOT_DIR);
+    }
+
+    /**
+     * Test 1: A restored instance has the same events, ids, stats and heartbeats, and keeps ingesting
+     */
+    @Test
+    public void testSnapshotRestoredAfterRestart() {
+        LocalDateTime baseTime = LocalDateTime.now().minusHours(3).truncatedTo(ChronoUnit.HOURS);
+        StatsResponse before;
+        FleetResponse fleetBefore;
+        try (ConfigurableApplicationContext original = startInstance("snapshot_original", false)) {
+            EventService eventService = original.getBean(EventService.class);
+            assertEquals(250, eventService.ingestBatch(events("E-SNAP-", 250, baseTime)).getAccepted());
+
+            SnapshotResponse snapshot = original.getBean(EventStoreSnapshots.class).write();
+            assertEquals(250, snapshot.getRows().get("machine_events"));
+            assertEquals(5, snapshot.getRows().get("machine_heartbeats"));
+            assertTrue(snapshot.getFileBytes() > 0);
+
+            before = eventService.getStats("M-SNAP-1", baseTime, baseTime.plusHours(3));
+            fleetBefore = original.getBean(MachineHeartbeats.class).fleet("F-SNAP");
+        }
+
+        try (ConfigurableApplicationContext restored = startInstance("snapshot_restored", true)) {
+            MachineEventRepository repository = restored.getBean(MachineEventRepository.class);
+            assertEquals(250, repository.count());
+            MachineEvent event = repository.findByEventId("E-SNAP-7").orElseThrow();
+            assertEquals("M-SNAP-2", event.getMachineId());
+            assertEquals("L-SNAP-1", event.getLineId());
+            assertEquals(baseTime.plusSeconds(7 * 30), event.getEventTime());
+
+            // Aggregates are built from the restored rows
+            EventService eventService = restored.getBean(EventService.class);
+            StatsResponse after = eventService.getStats("M-SNAP-1", baseTime, baseTime.plusHours(3));
+            assertEquals(before.getEventsCount(), after.getEventsCount());
+            assertEquals(before.getDefectsCount(), after.getDefectsCount());
+            FleetResponse fleetAfter = restored.getBean(MachineHeartbeats.class).fleet("F-SNAP");
+            assertEquals(fleetBefore.getMachineCount(), fleetAfter.getMachineCount());
+            assertEquals(fleetBefore.getMachines().get(0).getEventCount(),
+                    fleetAfter.getMachines().get(0).getEventCount());
+
+            // Identity and dimension keys continue after the restored ones
+            BatchIngestResponse next = eventService.ingestBatch(List.of(
+                    event("E-SNAP-NEW", baseTime, "M-SNAP-NEW", "L-SNAP-0", "F-SNAP", 1),
+                    event("E-SNAP-7", baseTime.plusSeconds(7 * 30), "M-SNAP-2", "L-SNAP-1", "F-SNAP", 4)));
+            assertEquals(1, next.getAccepted());
+            assertEquals(1, next.getUpdated());
+            assertEquals(251, repository.count());
+        }
+    }
+
+    /**
+     * Test 2: A corrupt newest snapshot is skipped and the previous one restored
+     */
+    @Test
+    public void testCorruptSnapshotFallsBackToOlder() throws Exception {
+        LocalDateTime baseTime = LocalDateTime.now().minusHours(3).truncatedTo(ChronoUnit.HOURS);
+        Path newest;
+        try (ConfigurableApplicationContext original = startInstance("snapshot_corrupt", false)) {
+            EventService eventService = original.getBean(EventService.class);
+            EventStoreSnapshots snapshots = original.getBean(EventStoreSnapshots.class);
+            eventService.ingestBatch(events("E-SNAP-A-", 100, baseTime));
+            snapshots.write();
+            Thread.sleep(5);
+            eventService.ingestBatch(events("E-SNAP-B-", 100, baseTime));
+            newest = Path.of(snapshots.write().getFile());
+            assertEquals(2, snapshots.snapshots().size());
+        }
+
+        // Flip one byte in the middle of the compressed data
+        byte[] bytes = Files.readAllBytes(newest);
+        bytes[bytes.length / 2] ^= 0x5A;
+        Files.write(newest, bytes);
+
+        try (ConfigurableApplicationContext restored = startInstance("snapshot_fallback", true)) {
+            MachineEventRepository repository = restored.getBean(MachineEventRepository.class);
+            assertEquals(100, repository.count());
+            assertTrue(repository.findByEventId("E-SNAP-A-0").isPresent());
+            assertFalse(repository.findByEventId("E-SNAP-B-0").isPresent());
+        }
+    }
+
+    // Arguments, not default properties: these must override application.properties
+    private static ConfigurableApplicationContext startInstance(String database, boolean restore) {
+        return new SpringApplicationBuilder(FactoryMonitoringApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:" + database,
+                        "--spring.jpa.show-sql=false",
+                        "--factory.snapshot.dir=" + SNAPSHOT_DIR,
+                        "--factory.snapshot.restore-on-startup=" + restore,
+                        "--factory.snapshot.page-size=64");
+    }
+
+    private static List<EventRequest> events(String prefix, int count, LocalDateTime baseTime) {
+        List<EventRequest> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(event(prefix + i, baseTime.plusSeconds(i * 30L), "M-SNAP-" + (i % 5), "L-SNAP-" + (i % 2),
+                    "F-SNAP", i % 7 == 0 ? -1 : i % 3));
+        }
+        return events;
+    }
+}
@@ -0,0 +1,117 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.FactorySummaryResponse;
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.internshala.factory_monitoring.service.TestEvents.event;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "factory.stats.serve-final-from-rollup=true",
+        "factory.stats.rollup.max-age=P3650D",
+        "factory.query.max-rows=3",
+        "factory.watermark.allowed-lateness=PT1H",
+        "spring.datasource.url=jdbc:h2:mem:factory_summary_test"
+})
+public class FactorySummaryTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 1, 15, 0, 0);
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private FactorySummaryService factorySummaryService;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    /**
+     * Test 1: Per-line and per-machine utilization, throughput and defect rate, with
+     * unknown defects and events without a line left out of the defect counts and lines
+     */
+    @Test
+    public void testLineAndMachineFigures() {
+        eventService.ingestBatch(List.of(
+                event("E-FS-1", DAY.plusMinutes(10), "M-FS-1", "L-FS-A", "F-FS", 1_800_000, 2),
+                event("E-FS-2", DAY.plusMinutes(70), "M-FS-1", "L-FS-A", "F-FS", 1_800_000, -1),
+                event("E-FS-3", DAY.plusMinutes(20), "M-FS-2", "L-FS-A", "F-FS", 720_000, 0),
+                event("E-FS-4", DAY.plusMinutes(30), "M-FS-3", "L-FS-B", "F-FS", 3_600_000, 5),
+                event("E-FS-5", DAY.plusMinutes(40), "M-FS-3", null, "F-FS", 1000, 9),
+                event("E-FS-6", DAY.plusHours(2), "M-FS-1", "L-FS-A", "F-FS", 1000, 1),
+                event("E-FS-7", LocalDateTime.now().minusMinutes(5), "M-FS-1", "L-FS-A", "F-FS", 1000, 0),
+                event("E-FS-8", LocalDateTime.now().minusMinutes(5), "M-FS-2", "L-FS-A", "F-FS", 1000, 0),
+                event("E-FS-9", LocalDateTime.now().minusMinutes(5), "M-FS-3", "L-FS-B", "F-FS", 1000, 0)));
+
+        FactorySummaryResponse summary = factorySummaryService.summarize("F-FS", DAY, DAY.plusHours(2));
+        assertTrue(summary.isWindowFinal());
+        assertEquals(2.0, summary.getWindowHours());
+        assertEquals(2, summary.getRollupHours());
+        assertEquals(List.of("L-FS-A", "L-FS-B"),
+                summary.getLines().stream().map(FactorySummaryResponse.LineSummary::getLineId).toList());
+
+        FactorySummaryResponse.LineSummary lineA = summary.getLines().get(0);
+        assertEquals(3, lineA.getEventCount());
+        assertEquals(2, lineA.getDefectCount());
+        assertEquals(4_320_000, lineA.getTotalDurationMs());
+        assertEquals(2, lineA.getMachineCount());
+        assertEquals(30.0, lineA.getUtilizationPercent());
+        assertEquals(1.5, lineA.getEventsPerHour());
+        assertEquals(666.67, lineA.getDefectsPer1000Events());
+
+        FactorySummaryResponse.MachineSummary machine = lineA.getMachines().get(0);
+        assertEquals("M-FS-1", machine.getMachineId());
+        assertEquals(2, machine.getEventCount());
+        assertEquals(50.0, machine.getUtilizationPercent());
+        assertEquals(1000.0, machine.getDefectsPer1000Events());
+        assertEquals(10.0, lineA.getMachines().get(1).getUtilizationPercent());
+
+        FactorySummaryResponse.Usage totals = summary.getTotals();
+        assertEquals(4, totals.getEventCount());
+        assertEquals(7, totals.getDefectCount());
+        assertEquals(3, totals.getMachineCount());
+        assertEquals(36.67, totals.getUtilizationPercent());
+    }
+
+    /**
+     * Test 2: Partial hours at the edges of an expensive window are read from the database
+     * and added to the whole hours from the rollup; cheap windows are read from the database
+     */
+    @Test
+    public void testEdgesAreReadFromDatabase() {
+        eventService.ingestBatch(List.of(
+                event("E-FS-10", DAY.plusHours(5).plusMinutes(50), "M-FS-10", "L-FS-C", "F-FS-EDGE", 1000, 1),
+                event("E-FS-11", DAY.plusHours(6).plusMinutes(30), "M-FS-10", "L-FS-C", "F-FS-EDGE", 1000, 1),
+                event("E-FS-12", DAY.plusHours(7).plusMinutes(5), "M-FS-10", "L-FS-C", "F-FS-EDGE", 1000, 1),
+                event("E-FS-13", DAY.plusHours(7).plusMinutes(20), "M-FS-10", "L-FS-C", "F-FS-EDGE", 1000, 1),
+                event("E-FS-14", LocalDateTime.now().minusMinutes(5), "M-FS-10", "L-FS-C", "F-FS-EDGE", 1000, 0)));
+
+        FactorySummaryResponse summary = factorySummaryService.summarize("F-FS-EDGE",
+                DAY.plusHours(5).plusMinutes(45), DAY.plusHours(7).plusMinutes(10));
+        assertEquals(1, summary.getRollupHours());
+        assertEquals(3, summary.getTotals().getEventCount());
+
+        // A row written behind ingest's back is only seen in the edges
+        MachineEvent hidden = new MachineEvent(null, "E-FS-HIDDEN", DAY.plusHours(6).plusMinutes(40),
+                LocalDateTime.now(), "M-FS-10", 1000, 0, "L-FS-C", "F-FS-EDGE");
+        repository.save(hidden);
+        assertEquals(3, factorySummaryService.summarize("F-FS-EDGE",
+                DAY.plusHours(5).plusMinutes(45), DAY.plusHours(7).plusMinutes(10)).getTotals().getEventCount());
+        FactorySummaryResponse singleHour = factorySummaryService.summarize("F-FS-EDGE",
+                DAY.plusHours(6).plusMinutes(15), DAY.plusHours(6).plusMinutes(45));
+        assertEquals(0, singleHour.getRollupHours());
+        assertEquals(2, singleHour.getTotals().getEventCount());
+        repository.delete(hidden);
+
+        assertTrue(factorySummaryService.summarize("F-FS-NONE", DAY, DAY.plusDays(30)).getLines().isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> factorySummaryService.summarize("F-FS-EDGE", DAY.plusHours(1), DAY));
+    }
+}
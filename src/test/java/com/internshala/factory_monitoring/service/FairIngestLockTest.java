@@ -0,0 +1,77 @@
+package com.internshala.factory_monitoring.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FairIngestLockTest {
+
+    /**
+     * A factory flooding the lock with batches does not hold up another factory's batch
+     * for more than one of its turns
+     */
+    @Test
+    public void testFloodingFactoryDoesNotStarveOthers() throws Exception {
+        List<String> order = runQueued(new FairIngestLock(1000), 1000, 20);
+
+        assertEquals(21, order.size());
+        assertTrue(order.indexOf("F-QUIET") <= 1, "F-QUIET let in at " + order.indexOf("F-QUIET"));
+    }
+
+    /**
+     * A turn is measured in events: a factory sending small batches gets several of them in per turn
+     */
+    @Test
+    public void testTurnIsMeasuredInEvents() throws Exception {
+        List<String> order = runQueued(new FairIngestLock(5000), 1000, 20);
+
+        assertEquals(5, order.indexOf("F-QUIET"));
+        assertEquals(List.of("F-FLOOD"), order.subList(0, 5).stream().distinct().toList());
+    }
+
+    /**
+     * The lock is taken at once when free, and can be released by another thread
+     */
+    @Test
+    public void testFreeLockAndReleaseFromAnotherThread() throws Exception {
+        FairIngestLock lock = new FairIngestLock(1000);
+        lock.acquire("F-1", 10);
+        Thread releaser = new Thread(lock::release);
+        releaser.start();
+        releaser.join();
+
+        lock.acquire("F-2", 10);
+        lock.release();
+        assertEquals(0, lock.waiting());
+    }
+
+    // Queues floodBatches of F-FLOOD, then one F-QUIET batch, behind a held lock; returns the order they got in
+    private static List<String> runQueued(FairIngestLock lock, int events, int floodBatches) throws Exception {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        lock.acquire("F-HOLD", 0);
+        for (int i = 0; i <= floodBatches; i++) {
+            String factoryId = i < floodBatches ? "F-FLOOD" : "F-QUIET";
+            Thread thread = new Thread(() -> {
+                lock.acquire(factoryId, events);
+                order.add(factoryId);
+                lock.release();
+            });
+            thread.start();
+            threads.add(thread);
+            // One at a time, so the flood is queued first
+            while (lock.waiting() < i + 1) {
+                Thread.sleep(1);
+            }
+        }
+        lock.release();
+        for (Thread thread : threads) {
+            thread.join(10_000);
+        }
+        return order;
+    }
+}
@@ -0,0 +1,148 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.BatchIngestResponse;
+import com.internshala.factory_monitoring.dto.EventRequest;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyStoreTest {
+
+    private final IdempotencyStore store = new IdempotencyStore(100, Duration.ofMinutes(10), Duration.ofSeconds(5));
+
+    /**
+     * Concurrent requests with one key run the ingest once; the others wait and replay its response
+     */
+    @Test
+    public void testInFlightDuplicatesWaitForFirstResult() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<IdempotencyStore.Outcome>> outcomes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            outcomes.add(executor.submit(() -> store.execute("K-1", "fp", () -> {
+                runs.incrementAndGet();
+                await(release);
+                return response(7);
+            })));
+        }
+        Thread.sleep(100);
+        release.countDown();
+
+        int replayed = 0;
+        for (Future<IdempotencyStore.Outcome> outcome : outcomes) {
+            assertEquals(7, outcome.get().response().getAccepted());
+            replayed += outcome.get().replayed() ? 1 : 0;
+        }
+        executor.shutdown();
+        assertEquals(1, runs.get());
+        assertEquals(3, replayed);
+    }
+
+    /**
+     * A key reused for a different batch is refused; a failed batch is not remembered
+     */
+    @Test
+    public void testReusedKeyAndFailures() {
+        store.execute("K-2", "fp-a", () -> response(1));
+        assertThrows(IdempotencyStore.KeyReusedException.class,
+                () -> store.execute("K-2", "fp-b", () -> response(2)));
+
+        assertThrows(IllegalStateException.class, () -> store.execute("K-3", "fp", () -> {
+            throw new IllegalStateException("database down");
+        }));
+        IdempotencyStore.Outcome retry = store.execute("K-3", "fp", () -> response(3));
+        assertFalse(retry.replayed());
+        assertEquals(3, retry.response().getAccepted());
+    }
+
+    /**
+     * A batch with a chunk that failed to store is answered but not remembered
+     */
+    @Test
+    public void testIncompleteBatchIsNotReplayed() {
+        BatchIngestResponse partial = response(4);
+        partial.setIncomplete(true);
+        assertSame(partial, store.execute("K-4", "fp", () -> partial).response());
+
+        IdempotencyStore.Outcome retry = store.execute("K-4", "fp", () -> response(8));
+        assertFalse(retry.replayed());
+        assertEquals(8, retry.response().getAccepted());
+        assertTrue(store.execute("K-4", "fp", () -> response(9)).replayed());
+    }
+
+    /**
+     * A batch still running is not evicted by the batches completing meanwhile, so its
+     * duplicate waits for it instead of running again
+     */
+    @Test
+    public void testPendingEntryIsNeverEvicted() throws Exception {
+        IdempotencyStore small = new IdempotencyStore(1, Duration.ofMinutes(10), Duration.ofSeconds(5));
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<IdempotencyStore.Outcome> first = executor.submit(() -> small.execute("K-5", "fp", () -> {
+            runs.incrementAndGet();
+            running.countDown();
+            await(release);
+            return response(5);
+        }));
+        running.await();
+        small.execute("K-6", "fp", () -> response(6));
+        small.execute("K-7", "fp", () -> response(7));
+
+        Future<IdempotencyStore.Outcome> duplicate = executor.submit(() -> small.execute("K-5", "fp", () -> {
+            runs.incrementAndGet();
+            return response(50);
+        }));
+        Thread.sleep(100);
+        release.countDown();
+        assertEquals(5, first.get().response().getAccepted());
+        assertTrue(duplicate.get().replayed());
+        assertEquals(5, duplicate.get().response().getAccepted());
+        executor.shutdown();
+        assertEquals(1, runs.get());
+    }
+
+    /**
+     * The fingerprint covers every field
+     */
+    @Test
+    public void testFingerprintChangesWithAnyField() {
+        EventRequest event = new EventRequest("E-1", LocalDateTime.of(2026, 1, 15, 10, 0), "M-1", 5000L, 1, "L-1", "F-1");
+        String original = IdempotencyStore.fingerprint(List.of(event));
+        assertEquals(original, IdempotencyStore.fingerprint(List.of(
+                new EventRequest("E-1", LocalDateTime.of(2026, 1, 15, 10, 0), "M-1", 5000L, 1, "L-1", "F-1"))));
+
+        event.setDefectCount(2);
+        assertNotEquals(original, IdempotencyStore.fingerprint(List.of(event)));
+        event.setDefectCount(1);
+        event.setLineId(null);
+        assertNotEquals(original, IdempotencyStore.fingerprint(List.of(event)));
+    }
+
+    private static BatchIngestResponse response(int accepted) {
+        BatchIngestResponse response = new BatchIngestResponse();
+        response.setAccepted(accepted);
+        return response;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
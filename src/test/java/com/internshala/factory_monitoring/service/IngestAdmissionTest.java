@@ -0,0 +1,121 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.EventRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IngestAdmissionTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    // 100 events/s per factory, F-FAST 1000 events/s; burst of 2 seconds; two unconfigured factories at a time
+    private final IngestAdmission admission = new IngestAdmission(
+            new MockEnvironment()
+                    .withProperty("factory.admission.rates.F-1", "100")
+                    .withProperty("factory.admission.rates.F-2", "100")
+                    .withProperty("factory.admission.rates.F-FAST", "1000"),
+            registry, true, 100, Duration.ofSeconds(2), 2);
+
+    /**
+     * A factory may use its burst, is then throttled until tokens refill, and other factories are unaffected
+     */
+    @Test
+    public void testBurstThenThrottle() {
+        long now = 1_000 * SECOND;
+        admission.admit(batch("F-1", 150), now);
+        admission.admit(batch("F-1", 50), now);
+
+        IngestAdmission.ThrottledException throttled = assertThrows(IngestAdmission.ThrottledException.class,
+                () -> admission.admit(batch("F-1", 10), now));
+        assertEquals("F-1", throttled.getFactoryId());
+        assertEquals(1, throttled.getRetryAfterSeconds());
+
+        admission.admit(batch("F-2", 200), now);
+        admission.admit(batch("F-FAST", 2000), now);
+        admission.admit(batch("F-1", 10), now + SECOND / 10);
+
+        assertEquals(210, count("F-1", "admitted"));
+        assertEquals(10, count("F-1", "throttled"));
+    }
+
+    /**
+     * A batch with more of a factory's events than its burst is refused even from a full bucket, and takes nothing from it
+     */
+    @Test
+    public void testOversizedBatchIsRefused() {
+        long now = 1_000 * SECOND;
+        IngestAdmission.TooLargeException tooLarge = assertThrows(IngestAdmission.TooLargeException.class,
+                () -> admission.admit(batch("F-1", 201), now));
+        assertEquals("F-1", tooLarge.getFactoryId());
+        assertEquals(200, tooLarge.getMaxEvents());
+
+        // The whole burst is still there
+        admission.admit(batch("F-1", 200), now);
+        assertThrows(IngestAdmission.ThrottledException.class, () -> admission.admit(batch("F-1", 1), now));
+        assertEquals(200, count("F-1", "admitted"));
+    }
+
+    /**
+     * A mixed batch is admitted for all of its factories or for none
+     */
+    @Test
+    public void testMixedBatchIsAllOrNothing() {
+        long now = 1_000 * SECOND;
+        admission.admit(batch("F-2", 200), now);
+
+        List<EventRequest> mixed = batch("F-1", 50);
+        mixed.addAll(batch("F-2", 1));
+        assertThrows(IngestAdmission.ThrottledException.class, () -> admission.admit(mixed, now));
+
+        // F-1's share of the rejected batch was given back
+        admission.admit(batch("F-1", 200), now);
+        assertEquals(50, count("F-1", "throttled"));
+    }
+
+    /**
+     * Unconfigured factories get a bucket each up to the cap, then share one until a bucket
+     * is full again; none of them gets its own meters
+     */
+    @Test
+    public void testUnconfiguredFactoriesAreBounded() {
+        long now = 1_000 * SECOND;
+        admission.admit(batch("F-A", 200), now);
+        admission.admit(batch("F-B", 200), now);
+
+        // Both slots are in debt, so F-C and F-D share the overflow bucket
+        admission.admit(batch("F-C", 150), now);
+        assertThrows(IngestAdmission.ThrottledException.class, () -> admission.admit(batch("F-D", 100), now));
+        admission.admit(batch("F-D", 50), now);
+
+        // Once F-A's bucket is full again it is dropped and F-E takes the slot
+        admission.admit(batch("F-E", 200), now + 2 * SECOND);
+        assertThrows(IngestAdmission.ThrottledException.class, () -> admission.admit(batch("F-E", 1), now + 2 * SECOND));
+
+        assertEquals(800, count(IngestAdmission.OTHER, "admitted"));
+        assertEquals(101, count(IngestAdmission.OTHER, "throttled"));
+        assertNull(registry.find("factory.ingest.admission").tag("factory", "F-A").counter());
+    }
+
+    private double count(String factoryId, String outcome) {
+        return registry.get("factory.ingest.admission").tag("factory", factoryId).tag("outcome", outcome)
+                .counter().count();
+    }
+
+    private static List<EventRequest> batch(String factoryId, int size) {
+        List<EventRequest> events = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            events.add(new EventRequest("E-" + i, LocalDateTime.now(), "M-1", 1000L, 0, "L-1", factoryId));
+        }
+        return events;
+    }
+}
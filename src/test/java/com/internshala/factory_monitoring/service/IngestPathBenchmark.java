@@ -0,0 +1,158 @@
+package com.internshala.factory_monitoring.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.util.EventTimes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of the per-event CPU work of ingest: JSON parsing, validation,
+ * payload comparison against the stored event and entity conversion.
+ *
+ * {@code legacyPath} reproduces the previous implementation (LocalDateTime and
+ * boxed fields, ChronoUnit.MINUTES.between, LocalDateTime comparisons);
+ * {@code epochMillisPath} runs the current BatchClassifier code. Half of the events
+ * already exist so both the insert and the compare branch are exercised.
+ *
+ * Run with the GC profiler to see allocation per operation (see BENCHMARK.md):
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="IngestPathBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestPathBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final TypeReference<List<EventRequest>> currentType = new TypeReference<>() {};
+    private final TypeReference<List<LegacyEventRequest>> legacyType = new TypeReference<>() {};
+
+    private byte[] payload;
+    private Map<String, MachineEvent> existing;
+    private Map<String, LegacyEntity> legacyExisting;
+    private LocalDateTime receivedTime;
+
+    @Setup
+    public void setup() throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        LocalDateTime base = LocalDateTime.of(2026, 1, 15, 10, 0);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"eventId\":\"E-").append(i)
+                    .append("\",\"eventTime\":\"").append(base.plusSeconds(i * 7L))
+                    .append("\",\"machineId\":\"M-").append(i % 50)
+                    .append("\",\"durationMs\":").append(5000 + i)
+                    .append(",\"defectCount\":").append(i % 7)
+                    .append(",\"lineId\":\"L-").append(i % 5)
+                    .append("\",\"factoryId\":\"F-01\"}");
+        }
+        payload = json.append(']').toString().getBytes();
+
+        receivedTime = LocalDateTime.now().minusHours(1);
+        existing = new HashMap<>();
+        legacyExisting = new HashMap<>();
+        for (EventRequest event : mapper.readValue(payload, currentType)) {
+            if (event.getEventId().hashCode() % 2 == 0) {
+                existing.put(event.getEventId(), BatchClassifier.convertToEntity(event, receivedTime));
+                legacyExisting.put(event.getEventId(), new LegacyEntity(event.getEventTime(),
+                        event.getMachineId(), event.getDurationMs(), event.getDefectCount(),
+                        event.getLineId(), event.getFactoryId(), receivedTime));
+            }
+        }
+    }
+
+    @Benchmark
+    public void epochMillisPath(Blackhole blackhole) throws Exception {
+        List<EventRequest> events = mapper.readValue(payload, currentType);
+        long nowMillis = EventTimes.toEpochMillis(LocalDateTime.now());
+        LocalDateTime now = EventTimes.toLocalDateTime(nowMillis);
+
+        List<MachineEvent> toInsert = new ArrayList<>(events.size());
+        for (EventRequest event : events) {
+            if (BatchClassifier.validateEvent(event, nowMillis) != null) {
+                continue;
+            }
+            MachineEvent stored = existing.get(event.getEventId());
+            if (stored == null) {
+                toInsert.add(BatchClassifier.convertToEntity(event, now));
+            } else {
+                blackhole.consume(BatchClassifier.isIdenticalPayload(stored, event)
+                        || nowMillis > EventTimes.toEpochMillis(stored.getReceivedTime()));
+            }
+        }
+        blackhole.consume(toInsert);
+    }
+
+    @Benchmark
+    public void legacyPath(Blackhole blackhole) throws Exception {
+        List<LegacyEventRequest> events = mapper.readValue(payload, legacyType);
+        LocalDateTime now = LocalDateTime.now();
+
+        List<LegacyEntity> toInsert = new ArrayList<>(events.size());
+        for (LegacyEventRequest event : events) {
+            if (event.durationMs < 0 || event.durationMs > 6 * 60 * 60 * 1000L
+                    || ChronoUnit.MINUTES.between(now, event.eventTime) > 15) {
+                continue;
+            }
+            LegacyEntity stored = legacyExisting.get(event.eventId);
+            if (stored == null) {
+                toInsert.add(new LegacyEntity(event.eventTime, event.machineId, event.durationMs,
+                        event.defectCount, event.lineId, event.factoryId, now));
+            } else {
+                boolean identical = stored.eventTime.equals(event.eventTime)
+                        && stored.machineId.equals(event.machineId)
+                        && stored.durationMs.equals(event.durationMs)
+                        && stored.defectCount.equals(event.defectCount)
+                        && Objects.equals(stored.lineId, event.lineId)
+                        && Objects.equals(stored.factoryId, event.factoryId);
+                blackhole.consume(identical || now.isAfter(stored.receivedTime));
+            }
+        }
+        blackhole.consume(toInsert);
+    }
+
+    // Shape of EventRequest before the epoch-millis change
+    public static class LegacyEventRequest {
+        public String eventId;
+        public LocalDateTime eventTime;
+        public String machineId;
+        public Long durationMs;
+        public Integer defectCount;
+        public String lineId;
+        public String factoryId;
+    }
+
+    // Shape of MachineEvent before the primitive-field change
+    record LegacyEntity(LocalDateTime eventTime, String machineId, Long durationMs, Integer defectCount,
+                        String lineId, String factoryId, LocalDateTime receivedTime) {}
+}
@@ -0,0 +1,239 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.controller.EventController;
+import com.internshala.factory_monitoring.dto.BatchIngestResponse;
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.dto.RejectionMode;
+import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "factory.ingest.chunk.initial-size=4",
+        "factory.ingest.chunk.min-size=2",
+        "factory.ingest.chunk.max-size=8",
+        "factory.ingest.chunk.target-latency=PT1M",
+        "spring.datasource.url=jdbc:h2:mem:ingest_pipeline_test"
+})
+public class IngestPipelineTest {
+
+    private static final String EVENT_TIME = LocalDateTime.now().minusHours(1).withNano(0).toString();
+
+    @Autowired
+    private IngestPipeline ingestPipeline;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @Autowired
+    private EventController eventController;
+
+    @Autowired
+    private ChunkSizer chunkSizer;
+
+    /**
+     * Test 1: A pipelined batch is resolved as one batch: repeats in later chunks are
+     * deduped, stored events are updated once, and chunk outcomes add up
+     */
+    @Test
+    public void testPipelinedBatchMatchesOneBatch() throws Exception {
+        EventRequest stored = new EventRequest("E-PL-OLD", LocalDateTime.parse(EVENT_TIME), "M-PL", 500L, 0,
+                "L-PL", "F-PL");
+        eventService.ingestBatch(List.of(stored));
+
+        List<String> events = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            events.add(json("E-PL-" + i, 1000));
+        }
+        events.set(5, json("E-PL-5", -1));
+        events.set(9, json("E-PL-OLD", 2000));
+        // Repeats of events written by earlier chunks, possibly before those have committed
+        events.set(10, json("E-PL-OLD", 3000));
+        events.set(13, json("E-PL-12", 4000));
+        events.set(19, json("E-PL-0", 5000));
+
+        BatchIngestResponse response = ingestPipeline.ingest(body(events), RejectionMode.FULL);
+        assertEquals(15, response.getAccepted());
+        assertEquals(1, response.getUpdated());
+        assertEquals(3, response.getDeduped());
+        assertEquals(1, response.getRejected());
+        assertEquals("E-PL-5", response.getRejections().get(0).getEventId());
+
+        assertNotNull(response.getChunks());
+        int offset = 0;
+        for (BatchIngestResponse.ChunkOutcome chunk : response.getChunks()) {
+            assertEquals(offset, chunk.getOffset());
+            assertEquals(BatchIngestResponse.ChunkOutcome.COMMITTED, chunk.getStatus());
+            offset += chunk.getSize();
+        }
+        assertEquals(events.size(), offset);
+
+        assertEquals(2000L, repository.findByEventId("E-PL-OLD").orElseThrow().getDurationMs());
+        assertEquals(1000L, repository.findByEventId("E-PL-12").orElseThrow().getDurationMs());
+        assertEquals(1000L, repository.findByEventId("E-PL-0").orElseThrow().getDurationMs());
+    }
+
+    /**
+     * Test 2: An invalid event or malformed JSON before anything was committed ends the
+     * request with the error, and the ingest lock is free again
+     */
+    @Test
+    public void testInvalidBodyEndsRequest() {
+        List<String> events = List.of(json("E-PLB-0", 1000),
+                "{\"eventId\":\"E-PLB-1\",\"eventTime\":\"" + EVENT_TIME + "\",\"durationMs\":1000,\"defectCount\":0}");
+
+        IngestPipeline.InvalidBodyException invalid = assertThrows(IngestPipeline.InvalidBodyException.class,
+                () -> ingestPipeline.ingest(body(events), RejectionMode.FULL));
+        assertTrue(invalid.getMessage().contains("index 1"));
+        assertTrue(invalid.getMessage().contains("machineId is required"));
+        assertTrue(repository.findByEventId("E-PLB-0").isEmpty());
+
+        assertThrows(IngestPipeline.InvalidBodyException.class, () -> ingestPipeline.ingest(
+                new ByteArrayInputStream("[{\"eventId\":".getBytes(StandardCharsets.UTF_8)), RejectionMode.FULL));
+        assertThrows(IngestPipeline.InvalidBodyException.class, () -> ingestPipeline.ingest(
+                new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)), RejectionMode.FULL));
+
+        assertEquals(1, eventService.ingestBatch(List.of(new EventRequest("E-PLB-AFTER",
+                LocalDateTime.parse(EVENT_TIME), "M-PL", 1000L, 0, "L-PL", "F-PL"))).getAccepted());
+    }
+
+    /**
+     * Test 3: A batch that stops after a chunk was committed returns 200 with that
+     * chunk's outcome and the index where it stopped
+     */
+    @Test
+    public void testStopAfterCommitReturnsPartialResponse() throws Exception {
+        int size = chunkSizer.current();
+        List<String> head = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            head.add(json("E-PLP-" + i, 1000));
+        }
+        String tail = "," + json("E-PLP-" + size, 1000).replace("\"machineId\":\"M-PL\",", "") + "]";
+        // The invalid tail arrives only once the first chunk has been committed
+        InputStream body = new SequenceInputStream(
+                new ByteArrayInputStream(("[" + String.join(",", head)).getBytes(StandardCharsets.UTF_8)),
+                new InputStream() {
+                    private InputStream rest;
+
+                    @Override
+                    public int read() throws IOException {
+                        if (rest == null) {
+                            awaitStored("E-PLP-" + (size - 1));
+                            rest = new ByteArrayInputStream(tail.getBytes(StandardCharsets.UTF_8));
+                        }
+                        return rest.read();
+                    }
+                });
+
+        ResponseEntity<BatchIngestResponse> response = eventController.ingestBatchStream(body, "full", null);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        BatchIngestResponse partial = response.getBody();
+        assertEquals(size, partial.getStoppedAt());
+        assertTrue(partial.getError().contains("index " + size));
+        assertEquals(size, partial.getAccepted());
+        assertEquals(1, partial.getChunks().size());
+        assertEquals(BatchIngestResponse.ChunkOutcome.COMMITTED, partial.getChunks().get(0).getStatus());
+        assertTrue(repository.findByEventId("E-PLP-" + size).isEmpty());
+
+        assertEquals(1, eventService.ingestBatch(List.of(new EventRequest("E-PLP-AFTER",
+                LocalDateTime.parse(EVENT_TIME), "M-PL", 1000L, 0, "L-PL", "F-PL"))).getAccepted());
+    }
+
+    /**
+     * Test 4: A write stage interrupted while waiting for a chunk still takes the chunks
+     * handed to it, so the classify stage gets its permits and frees the ingest lock
+     */
+    @Test
+    public void testInterruptedWriteStageFreesIngestLock() {
+        int size = chunkSizer.current();
+        List<String> head = new ArrayList<>();
+        List<String> tail = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            head.add(json("E-PLI-" + i, 1000));
+            tail.add(json("E-PLI-" + (size + i), 1000));
+        }
+        String rest = "," + String.join(",", tail) + "]";
+        // The second chunk arrives only once the write stage waits for it, and was interrupted
+        InputStream body = new SequenceInputStream(
+                new ByteArrayInputStream(("[" + String.join(",", head)).getBytes(StandardCharsets.UTF_8)),
+                new InputStream() {
+                    private InputStream next;
+
+                    @Override
+                    public int read() throws IOException {
+                        if (next == null) {
+                            awaitStored("E-PLI-" + (size - 1));
+                            interruptWriteStage();
+                            next = new ByteArrayInputStream(rest.getBytes(StandardCharsets.UTF_8));
+                        }
+                        return next.read();
+                    }
+                });
+
+        assertThrows(IllegalStateException.class, () -> ingestPipeline.ingest(body, RejectionMode.FULL));
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertEquals(1,
+                eventService.ingestBatch(List.of(new EventRequest("E-PLI-AFTER", LocalDateTime.parse(EVENT_TIME),
+                        "M-PL", 1000L, 0, "L-PL", "F-PL"))).getAccepted()));
+    }
+
+    private void interruptWriteStage() throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            for (Map.Entry<Thread, StackTraceElement[]> thread : Thread.getAllStackTraces().entrySet()) {
+                boolean writing = Arrays.stream(thread.getValue())
+                        .anyMatch(frame -> frame.getMethodName().equals("writeStage"));
+                if (writing && thread.getKey().getState() == Thread.State.WAITING) {
+                    thread.getKey().interrupt();
+                    return;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        throw new IOException("The write stage did not wait for a chunk in time");
+    }
+
+    private void awaitStored(String eventId) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (repository.findByEventId(eventId).isEmpty()) {
+            if (System.nanoTime() > deadline) {
+                throw new IOException(eventId + " was not stored in time");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private static String json(String eventId, long durationMs) {
+        return "{\"eventId\":\"" + eventId + "\",\"eventTime\":\"" + EVENT_TIME + "\",\"machineId\":\"M-PL\","
+                + "\"durationMs\":" + durationMs + ",\"defectCount\":1,\"lineId\":\"L-PL\",\"factoryId\":\"F-PL\"}";
+    }
+
+    private static InputStream body(List<String> events) {
+        return new ByteArrayInputStream(("[" + String.join(",", events) + "]").getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,374 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.BatchIngestResponse;
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Randomized concurrent ingest checked against a sequential model.
+ *
+ * Threads send batches drawn from a small pool of eventIds, each id with a few
+ * payload variants, so batches collide on the same events as inserts, duplicates
+ * and updates. Every call is recorded with its start and end time and response.
+ * The checker then searches for a linearization: an order of the batches that
+ * respects real time (a batch that ended before another started comes first) in
+ * which replaying each batch on the model gives exactly its reported counts, and
+ * the last state equals the stored table.
+ *
+ * The batches are sent in rounds with all threads joined in between, and each
+ * round is checked on its own, starting from the table the previous round left.
+ * That keeps each history short, so the search cost does not grow with the
+ * length of the run, and a search that still runs out of steps fails the test
+ * with the seed instead of passing a larger budget.
+ *
+ * The seed is printed; rerun a failure with {@code -Dstress.seed=<seed>}.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stress_test",
+        "spring.jpa.show-sql=false",
+        "logging.level.com.internshala.factory_monitoring.service.EventService=WARN"
+})
+public class IngestStressTest {
+
+    private static final int VARIANTS = 3;
+    private static final int EVENT_IDS = 250;
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 4;
+    private static final int BATCHES_PER_ROUND = 4;
+    // Steps per round; a correct round usually needs one per batch and two tries
+    private static final long SEARCH_BUDGET = 100_000;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    // One ingestBatch call as the caller saw it
+    private record Call(int id, long startNanos, long endNanos, List<EventRequest> events,
+                        BatchIngestResponse response) {}
+
+    // Stored state of one event in the model; time is the linearization step that last wrote it
+    private record Stored(EventRequest payload, long time) {}
+
+    /**
+     * Test 1: Concurrent batches with overlapping eventIds are linearizable against the sequential model
+     */
+    @Test
+    public void testConcurrentIngestIsLinearizable() throws Exception {
+        long seed = Long.getLong("stress.seed", System.nanoTime());
+        System.out.println("Ingest stress seed: " + seed);
+        String prefix = "E-LIN-" + Long.toHexString(seed) + "-";
+        LocalDateTime baseTime = LocalDateTime.now().minusHours(6).truncatedTo(ChronoUnit.SECONDS);
+
+        Map<String, EventRequest> table = new HashMap<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            long roundSeed = seed * 31 + round;
+            List<Call> calls = run(THREADS, BATCHES_PER_ROUND, threadSeed -> {
+                Random random = new Random(roundSeed * 31 + threadSeed);
+                List<EventRequest> batch = new ArrayList<>();
+                int size = 1 + random.nextInt(40);
+                for (int i = 0; i < size; i++) {
+                    int event = random.nextInt(EVENT_IDS);
+                    // About 4% invalid; the rest one of a few payloads, so resends are duplicates or updates
+                    int variant = random.nextInt(25) == 0 ? -1 : random.nextInt(VARIANTS);
+                    batch.add(event(prefix, event, variant, baseTime));
+                }
+                return batch;
+            });
+            String where = " (round " + round + ", seed " + seed + ")";
+
+            for (Call call : calls) {
+                BatchIngestResponse response = call.response();
+                assertEquals(call.events().size(), response.getAccepted() + response.getDeduped()
+                        + response.getUpdated() + response.getRejected(), "Counts of call " + call.id() + where);
+            }
+
+            Map<String, EventRequest> before = table;
+            table = new HashMap<>();
+            for (MachineEvent stored : repository.findAll()) {
+                if (stored.getEventId().startsWith(prefix)) {
+                    table.put(stored.getEventId(), toRequest(stored));
+                }
+            }
+            long accepted = calls.stream().mapToLong(call -> call.response().getAccepted()).sum();
+            assertEquals(table.size() - before.size(), accepted, "Every stored event was accepted exactly once"
+                    + where);
+
+            Linearizer linearizer = new Linearizer(prefix, calls, before, table, where);
+            List<Call> order = linearizer.find();
+            assertNotNull(order, "No order of the " + calls.size() + " batches matches the sequential model"
+                    + where);
+            System.out.println("Round " + round + " linearized in " + linearizer.steps + " steps");
+        }
+    }
+
+    /**
+     * Test 2: Throughput at 1, 2, 4, 8 and 16 threads with no batch lost
+     */
+    @Test
+    public void testThroughputByThreadCount() throws Exception {
+        LocalDateTime baseTime = LocalDateTime.now().minusHours(6).truncatedTo(ChronoUnit.SECONDS);
+        int totalBatches = 64;
+        int batchSize = 100;
+
+        // Warm-up, so the single-thread row is not measured on a cold JIT
+        run(4, totalBatches, threadSeed -> fresh("E-WARM-" + threadSeed + "-" + System.nanoTime() + "-", batchSize, baseTime));
+
+        System.out.println("| Threads | Batches | Events | Time (ms) | Events/sec |");
+        System.out.println("|---------|---------|--------|-----------|------------|");
+        for (int threads : new int[]{1, 2, 4, 8, 16}) {
+            String prefix = "E-TP" + threads + "-";
+            long before = repository.count();
+            long started = System.nanoTime();
+            List<Call> calls = run(threads, totalBatches / threads,
+                    threadSeed -> fresh(prefix + threadSeed + "-" + System.nanoTime() + "-", batchSize, baseTime));
+            long elapsedMs = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+
+            long events = (long) calls.size() * batchSize;
+            System.out.printf("| %d | %d | %d | %d | %d |%n", threads, calls.size(), events, elapsedMs,
+                    events * 1000 / elapsedMs);
+            assertEquals(events, calls.stream().mapToLong(call -> call.response().getAccepted()).sum());
+            assertEquals(before + events, repository.count());
+        }
+    }
+
+    private interface BatchSource {
+        List<EventRequest> next(long threadSeed);
+    }
+
+    // Runs `threads` workers sending `batchesPerThread` batches each; returns every call made
+    private List<Call> run(int threads, int batchesPerThread, BatchSource source) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Call>>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                Callable<List<Call>> worker = () -> {
+                    List<Call> made = new ArrayList<>(batchesPerThread);
+                    for (int b = 0; b < batchesPerThread; b++) {
+                        List<EventRequest> batch = source.next((long) thread * batchesPerThread + b);
+                        long start = System.nanoTime();
+                        BatchIngestResponse response = eventService.ingestBatch(batch);
+                        long end = System.nanoTime();
+                        made.add(new Call(thread * batchesPerThread + b, start, end, batch, response));
+                    }
+                    return made;
+                };
+                workers.add(executor.submit(worker));
+            }
+            List<Call> calls = new ArrayList<>();
+            for (Future<List<Call>> worker : workers) {
+                calls.addAll(worker.get());
+            }
+            return calls;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Depth-first search over the batches that may come next in real time. A candidate
+     * is applied to the model and kept only if it reproduces the batch's counts; on a
+     * dead end the model is rolled back through an undo log.
+     *
+     * Different orders of the same batches often reach the same model, so every
+     * dead end is remembered by the batches done and the model state, and not
+     * searched again. Only whether an event was written at the current time
+     * matters for what follows, not the exact time.
+     *
+     * Each batch reads the clock once, so two batches can share a millisecond. The
+     * model therefore also tries a batch at the previous batch's time, where a
+     * changed payload does not count as newer and is a duplicate. The first batch
+     * of a round may share a millisecond with the last one of the round before.
+     */
+    private static final class Linearizer {
+        // A search state: which batches are done, and per eventId its variant and whether it was just written
+        private record Config(BitSet done, String state) {}
+
+        private final String prefix;
+        // Round and seed, for the failure message
+        private final String where;
+        private final List<Call> pending;
+        private final Map<String, EventRequest> table;
+        private final Map<String, Stored> model = new HashMap<>();
+        private final Deque<Call> order = new ArrayDeque<>();
+        private final BitSet done = new BitSet();
+        private final Set<Config> deadEnds = new HashSet<>();
+        private long steps;
+
+        Linearizer(String prefix, List<Call> calls, Map<String, EventRequest> initial,
+                   Map<String, EventRequest> table, String where) {
+            this.prefix = prefix;
+            this.where = where;
+            this.pending = new ArrayList<>(calls);
+            this.pending.sort(Comparator.comparingLong(Call::startNanos));
+            this.table = table;
+            initial.forEach((eventId, payload) -> model.put(eventId, new Stored(payload, 0)));
+        }
+
+        List<Call> find() {
+            return search(0) ? new ArrayList<>(order) : null;
+        }
+
+        private boolean search(long time) {
+            if (pending.isEmpty()) {
+                return matchesTable();
+            }
+            if (!deadEnds.add(config(time))) {
+                return false;
+            }
+            // Only batches that started before the earliest pending batch ended can be next
+            long earliestEnd = pending.stream().mapToLong(Call::endNanos).min().orElseThrow();
+            List<Call> candidates = pending.stream()
+                    .filter(call -> call.startNanos() <= earliestEnd)
+                    .collect(Collectors.toList());
+            for (Call call : candidates) {
+                for (long at : new long[]{time + 1, time}) {
+                    if (++steps > SEARCH_BUDGET) {
+                        fail("Linearization search gave up after " + SEARCH_BUDGET + " steps on "
+                                + (order.size() + pending.size()) + " batches" + where);
+                    }
+                    Map<String, Stored> undo = new HashMap<>();
+                    if (apply(call, at, undo)) {
+                        pending.remove(call);
+                        order.addLast(call);
+                        done.set(call.id());
+                        if (search(at)) {
+                            return true;
+                        }
+                        done.clear(call.id());
+                        order.removeLast();
+                        pending.add(call);
+                        pending.sort(Comparator.comparingLong(Call::startNanos));
+                    }
+                    rollback(undo);
+                }
+            }
+            return false;
+        }
+
+        // One char per eventId: 0 when absent, else 1 + variant, plus VARIANTS + 1 if written at `time`
+        private Config config(long time) {
+            char[] state = new char[EVENT_IDS];
+            model.forEach((eventId, stored) -> {
+                int variant = (int) (stored.payload().getDurationMs() - 1000L) / 10;
+                state[Integer.parseInt(eventId.substring(prefix.length()))] =
+                        (char) (1 + variant + (stored.time() == time ? VARIANTS + 1 : 0));
+            });
+            return new Config((BitSet) done.clone(), new String(state));
+        }
+
+        // The dedupe/update rules, one event after another; true if the counts match the response
+        private boolean apply(Call call, long time, Map<String, Stored> undo) {
+            int accepted = 0;
+            int deduped = 0;
+            int updated = 0;
+            int rejected = 0;
+            for (EventRequest event : call.events()) {
+                if (event.getDurationMs() < 0) {
+                    rejected++;
+                    continue;
+                }
+                Stored stored = model.get(event.getEventId());
+                if (stored == null) {
+                    accepted++;
+                } else if (!samePayload(stored.payload(), event) && time > stored.time()) {
+                    updated++;
+                } else {
+                    deduped++;
+                    continue;
+                }
+                undo.putIfAbsent(event.getEventId(), stored);
+                model.put(event.getEventId(), new Stored(event, time));
+            }
+            BatchIngestResponse response = call.response();
+            return accepted == response.getAccepted() && deduped == response.getDeduped()
+                    && updated == response.getUpdated() && rejected == response.getRejected();
+        }
+
+        private void rollback(Map<String, Stored> undo) {
+            undo.forEach((eventId, stored) -> {
+                if (stored == null) {
+                    model.remove(eventId);
+                } else {
+                    model.put(eventId, stored);
+                }
+            });
+        }
+
+        private boolean matchesTable() {
+            if (model.size() != table.size()) {
+                return false;
+            }
+            for (Map.Entry<String, Stored> entry : model.entrySet()) {
+                EventRequest stored = table.get(entry.getKey());
+                if (stored == null || !samePayload(entry.getValue().payload(), stored)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static boolean samePayload(EventRequest a, EventRequest b) {
+        return a.getEventTimeMillis() == b.getEventTimeMillis()
+                && a.getMachineId().equals(b.getMachineId())
+                && a.getDurationMs() == b.getDurationMs()
+                && a.getDefectCount() == b.getDefectCount()
+                && Objects.equals(a.getLineId(), b.getLineId())
+                && Objects.equals(a.getFactoryId(), b.getFactoryId());
+    }
+
+    private static List<EventRequest> fresh(String prefix, int size, LocalDateTime baseTime) {
+        List<EventRequest> batch = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            batch.add(event(prefix, i, 0, baseTime));
+        }
+        return batch;
+    }
+
+    // Variant -1 has a negative duration and is rejected
+    private static EventRequest event(String prefix, int event, int variant, LocalDateTime baseTime) {
+        return TestEvents.event(prefix + event, baseTime.plusSeconds(event), "M-ST-" + (event % 6),
+                "L-ST-" + (event % 3), "F-ST", variant < 0 ? -1 : 1000L + 10L * variant, variant < 0 ? 0 : variant % 2);
+    }
+
+    private static EventRequest toRequest(MachineEvent stored) {
+        EventRequest request = new EventRequest();
+        request.setEventId(stored.getEventId());
+        request.setEventTime(stored.getEventTime());
+        request.setMachineId(stored.getMachineId());
+        request.setDurationMs(stored.getDurationMs());
+        request.setDefectCount(stored.getDefectCount());
+        request.setLineId(stored.getLineId());
+        request.setFactoryId(stored.getFactoryId());
+        return request;
+    }
+}
@@ -0,0 +1,101 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.FleetResponse;
+import com.internshala.factory_monitoring.entity.MachineHeartbeat;
+import com.internshala.factory_monitoring.repo.MachineHeartbeatRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static com.internshala.factory_monitoring.service.TestEvents.event;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "factory.heartbeat.stale-after=PT2S",
+        "factory.heartbeat.refresh=PT1H",
+        "spring.datasource.url=jdbc:h2:mem:heartbeat_test"
+})
+public class MachineHeartbeatsTest {
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private MachineHeartbeats heartbeats;
+
+    @Autowired
+    private MachineHeartbeatRepository repository;
+
+    /**
+     * Test 1: Inserts and updates keep each machine's latest event and running totals
+     */
+    @Test
+    public void testHeartbeatFollowsInsertsAndUpdates() {
+        LocalDateTime baseTime = LocalDateTime.now().minusHours(1).truncatedTo(ChronoUnit.SECONDS);
+        eventService.ingestBatch(List.of(
+                event("E-HB-1", baseTime, "M-HB-1", "L-HB-1", "F-HB", 2),
+                event("E-HB-2", baseTime.plusMinutes(5), "M-HB-1", "L-HB-2", "F-HB", -1),
+                event("E-HB-3", baseTime, "M-HB-2", "L-HB-1", "F-HB", 1)));
+        // Older event after the newer one: counted, but the latest event stays E-HB-2
+        eventService.ingestBatch(List.of(event("E-HB-4", baseTime.minusMinutes(5), "M-HB-1", "L-HB-1", "F-HB", 3)));
+
+        FleetResponse.MachineState first = state(heartbeats.fleet("F-HB"), "M-HB-1");
+        assertEquals(3, first.getEventCount());
+        assertEquals(5, first.getDefectCount());
+        assertEquals("E-HB-2", first.getLastEventId());
+        assertEquals("L-HB-2", first.getLineId());
+        assertEquals(baseTime.plusMinutes(5), first.getLastEventTime());
+
+        // E-HB-3 moves from M-HB-2 to M-HB-1 with more defects
+        eventService.ingestBatch(List.of(event("E-HB-3", baseTime.plusMinutes(10), "M-HB-1", "L-HB-1", "F-HB", 4)));
+
+        FleetResponse fleet = heartbeats.fleet("F-HB");
+        first = state(fleet, "M-HB-1");
+        FleetResponse.MachineState second = state(fleet, "M-HB-2");
+        assertEquals(4, first.getEventCount());
+        assertEquals(9, first.getDefectCount());
+        assertEquals("E-HB-3", first.getLastEventId());
+        assertEquals(0, second.getEventCount());
+        assertEquals(0, second.getDefectCount());
+
+        // The mirror matches the table
+        MachineHeartbeat stored = repository.findById("M-HB-1").orElseThrow();
+        assertEquals(first.getEventCount(), stored.getEventCount());
+        assertEquals(first.getDefectCount(), stored.getDefectCount());
+        assertEquals(first.getLastEventId(), stored.getLastEventId());
+    }
+
+    /**
+     * Test 2: A machine that sent nothing for longer than stale-after is flagged stale
+     */
+    @Test
+    public void testSilentMachineFlaggedStale() throws InterruptedException {
+        LocalDateTime eventTime = LocalDateTime.now().minusMinutes(1);
+        eventService.ingestBatch(List.of(event("E-HB-STALE-1", eventTime, "M-HB-STALE", "L-HB-1", "F-HB-STALE", 0)));
+
+        FleetResponse fleet = heartbeats.fleet("F-HB-STALE");
+        assertEquals(1, fleet.getMachineCount());
+        assertEquals(0, fleet.getStaleCount());
+        assertFalse(state(fleet, "M-HB-STALE").isStale());
+
+        Thread.sleep(3500);
+        fleet = heartbeats.fleet("F-HB-STALE");
+        assertEquals(1, fleet.getStaleCount());
+        assertTrue(state(fleet, "M-HB-STALE").isStale());
+        assertTrue(state(fleet, "M-HB-STALE").getSilentSeconds() > 2);
+
+        // Other factories are not listed
+        assertTrue(fleet.getMachines().stream().allMatch(m -> m.getFactoryId().equals("F-HB-STALE")));
+    }
+
+    private static FleetResponse.MachineState state(FleetResponse fleet, String machineId) {
+        return fleet.getMachines().stream()
+                .filter(machine -> machine.getMachineId().equals(machineId))
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,135 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.FactoryMonitoringApplication;
+import com.internshala.factory_monitoring.dto.BatchIngestResponse;
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two application instances (separate Spring contexts, each with its own ingest
+ * lock) writing the same events to one file-based H2 database.
+ */
+public class MultiInstanceIngestTest {
+
+    private static final Path DATABASE_DIR = Path.of("target", "multi-instance-test");
+    private static final int EVENTS = 4000;
+    private static final int BATCH_SIZE = 200;
+    private static final int ROUNDS = 2;
+
+    private static ConfigurableApplicationContext first;
+    private static ConfigurableApplicationContext second;
+
+    @BeforeAll
+    public static void startInstances() throws IOException {
+        FileSystemUtils.deleteRecursively(DATABASE_DIR);
+        first = startInstance();
+        second = startInstance();
+    }
+
+    @AfterAll
+    public static void stopInstances() {
+        if (second != null) {
+            second.close();
+        }
+        if (first != null) {
+            first.close();
+        }
+    }
+
+    /**
+     * Test 1: Concurrent batches with the same eventIds store every event once and lose no batch
+     */
+    @Test
+    public void testConcurrentInstancesStoreEveryEventOnce() throws Exception {
+        LocalDateTime baseTime = LocalDateTime.now().minusHours(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        long started = System.nanoTime();
+        try {
+            // Same eventIds in the same order, different payloads: every batch collides
+            Future<BatchIngestResponse> fromFirst = executor.submit(sendAll(first, baseTime, 0));
+            Future<BatchIngestResponse> fromSecond = executor.submit(sendAll(second, baseTime, 1));
+            BatchIngestResponse a = fromFirst.get();
+            BatchIngestResponse b = fromSecond.get();
+            long elapsedMs = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+
+            int sent = 2 * ROUNDS * EVENTS;
+            long eventsPerSecond = sent * 1000L / elapsedMs;
+            System.out.printf("Two instances: %d events in %d ms (%d events/sec), %d + %d chunk retries%n",
+                    sent, elapsedMs, eventsPerSecond, retries(first), retries(second));
+
+            assertEquals(0, a.getRejected() + b.getRejected());
+            assertEquals(EVENTS, a.getAccepted() + b.getAccepted());
+            assertEquals(sent, a.getAccepted() + a.getDeduped() + a.getUpdated()
+                    + b.getAccepted() + b.getDeduped() + b.getUpdated());
+            assertEquals(EVENTS, first.getBean(MachineEventRepository.class).count());
+            assertEquals(EVENTS, second.getBean(MachineEventRepository.class).count());
+            assertTrue(eventsPerSecond > 500, "Throughput too low: " + eventsPerSecond + " events/sec");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Arguments, not default properties: these must override application.properties
+    private static ConfigurableApplicationContext startInstance() {
+        return new SpringApplicationBuilder(FactoryMonitoringApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:file:./" + DATABASE_DIR.resolve("factorydb"),
+                        "--spring.jpa.hibernate.ddl-auto=update",
+                        "--spring.jpa.show-sql=false",
+                        // Each instance's cache would miss the other's writes
+                        "--factory.ingest.event-cache.enabled=false");
+    }
+
+    // All batches, ROUNDS times; the merged counts
+    private static Callable<BatchIngestResponse> sendAll(ConfigurableApplicationContext instance,
+                                                         LocalDateTime baseTime, int defectOffset) {
+        EventService eventService = instance.getBean(EventService.class);
+        return () -> {
+            BatchIngestResponse total = new BatchIngestResponse();
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int from = 0; from < EVENTS; from += BATCH_SIZE) {
+                    List<EventRequest> batch = new ArrayList<>(BATCH_SIZE);
+                    for (int i = from; i < from + BATCH_SIZE; i++) {
+                        batch.add(event(i, baseTime, defectOffset + 2 * round));
+                    }
+                    BatchIngestResponse response = eventService.ingestBatch(batch);
+                    total.setAccepted(total.getAccepted() + response.getAccepted());
+                    total.setDeduped(total.getDeduped() + response.getDeduped());
+                    total.setUpdated(total.getUpdated() + response.getUpdated());
+                    total.setRejected(total.getRejected() + response.getRejected());
+                }
+            }
+            return total;
+        };
+    }
+
+    private static long retries(ConfigurableApplicationContext instance) {
+        return (long) instance.getBean(MeterRegistry.class).counter("factory.ingest.conflict.retries").count();
+    }
+
+    private static EventRequest event(int i, LocalDateTime baseTime, int defectOffset) {
+        return TestEvents.event(String.format("E-MI-%05d", i), baseTime.plusSeconds(i),
+                String.format("M-MI-%02d", i % 20), String.format("L-MI-%d", i % 4), "F-MI",
+                1000L + i, (i + defectOffset) % 5);
+    }
+}
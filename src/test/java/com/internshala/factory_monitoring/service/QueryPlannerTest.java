@@ -0,0 +1,290 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.dto.StatsResponse;
+import com.internshala.factory_monitoring.dto.StatsWindow;
+import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import com.internshala.factory_monitoring.util.EventTimes;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongUnaryOperator;
+
+import static com.internshala.factory_monitoring.service.TestEvents.event;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "factory.stats.serve-final-from-rollup=true",
+        "factory.stats.rollup.max-age=P3650D",
+        "factory.query.max-rows=25",
+        "factory.query.reject-rows=55",
+        "factory.query.heavy.max-concurrent=1",
+        "factory.query.heavy.max-wait=PT0.2S",
+        "factory.query.heavy.timeout=PT1S",
+        "factory.watermark.allowed-lateness=PT1H",
+        "spring.datasource.url=jdbc:h2:mem:query_planner_test"
+})
+public class QueryPlannerTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 1, 15, 0, 0);
+
+    // Plans that need no count never call it
+    private static final LongUnaryOperator UNCOUNTED = limit -> fail("counted a plan that needs no count");
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private QueryPlanner queryPlanner;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @Autowired
+    private HourlyRollup rollup;
+
+    /**
+     * Test 1: Cheap windows read the database, expensive ones read the rollup when its
+     * edges are cheap, run as heavy queries when not, and are refused above the limit
+     */
+    @Test
+    public void testRoutesByEstimatedRows() {
+        // 10 events at minutes 10-19 of each of five hours for M-QP-1, and of the first hour for M-QP-2
+        List<EventRequest> events = new ArrayList<>();
+        for (int hour = 0; hour < 5; hour++) {
+            for (int i = 0; i < 10; i++) {
+                events.add(event("E-QP-1-" + hour + "-" + i, DAY.plusHours(hour).plusMinutes(10 + i), "M-QP-1",
+                        "L-QP", "F-QP", 1));
+                if (hour == 0) {
+                    events.add(event("E-QP-2-" + hour + "-" + i, DAY.plusHours(hour).plusMinutes(10 + i), "M-QP-2",
+                            "L-QP", "F-QP", 1));
+                }
+            }
+        }
+        events.add(event("E-QP-1-NOW", LocalDateTime.now().minusMinutes(5), "M-QP-1", "L-QP", "F-QP", 1));
+        events.add(event("E-QP-2-NOW", LocalDateTime.now().minusMinutes(5), "M-QP-2", "L-QP", "F-QP", 1));
+        eventService.ingestBatch(events);
+
+        double database = routes("stats", "database");
+        assertEquals(5, eventService.getStats("M-QP-1", DAY.plusMinutes(12), DAY.plusMinutes(17)).getEventsCount());
+        assertEquals(database + 1, routes("stats", "database"));
+
+        // 50 rows estimated; hours 1-3 from the rollup, the 20 rows of hours 0 and 4 from the database
+        double rollup = routes("stats", "rollup");
+        StatsResponse stats = eventService.getStats("M-QP-1", DAY.plusMinutes(30), DAY.plusHours(4).plusMinutes(15));
+        assertEquals(35, stats.getEventsCount());
+        assertEquals(35, stats.getDefectsCount());
+        assertEquals(rollup + 1, routes("stats", "rollup"));
+        assertEquals(30, eventService.getTopDefectLines("F-QP", DAY.plusMinutes(90), DAY.plusHours(4).plusMinutes(30), 5)
+                .getLines().get(0).getEventCount());
+        assertEquals(1, routes("top-defect-lines", "rollup"));
+
+        // Multi-window stats cannot use the rollup: 50 rows run as a heavy query, 60 are refused
+        double heavy = routes("stats-windows", "heavy");
+        List<StatsWindow> window = List.of(new StatsWindow(DAY, DAY.plusHours(5)));
+        assertEquals(50, eventService.getStatsForWindows(List.of("M-QP-1"), window).get(0).getEventsCount());
+        assertEquals(heavy + 1, routes("stats-windows", "heavy"));
+        assertEquals(1, meterRegistry.get("factory.query.heavy").tag("query", "stats-windows")
+                .tag("outcome", "completed").counter().count());
+
+        assertThrows(QueryPlanner.TooExpensiveException.class,
+                () -> eventService.getStatsForWindows(List.of("M-QP-1", "M-QP-2"), window));
+        assertEquals(1, routes("stats-windows", "rejected"));
+    }
+
+    /**
+     * Test 2: Heavy queries wait for a free slot and give up after max-wait, and a
+     * heavy query is cancelled when it runs past the timeout
+     */
+    @Test
+    public void testHeavyQueryLimits() throws Exception {
+        QueryPlanner.Plan heavy = queryPlanner.plan("qp-test", DAY, DAY.plusDays(1), EventTimes.UNSET, false,
+                (fromHour, toHour) -> 50);
+        assertEquals(QueryPlanner.Route.HEAVY, heavy.getRoute());
+        assertFalse(heavy.needsCount());
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> holder = executor.submit(() -> queryPlanner.execute(heavy, UNCOUNTED, planned -> {
+                running.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }));
+            assertTrue(running.await(10, TimeUnit.SECONDS));
+            assertEquals(1.0, meterRegistry.get("factory.query.heavy.active").gauge().value());
+
+            QueryPlanner.BusyException busy = assertThrows(QueryPlanner.BusyException.class,
+                    () -> queryPlanner.execute(heavy, UNCOUNTED, planned -> null));
+            assertEquals(1, busy.getRetryAfterSeconds());
+            release.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // A cross join of 400M rows takes far longer than the 1s timeout
+        long started = System.nanoTime();
+        assertThrows(QueryPlanner.TimedOutException.class, () -> queryPlanner.execute(heavy, UNCOUNTED, planned ->
+                entityManager.createNativeQuery("SELECT SUM(a.X + b.X) FROM SYSTEM_RANGE(1, 20000) a, "
+                        + "SYSTEM_RANGE(1, 20000) b").getSingleResult()));
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(10));
+
+        assertEquals(1, heavyOutcomes("busy"));
+        assertEquals(1, heavyOutcomes("timed-out"));
+        assertEquals(0.0, meterRegistry.get("factory.query.heavy.active").gauge().value());
+    }
+
+    /**
+     * Test 3: With factory.stats.multi-writer=true the rollup may miss other instances'
+     * writes: a small estimate is checked with a bounded count in a read-only transaction
+     * when the query runs, and a single writer pays for no count
+     */
+    @Test
+    public void testMultiWriterEstimateIsCheckedAgainstDatabase() {
+        QueryPlanner multiWriter = new QueryPlanner(new SimpleMeterRegistry(), rollup, transactionManager, false,
+                true, Duration.ofSeconds(5), 25, 55, 1, Duration.ofMillis(200), Duration.ofSeconds(1));
+        long watermark = EventTimes.toEpochMillis(DAY.plusDays(1));
+
+        List<Long> limits = new ArrayList<>();
+        QueryPlanner.Plan small = multiWriter.plan("qp-test", DAY, DAY.plusHours(5), watermark, true,
+                (fromHour, toHour) -> 10);
+        assertTrue(small.needsCount());
+        QueryPlanner.Plan checked = multiWriter.execute(small, limit -> {
+            assertTrue(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+            limits.add(limit);
+            return 5;
+        }, planned -> planned);
+        assertEquals(QueryPlanner.Route.DATABASE, checked.getRoute());
+        assertEquals(10, checked.getEstimatedRows());
+        assertEquals(List.of(26L), limits);
+
+        // Other instances stored more than the rollup knows of
+        QueryPlanner.Plan filled = multiWriter.execute(multiWriter.plan("qp-test", DAY, DAY.plusHours(5), watermark,
+                true, (fromHour, toHour) -> 10), limit -> limit, planned -> planned);
+        assertEquals(QueryPlanner.Route.HEAVY, filled.getRoute());
+        assertEquals(26, filled.getEstimatedRows());
+
+        // A final, hour-aligned window is not answered from the rollup; a large estimate is not counted again
+        QueryPlanner.Plan large = multiWriter.plan("qp-test", DAY, DAY.plusHours(5), watermark, true,
+                (fromHour, toHour) -> 50);
+        assertEquals(QueryPlanner.Route.HEAVY, large.getRoute());
+        assertFalse(large.needsCount());
+        assertFalse(large.usesRollup());
+
+        // The single writer trusts its estimate
+        assertFalse(queryPlanner.plan("qp-test", DAY, DAY.plusHours(5), watermark, true,
+                (fromHour, toHour) -> 10).needsCount());
+
+        // The counts stop at their limit
+        List<EventRequest> events = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            events.add(event("E-QP-3-" + i, DAY.plusDays(1).plusMinutes(i), "M-QP-3", "L-QP", "F-QP", 1));
+        }
+        eventService.ingestBatch(events);
+        assertEquals(10, repository.countByMachineIdAndTimeRangeUpTo("M-QP-3", DAY, DAY.plusDays(2), 26));
+        assertEquals(4, repository.countByMachineIdAndTimeRangeUpTo("M-QP-3", DAY, DAY.plusDays(2), 4));
+        assertEquals(4, repository.countByFactoryAndTimeRangeUpTo("F-QP", DAY.plusDays(1), DAY.plusDays(2), 4));
+    }
+
+    /**
+     * Test 4: Before the rollup's horizon its estimate is low as well, so a window starting
+     * there is counted although this instance is the single writer, and only its hours
+     * from the horizon on come from the rollup
+     */
+    @Test
+    public void testWindowBeforeHorizonIsCheckedAgainstDatabase() {
+        HourlyRollup evicted = new HourlyRollup(new EventWatermarks(Duration.ofHours(1)), repository, entityManager,
+                transactionManager, Duration.ofDays(3650));
+        long horizon = EventTimes.toEpochMillis(DAY.plusHours(2));
+        evicted.evictBefore(horizon);
+        QueryPlanner planner = new QueryPlanner(new SimpleMeterRegistry(), evicted, transactionManager, true,
+                false, Duration.ofSeconds(5), 25, 55, 1, Duration.ofMillis(200), Duration.ofSeconds(1));
+        long watermark = EventTimes.toEpochMillis(DAY.plusDays(1));
+
+        List<Long> limits = new ArrayList<>();
+        QueryPlanner.Plan plan = planner.plan("qp-test", DAY, DAY.plusHours(5), watermark, true,
+                (fromHour, toHour) -> 10);
+        assertEquals(QueryPlanner.Route.DATABASE, plan.getRoute());
+        assertTrue(plan.needsCount());
+        QueryPlanner.Plan checked = planner.execute(plan, limit -> {
+            limits.add(limit);
+            return limit;
+        }, planned -> planned);
+        assertEquals(List.of(26L), limits);
+        assertEquals(QueryPlanner.Route.ROLLUP, checked.getRoute());
+        assertEquals(horizon, checked.getRollupFrom());
+        assertEquals(16, checked.getEstimatedRows());
+
+        QueryPlanner.Plan held = planner.plan("qp-test", DAY.plusHours(2), DAY.plusHours(5), watermark, true,
+                (fromHour, toHour) -> 10);
+        assertEquals(QueryPlanner.Route.ROLLUP, held.getRoute());
+        assertFalse(held.needsCount());
+    }
+
+    /**
+     * Test 5: The reactive stack checks estimates the same way: its count is given up after
+     * the count timeout, and a heavy query is cancelled after the heavy timeout
+     */
+    @Test
+    public void testReactiveQueriesArePlannedLikeServletOnes() {
+        QueryPlanner multiWriter = new QueryPlanner(new SimpleMeterRegistry(), rollup, transactionManager, false,
+                true, Duration.ofMillis(200), 25, 55, 1, Duration.ofMillis(200), Duration.ofSeconds(1));
+        long watermark = EventTimes.toEpochMillis(DAY.plusDays(1));
+
+        assertEquals(QueryPlanner.Route.DATABASE, multiWriter.executeReactive(multiWriter.plan("qp-test", DAY,
+                DAY.plusHours(5), watermark, true, (fromHour, toHour) -> 10), limit -> Mono.just(5L), Mono::just)
+                .block(Duration.ofSeconds(10)).getRoute());
+        assertEquals(QueryPlanner.Route.HEAVY, multiWriter.executeReactive(multiWriter.plan("qp-test", DAY,
+                DAY.plusHours(5), watermark, true, (fromHour, toHour) -> 10), Mono::just, Mono::just)
+                .block(Duration.ofSeconds(10)).getRoute());
+
+        // A count that does not finish in time, then a heavy query that does not either
+        QueryPlanner.Plan slow = multiWriter.plan("qp-test", DAY, DAY.plusHours(5), watermark, true,
+                (fromHour, toHour) -> 10);
+        assertThrows(QueryPlanner.TimedOutException.class, () -> multiWriter.executeReactive(slow,
+                limit -> Mono.never(), planned -> Mono.never()).block(Duration.ofSeconds(10)));
+        assertEquals(QueryPlanner.Route.HEAVY, multiWriter.executeReactive(slow, limit -> Mono.never(), Mono::just)
+                .block(Duration.ofSeconds(10)).getRoute());
+    }
+
+    private double routes(String query, String route) {
+        return meterRegistry.find("factory.query.routes").tag("query", query).tag("route", route)
+                .counters().stream().mapToDouble(counter -> counter.count()).sum();
+    }
+
+    private double heavyOutcomes(String outcome) {
+        return meterRegistry.get("factory.query.heavy").tag("query", "qp-test").tag("outcome", outcome)
+                .counter().count();
+    }
+}
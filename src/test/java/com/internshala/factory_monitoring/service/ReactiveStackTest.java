@@ -0,0 +1,242 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.BatchIngestResponse;
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.dto.RejectionMode;
+import com.internshala.factory_monitoring.dto.StatsResponse;
+import com.internshala.factory_monitoring.dto.TopDefectLineResponse;
+import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.internshala.factory_monitoring.service.TestEvents.event;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The reactive stack (profile "reactive") on Netty: same responses as the servlet
+ * service, a streamed batch is only read as fast as it is stored, and the servlet-only
+ * endpoints are absent.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.main.web-application-type=reactive",
+        "spring.datasource.url=jdbc:h2:mem:reactive_test",
+        "spring.jpa.show-sql=false",
+        "factory.reactive.chunk-size=100",
+        // Stats and top lines count their window through R2DBC first
+        "factory.stats.multi-writer=true"
+})
+@ActiveProfiles("reactive")
+public class ReactiveStackTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ReactiveEventService reactiveEventService;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    /**
+     * Test 1: Ingest, stats and top defect lines over HTTP match the servlet service
+     */
+    @Test
+    public void testEndpointsMatchServletService() {
+        LocalDateTime start = LocalDateTime.now().minusHours(3).truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime end = start.plusHours(2);
+        List<EventRequest> events = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            events.add(event("E-RX-" + i, start.plusSeconds(i * 20L), "M-RX-" + (i % 4), "L-RX-" + (i % 3), "F-RX",
+                    i == 7 ? -1 : 1000, i % 5 == 0 ? -1 : i % 3));
+        }
+
+        BatchIngestResponse response = webTestClient.post().uri("/api/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(events)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(BatchIngestResponse.class)
+                .returnResult().getResponseBody();
+        assertEquals(249, response.getAccepted());
+        assertEquals(1, response.getRejected());
+        assertEquals("E-RX-7", response.getRejections().get(0).getEventId());
+        // Three streamed batches of at most 100 events, offsets relative to the whole stream
+        assertEquals(3, response.getChunks().size());
+        assertEquals(200, response.getChunks().get(2).getOffset());
+        assertEquals(50, response.getChunks().get(2).getSize());
+
+        StatsResponse stats = webTestClient.get()
+                .uri("/api/stats?machineId=M-RX-1&start={start}&end={end}", start, end)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(StatsResponse.class)
+                .returnResult().getResponseBody();
+        StatsResponse expected = eventService.getStats("M-RX-1", start, end);
+        assertEquals(expected.getEventsCount(), stats.getEventsCount());
+        assertEquals(expected.getDefectsCount(), stats.getDefectsCount());
+        assertEquals(expected.getAvgDefectRate(), stats.getAvgDefectRate());
+        assertEquals(expected.getStatus(), stats.getStatus());
+
+        TopDefectLineResponse lines = webTestClient.get()
+                .uri("/api/stats/top-defect-lines?factoryId=F-RX&from={from}&to={to}&limit=2", start, end)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(TopDefectLineResponse.class)
+                .returnResult().getResponseBody();
+        TopDefectLineResponse expectedLines = eventService.getTopDefectLines("F-RX", start, end, 2);
+        assertEquals(2, lines.getLines().size());
+        for (int i = 0; i < 2; i++) {
+            assertEquals(expectedLines.getLines().get(i).getLineId(), lines.getLines().get(i).getLineId());
+            assertEquals(expectedLines.getLines().get(i).getTotalDefects(), lines.getLines().get(i).getTotalDefects());
+            assertEquals(expectedLines.getLines().get(i).getEventCount(), lines.getLines().get(i).getEventCount());
+        }
+
+        // An unknown machine matches nothing rather than failing
+        webTestClient.get()
+                .uri("/api/stats?machineId=M-RX-NONE&start={start}&end={end}", start, end)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.eventsCount").isEqualTo(0);
+
+        webTestClient.post().uri("/api/events/batch")
+                .header("Idempotency-Key", "k-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(events)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    /**
+     * Test 2: No more than two batches are requested ahead of what has been stored
+     */
+    @Test
+    public void testStreamIsReadNoFasterThanStored() {
+        LocalDateTime start = LocalDateTime.now().minusHours(2);
+        long before = repository.count();
+        AtomicLong maxAhead = new AtomicLong();
+
+        Flux<EventRequest> events = Flux.range(0, 1000)
+                .doOnNext(i -> {
+                    if (i % 50 == 0) {
+                        long stored = repository.count() - before;
+                        maxAhead.accumulateAndGet(i - stored, Math::max);
+                    }
+                })
+                .map(i -> event("E-RX-BP-" + i, start.plusSeconds(i), "M-RX-BP", "L-RX-BP", "F-RX", 1000, 0));
+
+        BatchIngestResponse response = reactiveEventService.ingest(events, RejectionMode.FULL).block();
+        assertEquals(1000, response.getAccepted());
+        assertEquals(10, response.getChunks().size());
+        assertTrue(maxAhead.get() <= 200, "Read " + maxAhead.get() + " events ahead of the database");
+    }
+
+    /**
+     * Test 3: Ingest writes block on the reactive-ingest workers, not on a Netty event loop
+     */
+    @Test
+    public void testIngestBlocksOnIngestWorkers() throws Exception {
+        LocalDateTime start = LocalDateTime.now().minusHours(2);
+        List<EventRequest> events = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            events.add(event("E-RX-W-" + i, start.plusSeconds(i), "M-RX-W", "L-RX-W", "F-RX-W", 1000, 0));
+        }
+
+        // Hold the ingest lock so the write stays blocked where the test can see it
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> eventService.runExclusive(() -> {
+            held.countDown();
+            try {
+                return release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        holder.start();
+        assertTrue(held.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture<BatchIngestResponse> posted = CompletableFuture.supplyAsync(() ->
+                webTestClient.post().uri("/api/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(events)
+                        .exchange()
+                        .expectStatus().isOk()
+                        .expectBody(BatchIngestResponse.class)
+                        .returnResult().getResponseBody());
+        try {
+            String writer = null;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (writer == null && System.nanoTime() < deadline) {
+                for (Map.Entry<Thread, StackTraceElement[]> thread : Thread.getAllStackTraces().entrySet()) {
+                    if (storing(thread.getValue())) {
+                        writer = thread.getKey().getName();
+                        assertFalse(writer.startsWith("reactor-http"), writer + " is a Netty event loop");
+                    }
+                }
+                Thread.sleep(10);
+            }
+            assertNotNull(writer, "No thread ever waited to store the batch");
+            assertTrue(writer.startsWith("reactive-ingest"), writer);
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+        assertEquals(10, posted.get(30, TimeUnit.SECONDS).getAccepted());
+    }
+
+    /**
+     * Test 4: Endpoints left on the servlet stack are not served here
+     */
+    @Test
+    public void testServletOnlyEndpointsAreNotServed() {
+        LocalDateTime from = LocalDateTime.now().minusHours(1);
+        LocalDateTime to = from.plusHours(1);
+        for (String uri : List.of(
+                "/api/events/batch/rejections/ticket-1",
+                "/api/events/export?factoryId=F-RX",
+                "/api/stats/windows?machineId=M-RX-1&start=" + from + "&end=" + to + "&window=PT1H",
+                "/api/stats/top-defect-lines/global",
+                "/api/stats/distinct-machines?factoryId=F-RX&from=" + from + "&to=" + to,
+                "/api/factories/F-RX/summary",
+                "/api/retention/status",
+                "/api/machines")) {
+            webTestClient.get().uri(uri).exchange().expectStatus().isNotFound();
+        }
+        webTestClient.post().uri("/api/events/batch/stream")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(List.of())
+                .exchange()
+                .expectStatus().isNotFound();
+        webTestClient.post().uri("/api/snapshots").exchange().expectStatus().isNotFound();
+
+        webTestClient.get().uri("/api/health").exchange().expectStatus().isOk();
+    }
+
+    private static boolean storing(StackTraceElement[] frames) {
+        for (StackTraceElement frame : frames) {
+            if (frame.getClassName().equals(EventService.class.getName())
+                    && frame.getMethodName().equals("ingestCollecting")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,130 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.config.ReadConsistency;
+import com.internshala.factory_monitoring.config.ReplicaLag;
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.entity.Dimension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.internshala.factory_monitoring.service.TestEvents.event;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "factory.replica.enabled=true",
+        "factory.replica.max-staleness=PT0.2S",
+        "factory.replica.resync-delay=PT0.1S",
+        "spring.datasource.url=jdbc:h2:mem:replica_test_primary",
+        "factory.replica.url=jdbc:h2:mem:replica_test_replica;DB_CLOSE_DELAY=-1"
+})
+public class ReplicaRoutingTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 15, 10, 0);
+    private static final LocalDateTime END = START.plusHours(1);
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private ReplicaLag replicaLag;
+
+    @Autowired
+    private DimensionDictionary dimensions;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    @AfterEach
+    public void resetConsistency() {
+        ReadConsistency.clear();
+    }
+
+    /**
+     * Test 1: Committed ingest reaches the replica, and stats read from it
+     */
+    @Test
+    public void testIngestIsReplicated() throws InterruptedException {
+        List<EventRequest> batch = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            batch.add(event("E-REP-" + i, START.plusMinutes(1), "M-REP-1", "L-001", "F-001", 5000L, 1));
+        }
+        eventService.ingestBatch(batch);
+        awaitReplica();
+
+        assertEquals(20, eventService.getStats("M-REP-1", START, END).getEventsCount());
+    }
+
+    /**
+     * Test 2: Reads use the replica unless consistency is STRONG or the replica is too stale
+     */
+    @Test
+    public void testReadsFallBackToPrimary() throws InterruptedException {
+        eventService.ingestBatch(
+                List.of(event("E-REP-100", START.plusMinutes(1), "M-REP-2", "L-001", "F-001", 5000L, 1)));
+        awaitReplica();
+
+        // A row only the primary has (written behind the synchronizer's back)
+        new JdbcTemplate(primaryDataSource).update(
+                "INSERT INTO machine_events (event_id, event_time, received_time, machine_id, duration_ms, defect_count) " +
+                        "VALUES (?, ?, ?, ?, 5000, 0)",
+                "E-REP-101", Timestamp.valueOf(START.plusMinutes(5)), Timestamp.valueOf(START.plusMinutes(5)),
+                dimensions.keyOf(Dimension.Kind.MACHINE, "M-REP-2"));
+
+        assertEquals(1, eventService.getStats("M-REP-2", START, END).getEventsCount());
+
+        ReadConsistency.set(ReadConsistency.STRONG);
+        assertEquals(2, eventService.getStats("M-REP-2", START, END).getEventsCount());
+        ReadConsistency.clear();
+
+        // Beyond the staleness bound the primary answers eventual reads as well
+        long ticket = replicaLag.committed();
+        Thread.sleep(300);
+        assertEquals(2, eventService.getStats("M-REP-2", START, END).getEventsCount());
+        replicaLag.applied(ticket);
+        assertEquals(1, eventService.getStats("M-REP-2", START, END).getEventsCount());
+    }
+
+    /**
+     * Test 3: A batch that fails to apply is caught up by a full resync, after which
+     * reads use the replica again
+     */
+    @Test
+    public void testFailedApplyIsResynced() throws InterruptedException {
+        // A row only the replica has, with the eventId the next batch brings: its merge fails
+        new JdbcTemplate(replicaDataSource).update(
+                "INSERT INTO machine_events (id, event_id, event_time, received_time, machine_id, duration_ms, " +
+                        "defect_count, version) VALUES (-1, 'E-REP-200', ?, ?, -1, 5000, 0, 0)",
+                Timestamp.valueOf(START), Timestamp.valueOf(START));
+        eventService.ingestBatch(List.of(
+                event("E-REP-200", START.plusMinutes(1), "M-REP-3", "L-001", "F-001", 5000L, 1),
+                event("E-REP-201", START.plusMinutes(1), "M-REP-3", "L-001", "F-001", 5000L, 1)));
+
+        awaitReplica();
+        assertEquals(0, new JdbcTemplate(replicaDataSource).queryForObject(
+                "SELECT COUNT(*) FROM machine_events WHERE id = -1", Integer.class));
+        assertEquals(2, eventService.getStats("M-REP-3", START, END).getEventsCount());
+        assertEquals(0, replicaLag.stalenessMillis());
+    }
+
+    private void awaitReplica() throws InterruptedException {
+        for (int i = 0; i < 100 && replicaLag.pendingBatches() > 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, replicaLag.pendingBatches());
+    }
+}
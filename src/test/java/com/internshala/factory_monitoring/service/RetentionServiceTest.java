@@ -0,0 +1,95 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.dto.RetentionStatusResponse;
+import com.internshala.factory_monitoring.entity.EventSummary;
+import com.internshala.factory_monitoring.repo.EventSummaryRepository;
+import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import com.internshala.factory_monitoring.util.EventTimes;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.internshala.factory_monitoring.service.TestEvents.event;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "factory.retention.enabled=true",
+        "factory.retention.max-age=P30D",
+        "factory.retention.factories.F-RET-SHORT=P7D",
+        "factory.retention.chunk-size=3",
+        "factory.retention.pause=PT0S",
+        "factory.retention.initial-delay=PT1H",
+        "factory.retention.summarize=true",
+        "spring.datasource.url=jdbc:h2:mem:retention_test"
+})
+public class RetentionServiceTest {
+
+    @Autowired
+    private RetentionService retentionService;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @Autowired
+    private EventSummaryRepository summaryRepository;
+
+    @Autowired
+    private HourlyRollup hourlyRollup;
+
+    /**
+     * Test 1: Expired events are deleted in chunks, summarized, and subtracted from the rollup
+     */
+    @Test
+    public void testExpiredEventsDeletedAndSummarized() {
+        LocalDateTime old = LocalDateTime.now().minusDays(40).withMinute(10).withSecond(0).withNano(0);
+        LocalDateTime recent = LocalDateTime.now().minusDays(10);
+
+        List<EventRequest> batch = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            batch.add(event("E-RET-OLD-" + i, old.plusMinutes(i), "M-RET", "L-RET", "F-RET", 2));
+        }
+        batch.add(event("E-RET-NEW", recent, "M-RET", "L-RET", "F-RET", 1));
+        // Older than the factory's own 7 days, within the default 30
+        batch.add(event("E-RET-SHORT", recent, "M-RET", "L-RET", "F-RET-SHORT", 1));
+        assertEquals(9, eventService.ingestBatch(batch).getAccepted());
+
+        long hour = HourlyRollup.hourOf(EventTimes.toEpochMillis(old));
+        long recentHour = HourlyRollup.hourOf(EventTimes.toEpochMillis(recent));
+        // Older than the rollup's horizon (the retention max-age), so never held
+        assertEquals(0, hourlyRollup.machineTotals("M-RET", hour, hour + EventTimes.MILLIS_PER_HOUR).getEvents());
+        assertEquals(2, hourlyRollup.machineTotals("M-RET", recentHour, recentHour + EventTimes.MILLIS_PER_HOUR)
+                .getEvents());
+
+        assertEquals(8, retentionService.run());
+
+        assertTrue(repository.findByEventId("E-RET-NEW").isPresent());
+        assertFalse(repository.findByEventId("E-RET-OLD-0").isPresent());
+        assertFalse(repository.findByEventId("E-RET-SHORT").isPresent());
+        assertEquals(1, hourlyRollup.machineTotals("M-RET", recentHour, recentHour + EventTimes.MILLIS_PER_HOUR)
+                .getEvents());
+
+        List<EventSummary> summaries = summaryRepository.findByMachineIdInAndHourStartBetween(
+                List.of("M-RET"), EventTimes.toLocalDateTime(hour), EventTimes.toLocalDateTime(hour));
+        assertEquals(1, summaries.size());
+        assertEquals(7, summaries.get(0).getEventCount());
+        assertEquals(14, summaries.get(0).getDefectCount());
+        assertEquals(7000, summaries.get(0).getDurationMs());
+
+        RetentionStatusResponse status = retentionService.status();
+        assertFalse(status.isRunning());
+        assertEquals(8, status.getLastRun().getDeleted());
+        // 3 + 3 + 1 for F-RET, 1 for F-RET-SHORT
+        assertEquals(4, status.getLastRun().getChunks());
+
+        // Nothing left to delete
+        assertEquals(0, retentionService.run());
+    }
+}
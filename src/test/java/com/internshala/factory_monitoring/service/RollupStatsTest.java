@@ -0,0 +1,138 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.EventRequest;
+import com.internshala.factory_monitoring.dto.StatsResponse;
+import com.internshala.factory_monitoring.dto.TopDefectLineResponse;
+import com.internshala.factory_monitoring.entity.MachineEvent;
+import com.internshala.factory_monitoring.repo.MachineEventRepository;
+import com.internshala.factory_monitoring.util.EventTimes;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.internshala.factory_monitoring.service.TestEvents.event;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "factory.stats.serve-final-from-rollup=true",
+        "factory.stats.rollup.max-age=P3650D",
+        "factory.watermark.allowed-lateness=PT1H",
+        "spring.datasource.url=jdbc:h2:mem:rollup_test"
+})
+public class RollupStatsTest {
+
+    private static final LocalDateTime HOUR = LocalDateTime.of(2026, 1, 15, 10, 0);
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private HourlyRollup rollup;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Test 1: Windows behind the watermark are final and answered from the rollup
+     */
+    @Test
+    public void testFinalWindowIsServedFromRollup() {
+        eventService.ingestBatch(List.of(
+                event("E-RU-1", HOUR.plusMinutes(5), "M-RU-1", "L-RU-A", "F-RU", 2),
+                event("E-RU-2", HOUR.plusMinutes(65), "M-RU-1", "L-RU-A", "F-RU", -1),
+                event("E-RU-3", LocalDateTime.now().minusMinutes(5), "M-RU-1", "L-RU-A", "F-RU", 0)));
+
+        StatsResponse stats = eventService.getStats("M-RU-1", HOUR, HOUR.plusHours(2));
+        assertTrue(stats.isWindowFinal());
+        assertNotNull(stats.getWatermark());
+        assertEquals(2, stats.getEventsCount());
+        assertEquals(2, stats.getDefectsCount());
+
+        // A row written behind ingest's back is only visible to the database path
+        MachineEvent hidden = new MachineEvent(null, "E-RU-HIDDEN", HOUR.plusMinutes(6), LocalDateTime.now(),
+                "M-RU-1", 1000, 5, "L-RU", "F-RU");
+        repository.save(hidden);
+        assertEquals(2, eventService.getStats("M-RU-1", HOUR, HOUR.plusHours(2)).getEventsCount());
+        assertEquals(3, eventService.getStats("M-RU-1", HOUR, HOUR.plusMinutes(90)).getEventsCount());
+        repository.delete(hidden);
+
+        // The current hour is ahead of the watermark, so it is not final
+        LocalDateTime currentHour = LocalDateTime.now().withMinute(0).withSecond(0).withNano(0);
+        assertFalse(eventService.getStats("M-RU-1", currentHour, currentHour.plusHours(1)).isWindowFinal());
+    }
+
+    /**
+     * Test 2: A late update moving an event to another hour and line corrects both buckets
+     */
+    @Test
+    public void testLateUpdateAppliesRetraction() throws InterruptedException {
+        eventService.ingestBatch(List.of(
+                event("E-RU-10", HOUR.plusMinutes(10), "M-RU-2", "L-RU-A", "F-RU", 4),
+                event("E-RU-11", LocalDateTime.now().minusMinutes(5), "M-RU-2", "L-RU-A", "F-RU", 0)));
+        long correctionsBefore = rollup.getLateCorrections();
+
+        Thread.sleep(5);
+        EventRequest moved = event("E-RU-10", HOUR.plusMinutes(70), "M-RU-2", "L-RU-A", "F-RU", 1);
+        moved.setLineId("L-RU-B");
+        assertEquals(1, eventService.ingestBatch(List.of(moved)).getUpdated());
+
+        assertEquals(correctionsBefore + 1, rollup.getLateCorrections());
+        assertEquals(0, eventService.getStats("M-RU-2", HOUR, HOUR.plusHours(1)).getEventsCount());
+        StatsResponse secondHour = eventService.getStats("M-RU-2", HOUR.plusHours(1), HOUR.plusHours(2));
+        assertEquals(1, secondHour.getEventsCount());
+        assertEquals(1, secondHour.getDefectsCount());
+
+        TopDefectLineResponse lines = eventService.getTopDefectLines("F-RU", HOUR, HOUR.plusHours(2), 10);
+        assertTrue(lines.isWindowFinal());
+        assertEquals(List.of("L-RU-B"), lines.getLines().stream()
+                .filter(line -> line.getLineId().startsWith("L-RU-"))
+                .map(TopDefectLineResponse.DefectLineStats::getLineId).toList());
+    }
+
+    /**
+     * Test 3: No hours before the horizon are held: startup skips them, eviction drops
+     * them and later changes to them are ignored
+     */
+    @Test
+    public void testHoursBeforeHorizonAreNotHeld() {
+        LocalDateTime recent = LocalDateTime.now().minusMinutes(5);
+        eventService.ingestBatch(List.of(
+                event("E-RU-20", HOUR.plusMinutes(15), "M-RU-3", "L-RU-C", "F-RU-H", 1),
+                event("E-RU-21", recent, "M-RU-3", "L-RU-C", "F-RU-H", 1)));
+        long oldHour = EventTimes.toEpochMillis(HOUR);
+        long recentHour = HourlyRollup.hourOf(EventTimes.toEpochMillis(recent));
+
+        HourlyRollup day = new HourlyRollup(new EventWatermarks(Duration.ofHours(1)), repository, entityManager,
+                transactionManager, Duration.ofDays(1));
+        day.afterSingletonsInstantiated();
+        assertTrue(day.getHorizon() > oldHour);
+        assertEquals(0, day.machineTotals("M-RU-3", oldHour, recentHour).getEvents());
+        assertEquals(1, day.machineTotals("M-RU-3", recentHour, recentHour + EventTimes.MILLIS_PER_HOUR).getEvents());
+
+        HourlyRollup all = new HourlyRollup(new EventWatermarks(Duration.ofHours(1)), repository, entityManager,
+                transactionManager, Duration.ofDays(3650));
+        all.afterSingletonsInstantiated();
+        assertEquals(1, all.machineTotals("M-RU-3", oldHour, recentHour).getEvents());
+        all.evictBefore(recentHour);
+        assertEquals(recentHour, all.getHorizon());
+        assertEquals(0, all.machineTotals("M-RU-3", oldHour, recentHour).getEvents());
+        assertTrue(all.lineTotals("F-RU-H", oldHour, recentHour).isEmpty());
+        assertEquals(1, all.factoryEvents("F-RU-H", recentHour, recentHour + EventTimes.MILLIS_PER_HOUR));
+
+        all.onEventsChanged(new EventsChangedEvent(List.of(new EventChange(null, new MachineEvent(null, "E-RU-22",
+                HOUR.plusMinutes(20), LocalDateTime.now(), "M-RU-3", 1000, 1, "L-RU-C", "F-RU-H")))));
+        assertEquals(0, all.machineTotals("M-RU-3", oldHour, recentHour).getEvents());
+    }
+}
@@ -0,0 +1,28 @@
+package com.internshala.factory_monitoring.service;
+
+import com.internshala.factory_monitoring.dto.EventRequest;
+
+import java.time.LocalDateTime;
+
+/**
+ * Builds the events the service tests ingest. Each test names its own machines, lines
+ * and factories so that tests sharing a context do not see each other's rows.
+ */
+final class TestEvents {
+
+    /** Duration used when a test does not care how long an event took. */
+    static final long DURATION_MS = 1000L;
+
+    private TestEvents() {
+    }
+
+    static EventRequest event(String eventId, LocalDateTime eventTime, String machineId, String lineId,
+                              String factoryId, int defects) {
+        return event(eventId, eventTime, machineId, lineId, factoryId, DURATION_MS, defects);
+    }
+
+    static EventRequest event(String eventId, LocalDateTime eventTime, String machineId, String lineId,
+                              String factoryId, long durationMs, int defects) {
+        return new EventRequest(eventId, eventTime, machineId, durationMs, defects, lineId, factoryId);
+    }
+}
@@ -0,0 +1,47 @@
+package com.internshala.factory_monitoring.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class EventTimesTest {
+
+    /**
+     * The hand-written parser must agree with java.time for every layout clients send
+     */
+    @Test
+    public void testParseMatchesJavaTime() {
+        Random random = new Random(7);
+        LocalDateTime base = LocalDateTime.of(1999, 12, 31, 23, 59, 59);
+
+        for (int i = 0; i < 10_000; i++) {
+            LocalDateTime time = base.plusSeconds(random.nextInt(Integer.MAX_VALUE))
+                    .plusNanos(random.nextInt(1_000_000_000));
+            String text = switch (i % 3) {
+                case 0 -> time.truncatedTo(ChronoUnit.MINUTES).toString();
+                case 1 -> time.truncatedTo(ChronoUnit.SECONDS).withSecond(1).toString();
+                default -> time.toString();
+            };
+
+            LocalDateTime expected = LocalDateTime.parse(text).truncatedTo(ChronoUnit.MILLIS);
+            assertEquals(EventTimes.toEpochMillis(expected), EventTimes.parseEpochMillis(text), text);
+            assertEquals(expected, EventTimes.toLocalDateTime(EventTimes.parseEpochMillis(text)));
+        }
+    }
+
+    @Test
+    public void testZoneSuffixFallsBackAndGarbageIsRejected() {
+        assertEquals(EventTimes.parseEpochMillis("2026-01-15T10:00:00"),
+                EventTimes.parseEpochMillis("2026-01-15T10:00:00Z"));
+        // Dropping the offset would store the event at the wrong instant
+        assertThrows(IllegalArgumentException.class, () -> EventTimes.parseEpochMillis("2026-01-15T10:00:00+05:30"));
+        assertThrows(IllegalArgumentException.class, () -> EventTimes.parseEpochMillis("2026-01-15T10:00:00.5-08:00"));
+        assertThrows(IllegalArgumentException.class, () -> EventTimes.parseEpochMillis("2026-02-30T10:00:00"));
+        assertThrows(IllegalArgumentException.class, () -> EventTimes.parseEpochMillis("yesterday"));
+    }
+}
@@ -0,0 +1,65 @@
+package com.internshala.factory_monitoring.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HyperLogLogTest {
+
+    /**
+     * Small counts (the usual machines per factory hour) are close to exact, and repeats count once
+     */
+    @Test
+    public void testSmallCountsAreNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (int repeat = 0; repeat < 3; repeat++) {
+            for (int i = 0; i < 200; i++) {
+                sketch.add(HyperLogLog.hash("M-" + i));
+            }
+        }
+        assertTrue(Math.abs(sketch.estimate() - 200) <= 2, "estimate " + sketch.estimate());
+    }
+
+    /**
+     * Large counts stay within three standard errors, across the switch to dense registers
+     */
+    @Test
+    public void testLargeCountsWithinErrorBound() {
+        for (int precision : new int[]{10, 12, 14}) {
+            HyperLogLog sketch = new HyperLogLog(precision);
+            int distinct = 200_000;
+            for (int i = 0; i < distinct; i++) {
+                sketch.add(HyperLogLog.hash("machine-" + i));
+            }
+            double error = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+            assertTrue(error < 3 * sketch.relativeStandardError(),
+                    "precision " + precision + " error " + error);
+        }
+    }
+
+    /**
+     * Merging sketches estimates the union, as a single sketch of all values would
+     */
+    @Test
+    public void testMergeIsUnion() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        HyperLogLog all = new HyperLogLog(12);
+        for (int i = 0; i < 30_000; i++) {
+            long hash = HyperLogLog.hash("M-" + i);
+            (i < 20_000 ? first : second).add(hash);
+            if (i >= 10_000 && i < 15_000) {
+                second.add(hash);
+            }
+            all.add(hash);
+        }
+
+        HyperLogLog merged = new HyperLogLog(12);
+        first.mergeInto(merged);
+        second.mergeInto(merged);
+        assertEquals(all.estimate(), merged.estimate());
+        assertThrows(IllegalArgumentException.class, () -> first.mergeInto(new HyperLogLog(10)));
+    }
+}